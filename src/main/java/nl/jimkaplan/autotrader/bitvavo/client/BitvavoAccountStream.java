@@ -0,0 +1,307 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import nl.jimkaplan.autotrader.bitvavo.model.GetAccountBalanceResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BalanceLedger;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.bitvavo.service.CredentialDigest;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.service.BotConfigurationService;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps the {@link BalanceLedger} of the Bitvavo account of every active bot up to date from the authenticated
+ * Bitvavo WebSocket account channel. Every account gets one connection, subscribed to the account events of the
+ * trading pairs of all active bots that use its API key.
+ * <p>
+ * Every {@code bitvavo.ws.reconnect-delay} the stream connects accounts that are not connected, reconnects
+ * accounts whose set of trading pairs changed, closes the connections of accounts without active bots, and takes
+ * a REST snapshot of the balances of accounts whose ledger needs one. A connection is made before its snapshot
+ * is taken, so no event after the snapshot is missed. A lost connection discards the ledger of the account until
+ * it is reconnected and a new snapshot is taken.
+ */
+@Slf4j
+@Component
+public class BitvavoAccountStream {
+
+    static final String BALANCE_SNAPSHOT_ENDPOINT = "/balance";
+    static final String WEBSOCKET_PATH = "/websocket";
+
+    private final TradingPairIndex tradingPairIndex;
+    private final BotConfigurationService botConfigurationService;
+    private final BitvavoAuthenticationService authenticationService;
+    private final BitvavoApiClient bitvavoApiClient;
+    private final BalanceLedger balanceLedger;
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final boolean enabled;
+    private final Duration reconnectDelay;
+    private final HttpClient httpClient;
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public BitvavoAccountStream(TradingPairIndex tradingPairIndex,
+                                BotConfigurationService botConfigurationService,
+                                BitvavoAuthenticationService authenticationService,
+                                BitvavoApiClient bitvavoApiClient,
+                                BalanceLedger balanceLedger,
+                                ObjectMapper objectMapper,
+                                @Value("${bitvavo.ws.url:wss://ws.bitvavo.com/v2/}") String url,
+                                @Value("${bitvavo.ws.account.enabled:false}") boolean enabled,
+                                @Value("${bitvavo.ws.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.tradingPairIndex = tradingPairIndex;
+        this.botConfigurationService = botConfigurationService;
+        this.authenticationService = authenticationService;
+        this.bitvavoApiClient = bitvavoApiClient;
+        this.balanceLedger = balanceLedger;
+        this.objectMapper = objectMapper;
+        this.url = URI.create(url);
+        this.enabled = enabled;
+        this.reconnectDelay = reconnectDelay;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(reconnectDelay).build();
+    }
+
+    /**
+     * Connect the account streams of the active bots and keep them connected from now on.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Bitvavo account stream is disabled, balances are fetched from the REST API");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("bitvavo-account-stream").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::maintain, 0, reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        connections.keySet().forEach(this::disconnect);
+    }
+
+    /**
+     * Check whether the account stream of a bot is connected.
+     *
+     * @param botId The bot ID
+     * @return true if the WebSocket of the account of the bot is open
+     */
+    public boolean isConnected(String botId) {
+        return connections.values().stream()
+                .anyMatch(connection -> connection.botIds().contains(botId) && isOpen(connection));
+    }
+
+    /**
+     * Connect the accounts that are not connected, disconnect the accounts that no longer have active bots, and
+     * take the snapshots that are needed.
+     */
+    void maintain() {
+        Map<String, AccountBots> accounts = new HashMap<>();
+        tradingPairIndex.getTradingPairsByBotId().forEach((botId, tradingPair) -> {
+            try {
+                botConfigurationService.getBotConfiguration(botId)
+                        .filter(botConfig -> botConfig.getApiKey() != null)
+                        .ifPresent(botConfig -> accounts.computeIfAbsent(CredentialDigest.of(botConfig.getApiKey()),
+                                        account -> new AccountBots(botConfig, new TreeSet<>(), new TreeSet<>()))
+                                .add(botId, tradingPair));
+            } catch (RuntimeException e) {
+                log.warn("Cannot load bot {} for the Bitvavo account stream: {}", botId, e.getMessage());
+            }
+        });
+
+        for (Map.Entry<String, Connection> entry : connections.entrySet()) {
+            AccountBots bots = accounts.get(entry.getKey());
+            if (bots == null || !bots.tradingPairs().equals(entry.getValue().tradingPairs())) {
+                disconnect(entry.getKey());
+            }
+        }
+
+        accounts.forEach((account, bots) -> {
+            try {
+                Connection connection = connections.get(account);
+                boolean connect = connection == null || !isOpen(connection);
+                if (connect || balanceLedger.needsSnapshot(bots.botConfig().getApiKey())) {
+                    if (connect) {
+                        connect(account, bots);
+                    }
+                    snapshot(bots.botConfig());
+                }
+            } catch (RuntimeException | IOException | ExecutionException | TimeoutException e) {
+                log.warn("Bitvavo account stream of bots {} unavailable, retrying in {}: {}",
+                        bots.botIds(), reconnectDelay, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void connect(String account, AccountBots bots)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        BotConfiguration botConfig = bots.botConfig();
+        // Events may have been missed while not connected
+        disconnect(account);
+
+        WebSocket webSocket = httpClient.newWebSocketBuilder()
+                .buildAsync(url, new TextMessageListener("Bitvavo account stream of bots " + bots.botIds(),
+                        message -> handle(account, botConfig.getApiKey(), message),
+                        closed -> {
+                            Connection connection = connections.get(account);
+                            if (connection != null && connection.webSocket() == closed
+                                    && connections.remove(account, connection)) {
+                                balanceLedger.invalidate(botConfig.getApiKey());
+                            }
+                        }))
+                .get(reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+        connections.put(account, new Connection(botConfig.getApiKey(), bots.botIds(), bots.tradingPairs(),
+                webSocket));
+        try {
+            authenticateAndSubscribe(webSocket, botConfig, bots.tradingPairs());
+        } catch (Exception e) {
+            disconnect(account);
+            throw e;
+        }
+        log.info("Connected the Bitvavo account stream of bots {} for {}", bots.botIds(), bots.tradingPairs());
+    }
+
+    private void authenticateAndSubscribe(WebSocket webSocket, BotConfiguration botConfig, Set<String> tradingPairs)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        BitvavoAuthHeaders auth = authenticationService.createAuthHeaders(
+                "GET", WEBSOCKET_PATH, null, botConfig.getApiKey(), botConfig.getApiSecret());
+        ObjectNode authenticate = objectMapper.createObjectNode()
+                .put("action", "authenticate")
+                .put("key", auth.getBitvavoBitvAvoAccessKey())
+                .put("signature", auth.getBitvavoBitvAvoAccessSignature())
+                .put("timestamp", Long.parseLong(auth.getBitvavoBitvAvoAccessTimestamp()))
+                .put("window", Long.parseLong(auth.getBitvavoBitvAvoAccessWindow()));
+        send(webSocket, authenticate);
+
+        ObjectNode subscribe = objectMapper.createObjectNode().put("action", "subscribe");
+        ArrayNode markets = subscribe.putArray("channels").addObject()
+                .put("name", "account")
+                .putArray("markets");
+        tradingPairs.forEach(tradingPair -> markets.add(BitvavoTickerStream.toMarket(tradingPair)));
+        send(webSocket, subscribe);
+    }
+
+    private void disconnect(String account) {
+        Connection connection = connections.remove(account);
+        if (connection != null) {
+            connection.webSocket().abort();
+            balanceLedger.invalidate(connection.apiKey());
+        }
+    }
+
+    private void send(WebSocket webSocket, ObjectNode message)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        webSocket.sendText(objectMapper.writeValueAsString(message), true)
+                .get(reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void snapshot(BotConfiguration botConfig) {
+        GetAccountBalanceResponse[] balances = bitvavoApiClient.get(BALANCE_SNAPSHOT_ENDPOINT,
+                GetAccountBalanceResponse[].class, botConfig.getApiKey(), botConfig.getApiSecret());
+        Map<String, BigDecimal> available = new HashMap<>();
+        if (balances != null) {
+            for (GetAccountBalanceResponse balance : balances) {
+                if (balance.getSymbol() != null && balance.getAvailable() != null) {
+                    available.put(balance.getSymbol(), balance.getAvailable());
+                }
+            }
+        }
+        balanceLedger.seed(botConfig.getApiKey(), available);
+    }
+
+    private static boolean isOpen(Connection connection) {
+        return !connection.webSocket().isInputClosed() && !connection.webSocket().isOutputClosed();
+    }
+
+    /**
+     * Apply a message from the account stream of an account to its ledger.
+     *
+     * @param account The digest of the API key of the account
+     * @param apiKey  The API key of the account
+     * @param message The JSON message
+     */
+    void handle(String account, String apiKey, String message) {
+        try {
+            JsonNode node = objectMapper.readTree(message);
+            switch (node.path("event").asText()) {
+                case "fill" -> balanceLedger.applyFill(apiKey,
+                        node.path("orderId").asText(null),
+                        node.path("fillId").asText(null),
+                        node.path("market").asText(null),
+                        node.path("side").asText(null),
+                        BitvavoTickerStream.decimal(node, "amount"),
+                        BitvavoTickerStream.decimal(node, "price"),
+                        BitvavoTickerStream.decimal(node, "fee"),
+                        node.path("feeCurrency").asText(null));
+                case "order" -> balanceLedger.orderUpdated(apiKey,
+                        node.path("orderId").asText(null),
+                        node.path("status").asText(null),
+                        BitvavoTickerStream.decimal(node, "amountRemaining"),
+                        BitvavoTickerStream.decimal(node, "amountQuoteRemaining"));
+                default -> {
+                    if (node.has("error")) {
+                        // Without authentication or subscription no events arrive, so the ledger is not kept up to date
+                        log.warn("Bitvavo account stream error for bots {}: {}", botIds(account),
+                                node.path("error").asText());
+                        disconnect(account);
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable message from the Bitvavo account stream of bots {}: {}",
+                    botIds(account), e.getMessage());
+        }
+    }
+
+    private Set<String> botIds(String account) {
+        Connection connection = connections.get(account);
+        return connection != null ? connection.botIds() : Set.of();
+    }
+
+    /**
+     * The active bots of one account, and the credentials of one of them to connect with.
+     */
+    private record AccountBots(BotConfiguration botConfig, Set<String> botIds, Set<String> tradingPairs) {
+
+        private void add(String botId, String tradingPair) {
+            botIds.add(botId);
+            tradingPairs.add(tradingPair);
+        }
+    }
+
+    private record Connection(String apiKey, Set<String> botIds, Set<String> tradingPairs, WebSocket webSocket) {
+    }
+}
@@ -3,34 +3,61 @@ package nl.jimkaplan.autotrader.bitvavo.client;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
 import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.exception.CircuitBreakerOpenException;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
 /**
  * Client for interacting with the Bitvavo API.
+ * Every call is charged to the weight budget of its API key, or of the IP address for public calls, by the
+ * {@link BitvavoRateLimiter}, which is kept in sync with the rate limit headers of the responses.
+ * Reads are retried and hedged, and orders with a client order ID are retried, by {@link BitvavoResilience}.
+ * <p>
+ * Request bodies are serialized once, with the shared {@link ObjectMapper}; the same bytes are signed and sent.
  */
 @Component
 public class BitvavoApiClient {
 
     private static final Logger log = LoggerFactory.getLogger(BitvavoApiClient.class);
 
+    private static final String ORDER_ENDPOINT = "/order";
+    private static final String BALANCE_ENDPOINT = "/balance";
+    // Weight of the balance endpoint; the other endpoints we call weigh 1
+    private static final int BALANCE_WEIGHT = 5;
+
     private final RestTemplate restTemplate;
     private final BitvavoAuthenticationService authenticationService;
+    private final BitvavoRateLimiter rateLimiter;
+    private final BitvavoResilience resilience;
+    private final ObjectMapper objectMapper;
 
     @Value("${bitvavo.api.url}")
     private String apiUrl;
 
-    public BitvavoApiClient(RestTemplate restTemplate, BitvavoAuthenticationService authenticationService) {
+    public BitvavoApiClient(RestTemplate restTemplate, BitvavoAuthenticationService authenticationService,
+                            BitvavoRateLimiter rateLimiter, BitvavoResilience resilience, ObjectMapper objectMapper) {
         this.restTemplate = restTemplate;
         this.authenticationService = authenticationService;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -39,61 +66,172 @@ public class BitvavoApiClient {
      * @param endpoint     API endpoint (e.g., "/account")
      * @param responseType Class of the expected response
      * @return Response from the API
+     * @throws RateLimitExceededException  if the weight budget does not allow the call
+     * @throws CircuitBreakerOpenException if recent calls to the endpoint kept failing
      */
     public <T> T get(String endpoint, Class<T> responseType, String apiKey, String apiSecret) {
+        return resilience.read(endpoint, () -> sendGet(endpoint, responseType, apiKey, apiSecret));
+    }
+
+    private <T> T sendGet(String endpoint, Class<T> responseType, String apiKey, String apiSecret) {
         log.debug("Sending GET request to Bitvavo API: {}", endpoint);
+        // Wait for the budget before signing, so the signature is fresh when sent
+        rateLimiter.acquire(apiKey, weight(endpoint), BitvavoRateLimiter.Priority.LOOKUP);
 
         HttpHeaders headers = createHeaders(HttpMethod.GET.name(), endpoint, null, apiKey, apiSecret);
         HttpEntity<?> entity = new HttpEntity<>(headers);
         String url = apiUrl + endpoint;
 
         log.debug("Making request to: {}", url);
-        ResponseEntity<T> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                responseType
-        );
+        ResponseEntity<T> response = exchange(apiKey, url, HttpMethod.GET, entity, responseType);
 
         log.debug("Received response from Bitvavo API: {} with status {}", endpoint, response.getStatusCode());
         return response.getBody();
     }
 
+    /**
+     * Sends an unauthenticated GET request to a public endpoint of the Bitvavo API.
+     *
+     * @param endpoint     API endpoint (e.g., "/time")
+     * @param responseType Class of the expected response
+     * @return Response from the API
+     * @throws RateLimitExceededException  if the weight budget does not allow the call
+     * @throws CircuitBreakerOpenException if recent calls to the endpoint kept failing
+     */
+    public <T> T getPublic(String endpoint, Class<T> responseType) {
+        return resilience.read(endpoint, () -> sendGetPublic(endpoint, responseType));
+    }
+
+    private <T> T sendGetPublic(String endpoint, Class<T> responseType) {
+        log.debug("Sending public GET request to Bitvavo API: {}", endpoint);
+        rateLimiter.acquire(null, weight(endpoint), BitvavoRateLimiter.Priority.LOOKUP);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", "application/json");
+        ResponseEntity<T> response = exchange(null, apiUrl + endpoint, HttpMethod.GET, new HttpEntity<>(headers), responseType);
+
+        log.debug("Received response from Bitvavo API: {} with status {}", endpoint, response.getStatusCode());
+        return response.getBody();
+    }
+
+    /**
+     * Sends a single unauthenticated GET request to a public endpoint of the Bitvavo API, without rate limiting,
+     * retries or hedging, for calls whose round trip is measured, such as server time samples.
+     * The weight budget Bitvavo reports back is still taken over.
+     *
+     * @param endpoint     API endpoint (e.g., "/time")
+     * @param responseType Class of the expected response
+     * @return Response from the API
+     */
+    public <T> T getPublicDirect(String endpoint, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", "application/json");
+        return exchange(null, apiUrl + endpoint, HttpMethod.GET, new HttpEntity<>(headers), responseType).getBody();
+    }
+
     /**
      * Sends a POST request to the Bitvavo API.
+     * An order with a client order ID is retried after transient failures; any other POST is sent once.
      *
      * @param endpoint     API endpoint (e.g., "/order")
      * @param body         Request body
      * @param responseType Class of the expected response
      * @return Response from the API
+     * @throws RateLimitExceededException  if the weight budget does not allow the call
+     * @throws CircuitBreakerOpenException if recent calls to the endpoint kept failing
      */
     public <T> T post(String endpoint, Object body, Class<T> responseType, String apiKey, String apiSecret) {
-        log.debug("Sending POST request to Bitvavo API: {}", endpoint);
+        // Serialized once: retries send, and sign, the same bytes
+        byte[] bodyBytes = serialize(body);
+        if (ORDER_ENDPOINT.equals(endpoint) && body instanceof CreateOrderRequest order
+                && order.getClientOrderId() != null && order.getMarket() != null) {
+            return resilience.order(endpoint,
+                    () -> sendPost(endpoint, bodyBytes, responseType, apiKey, apiSecret),
+                    () -> findOrder(order, responseType, apiKey, apiSecret));
+        }
+        return resilience.write(endpoint, () -> sendPost(endpoint, bodyBytes, responseType, apiKey, apiSecret));
+    }
 
+    /**
+     * Looks up an order by its client order ID.
+     *
+     * @return The order, or empty if Bitvavo has no order with the client order ID
+     */
+    private <T> Optional<T> findOrder(CreateOrderRequest order, Class<T> responseType, String apiKey, String apiSecret) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            String bodyString = body != null ? objectMapper.writeValueAsString(body) : "";
-            log.debug("Request body: {}", bodyString);
-
-            HttpHeaders headers = createHeaders(HttpMethod.POST.name(), endpoint, bodyString, apiKey, apiSecret);
-            HttpEntity<?> entity = new HttpEntity<>(body, headers);
-            String url = apiUrl + endpoint;
-
-            log.debug("Making request to: {}", url);
-            ResponseEntity<T> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    responseType
-            );
-
-            log.debug("Received response from Bitvavo API: {} with status {}", endpoint, response.getStatusCode());
-            return response.getBody();
+            return Optional.ofNullable(sendGet(ORDER_ENDPOINT + "?market=" + order.getMarket()
+                    + "&clientOrderId=" + order.getClientOrderId(), responseType, apiKey, apiSecret));
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private byte[] serialize(Object body) {
+        if (body == null) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(body);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException("Error serializing request body", e);
         }
     }
 
+    private <T> T sendPost(String endpoint, byte[] body, Class<T> responseType, String apiKey, String apiSecret) {
+        log.debug("Sending POST request to Bitvavo API: {}", endpoint);
+        if (log.isDebugEnabled()) {
+            log.debug("Request body: {}", new String(body, StandardCharsets.UTF_8));
+        }
+
+        rateLimiter.acquire(apiKey, weight(endpoint), ORDER_ENDPOINT.equals(endpoint)
+                ? BitvavoRateLimiter.Priority.ORDER
+                : BitvavoRateLimiter.Priority.LOOKUP);
+
+        HttpHeaders headers = createHeaders(authenticationService.createAuthHeadersForBody(
+                HttpMethod.POST.name(), endpoint, body, apiKey, apiSecret));
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<byte[]> entity = new HttpEntity<>(body, headers);
+        String url = apiUrl + endpoint;
+
+        log.debug("Making request to: {}", url);
+        ResponseEntity<T> response = exchange(apiKey, url, HttpMethod.POST, entity, responseType);
+
+        log.debug("Received response from Bitvavo API: {} with status {}", endpoint, response.getStatusCode());
+        return response.getBody();
+    }
+
+    /**
+     * Sends a request and takes over the weight budget Bitvavo reports back, also when Bitvavo answers with
+     * an error such as 429.
+     *
+     * @param apiKey API key of the call, or null for a public call
+     */
+    private <T> ResponseEntity<T> exchange(String apiKey, String url, HttpMethod method, HttpEntity<?> entity,
+                                           Class<T> responseType) {
+        try {
+            ResponseEntity<T> response = restTemplate.exchange(url, method, entity, responseType);
+            syncRateLimit(apiKey, response.getHeaders());
+            return response;
+        } catch (HttpStatusCodeException e) {
+            syncRateLimit(apiKey, e.getResponseHeaders());
+            throw e;
+        }
+    }
+
+    private void syncRateLimit(String apiKey, HttpHeaders headers) {
+        if (headers != null) {
+            rateLimiter.sync(apiKey, headers.getFirst(BitvavoRateLimiter.REMAINING_HEADER),
+                    headers.getFirst(BitvavoRateLimiter.RESET_AT_HEADER));
+        }
+    }
+
+    private static int weight(String endpoint) {
+        return endpoint.equals(BALANCE_ENDPOINT) || endpoint.startsWith(BALANCE_ENDPOINT + "?") ? BALANCE_WEIGHT : 1;
+    }
+
     /**
      * Creates HTTP headers with Bitvavo authentication.
      *
@@ -105,16 +243,19 @@ public class BitvavoApiClient {
     private HttpHeaders createHeaders(String method, String endpoint, String body, String apiKey, String apiSecret) {
         log.debug("Creating authentication headers for {} request to {}", method, endpoint);
 
-        BitvavoAuthHeaders authHeaders = authenticationService.createAuthHeaders(method, endpoint, body, apiKey, apiSecret);
+        HttpHeaders headers = createHeaders(authenticationService.createAuthHeaders(method, endpoint, body, apiKey, apiSecret));
+        if (method.equals("GET"))
+            headers.set("Content-Length", "0");
+        return headers;
+    }
 
+    private HttpHeaders createHeaders(BitvavoAuthHeaders authHeaders) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Bitvavo-Access-Key", authHeaders.getBitvavoBitvAvoAccessKey());
         headers.set("Bitvavo-Access-Signature", authHeaders.getBitvavoBitvAvoAccessSignature());
         headers.set("Bitvavo-Access-Timestamp", authHeaders.getBitvavoBitvAvoAccessTimestamp());
         headers.set("Bitvavo-Access-Window", authHeaders.getBitvavoBitvAvoAccessWindow());
         headers.set("Accept", "application/json");
-        if (method.equals("GET"))
-            headers.set("Content-Length", "0");
 
         log.debug("Authentication headers created successfully");
         return headers;
@@ -0,0 +1,86 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the Bitvavo server time at startup and every {@code bitvavo.clock.sync-interval} after that, and feeds
+ * it to the {@link BitvavoClock}. Runs on its own thread, so signing a request never waits for a sample.
+ * A sample is a single direct request: a retried, hedged or rate limited request would take longer than its
+ * round trip and skew the offset, and samples slower than {@code bitvavo.clock.max-round-trip} are discarded.
+ */
+@Slf4j
+@Component
+public class BitvavoClockSynchronizer {
+
+    static final String TIME_ENDPOINT = "/time";
+
+    private final BitvavoApiClient bitvavoApiClient;
+    private final BitvavoClock bitvavoClock;
+    private final Duration syncInterval;
+    private ScheduledExecutorService scheduler;
+
+    public BitvavoClockSynchronizer(BitvavoApiClient bitvavoApiClient, BitvavoClock bitvavoClock,
+                                    @Value("${bitvavo.clock.sync-interval:PT1M}") Duration syncInterval) {
+        this.bitvavoApiClient = bitvavoApiClient;
+        this.bitvavoClock = bitvavoClock;
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Start sampling the server time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (syncInterval.isZero() || syncInterval.isNegative()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("bitvavo-clock-sync").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Take one sample of the server time.
+     *
+     * @return true if the server time was received and used
+     */
+    boolean sync() {
+        try {
+            long sentAt = bitvavoClock.hostTimeMillis();
+            Map<?, ?> response = bitvavoApiClient.getPublicDirect(TIME_ENDPOINT, Map.class);
+            long receivedAt = bitvavoClock.hostTimeMillis();
+            if (response == null || !(response.get("time") instanceof Number serverTime)) {
+                log.warn("Bitvavo server time response without time: {}", response);
+                return false;
+            }
+            if (!bitvavoClock.update(sentAt, serverTime.longValue(), receivedAt)) {
+                return false;
+            }
+            log.debug("Bitvavo server clock offset is {} ms", bitvavoClock.getOffsetMillis());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to sample the Bitvavo server time: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps connections to Bitvavo open and warm, so placing an order does not pay for a TCP and TLS handshake.
+ * At startup, and every {@code bitvavo.http.keep-warm-interval} after that, {@code bitvavo.http.warm-connections}
+ * concurrent requests to the public time endpoint are sent. Concurrent requests each need their own connection,
+ * so the pool ends up with that many open connections, and refreshing them before the idle eviction (and the
+ * server's keep-alive timeout) closes them keeps them open.
+ */
+@Slf4j
+@Component
+public class BitvavoConnectionWarmer {
+
+    static final String WARM_UP_ENDPOINT = "/time";
+
+    private final BitvavoApiClient bitvavoApiClient;
+    private final ExecutorService tradingExecutor;
+    private final int warmConnections;
+    private final Duration keepWarmInterval;
+    private ScheduledExecutorService scheduler;
+
+    public BitvavoConnectionWarmer(BitvavoApiClient bitvavoApiClient,
+                                   @Qualifier("tradingExecutor") ExecutorService tradingExecutor,
+                                   @Value("${bitvavo.http.warm-connections:4}") int warmConnections,
+                                   @Value("${bitvavo.http.keep-warm-interval:PT30S}") Duration keepWarmInterval) {
+        this.bitvavoApiClient = bitvavoApiClient;
+        this.tradingExecutor = tradingExecutor;
+        this.warmConnections = warmConnections;
+        this.keepWarmInterval = keepWarmInterval;
+    }
+
+    /**
+     * Open the warm connections and keep them warm from now on.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (warmConnections <= 0) {
+            return;
+        }
+
+        int warmed = warm();
+        log.info("Opened {} of {} warm connections to Bitvavo", warmed, warmConnections);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("bitvavo-connection-warmer").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::warm,
+                keepWarmInterval.toMillis(), keepWarmInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Send the warm-up requests concurrently and wait for them.
+     *
+     * @return The number of successful requests
+     */
+    int warm() {
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>(warmConnections);
+        for (int i = 0; i < warmConnections; i++) {
+            requests.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    bitvavoApiClient.getPublic(WARM_UP_ENDPOINT, Map.class);
+                    return true;
+                } catch (RuntimeException e) {
+                    log.warn("Warm-up request to Bitvavo failed: {}", e.getMessage());
+                    return false;
+                }
+            }, tradingExecutor));
+        }
+        return (int) requests.stream()
+                .map(CompletableFuture::join)
+                .filter(Boolean::booleanValue)
+                .count();
+    }
+}
@@ -0,0 +1,300 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.service.CredentialDigest;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side token buckets for the Bitvavo weight budget, so calls wait or fail fast instead of being answered
+ * with 429 and getting the API key or IP address banned.
+ * <p>
+ * Bitvavo charges authenticated calls to their API key and public calls to the IP address, each with a budget
+ * of {@code bitvavo.rate-limit.weight-per-minute}. Every bucket refills continuously and is corrected by the
+ * {@code bitvavo-ratelimit-remaining} and {@code bitvavo-ratelimit-resetat} headers of every response.
+ * Lookups leave {@code bitvavo.rate-limit.order-reserve} of the budget to orders. A call that cannot be made
+ * within {@code bitvavo.rate-limit.max-wait} is rejected right away with a {@link RateLimitExceededException}.
+ * <p>
+ * The buckets of API keys are kept by the digest of the key. Once a minute, buckets that have refilled completely
+ * are removed: a full bucket is the same as a new one, so API keys of deleted bots do not hold memory.
+ */
+@Slf4j
+@Component
+public class BitvavoRateLimiter {
+
+    static final String REMAINING_HEADER = "bitvavo-ratelimit-remaining";
+    static final String RESET_AT_HEADER = "bitvavo-ratelimit-resetat";
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Priority of a call for the weight budget.
+     */
+    public enum Priority {
+        /**
+         * Placing an order; may use the whole budget.
+         */
+        ORDER,
+        /**
+         * Any other call; leaves the order reserve untouched.
+         */
+        LOOKUP
+    }
+
+    private final int weightPerMinute;
+    private final int orderReserve;
+    private final Duration maxWait;
+    private final LongSupplier nanoTime;
+    private final LongSupplier currentTimeMillis;
+    private final Bucket ipBucket;
+    private final Map<String, Bucket> keyBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastEviction;
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejectionCounters = new EnumMap<>(Priority.class);
+
+    @Autowired
+    public BitvavoRateLimiter(MeterRegistry meterRegistry,
+                              @Value("${bitvavo.rate-limit.weight-per-minute:1000}") int weightPerMinute,
+                              @Value("${bitvavo.rate-limit.order-reserve:100}") int orderReserve,
+                              @Value("${bitvavo.rate-limit.max-wait:PT2S}") Duration maxWait) {
+        this(meterRegistry, weightPerMinute, orderReserve, maxWait, System::nanoTime, System::currentTimeMillis);
+    }
+
+    // Constructor for testing
+    BitvavoRateLimiter(MeterRegistry meterRegistry, int weightPerMinute, int orderReserve, Duration maxWait,
+                       LongSupplier nanoTime, LongSupplier currentTimeMillis) {
+        this.weightPerMinute = weightPerMinute;
+        this.orderReserve = orderReserve;
+        this.maxWait = maxWait;
+        this.nanoTime = nanoTime;
+        this.currentTimeMillis = currentTimeMillis;
+        this.ipBucket = new Bucket(weightPerMinute, nanoTime.getAsLong());
+        this.lastEviction = new AtomicLong(nanoTime.getAsLong());
+        Gauge.builder("autotrader.bitvavo.rate-limit.api-keys", keyBuckets, Map::size)
+                .description("API keys with a weight budget that is not full")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            waitTimers.put(priority, Timer.builder("autotrader.bitvavo.rate-limit.wait")
+                    .description("Time Bitvavo calls waited for the weight budget")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            rejectionCounters.put(priority, Counter.builder("autotrader.bitvavo.rate-limit.rejections")
+                    .description("Bitvavo calls rejected because the weight budget was exhausted")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Take the weight of a call from the budget of its API key, or of the IP address for a public call,
+     * waiting for the budget to refill if that takes no longer than {@code bitvavo.rate-limit.max-wait}.
+     *
+     * @param apiKey   The API key of the call, or null for a public call
+     * @param weight   The weight of the call
+     * @param priority The priority of the call
+     * @throws RateLimitExceededException if the budget does not allow the call within the maximum wait
+     */
+    public void acquire(String apiKey, int weight, Priority priority) {
+        Bucket bucket = bucket(apiKey);
+        int floor = priority == Priority.ORDER ? 0 : Math.max(0, Math.min(orderReserve, weightPerMinute - weight));
+        long start = nanoTime.getAsLong();
+        long deadline = start + maxWait.toNanos();
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long wait = bucket.tryTake(weight, floor, now);
+            if (wait < 0) {
+                // Evicted after it was looked up; a new bucket is just as full
+                bucket = bucket(apiKey);
+                continue;
+            }
+            if (wait == 0) {
+                waitTimers.get(priority).record(now - start, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (wait > deadline - now) {
+                rejectionCounters.get(priority).increment();
+                throw new RateLimitExceededException("Bitvavo weight budget of "
+                        + (apiKey == null ? "the IP address" : "the API key") + " exhausted for "
+                        + priority.name().toLowerCase() + " calls, next call possible in "
+                        + TimeUnit.NANOSECONDS.toMillis(wait) + " ms");
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RateLimitExceededException("Interrupted while waiting for the Bitvavo weight budget");
+            }
+        }
+    }
+
+    /**
+     * Correct the budget of an API key, or of the IP address, with the rate limit headers of a Bitvavo response.
+     * Missing or unreadable headers are ignored.
+     *
+     * @param apiKey    The API key of the call, or null for a public call
+     * @param remaining Value of the {@code bitvavo-ratelimit-remaining} header
+     * @param resetAt   Value of the {@code bitvavo-ratelimit-resetat} header, in epoch milliseconds
+     */
+    public void sync(String apiKey, String remaining, String resetAt) {
+        if (remaining == null) {
+            return;
+        }
+        try {
+            long remainingWeight = Long.parseLong(remaining);
+            long resetInMillis = resetAt != null ? Long.parseLong(resetAt) - currentTimeMillis.getAsLong() : 0;
+            while (!bucket(apiKey).sync(remainingWeight, TimeUnit.MILLISECONDS.toNanos(resetInMillis),
+                    nanoTime.getAsLong())) {
+                // Evicted after it was looked up; correct the new bucket instead
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring unreadable Bitvavo rate limit headers: remaining={}, resetAt={}", remaining, resetAt);
+        }
+    }
+
+    /**
+     * Get the weight that can currently be spent by an API key, or by the IP address.
+     *
+     * @param apiKey The API key, or null for public calls
+     * @return The remaining weight
+     */
+    public long getRemaining(String apiKey) {
+        return bucket(apiKey).remaining(nanoTime.getAsLong());
+    }
+
+    private Bucket bucket(String apiKey) {
+        if (apiKey == null) {
+            return ipBucket;
+        }
+        evictFullBuckets();
+        return keyBuckets.compute(CredentialDigest.of(apiKey), (key, bucket) -> bucket == null || bucket.evicted
+                ? new Bucket(weightPerMinute, nanoTime.getAsLong())
+                : bucket);
+    }
+
+    private void evictFullBuckets() {
+        long now = nanoTime.getAsLong();
+        long last = lastEviction.get();
+        if (now - last < EVICTION_INTERVAL_NANOS || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        // Only removes a bucket if it is still the one that was found full
+        keyBuckets.values().removeIf(bucket -> bucket.evictIfFull(now));
+    }
+
+    /**
+     * Token bucket refilling the whole budget once per minute. When Bitvavo reports the budget is spent,
+     * the bucket is blocked until Bitvavo resets it.
+     */
+    private static final class Bucket {
+
+        private final long capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+        private long blockedUntil;
+        private boolean blocked;
+        // Set when removed from the map; callers that still hold the bucket look it up again
+        private volatile boolean evicted;
+
+        private Bucket(long capacity, long now) {
+            this.capacity = capacity;
+            this.refillPerNano = capacity / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * Take the weight if the bucket keeps at least the floor.
+         *
+         * @return 0 if the weight was taken, -1 if the bucket was evicted, otherwise the nanoseconds until it can be
+         */
+        synchronized long tryTake(int weight, int floor, long now) {
+            if (evicted) {
+                return -1;
+            }
+            if (unblock(now)) {
+                return blockedUntil - now;
+            }
+            refill(now);
+            double missing = weight + floor - tokens;
+            if (missing <= 0) {
+                tokens -= weight;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil(missing / refillPerNano));
+        }
+
+        /**
+         * @return false if the bucket was evicted
+         */
+        synchronized boolean sync(long remaining, long resetInNanos, long now) {
+            if (evicted) {
+                return false;
+            }
+            refill(now);
+            tokens = Math.max(0, Math.min(tokens, remaining));
+            if (remaining <= 0 && resetInNanos > 0) {
+                blocked = true;
+                blockedUntil = now + resetInNanos;
+            }
+            return true;
+        }
+
+        /**
+         * Mark the bucket as evicted if it has refilled completely.
+         *
+         * @return true if the bucket was evicted
+         */
+        synchronized boolean evictIfFull(long now) {
+            if (unblock(now)) {
+                return false;
+            }
+            refill(now);
+            evicted = tokens >= capacity;
+            return evicted;
+        }
+
+        synchronized long remaining(long now) {
+            if (unblock(now)) {
+                return 0;
+            }
+            refill(now);
+            return (long) tokens;
+        }
+
+        /**
+         * @return true if the bucket is still blocked
+         */
+        private boolean unblock(long now) {
+            if (!blocked) {
+                return false;
+            }
+            if (now - blockedUntil < 0) {
+                return true;
+            }
+            blocked = false;
+            tokens = capacity;
+            lastRefill = now;
+            return false;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+    }
+}
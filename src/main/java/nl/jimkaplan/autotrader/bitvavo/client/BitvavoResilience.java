@@ -0,0 +1,350 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.exception.CircuitBreakerOpenException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retries, hedging and circuit breaking for the calls of {@link BitvavoApiClient}.
+ * <p>
+ * Only transient failures count: I/O errors and 5xx responses. Other errors, such as a rejected order, are
+ * passed on at once.
+ * <ul>
+ *     <li>Reads are retried up to {@code bitvavo.resilience.read.max-attempts} times with full jitter backoff.
+ *     When a read has not answered within {@code bitvavo.resilience.read.hedge-delay}, a duplicate is sent and
+ *     the first successful answer is used.</li>
+ *     <li>Orders are retried up to {@code bitvavo.resilience.order.max-attempts} times, but only when they carry a
+ *     client order ID. Before every retry the order is looked up by that ID, so an order that was placed before
+ *     its response was lost is not placed again.</li>
+ *     <li>Every endpoint has a circuit breaker that opens after {@code bitvavo.resilience.circuit.failure-threshold}
+ *     consecutive transient failures. While open, calls fail at once with a {@link CircuitBreakerOpenException}.
+ *     After {@code bitvavo.resilience.circuit.open-duration} a single trial call decides whether it closes again.
+ *     Only a response from Bitvavo, successful or 4xx, counts as a success; local errors leave the breaker as it
+ *     is.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class BitvavoResilience {
+
+    private final int readMaxAttempts;
+    private final Duration backoff;
+    private final Duration hedgeDelay;
+    private final int orderMaxAttempts;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final LongSupplier nanoTime;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    // Hedged reads run on their own threads, so a pool of the caller cannot be starved by them
+    private final ExecutorService hedgeExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bitvavo-read-", 0).factory());
+
+    @Autowired
+    public BitvavoResilience(MeterRegistry meterRegistry,
+                             @Value("${bitvavo.resilience.read.max-attempts:3}") int readMaxAttempts,
+                             @Value("${bitvavo.resilience.backoff:PT0.1S}") Duration backoff,
+                             @Value("${bitvavo.resilience.read.hedge-delay:PT0.5S}") Duration hedgeDelay,
+                             @Value("${bitvavo.resilience.order.max-attempts:3}") int orderMaxAttempts,
+                             @Value("${bitvavo.resilience.circuit.failure-threshold:5}") int failureThreshold,
+                             @Value("${bitvavo.resilience.circuit.open-duration:PT30S}") Duration openDuration) {
+        this(meterRegistry, readMaxAttempts, backoff, hedgeDelay, orderMaxAttempts, failureThreshold, openDuration,
+                System::nanoTime);
+    }
+
+    // Constructor for testing
+    BitvavoResilience(MeterRegistry meterRegistry, int readMaxAttempts, Duration backoff, Duration hedgeDelay,
+                      int orderMaxAttempts, int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+        this.meterRegistry = meterRegistry;
+        this.readMaxAttempts = readMaxAttempts;
+        this.backoff = backoff;
+        this.hedgeDelay = hedgeDelay;
+        this.orderMaxAttempts = orderMaxAttempts;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.nanoTime = nanoTime;
+    }
+
+    @PreDestroy
+    public void stop() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Make a read call with retries and hedging.
+     *
+     * @param endpoint The endpoint, for the circuit breaker (e.g., "/balance?symbol=EUR")
+     * @param call     The call, which must be safe to repeat
+     * @return The result of the call
+     */
+    public <T> T read(String endpoint, Supplier<T> call) {
+        String path = path(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return hedged(path, call);
+            } catch (RuntimeException e) {
+                if (!isTransient(e) || attempt >= readMaxAttempts) {
+                    throw e;
+                }
+                log.warn("Bitvavo read {} failed (attempt {} of {}), retrying: {}",
+                        path, attempt, readMaxAttempts, e.getMessage());
+                count(path, "retry");
+                sleep(attempt);
+            }
+        }
+    }
+
+    /**
+     * Make a call that is not safe to repeat, such as an order without a client order ID, only once.
+     *
+     * @param endpoint The endpoint, for the circuit breaker
+     * @param call     The call
+     * @return The result of the call
+     */
+    public <T> T write(String endpoint, Supplier<T> call) {
+        return guarded(path(endpoint), call);
+    }
+
+    /**
+     * Place an order with retries. Before every retry the order is looked up, and returned if it was placed.
+     *
+     * @param endpoint The endpoint, for the circuit breaker
+     * @param call     The call placing the order, with a client order ID
+     * @param lookup   The call looking up the order by its client order ID, empty if it was not placed
+     * @return The placed order
+     */
+    public <T> T order(String endpoint, Supplier<T> call, Supplier<Optional<T>> lookup) {
+        String path = path(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (attempt > 1) {
+                    Optional<T> placed = guarded(path, lookup);
+                    if (placed.isPresent()) {
+                        log.info("Bitvavo order was placed by an earlier attempt, not placing it again");
+                        count(path, "order-recovered");
+                        return placed.get();
+                    }
+                }
+                return guarded(path, call);
+            } catch (RuntimeException e) {
+                if (!isTransient(e) || attempt >= orderMaxAttempts) {
+                    throw e;
+                }
+                log.warn("Bitvavo order failed (attempt {} of {}), retrying: {}",
+                        attempt, orderMaxAttempts, e.getMessage());
+                count(path, "retry");
+                sleep(attempt);
+            }
+        }
+    }
+
+    /**
+     * Check whether the circuit breaker of an endpoint is open.
+     *
+     * @param endpoint The endpoint
+     * @return true if calls to the endpoint currently fail at once
+     */
+    public boolean isOpen(String endpoint) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(path(endpoint));
+        return circuitBreaker != null && circuitBreaker.isOpen();
+    }
+
+    /**
+     * Make a call and send a duplicate if it does not answer within the hedge delay.
+     */
+    private <T> T hedged(String path, Supplier<T> call) {
+        if (hedgeDelay.isZero() || hedgeDelay.isNegative()) {
+            return guarded(path, call);
+        }
+
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(() -> guarded(path, call), hedgeExecutor);
+        try {
+            try {
+                return primary.get(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                count(path, "hedge");
+                CompletableFuture<T> hedge = CompletableFuture.supplyAsync(() -> guarded(path, call), hedgeExecutor);
+                return firstSuccess(primary, hedge).get();
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Bitvavo", e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Make a single call through the circuit breaker of its endpoint.
+     */
+    private <T> T guarded(String path, Supplier<T> call) {
+        CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(path, this::createCircuitBreaker);
+        circuitBreaker.acquire();
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                circuitBreaker.onFailure();
+            } else if (e instanceof HttpClientErrorException) {
+                // Bitvavo answered, so the endpoint is reachable
+                circuitBreaker.onSuccess();
+            } else {
+                // Failed locally, e.g. the rate limiter or serialization: nothing is known about the endpoint
+                circuitBreaker.onIgnored();
+            }
+            throw e;
+        }
+    }
+
+    private CircuitBreaker createCircuitBreaker(String path) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(path);
+        Gauge.builder("autotrader.bitvavo.circuit.open", circuitBreaker, breaker -> breaker.isOpen() ? 1 : 0)
+                .description("Whether the circuit breaker of a Bitvavo endpoint is open")
+                .tag("endpoint", path)
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+
+    private void count(String path, String event) {
+        Counter.builder("autotrader.bitvavo.resilience")
+                .description("Retries, hedged reads, recovered orders and rejections by open circuit breakers")
+                .tag("endpoint", path)
+                .tag("event", event)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Sleep before a retry, for a random time up to the backoff doubled for every earlier attempt.
+     */
+    private void sleep(int attempt) {
+        long maxMillis = backoff.toMillis() << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry a Bitvavo call", e);
+        }
+    }
+
+    static boolean isTransient(Throwable e) {
+        return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException(cause);
+    }
+
+    private static String path(String endpoint) {
+        int query = endpoint.indexOf('?');
+        return query < 0 ? endpoint : endpoint.substring(0, query);
+    }
+
+    /**
+     * Circuit breaker of one endpoint. When open, one trial call is let through after the open duration;
+     * its success closes the circuit and its failure keeps it open for another open duration.
+     */
+    private final class CircuitBreaker {
+
+        private final String path;
+        private int consecutiveFailures;
+        private boolean open;
+        private boolean trialInProgress;
+        private long openUntil;
+
+        private CircuitBreaker(String path) {
+            this.path = path;
+        }
+
+        synchronized void acquire() {
+            if (!open) {
+                return;
+            }
+            if (trialInProgress || nanoTime.getAsLong() - openUntil < 0) {
+                count(path, "rejected");
+                throw new CircuitBreakerOpenException("Circuit breaker for Bitvavo " + path + " is open");
+            }
+            trialInProgress = true;
+        }
+
+        synchronized void onSuccess() {
+            if (open) {
+                log.info("Circuit breaker for Bitvavo {} closed", path);
+            }
+            consecutiveFailures = 0;
+            open = false;
+            trialInProgress = false;
+        }
+
+        synchronized void onIgnored() {
+            trialInProgress = false;
+        }
+
+        synchronized void onFailure() {
+            trialInProgress = false;
+            consecutiveFailures++;
+            if (open || consecutiveFailures >= failureThreshold) {
+                if (!open) {
+                    log.warn("Circuit breaker for Bitvavo {} opened after {} consecutive failures",
+                            path, consecutiveFailures);
+                }
+                open = true;
+                openUntil = nanoTime.getAsLong() + openDuration.toNanos();
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return open;
+        }
+    }
+}
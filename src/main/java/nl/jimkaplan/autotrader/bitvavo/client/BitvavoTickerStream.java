@@ -0,0 +1,202 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.service.MarketPriceTable;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Subscribes to the Bitvavo WebSocket ticker channel for every trading pair an active bot trades, and writes
+ * the last price, best bid and best ask of every update to the {@link MarketPriceTable}.
+ * <p>
+ * Every {@code bitvavo.ws.reconnect-delay} the stream reconnects when the connection was lost, and subscribes
+ * to trading pairs that were added since the last check. Whether the stream is connected is exposed as the
+ * {@code autotrader.market-price.stream.connected} gauge.
+ */
+@Slf4j
+@Component
+public class BitvavoTickerStream {
+
+    private final TradingPairIndex tradingPairIndex;
+    private final MarketPriceTable marketPriceTable;
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final boolean enabled;
+    private final Duration reconnectDelay;
+    private final HttpClient httpClient;
+    private final AtomicReference<WebSocket> webSocket = new AtomicReference<>();
+    // Only used by the scheduler thread
+    private final Set<String> subscribedMarkets = new HashSet<>();
+    private ScheduledExecutorService scheduler;
+
+    public BitvavoTickerStream(TradingPairIndex tradingPairIndex,
+                               MarketPriceTable marketPriceTable,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${bitvavo.ws.url:wss://ws.bitvavo.com/v2/}") String url,
+                               @Value("${bitvavo.ws.enabled:false}") boolean enabled,
+                               @Value("${bitvavo.ws.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.tradingPairIndex = tradingPairIndex;
+        this.marketPriceTable = marketPriceTable;
+        this.objectMapper = objectMapper;
+        this.url = URI.create(url);
+        this.enabled = enabled;
+        this.reconnectDelay = reconnectDelay;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(reconnectDelay).build();
+        Gauge.builder("autotrader.market-price.stream.connected", this, stream -> stream.isConnected() ? 1 : 0)
+                .description("Whether the Bitvavo ticker stream is connected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Connect to the ticker stream and keep it connected from now on.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Bitvavo ticker stream is disabled, market prices are fetched from the REST API");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("bitvavo-ticker-stream").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::maintain, 0, reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        WebSocket current = webSocket.getAndSet(null);
+        if (current != null) {
+            current.abort();
+        }
+    }
+
+    /**
+     * Check whether the stream is connected.
+     *
+     * @return true if the WebSocket is open
+     */
+    public boolean isConnected() {
+        WebSocket current = webSocket.get();
+        return current != null && !current.isInputClosed() && !current.isOutputClosed();
+    }
+
+    /**
+     * Connect if the connection was lost, and subscribe to the markets of new trading pairs.
+     */
+    void maintain() {
+        try {
+            Set<String> markets = new TreeSet<>();
+            for (String tradingPair : tradingPairIndex.getTradingPairs()) {
+                markets.add(toMarket(tradingPair));
+            }
+
+            if (!isConnected()) {
+                if (markets.isEmpty()) {
+                    return;
+                }
+                connect();
+            }
+
+            markets.removeAll(subscribedMarkets);
+            if (!markets.isEmpty()) {
+                subscribe(markets);
+            }
+        } catch (RuntimeException | IOException | ExecutionException | TimeoutException e) {
+            log.warn("Bitvavo ticker stream unavailable, retrying in {}: {}", reconnectDelay, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void connect() throws ExecutionException, InterruptedException, TimeoutException {
+        WebSocket previous = webSocket.getAndSet(null);
+        if (previous != null) {
+            previous.abort();
+        }
+        subscribedMarkets.clear();
+        webSocket.set(httpClient.newWebSocketBuilder()
+                .buildAsync(url, new TextMessageListener("Bitvavo ticker stream", this::handle,
+                        closed -> webSocket.compareAndSet(closed, null)))
+                .get(reconnectDelay.toMillis(), TimeUnit.MILLISECONDS));
+        log.info("Connected to the Bitvavo ticker stream at {}", url);
+    }
+
+    private void subscribe(Set<String> markets) throws IOException, ExecutionException, InterruptedException,
+            TimeoutException {
+        ObjectNode message = objectMapper.createObjectNode().put("action", "subscribe");
+        ObjectNode channel = message.putArray("channels").addObject().put("name", "ticker");
+        markets.forEach(channel.putArray("markets")::add);
+
+        webSocket.get().sendText(objectMapper.writeValueAsString(message), true)
+                .get(reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+        subscribedMarkets.addAll(markets);
+        log.info("Subscribed to the Bitvavo ticker of {}", markets);
+    }
+
+    /**
+     * Apply a message from the stream; ticker updates go to the price table.
+     *
+     * @param message The JSON message
+     */
+    void handle(String message) {
+        try {
+            JsonNode node = objectMapper.readTree(message);
+            if ("ticker".equals(node.path("event").asText()) && node.hasNonNull("market")) {
+                marketPriceTable.update(node.path("market").asText(),
+                        decimal(node, "lastPrice"), decimal(node, "bestBid"), decimal(node, "bestAsk"));
+            } else if (node.has("error")) {
+                log.warn("Bitvavo ticker stream error: {}", node.path("error").asText());
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable message from the Bitvavo ticker stream: {}", e.getMessage());
+        }
+    }
+
+    // Bitvavo sends prices as strings
+    static BigDecimal decimal(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : new BigDecimal(value.asText());
+    }
+
+    /**
+     * Convert a trading pair to a Bitvavo market, e.g. "BTCEUR" to "BTC-EUR".
+     *
+     * @param tradingPair The trading pair
+     * @return The market
+     */
+    static String toMarket(String tradingPair) {
+        if (tradingPair.indexOf('-') >= 0 || !tradingPair.endsWith("EUR")) {
+            return tradingPair;
+        }
+        return tradingPair.substring(0, tradingPair.length() - 3) + "-EUR";
+    }
+}
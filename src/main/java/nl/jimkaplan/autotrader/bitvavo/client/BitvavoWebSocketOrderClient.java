@@ -0,0 +1,334 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.bitvavo.service.CredentialDigest;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Places orders over the authenticated Bitvavo WebSocket API instead of the REST API, for bots with
+ * {@link nl.jimkaplan.autotrader.model.document.BotConfiguration.OrderTransport#WEBSOCKET}.
+ * <p>
+ * One WebSocket is kept open and authenticated per API key, so an order does not wait for a connection,
+ * a TLS handshake or a signature of its own. When the secret of an API key changes, its WebSocket is replaced by
+ * one authenticated with the new secret. Requests on a WebSocket are matched to their responses by
+ * request ID. A lost WebSocket is reconnected after {@code bitvavo.ws.reconnect-delay}, or by the next
+ * order if that comes first. Orders that were waiting for a response when the WebSocket was lost fail,
+ * because they may or may not have been placed; they are never sent again.
+ */
+@Slf4j
+@Component
+public class BitvavoWebSocketOrderClient {
+
+    private final BitvavoAuthenticationService authenticationService;
+    private final BitvavoRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final Duration timeout;
+    private final Duration reconnectDelay;
+    private final HttpClient httpClient;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("bitvavo-order-socket").daemon(true).factory());
+
+    public BitvavoWebSocketOrderClient(BitvavoAuthenticationService authenticationService,
+                                       BitvavoRateLimiter rateLimiter,
+                                       ObjectMapper objectMapper,
+                                       @Value("${bitvavo.ws.url:wss://ws.bitvavo.com/v2/}") String url,
+                                       @Value("${bitvavo.ws.order.timeout:PT5S}") Duration timeout,
+                                       @Value("${bitvavo.ws.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.authenticationService = authenticationService;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.url = URI.create(url);
+        this.timeout = timeout;
+        this.reconnectDelay = reconnectDelay;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        sessions.values().forEach(Session::retire);
+        sessions.clear();
+    }
+
+    /**
+     * Place an order over the WebSocket of an API key, connecting and authenticating it if needed.
+     *
+     * @param orderRequest The order
+     * @param apiKey       The API key
+     * @param apiSecret    The API secret
+     * @return The placed order
+     * @throws IllegalStateException      if the WebSocket is not available, Bitvavo rejects the order, or no
+     *                                    response arrives within {@code bitvavo.ws.order.timeout}
+     * @throws RateLimitExceededException if the weight budget of the API key does not allow the order
+     */
+    public CreateOrderResponse createOrder(CreateOrderRequest orderRequest, String apiKey, String apiSecret) {
+        // Orders over the WebSocket API count against the same budget of the API key
+        rateLimiter.acquire(apiKey, 1, BitvavoRateLimiter.Priority.ORDER);
+        ObjectNode message = objectMapper.valueToTree(orderRequest);
+        message.put("action", "privateCreateOrder");
+        JsonNode response = session(apiKey, apiSecret).request(message);
+        try {
+            return objectMapper.treeToValue(response, CreateOrderResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable order response from the Bitvavo WebSocket API", e);
+        }
+    }
+
+    /**
+     * Check whether the WebSocket of an API key is open and authenticated.
+     *
+     * @param apiKey The API key
+     * @return true if an order can be sent without connecting first
+     */
+    public boolean isConnected(String apiKey) {
+        Session session = sessions.get(CredentialDigest.of(apiKey));
+        return session != null && session.isOpen();
+    }
+
+    private Session session(String apiKey, String apiSecret) {
+        return sessions.compute(CredentialDigest.of(apiKey), (key, session) -> {
+            if (session != null && session.apiSecret.equals(apiSecret)) {
+                return session;
+            }
+            if (session != null) {
+                // The secret was rotated; the old one may no longer be accepted when the WebSocket reconnects
+                log.info("Replacing the Bitvavo WebSocket API connection after a change of the API secret");
+                session.retire();
+            }
+            return new Session(apiKey, apiSecret);
+        });
+    }
+
+    /**
+     * The WebSocket of one API key.
+     */
+    private final class Session {
+
+        private final String apiKey;
+        private final String apiSecret;
+        // Serializes sends and connects; a lock rather than synchronized, so a waiting virtual thread does not pin
+        // its carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Connection connection;
+        private volatile boolean retired;
+
+        private Session(String apiKey, String apiSecret) {
+            this.apiKey = apiKey;
+            this.apiSecret = apiSecret;
+        }
+
+        JsonNode request(ObjectNode message) {
+            long requestId = requestIds.incrementAndGet();
+            message.put("requestId", requestId);
+            CompletableFuture<JsonNode> response = new CompletableFuture<>();
+            Connection sentOn = send(message, requestId, response);
+            try {
+                return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException
+                        : new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("No response from the Bitvavo WebSocket API within " + timeout, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the Bitvavo WebSocket API", e);
+            } finally {
+                sentOn.pending().remove(requestId);
+            }
+        }
+
+        /**
+         * Send a request, connecting first if needed. Sends are serialized, as a WebSocket accepts one at a time.
+         *
+         * @return The connection that the request was sent on, and that will complete the response
+         */
+        private Connection send(ObjectNode message, long requestId, CompletableFuture<JsonNode> response) {
+            lock.lock();
+            try {
+                if (!isOpen()) {
+                    if (retired) {
+                        throw new IllegalStateException(
+                                "Bitvavo WebSocket API connection was replaced after a change of the API secret");
+                    }
+                    connect();
+                }
+                Connection current = connection;
+                current.pending().put(requestId, response);
+                try {
+                    current.webSocket().sendText(objectMapper.writeValueAsString(message), true)
+                            .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (IOException | ExecutionException | TimeoutException | InterruptedException e) {
+                    current.pending().remove(requestId);
+                    throw e;
+                }
+                return current;
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                close();
+                throw new IllegalStateException("Bitvavo WebSocket API not available: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while connecting to the Bitvavo WebSocket API", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void connect() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+            close();
+            CompletableFuture<Void> authenticated = new CompletableFuture<>();
+            Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+            WebSocket webSocket = httpClient.newWebSocketBuilder()
+                    .buildAsync(url, new TextMessageListener("Bitvavo WebSocket API",
+                            message -> handle(message, authenticated, pending),
+                            this::disconnected))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            connection = new Connection(webSocket, authenticated, pending);
+
+            BitvavoAuthHeaders auth = authenticationService.createAuthHeaders(
+                    "GET", BitvavoAccountStream.WEBSOCKET_PATH, null, apiKey, apiSecret);
+            ObjectNode authenticate = objectMapper.createObjectNode()
+                    .put("action", "authenticate")
+                    .put("key", auth.getBitvavoBitvAvoAccessKey())
+                    .put("signature", auth.getBitvavoBitvAvoAccessSignature())
+                    .put("timestamp", Long.parseLong(auth.getBitvavoBitvAvoAccessTimestamp()))
+                    .put("window", Long.parseLong(auth.getBitvavoBitvAvoAccessWindow()));
+            webSocket.sendText(objectMapper.writeValueAsString(authenticate), true)
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            authenticated.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Connected the Bitvavo WebSocket API for orders");
+        }
+
+        private void handle(String message, CompletableFuture<Void> authenticated,
+                            Map<Long, CompletableFuture<JsonNode>> pending) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(message);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable message from the Bitvavo WebSocket API: {}", e.getMessage());
+                return;
+            }
+
+            if (node.has("requestId")) {
+                CompletableFuture<JsonNode> response = pending.get(node.path("requestId").asLong());
+                if (response == null) {
+                    log.warn("Ignoring response to unknown request {} from the Bitvavo WebSocket API",
+                            node.path("requestId").asText());
+                } else if (node.has("error")) {
+                    response.completeExceptionally(new IllegalStateException(error(node)));
+                } else {
+                    response.complete(node.path("response"));
+                }
+            } else if ("authenticate".equals(node.path("event").asText())) {
+                if (node.path("authenticated").asBoolean()) {
+                    authenticated.complete(null);
+                } else {
+                    authenticated.completeExceptionally(new IllegalStateException("Authentication refused"));
+                }
+            } else if ("authenticate".equals(node.path("action").asText()) && node.has("error")) {
+                authenticated.completeExceptionally(new IllegalStateException(error(node)));
+            } else if (node.has("error")) {
+                log.warn("Bitvavo WebSocket API error: {}", error(node));
+            }
+        }
+
+        private void disconnected(WebSocket webSocket) {
+            Connection current = connection;
+            if (current == null || current.webSocket() != webSocket) {
+                return;
+            }
+            connection = null;
+            failPending(current);
+
+            // Reconnect ahead of the next order
+            scheduler.schedule(() -> {
+                try {
+                    if (!isOpen() && !retired) {
+                        lock.lock();
+                        try {
+                            if (!isOpen() && !retired) {
+                                connect();
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Reconnecting the Bitvavo WebSocket API failed, retrying on the next order: {}",
+                            e.getMessage());
+                }
+            }, reconnectDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        boolean isOpen() {
+            Connection current = connection;
+            return current != null && current.authenticated().isDone()
+                    && !current.authenticated().isCompletedExceptionally()
+                    && !current.webSocket().isInputClosed() && !current.webSocket().isOutputClosed();
+        }
+
+        /**
+         * Close the WebSocket for good, when the session is replaced or the client stops.
+         */
+        void retire() {
+            retired = true;
+            close();
+        }
+
+        void close() {
+            Connection current = connection;
+            connection = null;
+            if (current != null) {
+                current.webSocket().abort();
+                // disconnected() ignores the connection now that it is no longer current
+                failPending(current);
+            }
+        }
+
+        private static void failPending(Connection connection) {
+            connection.pending().values().forEach(response -> response.completeExceptionally(new IllegalStateException(
+                    "Bitvavo WebSocket API connection lost before the response arrived; the order may have been placed")));
+        }
+    }
+
+    private static String error(JsonNode node) {
+        return "Bitvavo error " + node.path("errorCode").asText() + ": " + node.path("error").asText();
+    }
+
+    /**
+     * An open WebSocket, with the requests sent on it that are waiting for a response.
+     */
+    private record Connection(WebSocket webSocket, CompletableFuture<Void> authenticated,
+                              Map<Long, CompletableFuture<JsonNode>> pending) {
+    }
+}
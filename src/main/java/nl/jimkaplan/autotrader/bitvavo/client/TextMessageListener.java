@@ -0,0 +1,55 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * WebSocket listener that joins fragmented text messages and passes every complete message on.
+ * When the WebSocket closes or fails, {@code onDisconnect} is called with the WebSocket.
+ */
+@Slf4j
+class TextMessageListener implements WebSocket.Listener {
+
+    private final String name;
+    private final Consumer<String> onMessage;
+    private final Consumer<WebSocket> onDisconnect;
+    private final StringBuilder message = new StringBuilder();
+
+    /**
+     * @param name         Name of the stream, for logging
+     * @param onMessage    Called with every complete text message
+     * @param onDisconnect Called when the WebSocket closes or fails
+     */
+    TextMessageListener(String name, Consumer<String> onMessage, Consumer<WebSocket> onDisconnect) {
+        this.name = name;
+        this.onMessage = onMessage;
+        this.onDisconnect = onDisconnect;
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        message.append(data);
+        if (last) {
+            onMessage.accept(message.toString());
+            message.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        log.warn("{} closed: {} {}", name, statusCode, reason);
+        onDisconnect.accept(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        log.warn("{} failed: {}", name, error.getMessage());
+        onDisconnect.accept(webSocket);
+    }
+}
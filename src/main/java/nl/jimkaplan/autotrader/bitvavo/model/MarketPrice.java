@@ -0,0 +1,33 @@
+package nl.jimkaplan.autotrader.bitvavo.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Represents the latest prices of a market as received from the Bitvavo ticker stream.
+ *
+ * @param market         The market, e.g. BTC-EUR
+ * @param lastPrice      The price of the latest trade, null if not received yet
+ * @param bestBid        The highest price of the open buy orders, null if not received yet
+ * @param bestAsk        The lowest price of the open sell orders, null if not received yet
+ * @param updatedAtNanos The {@link System#nanoTime()} of the latest update
+ */
+public record MarketPrice(String market, BigDecimal lastPrice, BigDecimal bestBid, BigDecimal bestAsk,
+                          long updatedAtNanos) {
+
+    /**
+     * Apply a ticker update. Bitvavo only sends the fields that changed, so missing fields keep their value.
+     *
+     * @param lastPrice      The new last price, or null if unchanged
+     * @param bestBid        The new best bid, or null if unchanged
+     * @param bestAsk        The new best ask, or null if unchanged
+     * @param updatedAtNanos The {@link System#nanoTime()} of the update
+     * @return The updated prices
+     */
+    public MarketPrice merge(BigDecimal lastPrice, BigDecimal bestBid, BigDecimal bestAsk, long updatedAtNanos) {
+        return new MarketPrice(market,
+                lastPrice != null ? lastPrice : this.lastPrice,
+                bestBid != null ? bestBid : this.bestBid,
+                bestAsk != null ? bestAsk : this.bestAsk,
+                updatedAtNanos);
+    }
+}
@@ -0,0 +1,398 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
+import nl.jimkaplan.autotrader.bitvavo.model.Fills;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Local ledger of the available balances of every Bitvavo account the bots trade with, so pre-trade balance
+ * checks are memory reads instead of signed REST calls. Bots that share an API key share an account, so the
+ * ledger is kept per account, identified by the {@link CredentialDigest} of the API key.
+ * <p>
+ * The ledger of an account is seeded with a REST snapshot of all balances by the {@code BitvavoAccountStream},
+ * and kept up to date from there:
+ * <ul>
+ *     <li>our own orders debit the amount the exchange locks as soon as they are placed, and the fills and
+ *     remaining amount in the order response are applied right away</li>
+ *     <li>fill and order events from the account stream apply the fills of our own orders (once per fill ID) and
+ *     release the remaining amount of completed orders</li>
+ *     <li>an event for an order this instance has not recorded makes the ledger unusable until the order is
+ *     claimed: it may still be ours with the response on its way, or placed elsewhere, so its effect on the
+ *     balance is unknown. Fills of such an order are kept and applied when it is claimed; if it is not claimed
+ *     within {@value #CLAIM_WINDOW_SECONDS} seconds the ledger is discarded until the next snapshot</li>
+ *     <li>a gap, such as a lost stream connection, discards the ledger until the next snapshot</li>
+ *     <li>an order that fails or is rejected discards the ledger until the next snapshot, since it may have been
+ *     sized from a wrong balance</li>
+ * </ul>
+ * A snapshot expires after {@code bitvavo.balance.max-age}, which bounds the drift from anything the events do
+ * not cover, such as deposits. Accounts without a usable ledger get {@code null}, and the caller falls back to
+ * REST. Lookups are counted in {@code autotrader.balance.lookups}, tagged with the source (ledger or rest).
+ */
+@Slf4j
+@Component
+public class BalanceLedger {
+
+    static final int CLAIM_WINDOW_SECONDS = 10;
+
+    // Number of fill and order IDs remembered per account, far more than the events in flight
+    private static final int MAX_REMEMBERED_IDS = 1024;
+    private static final long CLAIM_WINDOW_NANOS = Duration.ofSeconds(CLAIM_WINDOW_SECONDS).toNanos();
+    private static final Set<String> OPEN_STATUSES = Set.of("new", "partiallyFilled", "awaitingTrigger");
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final long maxAgeNanos;
+    private final LongSupplier nanoTime;
+    private final Counter ledgerLookups;
+    private final Counter restLookups;
+
+    @Autowired
+    public BalanceLedger(MeterRegistry meterRegistry,
+                         @Value("${bitvavo.balance.max-age:PT10M}") Duration maxAge) {
+        this(meterRegistry, maxAge, System::nanoTime);
+    }
+
+    // Constructor for testing
+    BalanceLedger(MeterRegistry meterRegistry, Duration maxAge, LongSupplier nanoTime) {
+        this.maxAgeNanos = maxAge.toNanos();
+        this.nanoTime = nanoTime;
+        this.ledgerLookups = lookups(meterRegistry, "ledger");
+        this.restLookups = lookups(meterRegistry, "rest");
+    }
+
+    /**
+     * Get the available balance of a symbol.
+     *
+     * @param apiKey The API key of the account
+     * @param symbol The symbol, e.g. "EUR" or "BTC"
+     * @return The available balance, or null if the ledger of the account is not usable and REST must be used
+     */
+    public BigDecimal getAvailable(String apiKey, String symbol) {
+        Account account = account(apiKey);
+        BigDecimal available = account == null ? null : account.getAvailable(symbol, nanoTime.getAsLong());
+        (available == null ? restLookups : ledgerLookups).increment();
+        return available;
+    }
+
+    /**
+     * Replace the ledger of an account with a snapshot of all its balances. Symbols missing from the snapshot
+     * have a zero balance.
+     *
+     * @param apiKey    The API key of the account
+     * @param available The available balance per symbol
+     */
+    public void seed(String apiKey, Map<String, BigDecimal> available) {
+        String account = CredentialDigest.of(apiKey);
+        accounts.put(account, new Account(available, nanoTime.getAsLong()));
+        log.debug("Seeded balance ledger of account {} with {}", label(account), available);
+    }
+
+    /**
+     * Check whether the ledger of an account needs a new snapshot: there is none, it is getting old, or it was
+     * discarded because an order placed elsewhere was seen.
+     *
+     * @param apiKey The API key of the account
+     * @return true if a snapshot should be taken
+     */
+    public boolean needsSnapshot(String apiKey) {
+        String key = CredentialDigest.of(apiKey);
+        Account account = accounts.get(key);
+        if (account == null) {
+            return true;
+        }
+        long now = nanoTime.getAsLong();
+        if (account.hasExpiredClaims(now)) {
+            if (accounts.remove(key, account)) {
+                log.info("Discarded balance ledger of account {}: an order placed elsewhere was seen", label(key));
+            }
+            return true;
+        }
+        return account.needsSnapshot(now);
+    }
+
+    /**
+     * Discard the ledger of an account, until the next snapshot.
+     *
+     * @param apiKey The API key of the account
+     */
+    public void invalidate(String apiKey) {
+        String account = CredentialDigest.of(apiKey);
+        if (accounts.remove(account) != null) {
+            log.info("Discarded balance ledger of account {}", label(account));
+        }
+    }
+
+    /**
+     * Apply an order this instance just placed: debit what the exchange locks for it, and apply the fills and
+     * remaining amount from the response, and the events the stream already reported for it.
+     *
+     * @param apiKey   The API key of the account the order was placed with
+     * @param request  The order request
+     * @param response The order response
+     */
+    public void recordOrder(String apiKey, CreateOrderRequest request, CreateOrderResponse response) {
+        Account account = account(apiKey);
+        if (account == null || response == null || response.getOrderId() == null) {
+            return;
+        }
+        Market market = Market.parse(request.getMarket());
+        boolean buy = "buy".equals(request.getSide());
+        if (market == null || (buy ? request.getAmountQuote() : request.getAmount()) == null) {
+            // The locked amount is unknown, e.g. a buy by base amount
+            invalidate(apiKey);
+            return;
+        }
+
+        synchronized (account) {
+            String orderId = response.getOrderId().toString();
+            account.add(buy ? market.quote() : market.base(),
+                    (buy ? request.getAmountQuote() : request.getAmount()).negate());
+            OwnOrder order = new OwnOrder(market, buy);
+            account.ownOrders.put(orderId, order);
+            if (response.getFills() != null) {
+                for (Fills fill : response.getFills()) {
+                    account.applyFill(fill.getId() == null ? null : fill.getId().toString(), order,
+                            fill.getAmount(), fill.getPrice(), fill.getFee(), fill.getFeeCurrency());
+                }
+            }
+            long now = nanoTime.getAsLong();
+            account.orderUpdated(orderId, response.getStatus(), response.getAmountRemaining(),
+                    response.getAmountQuoteRemaining(), now);
+            // The stream may have reported the order before the response arrived
+            UnclaimedOrder unclaimed = account.unclaimedOrders.remove(orderId);
+            if (unclaimed != null) {
+                for (PendingFill fill : unclaimed.fills) {
+                    account.applyFill(fill.fillId(), order, fill.amount(), fill.price(), fill.fee(),
+                            fill.feeCurrency());
+                }
+                account.orderUpdated(orderId, unclaimed.status, unclaimed.amountRemaining,
+                        unclaimed.amountQuoteRemaining, now);
+            }
+        }
+    }
+
+    /**
+     * Apply a fill event from the account stream. Fills that were already applied are ignored, and fills of an
+     * order that was not recorded are held until it is.
+     *
+     * @param apiKey      The API key of the account
+     * @param orderId     The ID of the filled order
+     * @param fillId      The fill ID
+     * @param marketName  The market, e.g. "BTC-EUR"
+     * @param side        "buy" or "sell"
+     * @param amount      The filled amount of the base currency
+     * @param price       The price of the fill
+     * @param fee         The fee paid, may be null
+     * @param feeCurrency The currency of the fee, may be null
+     */
+    public void applyFill(String apiKey, String orderId, String fillId, String marketName, String side,
+                          BigDecimal amount, BigDecimal price, BigDecimal fee, String feeCurrency) {
+        Account account = account(apiKey);
+        if (account == null) {
+            return;
+        }
+        if (orderId == null || Market.parse(marketName) == null || amount == null || price == null) {
+            // Cannot tell what the fill did to the balances
+            invalidate(apiKey);
+            return;
+        }
+        synchronized (account) {
+            OwnOrder order = account.ownOrders.get(orderId);
+            if (order != null) {
+                account.applyFill(fillId, order, amount, price, fee, feeCurrency);
+            } else {
+                account.unclaimed(orderId, nanoTime.getAsLong()).fills
+                        .add(new PendingFill(fillId, amount, price, fee, feeCurrency));
+            }
+        }
+    }
+
+    /**
+     * Apply an order event from the account stream.
+     *
+     * @param apiKey               The API key of the account
+     * @param orderId              The order ID
+     * @param status               The order status
+     * @param amountRemaining      The base amount that was not filled, may be null
+     * @param amountQuoteRemaining The quote amount that was not spent, may be null
+     */
+    public void orderUpdated(String apiKey, String orderId, String status, BigDecimal amountRemaining,
+                             BigDecimal amountQuoteRemaining) {
+        Account account = account(apiKey);
+        if (account == null || orderId == null) {
+            return;
+        }
+        synchronized (account) {
+            long now = nanoTime.getAsLong();
+            if (account.ownOrders.containsKey(orderId)) {
+                account.orderUpdated(orderId, status, amountRemaining, amountQuoteRemaining, now);
+            } else {
+                UnclaimedOrder unclaimed = account.unclaimed(orderId, now);
+                unclaimed.status = status;
+                unclaimed.amountRemaining = amountRemaining;
+                unclaimed.amountQuoteRemaining = amountQuoteRemaining;
+            }
+        }
+    }
+
+    private Account account(String apiKey) {
+        return apiKey != null ? accounts.get(CredentialDigest.of(apiKey)) : null;
+    }
+
+    private static String label(String account) {
+        return account.substring(0, 8);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("autotrader.balance.lookups")
+                .description("Pre-trade balance lookups by the source that served them")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private static <K, V> Map<K, V> bounded() {
+        return new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_REMEMBERED_IDS;
+            }
+        };
+    }
+
+    /**
+     * The balances of one account. Guarded by its own monitor.
+     */
+    private final class Account {
+        private final Map<String, BigDecimal> available;
+        private final long seededAtNanos;
+        private final Map<String, OwnOrder> ownOrders = bounded();
+        private final Map<String, Boolean> appliedFills = bounded();
+        // Orders seen on the stream but not (yet) recorded as our own
+        private final Map<String, UnclaimedOrder> unclaimedOrders = new HashMap<>();
+
+        private Account(Map<String, BigDecimal> available, long seededAtNanos) {
+            this.available = new HashMap<>(available);
+            this.seededAtNanos = seededAtNanos;
+        }
+
+        private synchronized BigDecimal getAvailable(String symbol, long now) {
+            if (now - seededAtNanos > maxAgeNanos || !unclaimedOrders.isEmpty()) {
+                return null;
+            }
+            return available.getOrDefault(symbol, BigDecimal.ZERO);
+        }
+
+        private synchronized boolean needsSnapshot(long now) {
+            return now - seededAtNanos > maxAgeNanos / 2;
+        }
+
+        private synchronized boolean hasExpiredClaims(long now) {
+            return unclaimedOrders.values().stream().anyMatch(order -> now - order.seenAtNanos > CLAIM_WINDOW_NANOS);
+        }
+
+        private UnclaimedOrder unclaimed(String orderId, long now) {
+            return unclaimedOrders.computeIfAbsent(orderId, id -> new UnclaimedOrder(now));
+        }
+
+        private void add(String symbol, BigDecimal amount) {
+            available.merge(symbol, amount, BigDecimal::add);
+        }
+
+        private void applyFill(String fillId, OwnOrder order, BigDecimal amount, BigDecimal price,
+                               BigDecimal fee, String feeCurrency) {
+            if (fillId != null && appliedFills.put(fillId, Boolean.TRUE) != null) {
+                return;
+            }
+            // What was paid is covered by the amount locked when the order was placed
+            Market market = order.market;
+            if (order.buy) {
+                add(market.base(), amount.subtract(feeIn(market.base(), fee, feeCurrency)));
+            } else {
+                add(market.quote(), amount.multiply(price).subtract(feeIn(market.quote(), fee, feeCurrency)));
+            }
+        }
+
+        private void orderUpdated(String orderId, String status, BigDecimal amountRemaining,
+                                  BigDecimal amountQuoteRemaining, long now) {
+            OwnOrder order = ownOrders.get(orderId);
+            if (order == null) {
+                unclaimed(orderId, now);
+                return;
+            }
+            if (status == null || OPEN_STATUSES.contains(status) || order.settled) {
+                return;
+            }
+            // Completed: the exchange releases what was locked but not used
+            BigDecimal remaining = order.buy ? amountQuoteRemaining : amountRemaining;
+            if (remaining != null) {
+                add(order.buy ? order.market.quote() : order.market.base(), remaining);
+            }
+            order.settled = true;
+        }
+
+        private static BigDecimal feeIn(String symbol, BigDecimal fee, String feeCurrency) {
+            return fee != null && symbol.equals(feeCurrency) ? fee : BigDecimal.ZERO;
+        }
+    }
+
+    private static final class OwnOrder {
+        private final Market market;
+        private final boolean buy;
+        private boolean settled;
+
+        private OwnOrder(Market market, boolean buy) {
+            this.market = market;
+            this.buy = buy;
+        }
+    }
+
+    /**
+     * What the stream reported for an order that was not recorded yet.
+     */
+    private static final class UnclaimedOrder {
+        private final long seenAtNanos;
+        private final List<PendingFill> fills = new ArrayList<>();
+        private String status;
+        private BigDecimal amountRemaining;
+        private BigDecimal amountQuoteRemaining;
+
+        private UnclaimedOrder(long seenAtNanos) {
+            this.seenAtNanos = seenAtNanos;
+        }
+    }
+
+    private record PendingFill(String fillId, BigDecimal amount, BigDecimal price, BigDecimal fee,
+                               String feeCurrency) {
+    }
+
+    private record Market(String base, String quote) {
+        // "BTC-EUR", or "BTCEUR" as used by the trading pairs
+        private static Market parse(String market) {
+            if (market == null) {
+                return null;
+            }
+            int dash = market.indexOf('-');
+            if (dash > 0) {
+                return new Market(market.substring(0, dash), market.substring(dash + 1));
+            }
+            return market.endsWith("EUR") && market.length() > 3
+                    ? new Market(market.substring(0, market.length() - 3), "EUR") : null;
+        }
+    }
+}
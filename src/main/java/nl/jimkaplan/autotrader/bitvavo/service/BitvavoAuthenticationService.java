@@ -1,26 +1,44 @@
 package nl.jimkaplan.autotrader.bitvavo.service;
 
-import lombok.RequiredArgsConstructor;
 import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
-import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Service
-@RequiredArgsConstructor
 public class BitvavoAuthenticationService {
 
     private static final Logger log = LoggerFactory.getLogger(BitvavoAuthenticationService.class);
     private static final String HMAC_SHA_256 = "HmacSHA256";
     public static final String ACCESS_WINDOW = "10000"; // 10 seconds
+    private static final int MAX_CACHED_SECRETS = 64;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final BitvavoClock bitvavoClock;
+    // Signer pools by the digest of their secret, so the map does not hold the secrets. Least recently used
+    // first: secrets of deleted bots or rotated keys are never used again and are evicted. Guarded by itself.
+    private final Map<String, SignerPool> signerPools = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SignerPool> eldest) {
+            return size() > MAX_CACHED_SECRETS;
+        }
+    };
+
+    public BitvavoAuthenticationService(BitvavoClock bitvavoClock) {
+        this.bitvavoClock = bitvavoClock;
+    }
 
     /**
      * Creates the authentication headers required for Bitvavo API requests.
@@ -31,6 +49,25 @@ public class BitvavoAuthenticationService {
      * @return Object containing all required authentication headers
      */
     public BitvavoAuthHeaders createAuthHeaders(String method, String path, String body, String apiKey, String apiSecret) {
+        return createAuthHeaders(method, path, body, null, apiKey, apiSecret);
+    }
+
+    /**
+     * Creates the authentication headers for a Bitvavo API request with a serialized body.
+     * The bytes are signed as they are, so the signature covers exactly what is sent.
+     *
+     * @param method HTTP method (POST, PUT)
+     * @param path   API endpoint path
+     * @param body   UTF-8 encoded request body, as sent
+     * @return Object containing all required authentication headers
+     */
+    public BitvavoAuthHeaders createAuthHeadersForBody(String method, String path, byte[] body, String apiKey,
+                                                       String apiSecret) {
+        return createAuthHeaders(method, path, null, body, apiKey, apiSecret);
+    }
+
+    private BitvavoAuthHeaders createAuthHeaders(String method, String path, String body, byte[] bodyBytes,
+                                                 String apiKey, String apiSecret) {
         log.debug("Creating authentication headers for {} request to {}", method, path);
 
         // Check if API key and secret are set
@@ -42,8 +79,9 @@ public class BitvavoAuthenticationService {
         }
 
         log.debug("API key and secret validation successful");
-        long timestamp = Instant.now().toEpochMilli();
-        String signature = createSignature(timestamp, method, path, body, apiSecret);
+        // Bitvavo checks the timestamp against its own clock, so correct it for the drift of the host clock
+        long timestamp = bitvavoClock.currentTimeMillis();
+        String signature = createSignature(timestamp, method, path, body, bodyBytes, apiSecret);
 
         log.debug("Building authentication headers with timestamp: {}", timestamp);
         return BitvavoAuthHeaders.builder()
@@ -56,40 +94,67 @@ public class BitvavoAuthenticationService {
 
     /**
      * Creates the HMAC-SHA256 signature required for Bitvavo API authentication.
+     * The Mac for the secret is only set up on first use; later calls borrow an initialized one from its pool.
      *
      * @param timestamp Current timestamp in milliseconds
      * @param method    HTTP method (GET, POST, PUT, DELETE)
      * @param path      API endpoint path
      * @param body      Request body (for POST/PUT requests)
-     * @return Base64 encoded HMAC-SHA256 signature
+     * @return Hex encoded HMAC-SHA256 signature
      */
-    private String createSignature(long timestamp, String method, String path, String body, String apiSecret) {
+    String createSignature(long timestamp, String method, String path, String body, String apiSecret) {
+        return createSignature(timestamp, method, path, body, null, apiSecret);
+    }
+
+    /**
+     * Creates the HMAC-SHA256 signature of a request with a serialized body.
+     *
+     * @param body UTF-8 encoded request body, as sent
+     * @return Hex encoded HMAC-SHA256 signature
+     * @see #createSignature(long, String, String, String, String)
+     */
+    String createSignatureForBody(long timestamp, String method, String path, byte[] body, String apiSecret) {
+        return createSignature(timestamp, method, path, null, body, apiSecret);
+    }
+
+    private String createSignature(long timestamp, String method, String path, String body, byte[] bodyBytes,
+                                   String apiSecret) {
         log.debug("Creating signature for {} request to {} at timestamp {}", method, path, timestamp);
         try {
-            String message = timestamp + method + "/v2" + path;
-            if (body != null && !body.isEmpty()) {
-                message += body;
-                log.debug("Including body in signature message");
+            SignerPool pool = getSignerPool(apiSecret);
+            Signer signer = pool.borrow();
+            try {
+                return signer.sign(timestamp, method, path, body, bodyBytes);
+            } finally {
+                pool.release(signer);
             }
-
-            log.debug("Message for signature: {}", message);
-            log.debug("Initializing {} algorithm", HMAC_SHA_256);
-
-            Mac hmacSha256 = getMacInstance();
-            SecretKeySpec secretKeySpec = createSecretKeySpec(apiSecret);
-            initMac(hmacSha256, secretKeySpec);
-
-            byte[] hashBytes = doFinal(hmacSha256, message);
-
-            // Convert hash bytes to hexadecimal string
-            return new String(Hex.encodeHex(hashBytes));
-
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             // Exception handling for crypto operations
             throw new RuntimeException("Error creating signature for Bitvavo API", e);
         }
     }
 
+    private SignerPool getSignerPool(String apiSecret) throws NoSuchAlgorithmException, InvalidKeyException {
+        String digest = CredentialDigest.of(apiSecret);
+        synchronized (signerPools) {
+            SignerPool pool = signerPools.get(digest);
+            if (pool != null) {
+                return pool;
+            }
+        }
+
+        log.debug("Initializing {} algorithm", HMAC_SHA_256);
+        SecretKeySpec secretKeySpec = createSecretKeySpec(apiSecret);
+        Mac prototype = getMacInstance();
+        initMac(prototype, secretKeySpec);
+
+        SignerPool created = new SignerPool(prototype, secretKeySpec);
+        synchronized (signerPools) {
+            SignerPool existing = signerPools.putIfAbsent(digest, created);
+            return existing != null ? existing : created;
+        }
+    }
+
     /**
      * Gets an instance of Mac for the HMAC-SHA256 algorithm.
      * Extracted for testability.
@@ -128,14 +193,132 @@ public class BitvavoAuthenticationService {
     }
 
     /**
-     * Computes the final hash.
-     * Extracted for testability.
-     *
-     * @param mac     The Mac instance
-     * @param message The message to hash
-     * @return The hash bytes
+     * Idle signers for one API secret. Signers are cloned from a Mac initialized with the secret, so the key is
+     * only set up once; the pool grows to the number of requests signed at the same time.
+     * A pool rather than a thread local, because requests are also signed from short-lived virtual threads.
+     */
+    private final class SignerPool {
+
+        private final Mac prototype;
+        private final SecretKeySpec secretKeySpec;
+        private final Queue<Signer> idle = new ConcurrentLinkedQueue<>();
+
+        private SignerPool(Mac prototype, SecretKeySpec secretKeySpec) {
+            this.prototype = prototype;
+            this.secretKeySpec = secretKeySpec;
+        }
+
+        private Signer borrow() throws NoSuchAlgorithmException, InvalidKeyException {
+            Signer signer = idle.poll();
+            return signer != null ? signer : new Signer(newMac());
+        }
+
+        private void release(Signer signer) {
+            idle.offer(signer);
+        }
+
+        private Mac newMac() throws NoSuchAlgorithmException, InvalidKeyException {
+            try {
+                synchronized (prototype) {
+                    return (Mac) prototype.clone();
+                }
+            } catch (CloneNotSupportedException e) {
+                // Not every provider can clone an initialized Mac; set the key up again instead
+                Mac mac = getMacInstance();
+                initMac(mac, secretKeySpec);
+                return mac;
+            }
+        }
+    }
+
+    /**
+     * An initialized Mac with the buffers to sign a request without building the message as a String.
+     * The message is {@code timestamp + method + "/v2" + path + body}; the signature is lower case hex.
+     * Not thread-safe; used by one request at a time through its {@link SignerPool}.
      */
-    protected byte[] doFinal(Mac mac, String message) {
-        return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+    private static final class Signer {
+
+        private final Mac mac;
+        private final byte[] hash;
+        private final byte[] hex;
+        private byte[] message = new byte[256];
+        private int length;
+
+        private Signer(Mac mac) {
+            this.mac = mac;
+            this.hash = new byte[mac.getMacLength()];
+            this.hex = new byte[hash.length * 2];
+        }
+
+        private String sign(long timestamp, String method, String path, String body, byte[] bodyBytes) {
+            length = 0;
+            appendLong(timestamp);
+            append(method);
+            append("/v2");
+            append(path);
+            if (body != null && !body.isEmpty()) {
+                append(body);
+            }
+            if (bodyBytes != null) {
+                append(bodyBytes);
+            }
+
+            try {
+                mac.update(message, 0, length);
+                mac.doFinal(hash, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException("Hash buffer too small for " + mac.getAlgorithm(), e);
+            }
+
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+            }
+            return new String(hex, StandardCharsets.ISO_8859_1);
+        }
+
+        private void appendLong(long value) {
+            // Timestamps are positive epoch milliseconds; anything else takes the slow path
+            if (value < 0) {
+                append(Long.toString(value));
+                return;
+            }
+            ensureCapacity(19);
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                message[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+        }
+
+        private void append(String value) {
+            int chars = value.length();
+            ensureCapacity(chars);
+            for (int i = 0; i < chars; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // Non-ASCII content (e.g. in a request body) is written as UTF-8 from this character on
+                    append(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                message[length++] = (byte) c;
+            }
+        }
+
+        private void append(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, message, length, value.length);
+            length += value.length;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > message.length) {
+                message = Arrays.copyOf(message, Math.max(message.length * 2, length + additional));
+            }
+        }
     }
 }
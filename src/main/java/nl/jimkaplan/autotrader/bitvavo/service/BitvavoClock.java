@@ -0,0 +1,129 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bitvavo server time as seen from this host, used to timestamp signed requests so they stay inside the access
+ * window when the host clock drifts.
+ * <p>
+ * The offset to the server clock is estimated from samples taken by the {@code BitvavoClockSynchronizer}: the
+ * server time is assumed to be read halfway the round trip. Samples are smoothed with an exponentially weighted
+ * moving average; a sample further than {@code bitvavo.clock.step-threshold} off is taken over at once, since the
+ * host clock was then stepped rather than drifting. Samples with a round trip above
+ * {@code bitvavo.clock.max-round-trip} are too imprecise and ignored.
+ * <p>
+ * Reading the time never blocks: until the first sample arrives it is the host time.
+ */
+@Slf4j
+@Component
+public class BitvavoClock {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final Duration maxRoundTrip;
+    private final Duration stepThreshold;
+    private final LongSupplier currentTimeMillis;
+    private final Timer roundTripTimer;
+    private final DistributionSummary driftSummary;
+    private volatile long offsetMillis;
+    private boolean synced;
+    private double smoothedOffset;
+
+    @Autowired
+    public BitvavoClock(MeterRegistry meterRegistry,
+                        @Value("${bitvavo.clock.max-round-trip:PT1S}") Duration maxRoundTrip,
+                        @Value("${bitvavo.clock.step-threshold:PT1S}") Duration stepThreshold) {
+        this(meterRegistry, maxRoundTrip, stepThreshold, System::currentTimeMillis);
+    }
+
+    // Constructor for testing
+    BitvavoClock(MeterRegistry meterRegistry, Duration maxRoundTrip, Duration stepThreshold,
+                 LongSupplier currentTimeMillis) {
+        this.maxRoundTrip = maxRoundTrip;
+        this.stepThreshold = stepThreshold;
+        this.currentTimeMillis = currentTimeMillis;
+        Gauge.builder("autotrader.bitvavo.clock.offset", this, BitvavoClock::getOffsetMillis)
+                .description("Estimated offset of the Bitvavo server clock to the host clock")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.roundTripTimer = Timer.builder("autotrader.bitvavo.clock.round-trip")
+                .description("Round trip of the requests for the Bitvavo server time")
+                .register(meterRegistry);
+        this.driftSummary = DistributionSummary.builder("autotrader.bitvavo.clock.drift")
+                .description("Difference between a server time sample and the offset estimated before it")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the current Bitvavo server time.
+     *
+     * @return The host time corrected by the estimated offset, in epoch milliseconds
+     */
+    public long currentTimeMillis() {
+        return currentTimeMillis.getAsLong() + offsetMillis;
+    }
+
+    /**
+     * Get the host time, to take a sample with.
+     *
+     * @return The uncorrected host time, in epoch milliseconds
+     */
+    public long hostTimeMillis() {
+        return currentTimeMillis.getAsLong();
+    }
+
+    /**
+     * Get the estimated offset of the server clock to the host clock.
+     *
+     * @return The offset in milliseconds; positive when the server clock is ahead
+     */
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    /**
+     * Update the offset with a server time sample.
+     *
+     * @param sentAt     Host time the request was sent, in epoch milliseconds
+     * @param serverTime Server time in the response, in epoch milliseconds
+     * @param receivedAt Host time the response was received, in epoch milliseconds
+     * @return true if the sample was used, false if its round trip was too slow
+     */
+    public synchronized boolean update(long sentAt, long serverTime, long receivedAt) {
+        long roundTrip = receivedAt - sentAt;
+        if (roundTrip < 0) {
+            return false;
+        }
+        roundTripTimer.record(roundTrip, TimeUnit.MILLISECONDS);
+        if (roundTrip > maxRoundTrip.toMillis()) {
+            log.debug("Ignoring Bitvavo server time sample with a round trip of {} ms", roundTrip);
+            return false;
+        }
+
+        double sample = serverTime - (sentAt + receivedAt) / 2.0;
+        if (!synced || Math.abs(sample - smoothedOffset) > stepThreshold.toMillis()) {
+            if (synced) {
+                log.warn("Bitvavo server clock offset jumped from {} ms to {} ms", offsetMillis, Math.round(sample));
+            }
+            smoothedOffset = sample;
+            synced = true;
+        } else {
+            driftSummary.record(Math.abs(sample - smoothedOffset));
+            smoothedOffset += SMOOTHING * (sample - smoothedOffset);
+        }
+        offsetMillis = Math.round(smoothedOffset);
+        return true;
+    }
+}
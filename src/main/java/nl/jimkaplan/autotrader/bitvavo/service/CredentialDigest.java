@@ -0,0 +1,33 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Irreversible identifier of a Bitvavo API key or secret: the Base64 encoded SHA-256 hash.
+ * Used to key in-memory state per account or secret, so maps that live as long as the application do not hold
+ * the credentials themselves.
+ */
+public final class CredentialDigest {
+
+    private CredentialDigest() {
+    }
+
+    /**
+     * Get the digest of a credential.
+     *
+     * @param credential The API key or secret
+     * @return The digest, 43 characters
+     */
+    public static String of(String credential) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(credential.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
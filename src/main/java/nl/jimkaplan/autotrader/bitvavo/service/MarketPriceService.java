@@ -0,0 +1,72 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.bitvavo.client.BitvavoApiClient;
+import nl.jimkaplan.autotrader.bitvavo.model.GetPriceResponse;
+import nl.jimkaplan.autotrader.bitvavo.model.MarketPrice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Service for market prices.
+ * Prices come from the {@link MarketPriceTable}, which the Bitvavo ticker stream keeps up to date, so a lookup
+ * is a memory read. When the table has no price for the market, or the price is older than
+ * {@code bitvavo.ws.max-price-age}, the price is fetched from the public REST endpoint instead.
+ * <p>
+ * Lookups are counted in {@code autotrader.market-price.lookups}, tagged with the source (stream or rest).
+ */
+@Slf4j
+@Service
+public class MarketPriceService {
+
+    static final String PRICE_ENDPOINT = "/ticker/price?market=";
+
+    private final MarketPriceTable marketPriceTable;
+    private final BitvavoApiClient bitvavoApiClient;
+    private final Duration maxPriceAge;
+    private final Counter streamLookups;
+    private final Counter restLookups;
+
+    public MarketPriceService(MarketPriceTable marketPriceTable,
+                              BitvavoApiClient bitvavoApiClient,
+                              MeterRegistry meterRegistry,
+                              @Value("${bitvavo.ws.max-price-age:PT30S}") Duration maxPriceAge) {
+        this.marketPriceTable = marketPriceTable;
+        this.bitvavoApiClient = bitvavoApiClient;
+        this.maxPriceAge = maxPriceAge;
+        this.streamLookups = lookups(meterRegistry, "stream");
+        this.restLookups = lookups(meterRegistry, "rest");
+    }
+
+    /**
+     * Get the price of the latest trade on a market.
+     *
+     * @param market The market, e.g. BTC-EUR
+     * @return The price of 1 unit of the base currency in the quote currency
+     */
+    public BigDecimal getLastPrice(String market) {
+        MarketPrice price = marketPriceTable.get(market);
+        if (price != null && price.lastPrice() != null
+                && marketPriceTable.getAge(price).compareTo(maxPriceAge) <= 0) {
+            streamLookups.increment();
+            return price.lastPrice();
+        }
+
+        log.debug("No recent {} price from the ticker stream, fetching it from the REST API", market);
+        restLookups.increment();
+        GetPriceResponse response = bitvavoApiClient.getPublic(PRICE_ENDPOINT + market, GetPriceResponse.class);
+        return response.getPrice();
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("autotrader.market-price.lookups")
+                .description("Market price lookups by the source that served them")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
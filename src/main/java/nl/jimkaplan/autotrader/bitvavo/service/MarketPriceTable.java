@@ -0,0 +1,103 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.MarketPrice;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free table of the latest prices per market, written by the {@code BitvavoTickerStream} and read on the
+ * order path. Every market has its own slot holding an immutable {@link MarketPrice}; an update swaps the slot
+ * with a compare-and-set, so readers never block and never see a half-applied update.
+ * <p>
+ * The age of the price of every market is exposed as the {@code autotrader.market-price.age} gauge.
+ */
+@Component
+public class MarketPriceTable {
+
+    private final Map<String, AtomicReference<MarketPrice>> prices = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoTime;
+
+    @Autowired
+    public MarketPriceTable(MeterRegistry meterRegistry) {
+        this(meterRegistry, System::nanoTime);
+    }
+
+    // Constructor for testing
+    MarketPriceTable(MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.meterRegistry = meterRegistry;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Apply a ticker update to a market. Fields that are null keep their value.
+     *
+     * @param market    The market, e.g. BTC-EUR
+     * @param lastPrice The price of the latest trade, or null if unchanged
+     * @param bestBid   The best bid, or null if unchanged
+     * @param bestAsk   The best ask, or null if unchanged
+     */
+    public void update(String market, BigDecimal lastPrice, BigDecimal bestBid, BigDecimal bestAsk) {
+        AtomicReference<MarketPrice> slot = slot(market);
+        long now = nanoTime.getAsLong();
+        MarketPrice current;
+        MarketPrice updated;
+        do {
+            current = slot.get();
+            updated = current == null
+                    ? new MarketPrice(market, lastPrice, bestBid, bestAsk, now)
+                    : current.merge(lastPrice, bestBid, bestAsk, now);
+        } while (!slot.compareAndSet(current, updated));
+    }
+
+    /**
+     * Get the latest prices of a market.
+     *
+     * @param market The market, e.g. BTC-EUR
+     * @return The latest prices, or null if none were received
+     */
+    public MarketPrice get(String market) {
+        AtomicReference<MarketPrice> slot = prices.get(market);
+        return slot == null ? null : slot.get();
+    }
+
+    /**
+     * Get the time since prices were last received.
+     *
+     * @param price The prices
+     * @return The time since the update
+     */
+    public Duration getAge(MarketPrice price) {
+        return Duration.ofNanos(nanoTime.getAsLong() - price.updatedAtNanos());
+    }
+
+    private AtomicReference<MarketPrice> slot(String market) {
+        AtomicReference<MarketPrice> slot = prices.get(market);
+        if (slot != null) {
+            return slot;
+        }
+        return prices.computeIfAbsent(market, m -> {
+            AtomicReference<MarketPrice> created = new AtomicReference<>();
+            Gauge.builder("autotrader.market-price.age", created, this::ageSeconds)
+                    .description("Time since the price of the market was received from the ticker stream")
+                    .baseUnit("seconds")
+                    .tag("market", m)
+                    .register(meterRegistry);
+            return created;
+        });
+    }
+
+    private double ageSeconds(AtomicReference<MarketPrice> slot) {
+        MarketPrice price = slot.get();
+        return price == null ? Double.NaN : getAge(price).toNanos() / 1e9;
+    }
+}
@@ -0,0 +1,61 @@
+package nl.jimkaplan.autotrader.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration for the executors that run alert processing and outbound Bitvavo calls.
+ * When virtual threads are enabled (spring.threads.virtual.enabled), every task gets its own
+ * virtual thread, so blocking REST and MongoDB calls do not hold on to a platform thread.
+ * Otherwise fixed pools of platform threads are used.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    /**
+     * Creates the executor used for trading work.
+     *
+     * @param virtualThreads Whether virtual threads are enabled
+     * @param poolSize       Pool size used when virtual threads are disabled
+     * @return ExecutorService instance
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService tradingExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                           @Value("${trading.executor.pool-size:8}") int poolSize) {
+        if (virtualThreads) {
+            log.info("Using virtual threads for trading work");
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("trading-", 0).factory());
+        }
+
+        log.info("Using a pool of {} platform threads for trading work", poolSize);
+        return Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("trading-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Creates the executor for the pre-trade lookups of an alert.
+     * It is separate from the trading executor because the alert waits for its lookups: on a shared fixed pool,
+     * alerts occupying every thread would wait on lookups queued behind them.
+     *
+     * @param virtualThreads Whether virtual threads are enabled
+     * @param poolSize       Pool size used when virtual threads are disabled
+     * @return ExecutorService instance
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService preTradeExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                            @Value("${trading.pre-trade.pool-size:16}") int poolSize) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pre-trade-", 0).factory());
+        }
+
+        log.info("Using a pool of {} platform threads for pre-trade lookups", poolSize);
+        return Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("pre-trade-", 0).daemon(true).factory());
+    }
+}
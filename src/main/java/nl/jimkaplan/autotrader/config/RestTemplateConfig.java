@@ -1,14 +1,34 @@
 package nl.jimkaplan.autotrader.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
 import nl.jimkaplan.autotrader.interceptor.CurlLoggingInterceptor;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.Collections;
 
 /**
  * Configuration for RestTemplate.
+ * Requests go through a pooled Apache HttpClient that keeps connections (and their TLS sessions) to Bitvavo
+ * alive, so an order does not pay for a TCP and TLS handshake. The pool is kept warm by the
+ * {@link nl.jimkaplan.autotrader.bitvavo.client.BitvavoConnectionWarmer} and its statistics are published as
+ * {@code httpcomponents.httpclient.pool.*} metrics.
  */
 @Configuration
 public class RestTemplateConfig {
@@ -19,15 +39,92 @@ public class RestTemplateConfig {
         this.curlLoggingInterceptor = curlLoggingInterceptor;
     }
 
+    /**
+     * Creates the pool of HTTP connections.
+     * All requests go to the same Bitvavo host, so the per-route limit equals the total limit.
+     *
+     * @param maxConnections    Maximum number of open connections
+     * @param connectTimeout    Timeout for establishing a connection
+     * @param responseTimeout   Timeout for waiting on data of a response
+     * @param timeToLive        Maximum lifetime of a connection, after which it is not reused
+     * @param validateAfterIdle Connections idle for longer are checked before they are reused
+     * @return Connection pool
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(
+            @Value("${bitvavo.http.max-connections:50}") int maxConnections,
+            @Value("${bitvavo.http.connect-timeout:PT5S}") Duration connectTimeout,
+            @Value("${bitvavo.http.response-timeout:PT10S}") Duration responseTimeout,
+            @Value("${bitvavo.http.time-to-live:PT15M}") Duration timeToLive,
+            @Value("${bitvavo.http.validate-after-idle:PT10S}") Duration validateAfterIdle) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                // Reuse the most recently used connection first, so surplus connections go idle and get evicted
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(responseTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        .setValidateAfterInactivity(TimeValue.of(validateAfterIdle))
+                        .build())
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setTcpNoDelay(true)
+                        .setSoKeepAlive(true)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Creates the pooled HTTP client.
+     *
+     * @param connectionManager        Connection pool
+     * @param connectionRequestTimeout Timeout for getting a connection from the pool
+     * @param responseTimeout          Timeout for waiting on a response
+     * @param idleEviction             Connections idle for longer are closed
+     * @return HTTP client
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(
+            PoolingHttpClientConnectionManager connectionManager,
+            @Value("${bitvavo.http.connection-request-timeout:PT2S}") Duration connectionRequestTimeout,
+            @Value("${bitvavo.http.response-timeout:PT10S}") Duration responseTimeout,
+            @Value("${bitvavo.http.idle-eviction:PT2M}") Duration idleEviction) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(responseTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                // Retries are left to BitvavoResilience, which backs off and knows which requests are safe to repeat
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    /**
+     * Publishes the statistics of the connection pool (available, leased, pending and max connections).
+     *
+     * @param connectionManager Connection pool
+     * @return Meter binder for the connection pool
+     */
+    @Bean
+    public MeterBinder httpConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "bitvavo");
+    }
+
     /**
      * Creates a RestTemplate bean.
      *
+     * @param httpClient Pooled HTTP client
      * @return RestTemplate instance
      */
     @Bean
-    public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
         restTemplate.setInterceptors(Collections.singletonList(curlLoggingInterceptor));
         return restTemplate;
     }
-}
\ No newline at end of file
+}
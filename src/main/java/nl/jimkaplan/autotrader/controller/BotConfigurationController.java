@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.model.document.BotConfigurationSummary;
 import nl.jimkaplan.autotrader.model.dto.BotConfigurationRequest;
 import nl.jimkaplan.autotrader.model.dto.BotConfigurationResponse;
 import nl.jimkaplan.autotrader.model.dto.BotCreatedResponse;
@@ -75,6 +76,7 @@ public class BotConfigurationController {
                 .apiKey(request.getApiKey())
                 .apiSecret(request.getApiSecret())
                 .tradingPair(request.getTradingPair())
+                .orderTransport(request.getOrderTransport())
                 .active(true)
                 .build();
 
@@ -86,6 +88,7 @@ public class BotConfigurationController {
                 .botId(savedConfig.getBotId())
                 .tradingPair(savedConfig.getTradingPair())
                 .active(savedConfig.getActive())
+                .orderTransport(savedConfig.getOrderTransport())
                 .webhookApiKey(webhookApiKey)
                 .build();
 
@@ -131,7 +134,7 @@ public class BotConfigurationController {
 
         validateBotId(botId);
 
-        return botConfigurationService.getBotConfiguration(botId)
+        return botConfigurationService.getBotConfigurationSummary(botId)
                 .map(config -> {
                     BotConfigurationResponse response = mapToResponse(config);
                     log.info("Successfully retrieved bot configuration with ID: {}", botId);
@@ -168,9 +171,9 @@ public class BotConfigurationController {
             @RequestParam(name = "includeInactive", defaultValue = "false") boolean includeInactive) {
         log.info("Received request to get all bot configurations, includeInactive: {}", includeInactive);
 
-        List<BotConfiguration> configs = includeInactive ?
-                botConfigurationService.getAllBotConfigurationsIncludingInactive() :
-                botConfigurationService.getAllBotConfigurations();
+        List<BotConfigurationSummary> configs = includeInactive ?
+                botConfigurationService.getAllBotConfigurationSummariesIncludingInactive() :
+                botConfigurationService.getAllBotConfigurationSummaries();
 
         List<BotConfigurationResponse> response = configs.stream()
                 .map(this::mapToResponse)
@@ -312,7 +315,7 @@ public class BotConfigurationController {
         validateBotId(botId);
 
         // Check if the bot exists
-        if (botConfigurationService.getBotConfigurationIncludingInactive(botId).isEmpty()) {
+        if (!botConfigurationService.botConfigurationExists(botId)) {
             log.warn("Bot configuration with ID: {} not found within active configurations", botId);
             return ResponseEntity.notFound().build();
         }
@@ -325,16 +328,17 @@ public class BotConfigurationController {
     }
 
     /**
-     * Map a BotConfiguration entity to a BotConfigurationResponse DTO.
+     * Map a BotConfigurationSummary projection to a BotConfigurationResponse DTO.
      *
-     * @param config The BotConfiguration entity
+     * @param config The BotConfigurationSummary projection
      * @return The BotConfigurationResponse DTO
      */
-    private BotConfigurationResponse mapToResponse(BotConfiguration config) {
+    private BotConfigurationResponse mapToResponse(BotConfigurationSummary config) {
         return BotConfigurationResponse.builder()
                 .botId(config.getBotId())
                 .tradingPair(config.getTradingPair())
                 .active(config.getActive())
+                .orderTransport(config.getOrderTransport())
                 .build();
     }
 
@@ -0,0 +1,11 @@
+package nl.jimkaplan.autotrader.exception;
+
+/**
+ * Thrown when an alert cannot be accepted because the asynchronous alert queue is at capacity.
+ */
+public class AlertQueueFullException extends RuntimeException {
+
+    public AlertQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package nl.jimkaplan.autotrader.exception;
+
+/**
+ * Thrown when a Bitvavo call is not attempted because recent calls to the same endpoint kept failing.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package nl.jimkaplan.autotrader.exception;
+
+/**
+ * Thrown when an alert with the same bot ID, ticker, action and timestamp was already received,
+ * typically because TradingView retried the webhook.
+ */
+public class DuplicateAlertException extends RuntimeException {
+
+    public DuplicateAlertException(String message) {
+        super(message);
+    }
+
+    public DuplicateAlertException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package nl.jimkaplan.autotrader.exception;
+
+/**
+ * Thrown when a Bitvavo call is rejected up front because the weight budget of its API key or IP address
+ * would not allow it within the configured wait.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
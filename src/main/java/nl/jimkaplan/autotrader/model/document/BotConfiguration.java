@@ -14,7 +14,7 @@ import org.springframework.data.mongodb.core.mapping.Field;
  * Maps to the 'bot_configurations' collection.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
@@ -37,6 +37,8 @@ public class BotConfiguration extends BaseDocument {
     @Field("webhookKeyHash")
     private String webhookKeyHash;
 
+    // Indexed for the re-encryption job, which looks for configurations on another key at every startup
+    @Indexed
     @Field("key_version")
     private Integer keyVersion;
 
@@ -44,7 +46,27 @@ public class BotConfiguration extends BaseDocument {
     @Builder.Default
     private Boolean active = true;
 
+    /**
+     * How orders of the bot are sent to Bitvavo; null means {@link OrderTransport#REST}.
+     */
+    @Field("order_transport")
+    private OrderTransport orderTransport;
+
     // Transient fields not stored in the database
     private transient String apiKey;
     private transient String apiSecret;
+
+    /**
+     * Transport used to place the orders of a bot.
+     */
+    public enum OrderTransport {
+        /**
+         * An HTTP request to the REST API per order.
+         */
+        REST,
+        /**
+         * A request over an authenticated WebSocket session that is kept open per API key.
+         */
+        WEBSOCKET
+    }
 }
@@ -0,0 +1,16 @@
+package nl.jimkaplan.autotrader.model.document;
+
+/**
+ * Projection of a {@link BotConfiguration} with only the fields shown in the admin views.
+ * Queries returning it only fetch these fields, so the encrypted credentials are neither read nor decrypted.
+ */
+public interface BotConfigurationSummary {
+
+    String getBotId();
+
+    String getTradingPair();
+
+    Boolean getActive();
+
+    BotConfiguration.OrderTransport getOrderTransport();
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
 
 /**
  * DTO for creating a new bot configuration.
@@ -16,4 +17,5 @@ public class BotConfigurationRequest {
     private String apiKey;
     private String apiSecret;
     private String tradingPair;
+    private BotConfiguration.OrderTransport orderTransport;
 }
\ No newline at end of file
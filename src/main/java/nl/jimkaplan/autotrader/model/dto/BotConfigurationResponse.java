@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
 
 /**
  * DTO for returning bot configuration data.
@@ -16,4 +17,5 @@ public class BotConfigurationResponse {
     private String botId;
     private String tradingPair;
     private Boolean active;
+    private BotConfiguration.OrderTransport orderTransport;
 }
\ No newline at end of file
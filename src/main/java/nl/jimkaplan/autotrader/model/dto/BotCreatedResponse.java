@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
 
 /**
  * DTO for returning bot configuration data for a newly created bot.
@@ -16,5 +17,6 @@ public class BotCreatedResponse {
     private String botId;
     private String tradingPair;
     private Boolean active;
+    private BotConfiguration.OrderTransport orderTransport;
     private String webhookApiKey;
 }
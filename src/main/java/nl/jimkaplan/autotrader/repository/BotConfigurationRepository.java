@@ -1,6 +1,7 @@
 package nl.jimkaplan.autotrader.repository;
 
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.model.document.BotConfigurationSummary;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -61,4 +62,28 @@ public interface BotConfigurationRepository extends MongoRepository<BotConfigura
      * @return Optional containing the bot configuration if found
      */
     Optional<BotConfiguration> findByBotIdAndActive(String botId, Boolean active);
+
+    /**
+     * Find the summary of a bot configuration by bot ID and active status, without its credentials.
+     *
+     * @param botId  The bot ID
+     * @param active The active status
+     * @return Optional containing the summary if found
+     */
+    Optional<BotConfigurationSummary> findSummaryByBotIdAndActive(String botId, Boolean active);
+
+    /**
+     * Find the summaries of bot configurations by active status, without their credentials.
+     *
+     * @param active The active status
+     * @return List of summaries of the bot configurations with the specified active status
+     */
+    List<BotConfigurationSummary> findSummariesByActive(Boolean active);
+
+    /**
+     * Find the summaries of all bot configurations, without their credentials.
+     *
+     * @return List of summaries of all bot configurations
+     */
+    List<BotConfigurationSummary> findSummariesBy();
 }
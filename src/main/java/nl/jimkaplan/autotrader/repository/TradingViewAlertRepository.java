@@ -49,4 +49,12 @@ public interface TradingViewAlertRepository extends MongoRepository<TradingViewA
      * @return List of alerts for the specified bot and timestamp range
      */
     List<TradingViewAlert> findByBotIdAndTimestampBetween(String botId, Instant startTime, Instant endTime);
-}
\ No newline at end of file
+
+    /**
+     * Find alerts by processing status.
+     *
+     * @param status The processing status
+     * @return List of alerts with the specified status
+     */
+    List<TradingViewAlert> findByStatus(String status);
+}
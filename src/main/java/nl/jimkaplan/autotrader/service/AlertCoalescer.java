@@ -0,0 +1,196 @@
+package nl.jimkaplan.autotrader.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional coalescing stage in front of the {@link BotAlertExecutor}.
+ * When enabled, the alerts of a bot are buffered for {@code trading.coalescing.window} after the first one
+ * arrives. When the window closes only the net intent is executed: the alert with the latest TradingView
+ * timestamp (for equal timestamps the last one to arrive). A buy followed by a sell and another buy within
+ * the window becomes a single buy. The other alerts are not executed but recorded as coalesced.
+ * <p>
+ * When disabled, alerts are handed to the {@link BotAlertExecutor} directly.
+ */
+@Slf4j
+@Service
+public class AlertCoalescer {
+
+    /**
+     * Outcome of a submitted alert.
+     */
+    public enum Outcome {
+        /**
+         * The alert was executed.
+         */
+        EXECUTED,
+        /**
+         * The alert was too old to execute when its turn came.
+         */
+        DROPPED,
+        /**
+         * The alert was superseded by a later alert for the same bot and not executed.
+         */
+        COALESCED
+    }
+
+    private final BotAlertExecutor botAlertExecutor;
+    private final boolean enabled;
+    private final Duration window;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter coalescedCounter;
+
+    public AlertCoalescer(BotAlertExecutor botAlertExecutor,
+                          MeterRegistry meterRegistry,
+                          @Value("${trading.coalescing.enabled:false}") boolean enabled,
+                          @Value("${trading.coalescing.window:PT1S}") Duration window) {
+        this.botAlertExecutor = botAlertExecutor;
+        this.enabled = enabled;
+        this.window = window;
+        this.scheduler = enabled
+                ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("alert-coalescer").daemon(true).factory())
+                : null;
+        this.coalescedCounter = Counter.builder("autotrader.alerts.coalesced")
+                .description("Alerts that were superseded by a later alert for the same bot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether alerts are coalesced.
+     *
+     * @return true if alerts are buffered per bot before execution
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Submit an alert of a bot.
+     *
+     * @param botId          The bot ID
+     * @param alertTimestamp The TradingView timestamp of the alert
+     * @param task           The task that executes the alert
+     * @param onCoalesced    The task that records the alert when it is superseded
+     * @return Future that completes with the outcome, or exceptionally if the task threw
+     */
+    public CompletableFuture<Outcome> submit(String botId, Instant alertTimestamp, Runnable task, Runnable onCoalesced) {
+        if (!enabled) {
+            return botAlertExecutor.submit(botId, alertTimestamp, task)
+                    .thenApply(executed -> executed ? Outcome.EXECUTED : Outcome.DROPPED);
+        }
+
+        PendingAlert pendingAlert = new PendingAlert(alertTimestamp, task, onCoalesced, new CompletableFuture<>());
+        windows.compute(botId, (id, window) -> {
+            if (window == null) {
+                window = new Window();
+                scheduler.schedule(() -> flush(id), this.window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            window.alerts.add(pendingAlert);
+            return window;
+        });
+        return pendingAlert.result();
+    }
+
+    /**
+     * Submit an alert of a bot and wait for its outcome.
+     * Exceptions thrown by the task are rethrown to the caller unchanged.
+     *
+     * @param botId          The bot ID
+     * @param alertTimestamp The TradingView timestamp of the alert
+     * @param task           The task that executes the alert
+     * @param onCoalesced    The task that records the alert when it is superseded
+     * @return The outcome
+     */
+    public Outcome execute(String botId, Instant alertTimestamp, Runnable task, Runnable onCoalesced) {
+        try {
+            return submit(botId, alertTimestamp, task, onCoalesced).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Execute all buffered alerts without waiting for their windows to close.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            windows.keySet().forEach(this::flush);
+        }
+    }
+
+    private void flush(String botId) {
+        Window window = windows.remove(botId);
+        if (window == null) {
+            return;
+        }
+
+        // The latest alert is the net intent; ties are won by the last alert to arrive
+        List<PendingAlert> alerts = window.alerts;
+        PendingAlert winner = alerts.getFirst();
+        for (PendingAlert alert : alerts) {
+            if (!alert.alertTimestamp().isBefore(winner.alertTimestamp())) {
+                winner = alert;
+            }
+        }
+
+        if (alerts.size() > 1) {
+            log.info("Coalesced {} alerts for bot: {} into one, executing the alert with timestamp {}",
+                    alerts.size(), botId, winner.alertTimestamp());
+        }
+
+        for (PendingAlert alert : alerts) {
+            if (alert != winner) {
+                coalescedCounter.increment();
+                forward(botAlertExecutor.submit(botId, null, alert.onCoalesced())
+                        .thenApply(recorded -> Outcome.COALESCED), alert.result());
+            }
+        }
+        forward(botAlertExecutor.submit(botId, winner.alertTimestamp(), winner.task())
+                .thenApply(executed -> executed ? Outcome.EXECUTED : Outcome.DROPPED), winner.result());
+    }
+
+    private static void forward(CompletableFuture<Outcome> source, CompletableFuture<Outcome> target) {
+        source.whenComplete((outcome, error) -> {
+            if (error != null) {
+                target.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                target.complete(outcome);
+            }
+        });
+    }
+
+    private record PendingAlert(Instant alertTimestamp, Runnable task, Runnable onCoalesced,
+                                CompletableFuture<Outcome> result) {
+    }
+
+    /**
+     * Alerts of a bot buffered until the window closes. Only modified inside {@code windows.compute}
+     * and only read after the window was removed from the map.
+     */
+    private static final class Window {
+        private final List<PendingAlert> alerts = new ArrayList<>();
+    }
+}
@@ -0,0 +1,214 @@
+package nl.jimkaplan.autotrader.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Executes alerts one bot at a time.
+ * Every bot has its own mailbox: alerts for the same bot run strictly in submission order, one after
+ * the other, while mailboxes of different bots are drained in parallel on the trading executor.
+ * This keeps a buy quickly followed by a sell from racing through the position update.
+ * A mailbox only exists while its bot has alerts waiting or running, so bots that stopped sending alerts
+ * do not hold memory.
+ * <p>
+ * Alerts whose TradingView timestamp is older than {@code trading.bot-executor.max-alert-age} when they
+ * reach the front of the mailbox are dropped instead of executed.
+ */
+@Slf4j
+@Service
+public class BotAlertExecutor {
+
+    // Maximum number of alerts a mailbox runs before yielding its thread to other bots
+    private static final int MAX_BATCH_SIZE = 16;
+
+    private final Executor tradingExecutor;
+    private final Duration maxAlertAge;
+    private final Clock clock;
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger totalDepth = new AtomicInteger();
+    private final Counter staleAlertCounter;
+
+    @Autowired
+    public BotAlertExecutor(@Qualifier("tradingExecutor") ExecutorService tradingExecutor,
+                            MeterRegistry meterRegistry,
+                            @Value("${trading.bot-executor.max-alert-age:PT5M}") Duration maxAlertAge) {
+        this(tradingExecutor, meterRegistry, maxAlertAge, Clock.systemUTC());
+    }
+
+    // Constructor for testing
+    BotAlertExecutor(Executor tradingExecutor, MeterRegistry meterRegistry, Duration maxAlertAge, Clock clock) {
+        this.tradingExecutor = tradingExecutor;
+        this.maxAlertAge = maxAlertAge;
+        this.clock = clock;
+        // One gauge for all bots; a tag per bot ID would add a time series for every bot that ever sent an alert
+        Gauge.builder("autotrader.bot.alerts.queue.depth", totalDepth, AtomicInteger::get)
+                .description("Alerts waiting or running in the mailboxes of all bots")
+                .register(meterRegistry);
+        Gauge.builder("autotrader.bot.alerts.mailboxes", mailboxes, Map::size)
+                .description("Bots with alerts waiting or running")
+                .register(meterRegistry);
+        this.staleAlertCounter = Counter.builder("autotrader.bot.alerts.stale")
+                .description("Alerts dropped because they were too old when their turn came")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Submit an alert task to the mailbox of a bot.
+     *
+     * @param botId          The bot ID used as mailbox key
+     * @param alertTimestamp The TradingView timestamp of the alert, or null to skip the staleness check
+     * @param task           The task that executes the alert
+     * @return Future that completes with true when the task ran, or false when it was dropped as stale.
+     * The future completes exceptionally if the task threw.
+     */
+    public CompletableFuture<Boolean> submit(String botId, Instant alertTimestamp, Runnable task) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AlertTask alertTask = new AlertTask(alertTimestamp, task, result);
+        // Enqueued under the lock of the map entry, so a draining mailbox cannot be removed in between
+        Mailbox mailbox = mailboxes.compute(botId, (key, existing) -> {
+            Mailbox target = existing != null ? existing : new Mailbox(key);
+            target.add(alertTask);
+            return target;
+        });
+        mailbox.schedule();
+        return result;
+    }
+
+    /**
+     * Run an alert task in the mailbox of a bot and wait for it to finish.
+     * Exceptions thrown by the task are rethrown to the caller unchanged.
+     *
+     * @param botId The bot ID used as mailbox key
+     * @param task  The task that executes the alert
+     */
+    public void execute(String botId, Runnable task) {
+        if (botId == null || botId.isEmpty()) {
+            // Nothing to order by; let the task fail its own validation
+            task.run();
+            return;
+        }
+
+        try {
+            submit(botId, null, task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of alerts waiting or running per bot.
+     *
+     * @return Map of bot ID to queue depth, only containing bots with pending alerts
+     */
+    public Map<String, Integer> getQueueDepths() {
+        return mailboxes.entrySet().stream()
+                .filter(entry -> entry.getValue().depth.get() > 0)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().depth.get()));
+    }
+
+    private boolean isStale(Instant alertTimestamp) {
+        return alertTimestamp != null && alertTimestamp.plus(maxAlertAge).isBefore(clock.instant());
+    }
+
+    private record AlertTask(Instant alertTimestamp, Runnable task, CompletableFuture<Boolean> result) {
+    }
+
+    /**
+     * Queue of alerts for a single bot. At most one thread drains a mailbox at any time.
+     */
+    private final class Mailbox implements Runnable {
+
+        private final String botId;
+        private final Queue<AlertTask> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(String botId) {
+            this.botId = botId;
+        }
+
+        private void add(AlertTask task) {
+            depth.incrementAndGet();
+            totalDepth.incrementAndGet();
+            tasks.add(task);
+        }
+
+        /**
+         * Remove the mailbox if it has no alerts left. Alerts are only added under the lock of the map entry,
+         * which this also takes, so no alert can be added to a mailbox that is being removed.
+         */
+        private void removeIfEmpty() {
+            mailboxes.computeIfPresent(botId, (key, mailbox) -> mailbox == this && depth.get() == 0 ? null : mailbox);
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                tradingExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                    AlertTask task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    runTask(task);
+                }
+            } finally {
+                scheduled.set(false);
+                if (tasks.isEmpty()) {
+                    removeIfEmpty();
+                }
+                // Reschedule if alerts arrived after the last poll or the batch limit was reached
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        private void runTask(AlertTask task) {
+            try {
+                if (isStale(task.alertTimestamp())) {
+                    log.warn("Dropping stale alert for bot: {} with timestamp {}", botId, task.alertTimestamp());
+                    staleAlertCounter.increment();
+                    task.result().complete(false);
+                    return;
+                }
+                task.task().run();
+                task.result().complete(true);
+            } catch (Exception e) {
+                task.result().completeExceptionally(e);
+            } finally {
+                depth.decrementAndGet();
+                totalDepth.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nl.jimkaplan.autotrader.service;
+
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory cache of active bot configurations with their decrypted API key and secret, so resolving the bot of
+ * an alert needs neither a database round-trip nor decryption.
+ * <p>
+ * The decrypted credentials are held as they are handed to the Bitvavo clients, as Strings; the cache does not
+ * protect them any further than the rest of the application does. Every {@link #get} hands out a shallow copy of
+ * the configuration, so callers cannot change the cached one.
+ * <p>
+ * {@link BotConfigurationService} invalidates an entry whenever it saves, activates or deactivates the bot, and
+ * the entries of a key version can be invalidated when the encryption key is rotated. Entries expire after
+ * {@code trading.bot-config-cache.ttl}, which bounds how long a change made by another instance goes unnoticed.
+ */
+@Component
+public class BotConfigurationCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    @Autowired
+    public BotConfigurationCache(@Value("${trading.bot-config-cache.ttl:PT5M}") Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    // Constructor for testing
+    BotConfigurationCache(Duration ttl, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Get the cached configuration of a bot.
+     *
+     * @param botId The bot ID
+     * @return A copy of the configuration with decrypted API key and secret, or null if not cached
+     */
+    public BotConfiguration get(String botId) {
+        Entry entry = entries.get(botId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtNanos() - nanoTime.getAsLong() < 0) {
+            entries.remove(botId, entry);
+            return null;
+        }
+        return copy(entry.config());
+    }
+
+    /**
+     * Get a stamp to pass to {@link #put} before loading a configuration, so a configuration that was changed
+     * while it was loaded is not cached.
+     *
+     * @return The current stamp
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Cache a configuration that was loaded and decrypted, unless an entry was invalidated since the stamp was
+     * taken.
+     *
+     * @param config The configuration with decrypted API key and secret
+     * @param stamp  The {@link #stamp()} taken before the configuration was loaded
+     */
+    public void put(BotConfiguration config, long stamp) {
+        Entry entry = new Entry(copy(config), nanoTime.getAsLong() + ttlNanos);
+        entries.put(config.getBotId(), entry);
+        // An invalidation that raced with the put must win, so the entry is removed again rather than not added
+        if (invalidations.get() != stamp) {
+            entries.remove(config.getBotId(), entry);
+        }
+    }
+
+    /**
+     * Remove the cached configuration of a bot.
+     *
+     * @param botId The bot ID
+     */
+    public void invalidate(String botId) {
+        invalidations.incrementAndGet();
+        entries.remove(botId);
+    }
+
+    /**
+     * Remove the cached configurations whose credentials were encrypted with a key version.
+     *
+     * @param keyVersion The key version
+     */
+    public void invalidateKeyVersion(Integer keyVersion) {
+        invalidations.incrementAndGet();
+        entries.values().removeIf(entry -> Objects.equals(entry.config().getKeyVersion(), keyVersion));
+    }
+
+    /**
+     * Remove all cached configurations.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    private static BotConfiguration copy(BotConfiguration config) {
+        BotConfiguration copy = config.toBuilder().build();
+        // Not part of the builder
+        copy.setId(config.getId());
+        copy.setCreatedAt(config.getCreatedAt());
+        copy.setUpdatedAt(config.getUpdatedAt());
+        return copy;
+    }
+
+    private record Entry(BotConfiguration config, long expiresAtNanos) {
+    }
+}
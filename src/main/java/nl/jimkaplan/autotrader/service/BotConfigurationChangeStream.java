@@ -0,0 +1,273 @@
+package nl.jimkaplan.autotrader.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the in-memory bot indexes of this instance in sync with changes that any instance makes to the
+ * {@code bot_configurations} collection, by following its MongoDB change stream.
+ * <p>
+ * Inserts and updates are applied to the {@link TradingPairIndex} and {@link WebhookKeyHashCache}, and evict the
+ * bot from the {@link BotConfigurationCache}; deletes remove the bot from all three. The indexes are rebuilt from
+ * the collection when the stream is first opened. The resume token of the stream is kept in memory, so a stream
+ * that is lost while the application runs resumes where it stopped without a rebuild. When it cannot resume (the
+ * token fell out of the oplog, the collection was dropped, or a deleted document is unknown), all indexes are
+ * rebuilt again. A rebuild always happens after the stream is opened, so no change made during it is missed.
+ * <p>
+ * Change streams need a replica set. On a standalone server the stream is disabled with a warning and changes
+ * of other instances are only picked up when the cache entries expire.
+ */
+@Slf4j
+@Component
+public class BotConfigurationChangeStream {
+
+    static final String COLLECTION = "bot_configurations";
+    // Server error codes after which the stream cannot be resumed from the stored token
+    private static final Set<Integer> UNRESUMABLE_ERRORS = Set.of(
+            260, // InvalidResumeToken
+            280, // ChangeStreamFatalError
+            286  // ChangeStreamHistoryLost
+    );
+    private static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+
+    private final MongoTemplate mongoTemplate;
+    private final BotConfigurationRepository botConfigurationRepository;
+    private final TradingPairIndex tradingPairIndex;
+    private final WebhookKeyHashCache webhookKeyHashCache;
+    private final BotConfigurationCache botConfigurationCache;
+    private final boolean enabled;
+    private final Duration reconnectDelay;
+
+    private final Map<String, String> botIdsByDocumentId = new ConcurrentHashMap<>();
+    // Null until the indexes are rebuilt, and again when the stream cannot be resumed
+    private BsonDocument resumeToken;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    public BotConfigurationChangeStream(MongoTemplate mongoTemplate,
+                                        BotConfigurationRepository botConfigurationRepository,
+                                        TradingPairIndex tradingPairIndex,
+                                        WebhookKeyHashCache webhookKeyHashCache,
+                                        BotConfigurationCache botConfigurationCache,
+                                        @Value("${trading.config-replication.enabled:false}") boolean enabled,
+                                        @Value("${trading.config-replication.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.botConfigurationRepository = botConfigurationRepository;
+        this.tradingPairIndex = tradingPairIndex;
+        this.webhookKeyHashCache = webhookKeyHashCache;
+        this.botConfigurationCache = botConfigurationCache;
+        this.enabled = enabled;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    /**
+     * Start following the change stream.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        thread = Thread.ofPlatform().name("bot-config-change-stream").daemon(true).start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            try {
+                watch();
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAMS_NOT_SUPPORTED) {
+                    log.warn("MongoDB does not support change streams; changes of other instances are only "
+                            + "picked up when cached bot configurations expire");
+                    return;
+                }
+                onFailure(e);
+            } catch (MongoException e) {
+                onFailure(e);
+            } catch (RuntimeException e) {
+                if (stopped) {
+                    return;
+                }
+                log.error("Unexpected error in the bot configuration change stream", e);
+            }
+            sleep(reconnectDelay);
+        }
+    }
+
+    /**
+     * Open the change stream, resuming after the last processed change if possible, and apply changes until
+     * stopped.
+     */
+    void watch() {
+        BsonDocument token = resumeToken;
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(COLLECTION).watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (token != null) {
+            stream = stream.resumeAfter(token);
+        }
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            // Rebuilt after the stream is open, so changes made during the rebuild are still applied after it
+            if (token == null) {
+                resync();
+            } else {
+                log.info("Resumed the bot configuration change stream");
+            }
+            while (!stopped) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && !apply(change)) {
+                    return;
+                }
+                // Also advances while there are no changes, so a resume does not replay the whole oplog window
+                BsonDocument latest = cursor.getResumeToken();
+                if (latest != null) {
+                    resumeToken = latest;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a change to the in-memory indexes.
+     *
+     * @param change The change
+     * @return false if the stream was invalidated and has to be reopened
+     */
+    boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // Null when the document was deleted before it was looked up; the delete follows
+                Document document = change.getFullDocument();
+                if (document != null) {
+                    applyUpsert(mongoTemplate.getConverter().read(BotConfiguration.class, document));
+                }
+            }
+            case DELETE -> applyDelete(documentId(change.getDocumentKey()));
+            case INVALIDATE -> {
+                log.warn("Bot configuration change stream was invalidated; reopening it");
+                forgetResumeToken();
+                return false;
+            }
+            default -> {
+                // Drops and renames are followed by an invalidate; other operations do not touch documents
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handle a failed stream: forget the resume token if the stream cannot be resumed from it, so it is reopened
+     * from now and the indexes are rebuilt.
+     *
+     * @param e The failure
+     */
+    void onFailure(MongoException e) {
+        if (UNRESUMABLE_ERRORS.contains(e.getCode())) {
+            log.warn("Cannot resume the bot configuration change stream ({}); rebuilding the bot indexes",
+                    e.getMessage());
+            forgetResumeToken();
+        } else if (!stopped) {
+            log.warn("Bot configuration change stream failed, reconnecting in {}: {}", reconnectDelay, e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild all in-memory indexes from the collection.
+     */
+    void resync() {
+        // Also the inactive ones, so their deletes are recognized
+        List<BotConfiguration> configs = tradingPairIndex.reload(botConfigurationRepository::findAll);
+        botIdsByDocumentId.clear();
+        for (BotConfiguration config : configs) {
+            if (config.getId() != null && config.getBotId() != null) {
+                botIdsByDocumentId.put(config.getId(), config.getBotId());
+            }
+        }
+        webhookKeyHashCache.clear();
+        botConfigurationCache.clear();
+        log.info("Rebuilt the bot indexes from {} bot configurations", configs.size());
+    }
+
+    private void applyUpsert(BotConfiguration config) {
+        String botId = config.getBotId();
+        if (botId == null) {
+            return;
+        }
+        log.debug("Applying change of bot configuration {}", botId);
+        if (config.getId() != null) {
+            botIdsByDocumentId.put(config.getId(), botId);
+        }
+        tradingPairIndex.update(config);
+        webhookKeyHashCache.put(botId, config.getWebhookKeyHash());
+        botConfigurationCache.invalidate(botId);
+    }
+
+    private void applyDelete(String documentId) {
+        String botId = documentId != null ? botIdsByDocumentId.remove(documentId) : null;
+        if (botId == null) {
+            log.warn("Deleted bot configuration {} is unknown; rebuilding the bot indexes", documentId);
+            resync();
+            return;
+        }
+        log.debug("Applying deletion of bot configuration {}", botId);
+        tradingPairIndex.update(BotConfiguration.builder().botId(botId).active(false).build());
+        webhookKeyHashCache.invalidate(botId);
+        botConfigurationCache.invalidate(botId);
+    }
+
+    private static String documentId(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private void forgetResumeToken() {
+        resumeToken = null;
+    }
+
+    private void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+}
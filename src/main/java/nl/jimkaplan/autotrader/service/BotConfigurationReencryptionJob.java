@@ -0,0 +1,238 @@
+package nl.jimkaplan.autotrader.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Moves the encrypted API keys and secrets of bot configurations to the current key of the
+ * {@link EncryptionService} keyring after the master key was rotated, while the application keeps running.
+ * <p>
+ * Runs once at startup, on every instance. An instance first checks through the index on the key version whether
+ * any configuration is on another key, which after a completed rotation is all it does. Configurations with
+ * another key version are streamed through a cursor in batches of
+ * {@code encryption.reencryption.batch-size}; each batch is decrypted and encrypted again in parallel and written
+ * back with one bulk update, and the job pauses {@code encryption.reencryption.batch-delay} between batches so it
+ * does not compete with trading for the database. Every update only applies if the document still holds the
+ * values that were read, so a configuration saved in the meantime is not overwritten.
+ * <p>
+ * Each document carries its own key version, so reads keep working throughout the rotation, and an interrupted
+ * job simply continues with the documents that are still on an old key at the next startup. The previous key
+ * can be removed from {@code encryption.previous-keys} once the job reports that no configurations are left.
+ */
+@Slf4j
+@Component
+public class BotConfigurationReencryptionJob {
+
+    private final MongoTemplate mongoTemplate;
+    private final EncryptionService encryptionService;
+    private final BotConfigurationCache botConfigurationCache;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration batchDelay;
+    private final int parallelism;
+
+    private volatile boolean stopped;
+    private Thread thread;
+
+    public BotConfigurationReencryptionJob(MongoTemplate mongoTemplate,
+                                           EncryptionService encryptionService,
+                                           BotConfigurationCache botConfigurationCache,
+                                           @Value("${encryption.reencryption.enabled:false}") boolean enabled,
+                                           @Value("${encryption.reencryption.batch-size:100}") int batchSize,
+                                           @Value("${encryption.reencryption.batch-delay:PT1S}") Duration batchDelay,
+                                           @Value("${encryption.reencryption.parallelism:0}") int parallelism) {
+        this.mongoTemplate = mongoTemplate;
+        this.encryptionService = encryptionService;
+        this.botConfigurationCache = botConfigurationCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Start re-encrypting the configurations that are not on the current key.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        thread = Thread.ofPlatform().name("bot-config-reencryption").daemon(true).start(() -> {
+            try {
+                reencryptAll();
+            } catch (RuntimeException e) {
+                log.error("Re-encryption of bot configurations failed; it continues at the next startup", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Re-encrypt all configurations that are not on the current key.
+     *
+     * @return The number of configurations that were re-encrypted
+     */
+    int reencryptAll() {
+        int currentKeyVersion = encryptionService.getCurrentKeyVersion();
+        if (!mongoTemplate.exists(new Query(Criteria.where("keyVersion").ne(currentKeyVersion)),
+                BotConfiguration.class)) {
+            log.debug("All bot configurations use key version {}", currentKeyVersion);
+            return 0;
+        }
+        Query query = new Query(Criteria.where("keyVersion").ne(currentKeyVersion))
+                .with(Sort.by("id"))
+                .cursorBatchSize(batchSize);
+
+        int reencrypted = 0;
+        int failed = 0;
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("bot-config-reencryption-", 0).daemon(true).factory());
+        try (Stream<BotConfiguration> configs = mongoTemplate.stream(query, BotConfiguration.class)) {
+            Iterator<BotConfiguration> iterator = configs.iterator();
+            List<BotConfiguration> batch = new ArrayList<>(batchSize);
+            while (!stopped && iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() < batchSize && iterator.hasNext()) {
+                    continue;
+                }
+                BatchResult result = reencryptBatch(batch, currentKeyVersion, workers);
+                reencrypted += result.reencrypted();
+                failed += result.failed();
+                batch.clear();
+                if (iterator.hasNext()) {
+                    sleep(batchDelay);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        if (stopped) {
+            log.info("Stopped re-encryption after {} bot configurations; it continues at the next startup",
+                    reencrypted);
+        } else if (failed > 0) {
+            log.warn("Re-encrypted {} bot configurations with key version {}; {} could not be decrypted",
+                    reencrypted, currentKeyVersion, failed);
+        } else if (reencrypted > 0) {
+            log.info("Re-encrypted {} bot configurations; all use key version {}", reencrypted, currentKeyVersion);
+        }
+        return reencrypted;
+    }
+
+    private BatchResult reencryptBatch(List<BotConfiguration> batch, int currentKeyVersion, ExecutorService workers)
+            throws InterruptedException {
+        List<Callable<BotConfiguration>> tasks = new ArrayList<>(batch.size());
+        for (BotConfiguration config : batch) {
+            tasks.add(() -> reencrypt(config, currentKeyVersion));
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BotConfiguration.class);
+        Set<Integer> oldKeyVersions = new HashSet<>();
+        int updates = 0;
+        int failed = 0;
+        Instant now = Instant.now();
+        List<Future<BotConfiguration>> results = workers.invokeAll(tasks);
+        for (int i = 0; i < batch.size(); i++) {
+            BotConfiguration config = batch.get(i);
+            BotConfiguration reencrypted = result(results.get(i), config);
+            if (reencrypted == null) {
+                failed++;
+                continue;
+            }
+            // Only applies if the configuration was not saved with new values since it was read
+            Query unchanged = new Query(Criteria.where("id").is(config.getId())
+                    .and("keyVersion").is(config.getKeyVersion())
+                    .and("encryptedApiKey").is(config.getEncryptedApiKey())
+                    .and("encryptedApiSecret").is(config.getEncryptedApiSecret()));
+            bulk.updateOne(unchanged, new Update()
+                    .set("encryptedApiKey", reencrypted.getEncryptedApiKey())
+                    .set("encryptedApiSecret", reencrypted.getEncryptedApiSecret())
+                    .set("keyVersion", currentKeyVersion)
+                    .set("updatedAt", now));
+            oldKeyVersions.add(config.getKeyVersion());
+            updates++;
+        }
+        if (updates == 0) {
+            return new BatchResult(0, failed);
+        }
+
+        int modified = bulk.execute().getModifiedCount();
+        // Cached copies still carry the old ciphertexts
+        oldKeyVersions.forEach(botConfigurationCache::invalidateKeyVersion);
+        log.debug("Re-encrypted a batch of {} bot configurations", modified);
+        return new BatchResult(modified, failed);
+    }
+
+    /**
+     * Decrypt the credentials of a configuration with its own key version and encrypt them with the current key.
+     *
+     * @return A configuration holding only the new ciphertexts
+     */
+    private BotConfiguration reencrypt(BotConfiguration config, int currentKeyVersion) {
+        return BotConfiguration.builder()
+                .encryptedApiKey(reencrypt(config.getEncryptedApiKey(), config.getKeyVersion()))
+                .encryptedApiSecret(reencrypt(config.getEncryptedApiSecret(), config.getKeyVersion()))
+                .keyVersion(currentKeyVersion)
+                .build();
+    }
+
+    private String reencrypt(String ciphertext, Integer keyVersion) {
+        return ciphertext != null ? encryptionService.encrypt(encryptionService.decrypt(ciphertext, keyVersion)) : null;
+    }
+
+    private static BotConfiguration result(Future<BotConfiguration> future, BotConfiguration config)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.warn("Cannot re-encrypt bot configuration {} with key version {}: {}",
+                    config.getBotId(), config.getKeyVersion(), e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private static void sleep(Duration delay) throws InterruptedException {
+        if (!delay.isZero() && !delay.isNegative()) {
+            Thread.sleep(delay.toMillis());
+        }
+    }
+
+    private record BatchResult(int reencrypted, int failed) {
+    }
+}
@@ -3,6 +3,7 @@ package nl.jimkaplan.autotrader.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.model.document.BotConfigurationSummary;
 import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
 import org.springframework.stereotype.Service;
 
@@ -25,6 +26,9 @@ public class BotConfigurationService {
 
     private final BotConfigurationRepository botConfigurationRepository;
     private final EncryptionService encryptionService;
+    private final TradingPairIndex tradingPairIndex;
+    private final WebhookKeyHashCache webhookKeyHashCache;
+    private final BotConfigurationCache botConfigurationCache;
 
     /**
      * Save a bot configuration with encrypted API key and secret.
@@ -40,26 +44,40 @@ public class BotConfigurationService {
         // Set encrypted values
         config.setEncryptedApiKey(encryptedApiKey);
         config.setEncryptedApiSecret(encryptedApiSecret);
-        config.setKeyVersion(1); // Initial key version
+        config.setKeyVersion(encryptionService.getCurrentKeyVersion());
 
         // Clear transient fields
         config.setApiKey(null);
         config.setApiSecret(null);
 
         // Save to database
-        return botConfigurationRepository.save(config);
+        BotConfiguration savedConfig = botConfigurationRepository.save(config);
+        tradingPairIndex.update(savedConfig);
+        webhookKeyHashCache.put(savedConfig.getBotId(), savedConfig.getWebhookKeyHash());
+        botConfigurationCache.invalidate(savedConfig.getBotId());
+        return savedConfig;
     }
 
     /**
      * Get an active bot configuration by bot ID, with decrypted API key and secret.
      * Only returns configurations that are active.
+     * The configuration is read from the {@link BotConfigurationCache}, and only loaded from the database and
+     * decrypted when it is not cached.
      *
      * @param botId The bot ID
      * @return Optional containing the bot configuration if found and active
      */
     public Optional<BotConfiguration> getBotConfiguration(String botId) {
-        return botConfigurationRepository.findByBotIdAndActive(botId, true)
+        BotConfiguration cached = botConfigurationCache.get(botId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long stamp = botConfigurationCache.stamp();
+        Optional<BotConfiguration> config = botConfigurationRepository.findByBotIdAndActive(botId, true)
                 .map(this::decryptSensitiveData);
+        config.ifPresent(loaded -> botConfigurationCache.put(loaded, stamp));
+        return config;
     }
 
     /**
@@ -96,6 +114,45 @@ public class BotConfigurationService {
                 .toList();
     }
 
+    /**
+     * Get the summary of an active bot configuration by bot ID, without reading or decrypting its credentials.
+     *
+     * @param botId The bot ID
+     * @return Optional containing the summary if found and active
+     */
+    public Optional<BotConfigurationSummary> getBotConfigurationSummary(String botId) {
+        return botConfigurationRepository.findSummaryByBotIdAndActive(botId, true);
+    }
+
+    /**
+     * Get the summaries of all active bot configurations, without reading or decrypting their credentials.
+     *
+     * @return List of summaries of all active bot configurations
+     */
+    public List<BotConfigurationSummary> getAllBotConfigurationSummaries() {
+        return botConfigurationRepository.findSummariesByActive(true);
+    }
+
+    /**
+     * Get the summaries of all bot configurations including inactive ones, without reading or decrypting their
+     * credentials.
+     *
+     * @return List of summaries of all bot configurations
+     */
+    public List<BotConfigurationSummary> getAllBotConfigurationSummariesIncludingInactive() {
+        return botConfigurationRepository.findSummariesBy();
+    }
+
+    /**
+     * Check if a bot configuration exists regardless of active status.
+     *
+     * @param botId The bot ID
+     * @return true if a bot configuration exists with the given bot ID, false otherwise
+     */
+    public boolean botConfigurationExists(String botId) {
+        return botConfigurationRepository.existsByBotId(botId);
+    }
+
     /**
      * Deactivate a bot configuration by bot ID.
      * This sets the active field to false instead of deleting the configuration.
@@ -108,6 +165,9 @@ public class BotConfigurationService {
                 .map(config -> {
                     config.setActive(false);
                     botConfigurationRepository.save(config);
+                    tradingPairIndex.update(config);
+                    webhookKeyHashCache.put(botId, config.getWebhookKeyHash());
+                    botConfigurationCache.invalidate(botId);
                     return true;
                 })
                 .orElse(false);
@@ -124,6 +184,9 @@ public class BotConfigurationService {
                 .map(config -> {
                     config.setActive(true);
                     botConfigurationRepository.save(config);
+                    tradingPairIndex.update(config);
+                    webhookKeyHashCache.put(botId, config.getWebhookKeyHash());
+                    botConfigurationCache.invalidate(botId);
                     return true;
                 })
                 .orElse(false);
@@ -146,6 +209,8 @@ public class BotConfigurationService {
         botConfigurationRepository.findByBotId(botId).ifPresent(config -> {
             config.setWebhookKeyHash(webhookKeyHash);
             botConfigurationRepository.save(config);
+            webhookKeyHashCache.put(botId, webhookKeyHash);
+            botConfigurationCache.invalidate(botId);
         });
 
         // Return the unhashed key (this is the only time it will be available)
@@ -154,19 +219,27 @@ public class BotConfigurationService {
 
     /**
      * Validate a webhook API key for a bot.
+     * The stored hash is read from the {@link WebhookKeyHashCache}, and only loaded from the database when it is
+     * not cached. Hashes are compared in constant time.
      *
      * @param botId  The bot ID
      * @param apiKey The webhook API key to validate
      * @return true if the key is valid, false otherwise
      */
     public boolean validateWebhookApiKey(String botId, String apiKey) {
-        return botConfigurationRepository.findByBotId(botId)
-                .map(config -> {
-                    String storedHash = config.getWebhookKeyHash();
-                    String providedHash = hashApiKey(apiKey);
-                    return storedHash != null && storedHash.equals(providedHash);
-                })
-                .orElse(false);
+        if (botId == null || apiKey == null) {
+            return false;
+        }
+
+        byte[] storedHash = webhookKeyHashCache.get(botId);
+        if (storedHash == null) {
+            Optional<BotConfiguration> config = botConfigurationRepository.findByBotId(botId);
+            if (config.isEmpty()) {
+                return false;
+            }
+            storedHash = webhookKeyHashCache.putIfAbsent(botId, config.get().getWebhookKeyHash());
+        }
+        return storedHash.length > 0 && MessageDigest.isEqual(storedHash, digestApiKey(apiKey));
     }
 
     /**
@@ -190,18 +263,18 @@ public class BotConfigurationService {
 
 
     /**
-     * Decrypt sensitive data in a bot configuration.
+     * Decrypt sensitive data in a bot configuration, with the key version it was encrypted with.
      *
      * @param config The bot configuration with encrypted data
      * @return The bot configuration with decrypted data in transient fields
      */
     private BotConfiguration decryptSensitiveData(BotConfiguration config) {
         if (config.getEncryptedApiKey() != null) {
-            config.setApiKey(encryptionService.decrypt(config.getEncryptedApiKey()));
+            config.setApiKey(encryptionService.decrypt(config.getEncryptedApiKey(), config.getKeyVersion()));
         }
 
         if (config.getEncryptedApiSecret() != null) {
-            config.setApiSecret(encryptionService.decrypt(config.getEncryptedApiSecret()));
+            config.setApiSecret(encryptionService.decrypt(config.getEncryptedApiSecret(), config.getKeyVersion()));
         }
 
         return config;
@@ -225,10 +298,19 @@ public class BotConfigurationService {
      * @return The hashed API key
      */
     private String hashApiKey(String apiKey) {
+        return Base64.getEncoder().encodeToString(digestApiKey(apiKey));
+    }
+
+    /**
+     * Hash an API key using SHA-256.
+     *
+     * @param apiKey The API key to hash
+     * @return The raw hash
+     */
+    private byte[] digestApiKey(String apiKey) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(apiKey.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
+            return digest.digest(apiKey.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException e) {
             //TODO cover this case with unit tests
             throw new RuntimeException("Hashing failed", e);
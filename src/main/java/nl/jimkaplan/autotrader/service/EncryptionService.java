@@ -1,5 +1,6 @@
 package nl.jimkaplan.autotrader.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -7,25 +8,80 @@ import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * Service for encrypting and decrypting sensitive data.
  * Uses AES-256 encryption in GCM mode for strong security with authentication.
+ * <p>
+ * The master keys are kept in a keyring of versions: {@code encryption.master-key} is the current key, used for
+ * all new encryptions under {@code encryption.key-version}, and {@code encryption.previous-keys} holds the
+ * earlier keys as {@code version:key} pairs, so values encrypted with them can still be decrypted while
+ * {@link BotConfigurationReencryptionJob} moves them to the current key.
+ * <p>
+ * The keys are decoded once. Each call borrows a {@link CipherEngine} with its own Cipher and buffers from
+ * a pool. Calls made at the same time create engines as needed, but at most twice the number of processors
+ * are kept for reuse; the others are discarded after their call.
  */
 @Service
 public class EncryptionService {
-    private final String masterKey;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12; // 96 bits for GCM
+    private static final int TAG_LENGTH_BITS = 128;
+    // Version of values that were stored before the keyring, when there was only one key
+    private static final int INITIAL_KEY_VERSION = 1;
+    // Encryption is CPU bound, so more engines than this are rarely busy at the same time
+    private static final int MAX_IDLE_ENGINES = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final int currentKeyVersion;
+    private final Map<Integer, SecretKey> keys = new HashMap<>();
     private final SecureRandom secureRandom;
-
-    public EncryptionService(@Value("${encryption.master-key}") String masterKey) {
-        this.masterKey = masterKey;
+    private final Queue<CipherEngine> idle = new ArrayBlockingQueue<>(MAX_IDLE_ENGINES);
+
+    @Autowired
+    public EncryptionService(@Value("${encryption.master-key}") String masterKey,
+                             @Value("${encryption.key-version:1}") int keyVersion,
+                             @Value("${encryption.previous-keys:}") String previousKeys) {
+        this.currentKeyVersion = keyVersion;
+        this.keys.put(keyVersion, createKey(masterKey));
+        for (String entry : previousKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Previous encryption keys must be given as version:key pairs");
+            }
+            int version = Integer.parseInt(entry.substring(0, separator).trim());
+            if (keys.putIfAbsent(version, createKey(entry.substring(separator + 1).trim())) != null) {
+                throw new IllegalArgumentException("Duplicate encryption key version " + version);
+            }
+        }
         this.secureRandom = new SecureRandom();
     }
 
+    // Constructor for testing
+    EncryptionService(String masterKey) {
+        this(masterKey, INITIAL_KEY_VERSION, "");
+    }
+
+    /**
+     * Get the version of the key that new values are encrypted with.
+     *
+     * @return The current key version
+     */
+    public int getCurrentKeyVersion() {
+        return currentKeyVersion;
+    }
+
     /**
      * Encrypts the given plaintext using AES-256 in GCM mode.
      *
@@ -33,72 +89,130 @@ public class EncryptionService {
      * @return Base64-encoded encrypted string
      */
     public String encrypt(String plaintext) {
-        // Generate a random IV (Initialization Vector)
-        byte[] iv = new byte[12]; // 96 bits for GCM
-        secureRandom.nextBytes(iv);
-
+        CipherEngine engine = null;
         try {
-            // Create cipher instance
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-
-            // Create secret key
-            SecretKey key = new SecretKeySpec(
-                    Base64.getDecoder().decode(masterKey), "AES");
-
-            // Initialize cipher for encryption
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec);
-
-            // Encrypt
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-
-            // Combine IV and ciphertext
-            ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + ciphertext.length);
-            byteBuffer.put(iv);
-            byteBuffer.put(ciphertext);
-
-            // Encode as Base64 string
-            return Base64.getEncoder().encodeToString(byteBuffer.array());
+            engine = borrow();
+            return engine.encrypt(plaintext, keys.get(currentKeyVersion));
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
+        } finally {
+            release(engine);
         }
     }
 
     /**
-     * Decrypts the given ciphertext using AES-256 in GCM mode.
+     * Decrypts the given ciphertext using AES-256 in GCM mode, with the current key.
      *
      * @param ciphertext Base64-encoded encrypted string
      * @return Decrypted plaintext
      */
     public String decrypt(String ciphertext) {
+        return decrypt(ciphertext, currentKeyVersion);
+    }
+
+    /**
+     * Decrypts the given ciphertext using AES-256 in GCM mode, with the key it was encrypted with.
+     *
+     * @param ciphertext Base64-encoded encrypted string
+     * @param keyVersion Version of the key the ciphertext was encrypted with; null for values stored before key
+     *                   versions were recorded
+     * @return Decrypted plaintext
+     */
+    public String decrypt(String ciphertext, Integer keyVersion) {
+        CipherEngine engine = null;
         try {
-            // Decode from Base64
-            byte[] ciphertextBytes = Base64.getDecoder().decode(ciphertext);
+            SecretKey key = keys.get(keyVersion != null ? keyVersion : INITIAL_KEY_VERSION);
+            if (key == null) {
+                throw new IllegalStateException("No encryption key configured for key version " + keyVersion);
+            }
+            engine = borrow();
+            return engine.decrypt(ciphertext, key);
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed", e);
+        } finally {
+            release(engine);
+        }
+    }
 
-            // Extract IV and ciphertext
-            ByteBuffer byteBuffer = ByteBuffer.wrap(ciphertextBytes);
-            byte[] iv = new byte[12];
-            byteBuffer.get(iv);
-            byte[] encrypted = new byte[byteBuffer.remaining()];
-            byteBuffer.get(encrypted);
+    private static SecretKey createKey(String base64Key) {
+        return new SecretKeySpec(Base64.getDecoder().decode(base64Key), "AES");
+    }
 
-            // Create cipher instance
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    private CipherEngine borrow() throws GeneralSecurityException {
+        CipherEngine engine = idle.poll();
+        return engine != null ? engine : new CipherEngine(Cipher.getInstance(TRANSFORMATION));
+    }
 
-            // Create secret key
-            SecretKey key = new SecretKeySpec(
-                    Base64.getDecoder().decode(masterKey), "AES");
+    private void release(CipherEngine engine) {
+        if (engine != null) {
+            // Dropped if the pool is full
+            idle.offer(engine);
+        }
+    }
 
-            // Initialize cipher for decryption
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.DECRYPT_MODE, key, parameterSpec);
+    /**
+     * A Cipher with reusable buffers for the decoded ciphertext and the plaintext. The encrypted form is
+     * {@code Base64(iv + ciphertext + tag)}.
+     * Not thread-safe; used by one call at a time through the pool.
+     */
+    private final class CipherEngine {
 
-            // Decrypt
-            byte[] decrypted = cipher.doFinal(encrypted);
+        private final Cipher cipher;
+        private byte[] input = new byte[128];
+        private byte[] output = new byte[128];
 
-            return new String(decrypted, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException("Decryption failed", e);
+        private CipherEngine(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        private String encrypt(String plaintext, SecretKey key) throws GeneralSecurityException {
+            byte[] plaintextBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+            try {
+                byte[] iv = new byte[IV_LENGTH];
+                secureRandom.nextBytes(iv);
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+
+                // The IV goes in front of the ciphertext
+                output = ensureCapacity(output, IV_LENGTH + cipher.getOutputSize(plaintextBytes.length));
+                System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+                int length = IV_LENGTH + cipher.doFinal(plaintextBytes, 0, plaintextBytes.length, output, IV_LENGTH);
+                return Base64.getEncoder().encodeToString(Arrays.copyOf(output, length));
+            } finally {
+                Arrays.fill(plaintextBytes, (byte) 0);
+            }
+        }
+
+        private String decrypt(String ciphertext, SecretKey key) throws GeneralSecurityException {
+            int length = decodeBase64(ciphertext);
+            if (length < IV_LENGTH + TAG_LENGTH_BITS / 8) {
+                throw new IllegalArgumentException("Ciphertext too short");
+            }
+
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, input, 0, IV_LENGTH));
+            output = ensureCapacity(output, cipher.getOutputSize(length - IV_LENGTH));
+            int decrypted = cipher.doFinal(input, IV_LENGTH, length - IV_LENGTH, output, 0);
+            try {
+                return new String(output, 0, decrypted, StandardCharsets.UTF_8);
+            } finally {
+                // The buffer is reused, so do not leave the plaintext in it
+                Arrays.fill(output, 0, decrypted, (byte) 0);
+            }
+        }
+
+        /**
+         * Decode a Base64 string into the input buffer.
+         *
+         * @return The number of decoded bytes
+         */
+        private int decodeBase64(String encoded) {
+            // Characters outside ASCII become '?', which the decoder rejects
+            byte[] source = encoded.getBytes(StandardCharsets.US_ASCII);
+            input = ensureCapacity(input, source.length / 4 * 3 + 3);
+            return Base64.getDecoder().decode(source, input);
+        }
+
+        private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+            return buffer.length >= capacity ? buffer : new byte[Math.max(buffer.length * 2, capacity)];
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package nl.jimkaplan.autotrader.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Fetch stage for the data a trade decision needs (balances, prices).
+ * Independent Bitvavo lookups run in parallel on their own executor, so the latency before an order is that of
+ * the slowest lookup instead of the sum of all of them. All lookups of a stage share a single deadline,
+ * {@code trading.pre-trade.deadline}. The executor is not the trading executor the alert runs on, since the alert
+ * blocks on its lookups and a busy fixed pool would never get to them.
+ */
+@Component
+public class PreTradeFetcher {
+
+    private final ExecutorService preTradeExecutor;
+    private final Duration deadline;
+
+    public PreTradeFetcher(@Qualifier("preTradeExecutor") ExecutorService preTradeExecutor,
+                           @Value("${trading.pre-trade.deadline:PT5S}") Duration deadline) {
+        this.preTradeExecutor = preTradeExecutor;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Fetch a single value. There is nothing to run in parallel, so the lookup runs on the calling thread and is
+     * bounded by the timeouts of the client it calls.
+     *
+     * @param lookup The lookup
+     * @return The value
+     */
+    public <T> T fetch(Supplier<T> lookup) {
+        return lookup.get();
+    }
+
+    /**
+     * Fetch two independent values in parallel within the deadline.
+     * If either lookup fails, its exception is thrown and the other lookup is cancelled.
+     *
+     * @param first  The first lookup
+     * @param second The second lookup
+     * @return Both values
+     * @throws IllegalStateException if the lookups did not complete within the deadline
+     */
+    public <A, B> Both<A, B> fetch(Supplier<A> first, Supplier<B> second) {
+        CompletableFuture<A> firstFuture = new CompletableFuture<>();
+        CompletableFuture<B> secondFuture = new CompletableFuture<>();
+        Future<?> firstTask = submit(first, firstFuture);
+        Future<?> secondTask = submit(second, secondFuture);
+        // Completes as soon as both succeed or either fails
+        CompletableFuture<Void> both = new CompletableFuture<>();
+        BiConsumer<Object, Throwable> onComplete = (value, error) -> {
+            if (error != null) {
+                both.completeExceptionally(error);
+            } else if (firstFuture.isDone() && secondFuture.isDone()) {
+                both.complete(null);
+            }
+        };
+        firstFuture.whenComplete(onComplete);
+        secondFuture.whenComplete(onComplete);
+        try {
+            await(both);
+        } catch (RuntimeException e) {
+            firstTask.cancel(true);
+            secondTask.cancel(true);
+            throw e;
+        }
+        return new Both<>(firstFuture.join(), secondFuture.join());
+    }
+
+    // Submitted as a plain task, so cancelling it interrupts the lookup (cancelling a CompletableFuture does not)
+    private <T> Future<?> submit(Supplier<T> lookup, CompletableFuture<T> result) {
+        return preTradeExecutor.submit(() -> {
+            try {
+                result.complete(lookup.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void await(CompletableFuture<?> future) {
+        try {
+            future.get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Pre-trade data not available within " + deadline, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Pre-trade lookup failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pre-trade data", e);
+        }
+    }
+
+    /**
+     * The values of two parallel lookups.
+     */
+    public record Both<A, B>(A first, B second) {
+    }
+}
@@ -0,0 +1,181 @@
+package nl.jimkaplan.autotrader.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the active bots per trading pair, used to fan out a single alert to every bot
+ * trading the same pair without a database query per alert.
+ * The index is loaded on startup and kept up to date by {@link BotConfigurationService} whenever a bot
+ * configuration is saved, activated or deactivated. Readers get immutable snapshots and never block.
+ * <p>
+ * A reload reads the database without holding the lock, so updates are not held up by it; updates made while it
+ * runs are applied again to the reloaded index before it replaces the current one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TradingPairIndex {
+
+    private final BotConfigurationRepository botConfigurationRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+    // Guarded by this
+    private List<BotConfiguration> updatesDuringReload;
+    private int reloadsInProgress;
+
+    /**
+     * Rebuild the index from the active bot configurations in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        reload(() -> botConfigurationRepository.findByActive(true));
+    }
+
+    /**
+     * Rebuild the index from the bot configurations returned by a loader, so a caller that needs the
+     * configurations itself does not read them twice. Inactive configurations are skipped.
+     *
+     * @param loader Reads the bot configurations from the database
+     * @return The configurations returned by the loader
+     */
+    public List<BotConfiguration> reload(Supplier<List<BotConfiguration>> loader) {
+        synchronized (this) {
+            if (reloadsInProgress++ == 0) {
+                updatesDuringReload = new ArrayList<>();
+            }
+        }
+        List<BotConfiguration> configs = null;
+        Snapshot loaded = null;
+        try {
+            configs = loader.get();
+            loaded = Snapshot.of(configs);
+        } finally {
+            synchronized (this) {
+                if (loaded != null) {
+                    for (BotConfiguration update : updatesDuringReload) {
+                        loaded = loaded.with(update);
+                    }
+                    snapshot = loaded;
+                }
+                if (--reloadsInProgress == 0) {
+                    updatesDuringReload = null;
+                }
+            }
+        }
+        log.info("Loaded trading pair index with {} active bots on {} trading pairs",
+                loaded.tradingPairByBotId().size(), loaded.botIdsByTradingPair().size());
+        return configs;
+    }
+
+    /**
+     * Get the IDs of the active bots trading a pair.
+     *
+     * @param tradingPair The trading pair (e.g., "BTCEUR")
+     * @return Immutable set of bot IDs, empty if no active bot trades the pair
+     */
+    public Set<String> getActiveBotIds(String tradingPair) {
+        if (tradingPair == null) {
+            return Set.of();
+        }
+        return snapshot.botIdsByTradingPair().getOrDefault(tradingPair, Set.of());
+    }
+
+    /**
+     * Get the trading pairs that at least one active bot trades.
+     *
+     * @return Immutable set of trading pairs (e.g., "BTCEUR")
+     */
+    public Set<String> getTradingPairs() {
+        return snapshot.botIdsByTradingPair().keySet();
+    }
+
+    /**
+     * Get the trading pair of every active bot.
+     *
+     * @return Immutable map of bot ID to trading pair
+     */
+    public Map<String, String> getTradingPairsByBotId() {
+        return snapshot.tradingPairByBotId();
+    }
+
+    /**
+     * Add, move or remove a bot according to its current configuration.
+     * Inactive bots and bots without a trading pair are removed from the index.
+     *
+     * @param config The bot configuration
+     */
+    public synchronized void update(BotConfiguration config) {
+        if (config.getBotId() == null) {
+            return;
+        }
+        snapshot = snapshot.with(config);
+        if (updatesDuringReload != null) {
+            updatesDuringReload.add(config);
+        }
+    }
+
+    /**
+     * Immutable state of the index, replaced as a whole on every change.
+     */
+    private record Snapshot(Map<String, Set<String>> botIdsByTradingPair, Map<String, String> tradingPairByBotId) {
+
+        private static Snapshot of(List<BotConfiguration> configs) {
+            Map<String, Set<String>> botIds = new HashMap<>();
+            Map<String, String> tradingPairs = new HashMap<>();
+            for (BotConfiguration config : configs) {
+                if (Boolean.TRUE.equals(config.getActive()) && config.getBotId() != null
+                        && config.getTradingPair() != null) {
+                    botIds.computeIfAbsent(config.getTradingPair(), pair -> new HashSet<>()).add(config.getBotId());
+                    tradingPairs.put(config.getBotId(), config.getTradingPair());
+                }
+            }
+            return freeze(botIds, tradingPairs);
+        }
+
+        private Snapshot with(BotConfiguration config) {
+            String botId = config.getBotId();
+            Map<String, Set<String>> botIds = new HashMap<>(botIdsByTradingPair);
+            Map<String, String> tradingPairs = new HashMap<>(tradingPairByBotId);
+
+            String previousPair = tradingPairs.remove(botId);
+            if (previousPair != null) {
+                Set<String> ids = new HashSet<>(botIds.get(previousPair));
+                ids.remove(botId);
+                if (ids.isEmpty()) {
+                    botIds.remove(previousPair);
+                } else {
+                    botIds.put(previousPair, ids);
+                }
+            }
+
+            String tradingPair = config.getTradingPair();
+            if (Boolean.TRUE.equals(config.getActive()) && tradingPair != null) {
+                Set<String> ids = new HashSet<>(botIds.getOrDefault(tradingPair, Set.of()));
+                ids.add(botId);
+                botIds.put(tradingPair, ids);
+                tradingPairs.put(botId, tradingPair);
+            }
+            return freeze(botIds, tradingPairs);
+        }
+
+        private static Snapshot freeze(Map<String, Set<String>> botIds, Map<String, String> tradingPairs) {
+            Map<String, Set<String>> frozen = new HashMap<>();
+            botIds.forEach((pair, ids) -> frozen.put(pair, Set.copyOf(ids)));
+            return new Snapshot(Map.copyOf(frozen), Map.copyOf(tradingPairs));
+        }
+    }
+}
@@ -3,24 +3,30 @@ package nl.jimkaplan.autotrader.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.jimkaplan.autotrader.bitvavo.client.BitvavoApiClient;
+import nl.jimkaplan.autotrader.bitvavo.client.BitvavoWebSocketOrderClient;
 import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
 import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
 import nl.jimkaplan.autotrader.bitvavo.model.GetAccountBalanceResponse;
-import nl.jimkaplan.autotrader.bitvavo.model.GetPriceResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BalanceLedger;
+import nl.jimkaplan.autotrader.bitvavo.service.MarketPriceService;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
 import nl.jimkaplan.autotrader.model.Order;
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
 import nl.jimkaplan.autotrader.model.document.Position;
 import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
 import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import nl.jimkaplan.autotrader.tradingview.service.AlertDeduplicator;
 import nl.jimkaplan.autotrader.tradingview.service.TradingViewAlertService;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.time.Instant;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Service for processing TradingView alerts and executing trades.
@@ -37,6 +43,11 @@ public class TradingService {
     private final OrderService orderService;
     private final PositionService positionService;
     private final BitvavoApiClient bitvavoApiClient;
+    private final AlertDeduplicator alertDeduplicator;
+    private final PreTradeFetcher preTradeFetcher;
+    private final MarketPriceService marketPriceService;
+    private final BalanceLedger balanceLedger;
+    private final BitvavoWebSocketOrderClient webSocketOrderClient;
 
     // Minimum EUR amount for trades
     private static final double MIN_EUR_AMOUNT = 5.0;
@@ -46,17 +57,99 @@ public class TradingService {
      *
      * @param request The alert request from TradingView
      * @throws IllegalArgumentException if the request is invalid
+     * @throws DuplicateAlertException  if the same alert was already received
      */
     public void validateAndProcessAlert(TradingViewAlertRequest request) {
+        claimAlert(request);
+        processClaimedAlert(request);
+    }
+
+    /**
+     * Validate an alert and claim it, so that retries of the same alert are rejected as duplicates.
+     *
+     * @param request The alert request from TradingView
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws DuplicateAlertException  if the same alert was already received
+     */
+    public void claimAlert(TradingViewAlertRequest request) {
         // Validate request
         validateRequest(request);
 
-        // Get bot configuration
-        BotConfiguration botConfig = getBotConfiguration(request.getBotId());
+        // Reject retries of an alert that was already received before doing any work
+        if (!alertDeduplicator.tryAcquire(request)) {
+            throw new DuplicateAlertException("Duplicate alert for bot: " + request.getBotId());
+        }
+    }
+
+    /**
+     * Store and execute an alert that was claimed with {@link #claimAlert(TradingViewAlertRequest)}.
+     *
+     * @param request The claimed alert request
+     * @throws IllegalArgumentException if the alert does not match the bot configuration
+     */
+    public void processClaimedAlert(TradingViewAlertRequest request) {
+        BotConfiguration botConfig;
+        try {
+            // Get bot configuration
+            botConfig = getBotConfiguration(request.getBotId());
+
+            // Log the alert
+            saveAlert(request, null, null);
+        } catch (DuplicateAlertException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // The alert was not stored, so a retry must not be rejected as a duplicate
+            alertDeduplicator.release(request);
+            throw e;
+        }
 
-        // Log the alert
-        saveAlert(request);
+        executeAlert(request, botConfig);
+    }
+
+    /**
+     * Record a claimed alert that was superseded by a later alert for the same bot and is not executed.
+     *
+     * @param request The claimed alert request
+     */
+    public void recordCoalescedAlert(TradingViewAlertRequest request) {
+        saveAlert(request, TradingViewAlert.STATUS_COALESCED, "Superseded by a later alert for the same bot");
+    }
+
+    /**
+     * Process an alert that was accepted by the asynchronous webhook mode and claimed with
+     * {@link TradingViewAlertService#claimAlert}.
+     * The outcome is recorded on the alert document instead of being thrown to the caller.
+     *
+     * @param alert The claimed alert
+     */
+    public void processQueuedAlert(TradingViewAlert alert) {
+        TradingViewAlertRequest request = TradingViewAlertRequest.builder()
+                .botId(alert.getBotId())
+                .ticker(alert.getTicker())
+                .action(alert.getAction())
+                .timestamp(alert.getTimestamp().toString())
+                .parsedTimestamp(alert.getTimestamp())
+                .dryRun(alert.getDryRun())
+                .build();
+
+        try {
+            BotConfiguration botConfig = getBotConfiguration(request.getBotId());
+            executeAlert(request, botConfig);
+            tradingViewAlertService.updateAlertStatus(alert, TradingViewAlert.STATUS_PROCESSED, null);
+        } catch (Exception e) {
+            log.error("Error processing queued alert {} for bot: {}", alert.getId(), alert.getBotId(), e);
+            tradingViewAlertService.updateAlertStatus(alert, TradingViewAlert.STATUS_FAILED, e.getMessage());
+        }
+    }
 
+    /**
+     * Execute a validated alert for the given bot configuration.
+     *
+     * @param request   The alert request
+     * @param botConfig The bot configuration
+     * @throws IllegalArgumentException if the alert does not match the bot configuration
+     */
+    private void executeAlert(TradingViewAlertRequest request, BotConfiguration botConfig) {
         // Verify ticker matches bot's configured trading pair
         if (!request.getTicker().equals(botConfig.getTradingPair())) {
             throw new IllegalArgumentException(
@@ -76,7 +169,7 @@ public class TradingService {
         }
 
         // Process the alert based on action using switch expression
-        switch (request.getAction().toLowerCase()) {
+        switch (request.getAction()) {
             case "buy" -> processBuySignal(request, botConfig);
             case "sell" -> processSellSignal(request, botConfig);
             default -> throw new IllegalArgumentException(
@@ -88,12 +181,12 @@ public class TradingService {
     }
 
     /**
-     * Validate the TradingView alert request.
+     * Validate the TradingView alert request and normalize its action to lower case.
      *
      * @param request The alert request to validate
      * @throws IllegalArgumentException if the request is invalid
      */
-    private void validateRequest(TradingViewAlertRequest request) {
+    public void validateRequest(TradingViewAlertRequest request) {
         // Use pattern matching for null/empty checks
         String botId = request.getBotId();
         if (botId == null || botId.isEmpty()) {
@@ -109,15 +202,17 @@ public class TradingService {
         if (action == null || action.isEmpty()) {
             throw new IllegalArgumentException("Action is required");
         }
+        // Normalized once, so deduplication and the unique index on the stored alerts see the same value
+        request.setAction(action.toLowerCase(Locale.ROOT));
 
         String timestamp = request.getTimestamp();
         if (timestamp == null || timestamp.isEmpty()) {
             throw new IllegalArgumentException("Timestamp is required");
         }
 
-        // Validate timestamp format
+        // Validate timestamp format; the parsed value is kept on the request
         try {
-            DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(timestamp);
+            request.getParsedTimestamp();
         } catch (DateTimeParseException e) {
             throw new IllegalArgumentException("Invalid timestamp format. Expected format: yyyy-MM-ddTHH:mm:ssZ");
         }
@@ -126,14 +221,19 @@ public class TradingService {
     /**
      * Save the TradingView alert to the database.
      *
-     * @param request The alert request
+     * @param request      The alert request
+     * @param status       The processing status, or null
+     * @param errorMessage The reason for the status, or null
      */
-    private void saveAlert(TradingViewAlertRequest request) {
+    private void saveAlert(TradingViewAlertRequest request, String status, String errorMessage) {
         TradingViewAlert alert = TradingViewAlert.builder()
                 .botId(request.getBotId())
                 .ticker(request.getTicker())
                 .action(request.getAction())
-                .timestamp(Instant.parse(request.getTimestamp()))
+                .timestamp(request.getParsedTimestamp())
+                .dryRun(request.getDryRun())
+                .status(status)
+                .errorMessage(errorMessage)
                 .build();
 
         tradingViewAlertService.saveAlert(alert);
@@ -173,7 +273,7 @@ public class TradingService {
 
         try {
             // Check EUR balance
-            double eurBalance = getEurBalance(botConfig);
+            double eurBalance = preTradeFetcher.fetch(() -> getEurBalance(botConfig));
             log.info("EUR balance: {}", eurBalance);
 
             if (eurBalance < MIN_EUR_AMOUNT) {
@@ -191,6 +291,7 @@ public class TradingService {
                     .market(request.getTicker())
                     .side("buy")
                     .orderType("market")
+                    .clientOrderId(clientOrderId(request))
                     .amountQuote(BigDecimal.valueOf(eurBalance))
                     .build();
 
@@ -205,10 +306,10 @@ public class TradingService {
                 orderId = "dry-run-" + System.currentTimeMillis();
             } else {
                 // Send the order to Bitvavo in normal mode
-                orderResponse = bitvavoApiClient.post(
-                        "/order", orderRequest, CreateOrderResponse.class, botConfig.getApiKey(), botConfig.getApiSecret());
+                orderResponse = placeOrder(botConfig, orderRequest);
                 orderId = orderResponse.getOrderId().toString();
                 log.info("Buy order placed successfully: {}", orderId);
+                balanceLedger.recordOrder(botConfig.getApiKey(), orderRequest, orderResponse);
             }
 
             // Save order to database
@@ -245,9 +346,14 @@ public class TradingService {
         try {
             // Extract asset from ticker (e.g., "BTC" from "BTCEUR")
             String asset = request.getTicker().replace("EUR", "");
+            // Bitvavo expects ticker to be in the format like, "BTC-EUR" (with a dash between asset and EUR)
+            String assetTicker = asset + "-EUR";
 
-            // Check asset balance
-            double assetBalance = getAssetBalance(botConfig, asset);
+            // Get asset balance and price in parallel, the price does not depend on the balance
+            PreTradeFetcher.Both<Double, Double> balanceAndPrice = preTradeFetcher.fetch(
+                    () -> getAssetBalance(botConfig, asset),
+                    () -> getAssetPrice(assetTicker));
+            double assetBalance = balanceAndPrice.first();
             log.info("{} balance: {}", asset, assetBalance);
 
             if (assetBalance == 0.0) {
@@ -259,10 +365,7 @@ public class TradingService {
                 return;
             }
 
-            // Get asset price
-            // Bitvavo expects ticker to be in the format like, "BTC-EUR" (with a dash between asset and EUR)
-            String assetTicker = asset + "-EUR";
-            double assetPrice = getAssetPrice(assetTicker, botConfig);
+            double assetPrice = balanceAndPrice.second();
             log.info("{} price: {} EUR", asset, assetPrice);
 
             // Calculate asset worth in EUR
@@ -283,6 +386,7 @@ public class TradingService {
                     .market(request.getTicker())
                     .side("sell")
                     .orderType("market")
+                    .clientOrderId(clientOrderId(request))
                     .amount(BigDecimal.valueOf(assetBalance))
                     .build();
 
@@ -297,10 +401,10 @@ public class TradingService {
                 orderId = "dry-run-" + System.currentTimeMillis();
             } else {
                 // Send the order to Bitvavo in normal mode
-                orderResponse = bitvavoApiClient.post(
-                        "/order", orderRequest, CreateOrderResponse.class, botConfig.getApiKey(), botConfig.getApiSecret());
+                orderResponse = placeOrder(botConfig, orderRequest);
                 orderId = orderResponse.getOrderId().toString();
                 log.info("Sell order placed successfully: {}", orderId);
+                balanceLedger.recordOrder(botConfig.getApiKey(), orderRequest, orderResponse);
             }
 
             // Save order to database
@@ -324,6 +428,41 @@ public class TradingService {
         }
     }
 
+    /**
+     * Derive the client order ID of the order for an alert from the alert itself, so that every attempt to place
+     * the order carries the same ID and Bitvavo can tell a retry from a new order.
+     *
+     * @param request The alert request
+     * @return The client order ID
+     */
+    static UUID clientOrderId(TradingViewAlertRequest request) {
+        String alert = String.join("|", request.getBotId(), request.getTicker(), request.getAction(),
+                request.getTimestamp());
+        return UUID.nameUUIDFromBytes(alert.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send an order to Bitvavo over the order transport of the bot.
+     * If the order fails, the balance ledger of the account is discarded: the order may have been sized from a
+     * wrong balance, or may have been placed after all, so the next alert reads the balances from REST.
+     *
+     * @param botConfig    The bot configuration
+     * @param orderRequest The order
+     * @return The placed order
+     */
+    private CreateOrderResponse placeOrder(BotConfiguration botConfig, CreateOrderRequest orderRequest) {
+        try {
+            if (botConfig.getOrderTransport() == BotConfiguration.OrderTransport.WEBSOCKET) {
+                return webSocketOrderClient.createOrder(orderRequest, botConfig.getApiKey(), botConfig.getApiSecret());
+            }
+            return bitvavoApiClient.post(
+                    "/order", orderRequest, CreateOrderResponse.class, botConfig.getApiKey(), botConfig.getApiSecret());
+        } catch (RuntimeException e) {
+            balanceLedger.invalidate(botConfig.getApiKey());
+            throw e;
+        }
+    }
+
     /**
      * Get the EUR balance for a bot.
      *
@@ -335,13 +474,18 @@ public class TradingService {
     }
 
     /**
-     * Get the asset balance for a bot.
+     * Get the asset balance for a bot, from the balance ledger when it is up to date.
      *
      * @param botConfig The bot configuration
      * @param asset     The asset symbol (e.g., "BTC")
      * @return The asset balance
      */
     double getAssetBalance(BotConfiguration botConfig, String asset) {
+        BigDecimal available = balanceLedger.getAvailable(botConfig.getApiKey(), asset);
+        if (available != null) {
+            return available.doubleValue();
+        }
+
         GetAccountBalanceResponse[] balanceResponses = bitvavoApiClient.get(
                 "/balance?symbol=" + asset, GetAccountBalanceResponse[].class, botConfig.getApiKey(), botConfig.getApiSecret());
 
@@ -353,15 +497,13 @@ public class TradingService {
     }
 
     /**
-     * Get the price of an asset.
+     * Get the price of an asset, from the ticker stream when it is recent.
      *
-     * @param ticker The ticker (e.g., "BTCEUR")
+     * @param ticker The market (e.g., "BTC-EUR")
      * @return The asset price in EUR
      */
-    double getAssetPrice(String ticker, BotConfiguration botConfig) {
-        GetPriceResponse priceResponse = bitvavoApiClient.get(
-                "/ticker/price?market=" + ticker, GetPriceResponse.class, botConfig.getApiKey(), botConfig.getApiSecret());
-        return priceResponse.getPrice().doubleValue();
+    double getAssetPrice(String ticker) {
+        return marketPriceService.getLastPrice(ticker).doubleValue();
     }
 
     /**
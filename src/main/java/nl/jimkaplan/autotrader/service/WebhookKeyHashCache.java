@@ -0,0 +1,102 @@
+package nl.jimkaplan.autotrader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory cache of the webhook API key hash per bot, so validating a webhook API key does not need a
+ * database round-trip. Hashes are kept decoded, ready for a constant-time comparison.
+ * <p>
+ * Entries are written through by {@link BotConfigurationService} whenever it saves a bot configuration, so a
+ * new webhook API key takes effect immediately on this instance. Entries expire after
+ * {@code webhook.api-key-cache.ttl}, which bounds how long a change made by another instance goes unnoticed.
+ */
+@Component
+public class WebhookKeyHashCache {
+
+    private static final byte[] NO_KEY = new byte[0];
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    @Autowired
+    public WebhookKeyHashCache(@Value("${webhook.api-key-cache.ttl:PT5M}") Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    // Constructor for testing
+    WebhookKeyHashCache(Duration ttl, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Get the cached webhook API key hash of a bot.
+     *
+     * @param botId The bot ID
+     * @return The decoded hash, an empty array if the bot has no webhook API key, or null if not cached
+     */
+    public byte[] get(String botId) {
+        Entry entry = entries.get(botId);
+        if (entry == null || entry.expiresAtNanos() - nanoTime.getAsLong() < 0) {
+            return null;
+        }
+        return entry.hash();
+    }
+
+    /**
+     * Cache a webhook API key hash that was just written. Replaces any cached hash.
+     *
+     * @param botId          The bot ID
+     * @param webhookKeyHash The Base64 encoded hash, or null if the bot has no webhook API key
+     */
+    public void put(String botId, String webhookKeyHash) {
+        entries.put(botId, entry(webhookKeyHash));
+    }
+
+    /**
+     * Cache a webhook API key hash that was read from the database, unless a newer hash was written in the
+     * meantime.
+     *
+     * @param botId          The bot ID
+     * @param webhookKeyHash The Base64 encoded hash, or null if the bot has no webhook API key
+     * @return The decoded hash that is cached now, an empty array if the bot has no webhook API key
+     */
+    public byte[] putIfAbsent(String botId, String webhookKeyHash) {
+        Entry loaded = entry(webhookKeyHash);
+        return entries.compute(botId, (id, existing) ->
+                existing == null || existing.expiresAtNanos() - nanoTime.getAsLong() < 0 ? loaded : existing).hash();
+    }
+
+    /**
+     * Remove the cached hash of a bot.
+     *
+     * @param botId The bot ID
+     */
+    public void invalidate(String botId) {
+        entries.remove(botId);
+    }
+
+    /**
+     * Remove all cached hashes.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry entry(String webhookKeyHash) {
+        byte[] hash = webhookKeyHash == null ? NO_KEY : Base64.getDecoder().decode(webhookKeyHash);
+        return new Entry(hash, nanoTime.getAsLong() + ttlNanos);
+    }
+
+    private record Entry(byte[] hash, long expiresAtNanos) {
+    }
+}
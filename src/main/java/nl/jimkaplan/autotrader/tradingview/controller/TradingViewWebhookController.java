@@ -10,9 +10,18 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
 import nl.jimkaplan.autotrader.service.BotConfigurationService;
 import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse;
 import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import nl.jimkaplan.autotrader.tradingview.security.WebhookSourceAuthorizer;
+import nl.jimkaplan.autotrader.tradingview.service.AlertBroadcastService;
+import nl.jimkaplan.autotrader.tradingview.service.AlertQueueService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,8 +30,6 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  * Controller for handling TradingView webhook requests.
  * Receives alerts from TradingView and processes them.
@@ -36,11 +43,11 @@ public class TradingViewWebhookController {
 
     private final BotConfigurationService botConfigurationService;
     private final TradingService tradingService;
-    private final List<String> ALLOWED_IPS = List.of(
-            "52.89.214.238",
-            "34.212.75.30",
-            "54.218.53.128",
-            "52.32.178.7");
+    private final AlertQueueService alertQueueService;
+    private final BotAlertExecutor botAlertExecutor;
+    private final AlertBroadcastService alertBroadcastService;
+    private final AlertCoalescer alertCoalescer;
+    private final WebhookSourceAuthorizer webhookSourceAuthorizer;
 
     /**
      * Handles webhook requests from TradingView.
@@ -53,12 +60,21 @@ public class TradingViewWebhookController {
     @Operation(
             summary = "Process TradingView alert",
             description = "Receives and processes alerts from TradingView to execute trading actions. " +
-                          "Validates the request based on IP address and API key before processing."
+                          "Validates the request based on IP address and API key before processing. " +
+                          "When asynchronous mode is enabled, the alert is queued and executed in the background."
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
-                    description = "Alert processed successfully"
+                    description = "Alert processed successfully, or ignored because the same alert was already received",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            schema = @Schema(type = "string")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Alert accepted and queued for processing (asynchronous mode)"
             ),
             @ApiResponse(
                     responseCode = "400",
@@ -83,6 +99,14 @@ public class TradingViewWebhookController {
                             mediaType = "text/plain",
                             schema = @Schema(type = "string")
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Alert queue is full (asynchronous mode), the alert should be retried",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            schema = @Schema(type = "string")
+                    )
             )
     })
     @PostMapping("/tradingview")
@@ -103,6 +127,106 @@ public class TradingViewWebhookController {
         return processValidationResult(validationResult, request, httpRequest);
     }
 
+    /**
+     * Handles broadcast webhook requests from TradingView.
+     * A single alert for a ticker is executed for every active bot trading that pair.
+     *
+     * @param apiKey      The broadcast API key for authentication
+     * @param request     The alert request from TradingView, the bot ID is ignored
+     * @param httpRequest The HTTP request object used for IP validation
+     * @return ResponseEntity with the per-bot results
+     */
+    @Operation(
+            summary = "Broadcast TradingView alert",
+            description = "Receives an alert for a ticker and executes it for every active bot trading that pair, " +
+                          "in parallel. Whichever allowed IP address the request comes from, the X-API-KEY header must hold " +
+                          "the broadcast API key (webhook.broadcast.api-key), not the key of a single bot. " +
+                          "When asynchronous mode is enabled, the alert is queued for every bot."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Alert processed, the body contains the result per bot",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BroadcastAlertResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Alert queued for processing (asynchronous mode), the body contains the result per bot",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = BroadcastAlertResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid alert data",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            schema = @Schema(type = "string")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized - Either IP address not in allowed list or invalid broadcast API key",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            schema = @Schema(type = "string")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "No active bot trades the ticker",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            schema = @Schema(type = "string")
+                    )
+            )
+    })
+    @PostMapping("/tradingview/broadcast")
+    public ResponseEntity<?> handleBroadcastWebhook(
+            @Parameter(description = "Broadcast API key for authentication", allowEmptyValue = true)
+            @RequestHeader(value = "X-API-KEY", required = false) String apiKey,
+
+            @Parameter(description = "Alert details from TradingView", required = true)
+            @RequestBody TradingViewAlertRequest request,
+
+            @Parameter(description = "HTTP request object used for IP validation", hidden = true)
+            HttpServletRequest httpRequest
+    ) {
+        log.info("Received TradingView broadcast alert for ticker: {}, action: {}",
+                request.getTicker(), request.getAction());
+
+        if (webhookSourceAuthorizer.authorize(httpRequest) == WebhookSourceAuthorizer.Access.DENIED) {
+            log.warn("Unauthorized access attempt from IP: {}", webhookSourceAuthorizer.resolveClientAddress(httpRequest));
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized access");
+        }
+        // A broadcast reaches every bot on the pair, so even trusted sources must present the broadcast API key
+        if (!alertBroadcastService.validateApiKey(apiKey)) {
+            log.warn("Invalid broadcast API key for ticker: {}", request.getTicker());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid API key");
+        }
+
+        try {
+            BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+            if (response.getResults().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("No active bots for trading pair: " + request.getTicker());
+            }
+            HttpStatus status = alertQueueService.isEnabled() ? HttpStatus.ACCEPTED : HttpStatus.OK;
+            return ResponseEntity.status(status).body(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing TradingView broadcast alert", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error processing alert: " + e.getMessage());
+        }
+    }
+
     // This method is protected to allow overriding in tests
     protected ResponseEntity<?> processValidationResult(ValidationResult validationResult,
                                                         TradingViewAlertRequest request,
@@ -116,16 +240,45 @@ public class TradingViewWebhookController {
 
         switch (validationResult) {
             case IP_NOT_ALLOWED:
-                log.warn("Unauthorized access attempt from IP: {}", httpRequest.getRemoteAddr());
+                log.warn("Unauthorized access attempt from IP: {}",
+                        webhookSourceAuthorizer.resolveClientAddress(httpRequest));
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized access");
             case INVALID_API_KEY:
                 log.warn("Invalid API key for bot: {}", request.getBotId());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid API key");
             case VALID:
                 try {
-                    // Process the alert
-                    tradingService.validateAndProcessAlert(request);
+                    if (alertQueueService.isEnabled()) {
+                        // Queue the alert and let the workers execute it
+                        alertQueueService.accept(request);
+                        return ResponseEntity.accepted().build();
+                    }
+
+                    if (alertCoalescer.isEnabled()) {
+                        // Claim the alert right away, then let it wait for later alerts of the same bot
+                        tradingService.claimAlert(request);
+                        AlertCoalescer.Outcome outcome = alertCoalescer.execute(request.getBotId(),
+                                request.getParsedTimestamp(),
+                                () -> tradingService.processClaimedAlert(request),
+                                () -> tradingService.recordCoalescedAlert(request));
+                        if (outcome == AlertCoalescer.Outcome.COALESCED) {
+                            return ResponseEntity.ok("Alert coalesced with a later alert for the same bot");
+                        }
+                        return ResponseEntity.ok().build();
+                    }
+
+                    // Process the alert, in order with other alerts for the same bot
+                    botAlertExecutor.execute(request.getBotId(), () -> tradingService.validateAndProcessAlert(request));
                     return ResponseEntity.ok().build();
+                } catch (DuplicateAlertException e) {
+                    // Acknowledge retries of an alert that was already received, so TradingView stops retrying
+                    log.info("Duplicate alert ignored: {}", e.getMessage());
+                    return ResponseEntity.ok("Duplicate alert ignored");
+                } catch (AlertQueueFullException e) {
+                    log.warn("Alert rejected: {}", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "1")
+                            .body(e.getMessage());
                 } catch (IllegalArgumentException e) {
                     // Bad request (invalid input)
                     log.warn("Bad request: {}", e.getMessage());
@@ -146,18 +299,18 @@ public class TradingViewWebhookController {
     ValidationResult validateRequest(TradingViewAlertRequest tradingViewAlertRequest,
                                      HttpServletRequest httpServletRequest, String apiKey) {
 
-        String remoteAddr = httpServletRequest.getRemoteAddr();
-        if (ALLOWED_IPS.contains(remoteAddr)) {
-            return ValidationResult.VALID;
-        } else if (isLocalhost(remoteAddr)) {
-            // If request origin is localhost, validate the API key
-            if (botConfigurationService.validateWebhookApiKey(tradingViewAlertRequest.getBotId(), apiKey)) {
+        switch (webhookSourceAuthorizer.authorize(httpServletRequest)) {
+            case TRUSTED:
                 return ValidationResult.VALID;
-            } else {
-                return ValidationResult.INVALID_API_KEY;
-            }
-        } else {
-            return ValidationResult.IP_NOT_ALLOWED;
+            case API_KEY_REQUIRED:
+                // If the request comes from a source that needs an API key, validate it
+                if (botConfigurationService.validateWebhookApiKey(tradingViewAlertRequest.getBotId(), apiKey)) {
+                    return ValidationResult.VALID;
+                } else {
+                    return ValidationResult.INVALID_API_KEY;
+                }
+            default:
+                return ValidationResult.IP_NOT_ALLOWED;
         }
     }
 
@@ -167,10 +320,6 @@ public class TradingViewWebhookController {
         IP_NOT_ALLOWED,
         INVALID_API_KEY
     }
-
-    private boolean isLocalhost(String remoteAddr) {
-        return remoteAddr.equals("127.0.0.1") || remoteAddr.equals("0:0:0:0:0:0:0:1") || remoteAddr.equals("::1");
-    }
 }
 
 
@@ -0,0 +1,118 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parser for TradingView alert timestamps.
+ * The format TradingView sends, {@code yyyy-MM-ddTHH:mm:ssZ} (optionally with fractional seconds), is parsed
+ * directly into epoch seconds without going through the {@link DateTimeFormatter} machinery. Any other
+ * ISO-8601 offset date-time falls back to {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}, so the accepted
+ * formats are the same as before.
+ */
+public final class AlertTimestampParser {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private AlertTimestampParser() {
+    }
+
+    /**
+     * Parse an alert timestamp.
+     *
+     * @param text The timestamp, e.g. "2024-01-01T12:00:00Z"
+     * @return The parsed instant
+     * @throws DateTimeParseException if the text is not an ISO-8601 offset date-time
+     */
+    public static Instant parse(String text) {
+        Instant instant = parseUtc(text);
+        if (instant != null) {
+            return instant;
+        }
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(text, Instant::from);
+    }
+
+    /**
+     * Fast path for {@code yyyy-MM-ddTHH:mm:ss[.S...]Z}.
+     *
+     * @return The parsed instant, or null if the text does not have this exact shape or is out of range
+     */
+    private static Instant parseUtc(String text) {
+        int length = text.length();
+        if (length < 20 || length > 30 || text.charAt(length - 1) != 'Z'
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return null;
+        }
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        int nanos = 0;
+        if (length > 20) {
+            // Fractional seconds: '.' followed by 1 to 9 digits
+            int fractionLength = length - 21;
+            if (text.charAt(19) != '.' || fractionLength < 1 || fractionLength > 9) {
+                return null;
+            }
+            int fraction = digits(text, 20, fractionLength);
+            if (fraction < 0) {
+                return null;
+            }
+            nanos = fraction;
+            for (int i = fractionLength; i < 9; i++) {
+                nanos *= 10;
+            }
+        } else if (text.charAt(19) != 'Z') {
+            return null;
+        }
+
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+
+    private static int digits(String text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Days since 1970-01-01 for a proleptic Gregorian date (same result as {@code LocalDate.toEpochDay()}).
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+}
@@ -0,0 +1,84 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small lock-free cache of canonical strings for short, recurring tokens such as bot IDs, tickers and actions.
+ * A token that is already cached is returned without allocating a new string. The table is fixed-size and
+ * direct-mapped, so a colliding token simply replaces the cached one; this keeps memory bounded no matter
+ * what clients send.
+ */
+final class TokenInterner {
+
+    // Longer values are unlikely to recur and are not cached
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    /**
+     * @param capacity The number of cached tokens, must be a power of two
+     */
+    TokenInterner(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Get the canonical string for a range of characters.
+     *
+     * @param chars  The character buffer
+     * @param offset The start of the token in the buffer
+     * @param length The length of the token
+     * @return The cached string with the same characters, or a new string that is cached from now on
+     */
+    String intern(char[] chars, int offset, int length) {
+        if (length > MAX_TOKEN_LENGTH) {
+            return new String(chars, offset, length);
+        }
+
+        // Same hash as String.hashCode(), so preloaded strings land in the same slot
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int index = index(hash);
+
+        String cached = table.get(index);
+        if (cached != null && matches(cached, chars, offset, length)) {
+            return cached;
+        }
+
+        String token = new String(chars, offset, length);
+        table.lazySet(index, token);
+        return token;
+    }
+
+    /**
+     * Add a token to the cache up front.
+     *
+     * @param token The token
+     */
+    void preload(String token) {
+        table.set(index(token.hashCode()), token);
+    }
+
+    private int index(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean matches(String cached, char[] chars, int offset, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads webhook bodies into {@link TradingViewAlertRequest} with the streaming
+ * {@link TradingViewAlertRequestReader} instead of Jackson data binding.
+ * Spring Boot registers converter beans ahead of the default converters, so this converter takes
+ * precedence for the alert request type only. It is read-only.
+ */
+@Component
+public class TradingViewAlertHttpMessageConverter extends AbstractHttpMessageConverter<TradingViewAlertRequest> {
+
+    private final TradingViewAlertRequestReader reader;
+
+    public TradingViewAlertHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.reader = new TradingViewAlertRequestReader(objectMapper.getFactory());
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TradingViewAlertRequest.class == clazz;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected TradingViewAlertRequest readInternal(Class<? extends TradingViewAlertRequest> clazz,
+                                                   HttpInputMessage inputMessage) throws IOException {
+        try {
+            return reader.read(inputMessage.getBody());
+        } catch (JacksonException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(TradingViewAlertRequest request, HttpOutputMessage outputMessage) {
+        throw new UnsupportedOperationException("TradingView alert requests are not written");
+    }
+}
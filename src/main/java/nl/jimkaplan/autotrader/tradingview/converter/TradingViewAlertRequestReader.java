@@ -0,0 +1,128 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Streaming reader for TradingView alert payloads.
+ * The small JSON body is read in a single pass with the Jackson streaming API instead of data binding:
+ * bot IDs, tickers and actions are interned so recurring values do not allocate, and the timestamp is
+ * parsed once and carried on the request as {@link TradingViewAlertRequest#getParsedTimestamp()}.
+ * <p>
+ * Field handling matches the data-binding path: unknown fields are skipped, scalar values are accepted
+ * for string fields, and a timestamp that cannot be parsed is left for request validation to reject.
+ */
+public class TradingViewAlertRequestReader {
+
+    private static final int INTERNER_CAPACITY = 1024;
+
+    private final JsonFactory jsonFactory;
+    private final TokenInterner interner = new TokenInterner(INTERNER_CAPACITY);
+
+    public TradingViewAlertRequestReader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+        interner.preload("buy");
+        interner.preload("sell");
+    }
+
+    /**
+     * Read an alert request from a JSON body.
+     *
+     * @param body The JSON body
+     * @return The alert request
+     * @throws IOException if the body is not a JSON object or a field has an unsupported type
+     */
+    public TradingViewAlertRequest read(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Read an alert request from a JSON body.
+     *
+     * @param body The JSON body
+     * @return The alert request
+     * @throws IOException if the body is not a JSON object or a field has an unsupported type
+     */
+    public TradingViewAlertRequest read(byte[] body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return read(parser);
+        }
+    }
+
+    private TradingViewAlertRequest read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+
+        TradingViewAlertRequest request = new TradingViewAlertRequest();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            switch (field) {
+                case "botId" -> request.setBotId(internedText(parser, valueToken));
+                case "ticker" -> request.setTicker(internedText(parser, valueToken));
+                case "action" -> request.setAction(internedText(parser, valueToken));
+                case "timestamp" -> readTimestamp(parser, valueToken, request);
+                case "dryRun" -> request.setDryRun(booleanValue(parser, valueToken));
+                default -> parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Unexpected token: " + token);
+        }
+        return request;
+    }
+
+    private String internedText(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a text value for field: " + parser.currentName());
+        }
+        return interner.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private void readTimestamp(JsonParser parser, JsonToken token, TradingViewAlertRequest request) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            request.setTimestamp(null);
+            return;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a text value for field: timestamp");
+        }
+
+        String timestamp = parser.getText();
+        request.setTimestamp(timestamp);
+        try {
+            request.setParsedTimestamp(AlertTimestampParser.parse(timestamp));
+        } catch (DateTimeParseException e) {
+            // Left unparsed; request validation rejects the timestamp with a proper message
+        }
+    }
+
+    private static Boolean booleanValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_NULL -> null;
+            case VALUE_STRING -> switch (parser.getText()) {
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                case "" -> null;
+                default -> throw new JsonParseException(parser, "Expected a boolean value for field: dryRun");
+            };
+            default -> throw new JsonParseException(parser, "Expected a boolean value for field: dryRun");
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package nl.jimkaplan.autotrader.tradingview.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response model for a broadcast TradingView alert.
+ * Reports the outcome of the alert for every bot it was fanned out to.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastAlertResponse {
+
+    private String ticker;
+
+    private String action;
+
+    private List<BotResult> results;
+
+    /**
+     * Outcome of a broadcast alert for a single bot.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BotResult {
+
+        private String botId;
+
+        private Status status;
+
+        /**
+         * Reason for a non-successful outcome, null otherwise.
+         */
+        private String message;
+    }
+
+    public enum Status {
+        /**
+         * The alert was executed for the bot.
+         */
+        EXECUTED,
+        /**
+         * The alert was queued for the bot (asynchronous mode).
+         */
+        QUEUED,
+        /**
+         * The alert was too old to execute when the bot's turn came.
+         */
+        DROPPED,
+        /**
+         * The alert was superseded by a later alert for the bot and not executed.
+         */
+        COALESCED,
+        /**
+         * The same alert was already received for the bot and was ignored.
+         */
+        DUPLICATE,
+        /**
+         * The alert queue was full; the alert was not queued for the bot.
+         */
+        REJECTED,
+        /**
+         * The alert failed for the bot.
+         */
+        FAILED
+    }
+}
@@ -1,9 +1,16 @@
 package nl.jimkaplan.autotrader.tradingview.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import nl.jimkaplan.autotrader.tradingview.converter.AlertTimestampParser;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 
 /**
  * Request model for TradingView webhook alerts.
@@ -40,4 +47,33 @@ public class TradingViewAlertRequest {
      * If true, all business logic will be executed except sending the order to Bitvavo.
      */
     private Boolean dryRun;
+
+    /**
+     * The timestamp parsed once, so validation, deduplication, persistence and execution do not each parse it.
+     * Cleared when the timestamp is set.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Instant parsedTimestamp;
+
+    public void setTimestamp(String timestamp) {
+        this.timestamp = timestamp;
+        this.parsedTimestamp = null;
+    }
+
+    /**
+     * Get the timestamp as an instant, parsing it on first use.
+     *
+     * @return The parsed timestamp
+     * @throws DateTimeParseException if the timestamp is not an ISO-8601 offset date-time
+     * @throws NullPointerException   if the timestamp is not set
+     */
+    @JsonIgnore
+    public Instant getParsedTimestamp() {
+        if (parsedTimestamp == null) {
+            parsedTimestamp = AlertTimestampParser.parse(timestamp);
+        }
+        return parsedTimestamp;
+    }
 }
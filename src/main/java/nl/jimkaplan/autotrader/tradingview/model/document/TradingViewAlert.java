@@ -14,6 +14,9 @@ import java.time.Instant;
 /**
  * Document class for storing TradingView alerts in MongoDB.
  * Maps to the 'tradingview_alerts' collection.
+ * An alert is identified by its bot ID, ticker, action and timestamp; the unique index created by
+ * {@link nl.jimkaplan.autotrader.tradingview.service.AlertIndexInitializer} rejects retries of an alert that was
+ * already stored.
  */
 @Data
 @Builder
@@ -23,15 +26,43 @@ import java.time.Instant;
 @Document(collection = "tradingview_alerts")
 public class TradingViewAlert extends BaseDocument {
 
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_PROCESSED = "PROCESSED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_DROPPED = "DROPPED";
+    public static final String STATUS_COALESCED = "COALESCED";
+
     @Field("botId")
     private String botId;
 
     @Field("ticker")
     private String ticker;
 
+    // Lower case, as normalized by TradingService.validateRequest
     @Field("action")
     private String action;
 
     @Field("timestamp")
     private Instant timestamp;
+
+    @Field("dry_run")
+    private Boolean dryRun;
+
+    /**
+     * Processing status of the alert: QUEUED, PROCESSING, PROCESSED, FAILED, DROPPED or COALESCED.
+     * Only set for alerts accepted through the asynchronous webhook mode and for coalesced alerts.
+     */
+    @Field("status")
+    private String status;
+
+    @Field("error_message")
+    private String errorMessage;
+
+    /**
+     * Until when the instance that claimed the alert for processing is expected to finish it.
+     * A PROCESSING alert whose lease has expired was interrupted and is marked as failed.
+     */
+    @Field("lease_expires_at")
+    private Instant leaseExpiresAt;
 }
\ No newline at end of file
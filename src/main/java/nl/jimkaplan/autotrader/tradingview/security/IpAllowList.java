@@ -0,0 +1,391 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable allow-list of IP addresses and CIDR blocks, IPv4 and IPv6, compiled into binary tries.
+ * A lookup walks at most 32 (IPv4) or 128 (IPv6) trie nodes while the address text is parsed, so it takes
+ * constant time regardless of the number of entries and does not allocate.
+ * <p>
+ * IPv4 entries also match their IPv4-mapped IPv6 form ({@code ::ffff:a.b.c.d}).
+ */
+public final class IpAllowList {
+
+    private static final IpAllowList EMPTY = compile(List.of());
+
+    // Trie walk states; non-negative states are node indexes
+    private static final int MATCHED = -1;
+    private static final int NOT_MATCHED = -2;
+    private static final int INVALID = -3;
+
+    private final Trie ipv4;
+    private final Trie ipv6;
+    private final List<String> entries;
+
+    private IpAllowList(Trie ipv4, Trie ipv6, List<String> entries) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.entries = entries;
+    }
+
+    /**
+     * Get the empty allow-list.
+     *
+     * @return An allow-list that matches nothing
+     */
+    public static IpAllowList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compile an allow-list. Blank entries are ignored.
+     *
+     * @param entries IP addresses (e.g. "52.89.214.238", "::1") and CIDR blocks (e.g. "10.0.0.0/8", "2001:db8::/32")
+     * @return The compiled allow-list
+     * @throws IllegalArgumentException if an entry is not an IP address or CIDR block
+     */
+    public static IpAllowList compile(Collection<String> entries) {
+        TrieBuilder ipv4 = new TrieBuilder();
+        TrieBuilder ipv6 = new TrieBuilder();
+        List<String> compiled = entries.stream()
+                .map(String::strip)
+                .filter(entry -> !entry.isEmpty())
+                .toList();
+
+        for (String entry : compiled) {
+            int slash = entry.indexOf('/');
+            String address = slash < 0 ? entry : entry.substring(0, slash);
+            byte[] bytes = toBytes(address);
+            if (bytes == null) {
+                throw new IllegalArgumentException("Invalid IP address or CIDR block: " + entry);
+            }
+
+            int maxPrefix = bytes.length * 8;
+            int prefix = slash < 0 ? maxPrefix : parsePrefix(entry, slash + 1, maxPrefix);
+            if (bytes.length == 4) {
+                ipv4.insert(bytes, 0, prefix);
+                // Also match the IPv4-mapped IPv6 form, ::ffff:0:0/96
+                byte[] mapped = new byte[16];
+                mapped[10] = (byte) 0xff;
+                mapped[11] = (byte) 0xff;
+                System.arraycopy(bytes, 0, mapped, 12, 4);
+                ipv6.insert(mapped, 0, 96 + prefix);
+            } else {
+                ipv6.insert(bytes, 0, prefix);
+            }
+        }
+        return new IpAllowList(ipv4.build(), ipv6.build(), compiled);
+    }
+
+    /**
+     * Check whether an address is on the allow-list.
+     *
+     * @param address The IP address as text, e.g. from {@code HttpServletRequest.getRemoteAddr()}
+     * @return true if the address is valid and matches an entry
+     */
+    public boolean contains(String address) {
+        return address != null && contains(address, 0, address.length());
+    }
+
+    /**
+     * Check whether the address in a range of a string is on the allow-list, without extracting it.
+     * Surrounding whitespace, brackets and an IPv6 zone ID are ignored.
+     *
+     * @param text  The text containing the address
+     * @param start The start of the address, inclusive
+     * @param end   The end of the address, exclusive
+     * @return true if the address is valid and matches an entry
+     */
+    public boolean contains(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start > 2 && text.charAt(start) == '[' && text.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        int colon = text.indexOf(':', start);
+        if (colon < 0 || colon >= end) {
+            return walkIpv4(text, start, end, null, 0, ipv4, 0) == MATCHED;
+        }
+        int zone = text.indexOf('%', start);
+        return walkIpv6(text, start, zone >= 0 && zone < end ? zone : end, null, ipv6) == MATCHED;
+    }
+
+    /**
+     * Check whether the allow-list has no entries.
+     *
+     * @return true if nothing matches
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Get the entries the allow-list was compiled from.
+     *
+     * @return The entries
+     */
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+
+    private static int parsePrefix(String entry, int start, int maxPrefix) {
+        int length = entry.length() - start;
+        if (length < 1 || length > 3) {
+            throw new IllegalArgumentException("Invalid CIDR prefix length: " + entry);
+        }
+        int prefix = 0;
+        for (int i = start; i < entry.length(); i++) {
+            int digit = entry.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid CIDR prefix length: " + entry);
+            }
+            prefix = prefix * 10 + digit;
+        }
+        if (prefix > maxPrefix) {
+            throw new IllegalArgumentException("Invalid CIDR prefix length: " + entry);
+        }
+        return prefix;
+    }
+
+    private static byte[] toBytes(String address) {
+        if (address.indexOf(':') < 0) {
+            byte[] bytes = new byte[4];
+            return walkIpv4(address, 0, address.length(), bytes, 0, null, 0) == INVALID ? null : bytes;
+        }
+        byte[] bytes = new byte[16];
+        return walkIpv6(address, 0, address.length(), bytes, null) == INVALID ? null : bytes;
+    }
+
+    /**
+     * Parse a dotted-quad IPv4 address, writing its bytes to {@code out} and/or walking {@code trie}.
+     *
+     * @return The trie state after the address, or {@link #INVALID}
+     */
+    private static int walkIpv4(String text, int start, int end, byte[] out, int outOffset, Trie trie, int node) {
+        int octets = 0;
+        int i = start;
+        while (octets < 4) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && digits < 4) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                digits++;
+                i++;
+            }
+            // Leading zeros are rejected, as some parsers read them as octal
+            if (digits == 0 || digits > 3 || value > 255 || (digits > 1 && text.charAt(i - digits) == '0')) {
+                return INVALID;
+            }
+            if (++octets < 4) {
+                if (i == end || text.charAt(i) != '.') {
+                    return INVALID;
+                }
+                i++;
+            }
+            node = emit(out, outOffset++, trie, node, value, 8);
+        }
+        return i == end ? finish(trie, node) : INVALID;
+    }
+
+    /**
+     * Parse an IPv6 address (with optional '::' compression and embedded IPv4), writing its bytes to
+     * {@code out} and/or walking {@code trie}. The text is scanned twice: first to validate it and count
+     * the groups, then to emit the groups with the right number of zero groups for '::'.
+     *
+     * @return The trie state after the address, or {@link #INVALID}
+     */
+    private static int walkIpv6(String text, int start, int end, byte[] out, Trie trie) {
+        int groups = 0;
+        int compressAt = -1;
+        int embeddedIpv4At = -1;
+        int i = start;
+        if (end - start >= 2 && text.charAt(i) == ':' && text.charAt(i + 1) == ':') {
+            compressAt = 0;
+            i += 2;
+        }
+        while (i < end) {
+            int segmentStart = i;
+            while (i < end && hexDigit(text.charAt(i)) >= 0) {
+                i++;
+            }
+            if (i < end && text.charAt(i) == '.') {
+                if (groups > 6) {
+                    return INVALID;
+                }
+                embeddedIpv4At = segmentStart;
+                groups += 2;
+                i = end;
+                break;
+            }
+            int digits = i - segmentStart;
+            if (digits == 0 || digits > 4 || groups == 8) {
+                return INVALID;
+            }
+            groups++;
+            if (i == end) {
+                break;
+            }
+            if (text.charAt(i) != ':' || ++i == end) {
+                return INVALID;
+            }
+            if (text.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return INVALID;
+                }
+                compressAt = groups;
+                i++;
+            }
+        }
+        if (compressAt < 0 ? groups != 8 : groups > 7) {
+            return INVALID;
+        }
+
+        int node = 0;
+        int group = 0;
+        i = start;
+        while (group < 8) {
+            if (group == compressAt) {
+                for (int zeros = 8 - groups; zeros > 0; zeros--) {
+                    node = emit(out, group * 2, trie, node, 0, 16);
+                    group++;
+                }
+                if (group == 8) {
+                    break;
+                }
+            }
+            if (i < end && text.charAt(i) == ':') {
+                i += text.charAt(i + 1) == ':' ? 2 : 1;
+            }
+            if (i == embeddedIpv4At) {
+                return walkIpv4(text, i, end, out, group * 2, trie, node);
+            }
+            int value = 0;
+            while (i < end && text.charAt(i) != ':') {
+                value = (value << 4) | hexDigit(text.charAt(i));
+                i++;
+            }
+            node = emit(out, group * 2, trie, node, value, 16);
+            group++;
+        }
+        return finish(trie, node);
+    }
+
+    // Only ASCII hex digits; Character.digit() would also accept other Unicode digits
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int emit(byte[] out, int outOffset, Trie trie, int node, int value, int bits) {
+        if (out != null) {
+            if (bits == 16) {
+                out[outOffset++] = (byte) (value >>> 8);
+            }
+            out[outOffset] = (byte) value;
+        }
+        return trie != null && node >= 0 ? trie.step(node, value, bits) : node;
+    }
+
+    private static int finish(Trie trie, int node) {
+        if (trie == null || node < 0) {
+            return node;
+        }
+        return trie.terminal[node] ? MATCHED : NOT_MATCHED;
+    }
+
+    /**
+     * Binary trie stored in flat arrays. Node 0 is the root; a child index of 0 means there is no child.
+     * A terminal node ends a prefix: every address below it matches.
+     */
+    private static final class Trie {
+        private final int[] zero;
+        private final int[] one;
+        private final boolean[] terminal;
+
+        private Trie(int[] zero, int[] one, boolean[] terminal) {
+            this.zero = zero;
+            this.one = one;
+            this.terminal = terminal;
+        }
+
+        private int step(int node, int value, int bits) {
+            for (int bit = bits - 1; bit >= 0; bit--) {
+                if (terminal[node]) {
+                    return MATCHED;
+                }
+                node = ((value >>> bit) & 1) == 0 ? zero[node] : one[node];
+                if (node == 0) {
+                    return NOT_MATCHED;
+                }
+            }
+            return node;
+        }
+    }
+
+    private static final class TrieBuilder {
+        private int[] zero = new int[16];
+        private int[] one = new int[16];
+        private boolean[] terminal = new boolean[16];
+        private int size = 1;
+
+        private void insert(byte[] address, int node, int prefix) {
+            for (int bit = 0; bit < prefix; bit++) {
+                if (terminal[node]) {
+                    // Already covered by a shorter prefix
+                    return;
+                }
+                boolean set = ((address[bit >>> 3] >>> (7 - (bit & 7))) & 1) == 1;
+                int[] children = set ? one : zero;
+                if (children[node] == 0) {
+                    int child = newNode();
+                    // newNode() may have replaced the arrays
+                    children = set ? one : zero;
+                    children[node] = child;
+                }
+                node = children[node];
+            }
+            terminal[node] = true;
+        }
+
+        private int newNode() {
+            if (size == terminal.length) {
+                zero = Arrays.copyOf(zero, size * 2);
+                one = Arrays.copyOf(one, size * 2);
+                terminal = Arrays.copyOf(terminal, size * 2);
+            }
+            return size++;
+        }
+
+        private Trie build() {
+            return new Trie(Arrays.copyOf(zero, size), Arrays.copyOf(one, size), Arrays.copyOf(terminal, size));
+        }
+    }
+}
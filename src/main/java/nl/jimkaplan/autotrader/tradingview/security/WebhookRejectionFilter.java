@@ -0,0 +1,240 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rejects webhook requests that can never succeed before Spring MVC dispatches them, so no body is bound or
+ * logged for them. During scanner bursts this keeps junk traffic from costing real CPU.
+ * <p>
+ * A request is rejected when:
+ * <ul>
+ *     <li>its source is not allowed by the {@link WebhookSourceAuthorizer} (401)</li>
+ *     <li>it is an alert for a single bot from a source that needs an API key, or a broadcast alert from any
+ *     source, without an API key (401)</li>
+ *     <li>its declared content length exceeds {@code webhook.max-body-size} (413)</li>
+ *     <li>its content type is not JSON (415)</li>
+ *     <li>it declares no content length, as with a chunked body, and its body exceeds
+ *     {@code webhook.max-body-size} (413); such a body is read up to that size after the other checks passed,
+ *     and passed on from memory</li>
+ * </ul>
+ * The rejection responses are precomputed. The controller still validates the requests that pass.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class WebhookRejectionFilter extends OncePerRequestFilter {
+
+    static final String WEBHOOK_PATH = "/webhook/";
+    static final String ALERT_PATH = "/webhook/tradingview";
+    static final String BROADCAST_PATH = "/webhook/tradingview/broadcast";
+    static final String API_KEY_HEADER = "X-API-KEY";
+
+    private final WebhookSourceAuthorizer webhookSourceAuthorizer;
+    private final long maxBodySize;
+    private final Rejection unauthorized;
+    private final Rejection missingApiKey;
+    private final Rejection bodyTooLarge;
+    private final Rejection unsupportedMediaType;
+
+    public WebhookRejectionFilter(WebhookSourceAuthorizer webhookSourceAuthorizer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${webhook.max-body-size:4KB}") DataSize maxBodySize) {
+        this.webhookSourceAuthorizer = webhookSourceAuthorizer;
+        this.maxBodySize = maxBodySize.toBytes();
+        this.unauthorized = new Rejection(HttpStatus.UNAUTHORIZED, "Unauthorized access", "source", meterRegistry);
+        this.missingApiKey = new Rejection(HttpStatus.UNAUTHORIZED, "Invalid API key", "api-key", meterRegistry);
+        this.bodyTooLarge = new Rejection(HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large", "body-size",
+                meterRegistry);
+        this.unsupportedMediaType = new Rejection(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Content type must be JSON",
+                "content-type", meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(WEBHOOK_PATH, request.getContextPath().length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Rejection rejection = check(request);
+        if (rejection != null) {
+            log.debug("Rejected webhook request from IP: {}: {}", request.getRemoteAddr(), rejection.message);
+            rejection.write(response);
+            return;
+        }
+        if (request.getContentLengthLong() < 0) {
+            // The length is only known once the body is read; stop reading one byte past the limit
+            byte[] body = request.getInputStream().readNBytes((int) Math.min(maxBodySize + 1, Integer.MAX_VALUE));
+            if (body.length > maxBodySize) {
+                log.debug("Rejected webhook request from IP: {}: {}", request.getRemoteAddr(), bodyTooLarge.message);
+                bodyTooLarge.write(response);
+                return;
+            }
+            request = new ReadBodyRequest(request, body);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Rejection check(HttpServletRequest request) {
+        WebhookSourceAuthorizer.Access access = webhookSourceAuthorizer.authorize(request);
+        if (access == WebhookSourceAuthorizer.Access.DENIED) {
+            return unauthorized;
+        }
+        // Broadcasts always need the broadcast API key; single bot alerts only from sources that need an API key
+        boolean apiKeyRequired = isPath(request, BROADCAST_PATH)
+                || access == WebhookSourceAuthorizer.Access.API_KEY_REQUIRED && isPath(request, ALERT_PATH);
+        if (apiKeyRequired && request.getHeader(API_KEY_HEADER) == null) {
+            return missingApiKey;
+        }
+        if (request.getContentLengthLong() > maxBodySize) {
+            return bodyTooLarge;
+        }
+        if (!isJson(request.getContentType())) {
+            return unsupportedMediaType;
+        }
+        return null;
+    }
+
+    private static boolean isPath(HttpServletRequest request, String path) {
+        String uri = request.getRequestURI();
+        int contextPathLength = request.getContextPath().length();
+        return uri.length() - contextPathLength == path.length() && uri.startsWith(path, contextPathLength);
+    }
+
+    // application/json or application/*+json, with optional parameters such as a charset
+    private static boolean isJson(String contentType) {
+        if (contentType == null || !contentType.regionMatches(true, 0, "application/", 0, 12)) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        if (end < 0) {
+            end = contentType.length();
+        }
+        while (end > 12 && contentType.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return contentType.regionMatches(true, end - 4, "json", 0, 4)
+                && (end == 16 || contentType.charAt(end - 5) == '+');
+    }
+
+    /**
+     * A request whose body was already read, with the content length of that body.
+     */
+    private static final class ReadBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private ReadBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is in memory, so it is available at once and then fully read
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (in.available() > 0) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    /**
+     * Precomputed rejection response.
+     */
+    private static final class Rejection {
+        private final int status;
+        private final String message;
+        private final byte[] body;
+        private final Counter counter;
+
+        private Rejection(HttpStatus status, String message, String reason, MeterRegistry meterRegistry) {
+            this.status = status.value();
+            this.message = message;
+            this.body = message.getBytes(StandardCharsets.UTF_8);
+            this.counter = Counter.builder("autotrader.webhook.rejected")
+                    .description("Webhook requests rejected before they were dispatched")
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+
+        private void write(HttpServletResponse response) throws IOException {
+            counter.increment();
+            response.setStatus(status);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
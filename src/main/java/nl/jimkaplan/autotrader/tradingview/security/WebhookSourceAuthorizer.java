@@ -0,0 +1,235 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which webhook callers are allowed, based on the IP address they call from.
+ * Sources on the trusted list (TradingView's webhook servers) are allowed without an API key, sources on the
+ * API key list (localhost by default) must present the bot's webhook API key, and everything else is denied.
+ * <p>
+ * Behind a reverse proxy, the client address is taken from the {@code X-Forwarded-For} header, but only when
+ * the connection comes from a trusted proxy: the header is read from right to left and the first address that
+ * is not a trusted proxy is the client.
+ * <p>
+ * The lists are configured under {@code webhook.source} and can be overridden by an allow-list file that is
+ * checked for changes every {@code webhook.source.reload-interval} and reloaded without a restart. The file
+ * has a section per list:
+ * <pre>
+ * [trusted]
+ * 52.89.214.238
+ * [api-key]
+ * 127.0.0.1
+ * 10.0.0.0/8
+ * [trusted-proxies]
+ * 192.168.1.10
+ * </pre>
+ * Sections that are missing from the file keep their configured value. A file that fails to load leaves the
+ * current lists in place.
+ */
+@Slf4j
+@Component
+public class WebhookSourceAuthorizer {
+
+    static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+    static final String ACCESS_ATTRIBUTE = WebhookSourceAuthorizer.class.getName() + ".access";
+
+    private static final String TRUSTED_SECTION = "trusted";
+    private static final String API_KEY_SECTION = "api-key";
+    private static final String TRUSTED_PROXIES_SECTION = "trusted-proxies";
+
+    /**
+     * Access granted to a webhook caller.
+     */
+    public enum Access {
+        /**
+         * The caller is trusted and does not need an API key.
+         */
+        TRUSTED,
+        /**
+         * The caller must present the webhook API key of the bot.
+         */
+        API_KEY_REQUIRED,
+        /**
+         * The caller is not allowed.
+         */
+        DENIED
+    }
+
+    private final AllowLists configured;
+    private final Path allowListFile;
+    private final ScheduledExecutorService reloader;
+    private volatile AllowLists allowLists;
+    private FileTime loadedModifiedTime;
+
+    public WebhookSourceAuthorizer(
+            @Value("${webhook.source.trusted:52.89.214.238,34.212.75.30,54.218.53.128,52.32.178.7}") List<String> trusted,
+            @Value("${webhook.source.api-key:127.0.0.1,::1}") List<String> apiKey,
+            @Value("${webhook.source.trusted-proxies:}") List<String> trustedProxies,
+            @Value("${webhook.source.allow-list-file:}") String allowListFile,
+            @Value("${webhook.source.reload-interval:PT10S}") Duration reloadInterval) {
+        this.configured = new AllowLists(
+                IpAllowList.compile(trusted), IpAllowList.compile(apiKey), IpAllowList.compile(trustedProxies));
+        this.allowLists = configured;
+        this.allowListFile = allowListFile.isBlank() ? null : Path.of(allowListFile);
+
+        if (this.allowListFile != null) {
+            reload();
+            this.reloader = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("webhook-allow-list-reloader").daemon(true).factory());
+            reloader.scheduleWithFixedDelay(this::reload,
+                    reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.reloader = null;
+        }
+        log.info("Webhook sources: trusted {}, API key {}, trusted proxies {}",
+                allowLists.trusted(), allowLists.apiKey(), allowLists.trustedProxies());
+    }
+
+    /**
+     * Determine the access of the caller of a webhook request.
+     * The result is kept on the request, so it is determined once per request.
+     *
+     * @param request The HTTP request
+     * @return The access of the caller
+     */
+    public Access authorize(HttpServletRequest request) {
+        // Already decided by the WebhookRejectionFilter
+        if (request.getAttribute(ACCESS_ATTRIBUTE) instanceof Access access) {
+            return access;
+        }
+        Access access = resolveAccess(request);
+        request.setAttribute(ACCESS_ATTRIBUTE, access);
+        return access;
+    }
+
+    private Access resolveAccess(HttpServletRequest request) {
+        AllowLists lists = allowLists;
+        String remoteAddr = request.getRemoteAddr();
+        if (!lists.trustedProxies().isEmpty() && lists.trustedProxies().contains(remoteAddr)) {
+            String forwardedFor = request.getHeader(FORWARDED_FOR_HEADER);
+            if (forwardedFor != null) {
+                int end = forwardedFor.length();
+                int start = forwardedFor.lastIndexOf(',', end - 1) + 1;
+                // Skip the proxies, the address before them is the client
+                while (start > 0 && lists.trustedProxies().contains(forwardedFor, start, end)) {
+                    end = start - 1;
+                    start = forwardedFor.lastIndexOf(',', end - 1) + 1;
+                }
+                return access(lists, forwardedFor, start, end);
+            }
+        }
+        return access(lists, remoteAddr, 0, remoteAddr.length());
+    }
+
+    /**
+     * Get the client address of a webhook request, for logging.
+     * Follows the same trusted-proxy rules as {@link #authorize(HttpServletRequest)}.
+     *
+     * @param request The HTTP request
+     * @return The client address
+     */
+    public String resolveClientAddress(HttpServletRequest request) {
+        AllowLists lists = allowLists;
+        String remoteAddr = request.getRemoteAddr();
+        String forwardedFor = request.getHeader(FORWARDED_FOR_HEADER);
+        if (forwardedFor == null || !lists.trustedProxies().contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] addresses = forwardedFor.split(",");
+        int i = addresses.length - 1;
+        while (i > 0 && lists.trustedProxies().contains(addresses[i].strip())) {
+            i--;
+        }
+        return addresses[i].strip();
+    }
+
+    /**
+     * Reload the allow-list file if it changed since it was last loaded.
+     */
+    void reload() {
+        try {
+            FileTime modifiedTime = Files.getLastModifiedTime(allowListFile);
+            if (modifiedTime.equals(loadedModifiedTime)) {
+                return;
+            }
+            allowLists = parse(Files.readAllLines(allowListFile));
+            loadedModifiedTime = modifiedTime;
+            log.info("Loaded webhook allow-list file {}: trusted {}, API key {}, trusted proxies {}", allowListFile,
+                    allowLists.trusted(), allowLists.apiKey(), allowLists.trustedProxies());
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to load webhook allow-list file {}, keeping the current lists: {}",
+                    allowListFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    private AllowLists parse(List<String> lines) {
+        Map<String, List<String>> sections = new HashMap<>();
+        List<String> current = null;
+        for (String line : lines) {
+            int comment = line.indexOf('#');
+            String entry = (comment >= 0 ? line.substring(0, comment) : line).strip();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            if (entry.startsWith("[") && entry.endsWith("]")) {
+                String section = entry.substring(1, entry.length() - 1).strip();
+                if (!List.of(TRUSTED_SECTION, API_KEY_SECTION, TRUSTED_PROXIES_SECTION).contains(section)) {
+                    throw new IllegalArgumentException("Unknown section: " + entry);
+                }
+                current = sections.computeIfAbsent(section, s -> new ArrayList<>());
+            } else if (current == null) {
+                throw new IllegalArgumentException("Entry outside of a section: " + entry);
+            } else {
+                current.add(entry);
+            }
+        }
+
+        return new AllowLists(
+                sections.containsKey(TRUSTED_SECTION)
+                        ? IpAllowList.compile(sections.get(TRUSTED_SECTION)) : configured.trusted(),
+                sections.containsKey(API_KEY_SECTION)
+                        ? IpAllowList.compile(sections.get(API_KEY_SECTION)) : configured.apiKey(),
+                sections.containsKey(TRUSTED_PROXIES_SECTION)
+                        ? IpAllowList.compile(sections.get(TRUSTED_PROXIES_SECTION)) : configured.trustedProxies());
+    }
+
+    private static Access access(AllowLists lists, String address, int start, int end) {
+        if (lists.trusted().contains(address, start, end)) {
+            return Access.TRUSTED;
+        }
+        if (lists.apiKey().contains(address, start, end)) {
+            return Access.API_KEY_REQUIRED;
+        }
+        return Access.DENIED;
+    }
+
+    /**
+     * The lists in effect, swapped as a whole on reload.
+     */
+    private record AllowLists(IpAllowList trusted, IpAllowList apiKey, IpAllowList trustedProxies) {
+    }
+}
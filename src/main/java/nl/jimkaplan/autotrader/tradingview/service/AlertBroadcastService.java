@@ -0,0 +1,223 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse.BotResult;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse.Status;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service for broadcast alerts: a single TradingView alert for a ticker is fanned out to every
+ * active bot trading that pair.
+ * Bots are resolved through the in-memory {@link TradingPairIndex} and the per-bot alerts run in
+ * parallel, with at most {@code webhook.broadcast.max-parallelism} of them in flight at once.
+ * Every bot has its own webhook API key, so a broadcast is authorized by a separate credential,
+ * {@code webhook.broadcast.api-key}; broadcasts are refused while it is not set.
+ * In synchronous mode every per-bot alert goes through the {@link BotAlertExecutor}, so it stays in order
+ * with other alerts for the same bot; in asynchronous mode every per-bot alert is queued.
+ */
+@Slf4j
+@Service
+public class AlertBroadcastService {
+
+    private final TradingService tradingService;
+    private final AlertQueueService alertQueueService;
+    private final BotAlertExecutor botAlertExecutor;
+    private final AlertCoalescer alertCoalescer;
+    private final TradingPairIndex tradingPairIndex;
+    private final ExecutorService tradingExecutor;
+    private final int maxParallelism;
+    private final byte[] apiKeyHash;
+
+    public AlertBroadcastService(TradingService tradingService,
+                                 AlertQueueService alertQueueService,
+                                 BotAlertExecutor botAlertExecutor,
+                                 AlertCoalescer alertCoalescer,
+                                 TradingPairIndex tradingPairIndex,
+                                 @Qualifier("tradingExecutor") ExecutorService tradingExecutor,
+                                 @Value("${webhook.broadcast.max-parallelism:32}") int maxParallelism,
+                                 @Value("${webhook.broadcast.api-key:}") String apiKey) {
+        this.tradingService = tradingService;
+        this.alertQueueService = alertQueueService;
+        this.botAlertExecutor = botAlertExecutor;
+        this.alertCoalescer = alertCoalescer;
+        this.tradingPairIndex = tradingPairIndex;
+        this.tradingExecutor = tradingExecutor;
+        this.maxParallelism = maxParallelism;
+        this.apiKeyHash = apiKey.isBlank() ? new byte[0] : digest(apiKey);
+    }
+
+    /**
+     * Validate the API key of a broadcast alert against the broadcast API key.
+     *
+     * @param apiKey The API key sent with the alert
+     * @return true if the key is valid, false otherwise or if no broadcast API key is configured
+     */
+    public boolean validateApiKey(String apiKey) {
+        return apiKey != null && apiKeyHash.length > 0 && MessageDigest.isEqual(apiKeyHash, digest(apiKey));
+    }
+
+    /**
+     * Fan out an alert to the active bots trading its ticker and wait for the per-bot outcomes.
+     * The bot ID of the request is ignored.
+     *
+     * @param request The alert request from TradingView
+     * @return The per-bot results, with an empty result list if no bot trades the ticker
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    public BroadcastAlertResponse broadcast(TradingViewAlertRequest request) {
+        if (request.getTicker() == null || request.getTicker().isEmpty()) {
+            throw new IllegalArgumentException("Ticker is required");
+        }
+
+        List<String> botIds = tradingPairIndex.getActiveBotIds(request.getTicker()).stream()
+                .sorted()
+                .toList();
+
+        List<BotResult> results = new ArrayList<>(botIds.size());
+        if (!botIds.isEmpty()) {
+            // The per-bot requests only differ in bot ID, so validating one validates all;
+            // the copies share the timestamp parsed during validation
+            TradingViewAlertRequest template = forBot(request, botIds.getFirst(), null);
+            tradingService.validateRequest(template);
+            Instant parsedTimestamp = template.getParsedTimestamp();
+            List<TradingViewAlertRequest> botRequests = botIds.stream()
+                    .map(botId -> forBot(request, botId, parsedTimestamp))
+                    .toList();
+
+            log.info("Broadcasting {} alert for ticker: {} to {} bots",
+                    request.getAction(), request.getTicker(), botIds.size());
+            results.addAll(fanOut(botRequests));
+        }
+
+        return BroadcastAlertResponse.builder()
+                .ticker(request.getTicker())
+                .action(request.getAction())
+                .results(results)
+                .build();
+    }
+
+    private List<BotResult> fanOut(List<TradingViewAlertRequest> botRequests) {
+        Semaphore permits = new Semaphore(maxParallelism);
+        List<CompletableFuture<BotResult>> futures = new ArrayList<>(botRequests.size());
+
+        for (TradingViewAlertRequest botRequest : botRequests) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.add(CompletableFuture.completedFuture(
+                        result(botRequest.getBotId(), Status.FAILED, "Broadcast was interrupted")));
+                continue;
+            }
+
+            CompletableFuture<BotResult> future;
+            try {
+                future = submit(botRequest);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future
+                    .exceptionally(error -> failed(botRequest.getBotId(), unwrap(error)))
+                    .whenComplete((result, error) -> permits.release()));
+        }
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    private CompletableFuture<BotResult> submit(TradingViewAlertRequest botRequest) {
+        String botId = botRequest.getBotId();
+        if (alertQueueService.isEnabled()) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    alertQueueService.accept(botRequest);
+                    return result(botId, Status.QUEUED, null);
+                } catch (AlertQueueFullException e) {
+                    return result(botId, Status.REJECTED, e.getMessage());
+                } catch (DuplicateAlertException e) {
+                    return result(botId, Status.DUPLICATE, e.getMessage());
+                }
+            }, tradingExecutor);
+        }
+
+        if (alertCoalescer.isEnabled()) {
+            tradingService.claimAlert(botRequest);
+            return alertCoalescer.submit(botId, botRequest.getParsedTimestamp(),
+                            () -> tradingService.processClaimedAlert(botRequest),
+                            () -> tradingService.recordCoalescedAlert(botRequest))
+                    .thenApply(outcome -> switch (outcome) {
+                        case EXECUTED -> result(botId, Status.EXECUTED, null);
+                        case DROPPED -> result(botId, Status.DROPPED, "Alert was too old to execute when its turn came");
+                        case COALESCED -> result(botId, Status.COALESCED, "Superseded by a later alert for the same bot");
+                    });
+        }
+
+        return botAlertExecutor.submit(botId, botRequest.getParsedTimestamp(),
+                        () -> tradingService.validateAndProcessAlert(botRequest))
+                .thenApply(executed -> executed
+                        ? result(botId, Status.EXECUTED, null)
+                        : result(botId, Status.DROPPED, "Alert was too old to execute when its turn came"));
+    }
+
+    private static TradingViewAlertRequest forBot(TradingViewAlertRequest request, String botId, Instant parsedTimestamp) {
+        return TradingViewAlertRequest.builder()
+                .botId(botId)
+                .ticker(request.getTicker())
+                .action(request.getAction())
+                .timestamp(request.getTimestamp())
+                .parsedTimestamp(parsedTimestamp)
+                .dryRun(request.getDryRun())
+                .build();
+    }
+
+    private static BotResult failed(String botId, Throwable error) {
+        if (error instanceof DuplicateAlertException) {
+            return result(botId, Status.DUPLICATE, error.getMessage());
+        }
+        log.warn("Broadcast alert failed for bot: {}: {}", botId, error.getMessage());
+        return result(botId, Status.FAILED, error.getMessage());
+    }
+
+    private static BotResult result(String botId, Status status, String message) {
+        return BotResult.builder()
+                .botId(botId)
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    private static byte[] digest(String apiKey) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
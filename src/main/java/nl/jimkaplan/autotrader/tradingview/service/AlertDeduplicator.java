@@ -0,0 +1,115 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory idempotency check for incoming alerts, keyed on (botId, ticker, action, timestamp).
+ * TradingView retries webhooks, so the same alert can arrive more than once. The first arrival claims
+ * the key; later arrivals within {@code webhook.deduplication.window} are rejected without touching the
+ * database or Bitvavo. Keys expire after the window and are evicted by a periodic sweep.
+ * <p>
+ * The unique index on the 'tradingview_alerts' collection is the durable backstop for duplicates that
+ * arrive after a restart, after the window, or on another instance.
+ */
+@Slf4j
+@Service
+public class AlertDeduplicator {
+
+    private final Map<AlertKey, Long> expiryByKey = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final LongSupplier nanoTime;
+    private final AtomicLong nextSweepNanos;
+    private final Counter duplicateCounter;
+
+    @Autowired
+    public AlertDeduplicator(@Value("${webhook.deduplication.window:PT10M}") Duration window,
+                             MeterRegistry meterRegistry) {
+        this(window, meterRegistry, System::nanoTime);
+    }
+
+    // Constructor for testing
+    AlertDeduplicator(Duration window, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.windowNanos = window.toNanos();
+        this.nanoTime = nanoTime;
+        this.nextSweepNanos = new AtomicLong(nanoTime.getAsLong() + windowNanos);
+        this.duplicateCounter = Counter.builder("autotrader.alerts.duplicates")
+                .description("Alerts rejected because the same alert was already received")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claim a validated alert. Returns false if the same alert was already claimed within the window.
+     *
+     * @param request The validated alert request
+     * @return true if this is the first arrival of the alert, false if it is a duplicate
+     */
+    public boolean tryAcquire(TradingViewAlertRequest request) {
+        long now = nanoTime.getAsLong();
+        sweepIfDue(now);
+
+        AlertKey key = AlertKey.of(request);
+        long expiry = now + windowNanos;
+        Long existingExpiry = expiryByKey.putIfAbsent(key, expiry);
+        if (existingExpiry == null) {
+            return true;
+        }
+        // An expired key that was not swept yet can be claimed again
+        if (existingExpiry - now < 0 && expiryByKey.replace(key, existingExpiry, expiry)) {
+            return true;
+        }
+
+        log.info("Duplicate alert for bot: {}, ticker: {}, action: {}, timestamp: {}",
+                request.getBotId(), request.getTicker(), request.getAction(), request.getTimestamp());
+        duplicateCounter.increment();
+        return false;
+    }
+
+    /**
+     * Release a claimed alert, so that a retry of it is accepted again.
+     * Used when an alert is rejected before it was stored.
+     *
+     * @param request The alert request that was claimed
+     */
+    public void release(TradingViewAlertRequest request) {
+        expiryByKey.remove(AlertKey.of(request));
+    }
+
+    /**
+     * Get the number of alert keys currently remembered.
+     *
+     * @return The number of keys, including expired keys that were not swept yet
+     */
+    public int size() {
+        return expiryByKey.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweepNanos.get();
+        // Only one caller per window pays for the sweep
+        if (now - due >= 0 && nextSweepNanos.compareAndSet(due, now + windowNanos)) {
+            expiryByKey.values().removeIf(expiry -> expiry - now < 0);
+        }
+    }
+
+    private record AlertKey(String botId, String ticker, String action, Instant timestamp) {
+
+        private static AlertKey of(TradingViewAlertRequest request) {
+            // The action was lowercased by the validation, the same as it is stored
+            return new AlertKey(request.getBotId(), request.getTicker(), request.getAction(),
+                    request.getParsedTimestamp());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the unique {@value #INDEX_NAME} index on the 'tradingview_alerts' collection, which rejects retries of
+ * an alert that was already stored.
+ * <p>
+ * Alerts stored before the index existed can contain duplicates, and actions that were stored in another case
+ * than the lower case that is stored now. Before the index is created, those actions are lowercased and of each
+ * group of duplicates only the oldest alert is kept, so the index can be built. If it still cannot be built, the
+ * application fails to start with a message that names the index and the collection.
+ * <p>
+ * Runs at startup when {@code spring.data.mongodb.auto-index-creation} is enabled, like the other indexes, and
+ * does nothing once the index exists.
+ */
+@Slf4j
+@Component
+public class AlertIndexInitializer {
+
+    static final String INDEX_NAME = "alert_identity";
+    private static final String COLLECTION = "tradingview_alerts";
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    public AlertIndexInitializer(MongoTemplate mongoTemplate,
+                                 @Value("${spring.data.mongodb.auto-index-creation:false}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Create the index if it does not exist yet, removing the duplicates that would prevent it.
+     *
+     * @throws IllegalStateException if the index cannot be created
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndex() {
+        if (!enabled) {
+            return;
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(TradingViewAlert.class);
+        if (indexOps.getIndexInfo().stream().anyMatch(index -> INDEX_NAME.equals(index.getName()))) {
+            return;
+        }
+
+        long lowercased = lowercaseActions();
+        long removed = removeDuplicates();
+        if (lowercased > 0 || removed > 0) {
+            log.warn("Prepared {} for the unique {} index: lowercased the action of {} alerts, removed {} "
+                     + "duplicate alerts", COLLECTION, INDEX_NAME, lowercased, removed);
+        }
+
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("botId", Sort.Direction.ASC)
+                    .on("ticker", Sort.Direction.ASC)
+                    .on("action", Sort.Direction.ASC)
+                    .on("timestamp", Sort.Direction.ASC)
+                    .unique()
+                    .named(INDEX_NAME));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("Cannot create the unique " + INDEX_NAME + " index on " + COLLECTION
+                                            + ": it still holds alerts with the same botId, ticker, action and "
+                                            + "timestamp. Remove the duplicates and restart.", e);
+        }
+        log.info("Created the unique {} index on {}", INDEX_NAME, COLLECTION);
+    }
+
+    private long lowercaseActions() {
+        Query notLowercase = new Query(Criteria.where("action").regex("[A-Z]"));
+        AggregationUpdate lowercase = AggregationUpdate.update()
+                .set("action").toValue(StringOperators.valueOf("action").toLower());
+        return mongoTemplate.updateMulti(notLowercase, lowercase, COLLECTION).getModifiedCount();
+    }
+
+    /**
+     * Remove all but the oldest alert of every group of alerts with the same identity.
+     *
+     * @return The number of removed alerts
+     */
+    private long removeDuplicates() {
+        Aggregation duplicates = Aggregation.newAggregation(
+                        Aggregation.sort(Sort.Direction.ASC, "_id"),
+                        Aggregation.group("botId", "ticker", "action", "timestamp").push("_id").as("ids"),
+                        Aggregation.match(Criteria.where("ids.1").exists(true)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        long removed = 0;
+        List<Object> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+        for (Document group : mongoTemplate.aggregate(duplicates, COLLECTION, Document.class)) {
+            List<Object> ids = group.getList("ids", Object.class);
+            // The first is the oldest, which was processed; the others were retries
+            batch.addAll(ids.subList(1, ids.size()));
+            if (batch.size() >= DELETE_BATCH_SIZE) {
+                removed += delete(batch);
+                batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            removed += delete(batch);
+        }
+        return removed;
+    }
+
+    private long delete(List<Object> ids) {
+        return mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), COLLECTION).getDeletedCount();
+    }
+}
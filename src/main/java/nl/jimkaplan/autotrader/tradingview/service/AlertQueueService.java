@@ -0,0 +1,258 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service for the asynchronous ("accept-then-execute") webhook mode.
+ * Alerts are validated, stored in the 'tradingview_alerts' collection with status QUEUED and
+ * appended to a bounded in-memory queue. A dispatcher thread drains the queue and hands every
+ * alert to the {@link BotAlertExecutor} (through the optional {@link AlertCoalescer}), with at most
+ * {@code max-concurrency} alerts in flight.
+ * Alerts of the same bot are executed in order; alerts of different bots in parallel.
+ * Because every queued alert is persisted first, alerts that were still queued when the
+ * application stopped are picked up again on the next start.
+ * <p>
+ * Several instances can share the collection. Before an alert is executed it is claimed atomically, so an
+ * alert that was picked up by more than one instance is still executed once. A claim holds a lease of
+ * {@code webhook.async.processing-lease}; only alerts whose lease has expired are considered interrupted, so
+ * a starting instance does not fail the alerts that another instance is still processing.
+ */
+@Slf4j
+@Service
+public class AlertQueueService {
+
+    private final TradingService tradingService;
+    private final TradingViewAlertService tradingViewAlertService;
+    private final AlertCoalescer alertCoalescer;
+    private final AlertDeduplicator alertDeduplicator;
+    private final boolean enabled;
+    private final int maxConcurrency;
+    private final Duration processingLease;
+    private final BlockingQueue<TradingViewAlert> queue;
+    private final Semaphore inFlight;
+
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    public AlertQueueService(TradingService tradingService,
+                             TradingViewAlertService tradingViewAlertService,
+                             AlertCoalescer alertCoalescer,
+                             AlertDeduplicator alertDeduplicator,
+                             @Value("${webhook.async.enabled:false}") boolean enabled,
+                             @Value("${webhook.async.queue-capacity:1000}") int queueCapacity,
+                             @Value("${webhook.async.max-concurrency:4}") int maxConcurrency,
+                             @Value("${webhook.async.processing-lease:PT10M}") Duration processingLease) {
+        this.tradingService = tradingService;
+        this.tradingViewAlertService = tradingViewAlertService;
+        this.alertCoalescer = alertCoalescer;
+        this.alertDeduplicator = alertDeduplicator;
+        this.enabled = enabled;
+        this.maxConcurrency = maxConcurrency;
+        this.processingLease = processingLease;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.inFlight = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Whether the asynchronous webhook mode is enabled.
+     *
+     * @return true if alerts should be accepted through the queue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validate an alert, store it as queued and append it to the queue.
+     *
+     * @param request The alert request from TradingView
+     * @return The stored alert
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws AlertQueueFullException  if the queue is at capacity
+     * @throws DuplicateAlertException  if the same alert was already received
+     */
+    public TradingViewAlert accept(TradingViewAlertRequest request) {
+        tradingService.validateRequest(request);
+
+        if (queue.remainingCapacity() == 0) {
+            throw new AlertQueueFullException("Alert queue is full, please retry later");
+        }
+
+        if (!alertDeduplicator.tryAcquire(request)) {
+            throw new DuplicateAlertException("Duplicate alert for bot: " + request.getBotId());
+        }
+
+        TradingViewAlert alert;
+        try {
+            alert = tradingViewAlertService.saveAlert(TradingViewAlert.builder()
+                    .botId(request.getBotId())
+                    .ticker(request.getTicker())
+                    .action(request.getAction())
+                    .timestamp(request.getParsedTimestamp())
+                    .dryRun(request.getDryRun())
+                    .status(TradingViewAlert.STATUS_QUEUED)
+                    .build());
+        } catch (DuplicateAlertException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            alertDeduplicator.release(request);
+            throw e;
+        }
+
+        if (!queue.offer(alert)) {
+            // Lost the race for the last free slot; the caller gets a retryable error instead.
+            // The stored alert is removed again so that the retry is not rejected as a duplicate.
+            log.warn("Alert queue is full, alert {} for bot: {} is not queued", alert.getId(), alert.getBotId());
+            tradingViewAlertService.deleteAlert(alert.getId());
+            alertDeduplicator.release(request);
+            throw new AlertQueueFullException("Alert queue is full, please retry later");
+        }
+
+        log.debug("Queued alert {} for bot: {}, queue size: {}", alert.getId(), alert.getBotId(), queue.size());
+        return alert;
+    }
+
+    /**
+     * Get the number of alerts currently waiting in the queue.
+     *
+     * @return The queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of alerts currently being processed.
+     *
+     * @return The number of alerts in flight
+     */
+    public int getInFlightCount() {
+        return maxConcurrency - inFlight.availablePermits();
+    }
+
+    /**
+     * Start the dispatcher thread and re-queue alerts left over from a previous run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        running = true;
+        dispatcher = Thread.ofPlatform().name("alert-dispatcher").daemon(true).start(this::drain);
+
+        log.info("Started asynchronous alert processing with at most {} alerts in flight", maxConcurrency);
+        recoverPendingAlerts();
+    }
+
+    /**
+     * Stop the dispatcher thread. Alerts still in the queue remain QUEUED in the database.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * Re-queue alerts that were queued before a restart. Alerts whose processing lease expired are marked as
+     * failed rather than re-executed, to avoid placing an order twice. Alerts that are also queued by another
+     * instance are executed by whichever instance claims them first.
+     */
+    void recoverPendingAlerts() {
+        long interrupted = tradingViewAlertService.failExpiredAlerts(Instant.now());
+        if (interrupted > 0) {
+            log.warn("Marked {} alerts as failed that were interrupted during processing", interrupted);
+        }
+
+        List<TradingViewAlert> queuedAlerts = tradingViewAlertService.getAlertsByStatus(TradingViewAlert.STATUS_QUEUED);
+        if (queuedAlerts.isEmpty()) {
+            return;
+        }
+
+        log.info("Recovering {} queued alerts", queuedAlerts.size());
+        for (int i = 0; i < queuedAlerts.size(); i++) {
+            if (!queue.offer(queuedAlerts.get(i))) {
+                log.warn("Alert queue is full, {} queued alerts will be recovered on the next start",
+                        queuedAlerts.size() - i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Dispatcher loop that takes alerts from the queue and submits them for execution
+     * until stopped. Blocks while the maximum number of alerts is already in flight.
+     */
+    void drain() {
+        while (running) {
+            try {
+                inFlight.acquire();
+                TradingViewAlert alert;
+                try {
+                    alert = queue.take();
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                submit(alert);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(TradingViewAlert alert) {
+        if (!tradingViewAlertService.claimAlert(alert, Instant.now().plus(processingLease))) {
+            log.debug("Alert {} for bot: {} was already claimed by another instance", alert.getId(), alert.getBotId());
+            return;
+        }
+        tradingService.processQueuedAlert(alert);
+    }
+
+    private void submit(TradingViewAlert alert) {
+        try {
+            alertCoalescer.submit(alert.getBotId(), alert.getTimestamp(),
+                            () -> process(alert),
+                            () -> tradingViewAlertService.updateAlertStatus(alert, TradingViewAlert.STATUS_COALESCED,
+                                    "Superseded by a later alert for the same bot"))
+                    .whenComplete((outcome, error) -> {
+                        inFlight.release();
+                        if (error != null) {
+                            log.error("Unexpected error processing alert {}", alert.getId(), error);
+                        } else if (outcome == AlertCoalescer.Outcome.DROPPED) {
+                            tradingViewAlertService.updateAlertStatus(alert, TradingViewAlert.STATUS_DROPPED,
+                                    "Alert was too old to execute when its turn came");
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // Executor is shutting down; the alert stays QUEUED and is recovered on the next start
+            inFlight.release();
+            log.warn("Trading executor rejected alert {}, it will be recovered on the next start", alert.getId());
+        }
+    }
+}
@@ -2,8 +2,14 @@ package nl.jimkaplan.autotrader.tradingview.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
 import nl.jimkaplan.autotrader.repository.TradingViewAlertRepository;
 import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -20,17 +26,23 @@ import java.util.Optional;
 public class TradingViewAlertService {
 
     private final TradingViewAlertRepository tradingViewAlertRepository;
+    private final MongoTemplate mongoTemplate;
 
     /**
      * Save a TradingView alert.
      *
      * @param alert The alert to save
      * @return The saved alert
+     * @throws DuplicateAlertException if an alert with the same bot ID, ticker, action and timestamp is already stored
      */
     public TradingViewAlert saveAlert(TradingViewAlert alert) {
         log.info("Saving TradingView alert for bot: {}, ticker: {}, action: {}",
                 alert.getBotId(), alert.getTicker(), alert.getAction());
-        return tradingViewAlertRepository.save(alert);
+        try {
+            return tradingViewAlertRepository.save(alert);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateAlertException("Duplicate alert for bot: " + alert.getBotId(), e);
+        }
     }
 
     /**
@@ -77,6 +89,70 @@ public class TradingViewAlertService {
         return tradingViewAlertRepository.findByBotIdAndTimestampBetween(botId, startTime, endTime);
     }
 
+    /**
+     * Get alerts with a given processing status.
+     *
+     * @param status The processing status
+     * @return List of alerts with the specified status
+     */
+    public List<TradingViewAlert> getAlertsByStatus(String status) {
+        return tradingViewAlertRepository.findByStatus(status);
+    }
+
+    /**
+     * Update the processing status of an alert.
+     *
+     * @param alert        The alert to update
+     * @param status       The new status
+     * @param errorMessage The error message (if any)
+     * @return The updated alert
+     */
+    public TradingViewAlert updateAlertStatus(TradingViewAlert alert, String status, String errorMessage) {
+        log.debug("Updating TradingView alert {} status to {}", alert.getId(), status);
+        alert.setStatus(status);
+        alert.setErrorMessage(errorMessage);
+        return tradingViewAlertRepository.save(alert);
+    }
+
+    /**
+     * Claim a queued alert for processing: atomically move it from QUEUED to PROCESSING, so that every alert is
+     * executed by one instance only, also when several instances picked it up.
+     *
+     * @param alert          The queued alert
+     * @param leaseExpiresAt Until when the alert is expected to be processed
+     * @return true if the alert was claimed, false if it is no longer queued
+     */
+    public boolean claimAlert(TradingViewAlert alert, Instant leaseExpiresAt) {
+        Query queued = new Query(Criteria.where("id").is(alert.getId())
+                .and("status").is(TradingViewAlert.STATUS_QUEUED));
+        Update claim = new Update()
+                .set("status", TradingViewAlert.STATUS_PROCESSING)
+                .set("leaseExpiresAt", leaseExpiresAt);
+        if (mongoTemplate.updateFirst(queued, claim, TradingViewAlert.class).getModifiedCount() == 0) {
+            return false;
+        }
+        alert.setStatus(TradingViewAlert.STATUS_PROCESSING);
+        alert.setLeaseExpiresAt(leaseExpiresAt);
+        return true;
+    }
+
+    /**
+     * Mark alerts as failed whose processing lease has expired: the instance that claimed them stopped before
+     * it finished. They are not executed again, to avoid placing an order twice.
+     *
+     * @param now The current time
+     * @return The number of alerts marked as failed
+     */
+    public long failExpiredAlerts(Instant now) {
+        // Also matches alerts claimed before leases were recorded
+        Query expired = new Query(Criteria.where("status").is(TradingViewAlert.STATUS_PROCESSING)
+                .and("leaseExpiresAt").not().gt(now));
+        Update fail = new Update()
+                .set("status", TradingViewAlert.STATUS_FAILED)
+                .set("errorMessage", "Processing was interrupted by an application restart");
+        return mongoTemplate.updateMulti(expired, fail, TradingViewAlert.class).getModifiedCount();
+    }
+
     /**
      * Get an alert by ID.
      *
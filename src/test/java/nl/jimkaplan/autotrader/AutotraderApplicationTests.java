@@ -0,0 +1,38 @@
+package nl.jimkaplan.autotrader;
+
+import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Starts the whole application context, so a bean that cannot be created fails the build.
+ * Runs without MongoDB and Bitvavo: the repository read at startup is mocked and the background streams and
+ * jobs that would connect to either are switched off.
+ */
+@SpringBootTest(properties = {
+        "spring.data.mongodb.uri=mongodb://localhost:27017/autotrader?serverSelectionTimeoutMS=1000",
+        "spring.data.mongodb.auto-index-creation=false",
+        "bitvavo.api.url=https://api.bitvavo.com/v2",
+        "encryption.master-key=MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=",
+        "webhook.async.enabled=false",
+        "trading.config-replication.enabled=false",
+        "encryption.reencryption.enabled=false",
+        "bitvavo.ws.enabled=false",
+        "bitvavo.ws.account.enabled=false",
+        "bitvavo.http.warm-connections=0",
+        "bitvavo.clock.sync-interval=0"
+})
+class AutotraderApplicationTests {
+
+    @MockitoBean
+    private BotConfigurationRepository botConfigurationRepository;
+
+    @MockitoBean(name = "exportOpenApiSpec")
+    private CommandLineRunner exportOpenApiSpec;
+
+    @Test
+    void contextLoads() {
+    }
+}
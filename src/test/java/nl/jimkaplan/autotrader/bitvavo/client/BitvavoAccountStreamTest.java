@@ -0,0 +1,201 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
+import nl.jimkaplan.autotrader.bitvavo.model.GetAccountBalanceResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BalanceLedger;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoClock;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.service.BotConfigurationService;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BitvavoAccountStreamTest {
+
+    private static final String BOT_ID = "bot1";
+    private static final String API_KEY = "test-api-key";
+    private static final String API_SECRET = "test-api-secret";
+    private static final UUID ORDER_ID = UUID.randomUUID();
+
+    @Mock
+    private TradingPairIndex tradingPairIndex;
+
+    @Mock
+    private BotConfigurationService botConfigurationService;
+
+    @Mock
+    private BitvavoApiClient bitvavoApiClient;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BalanceLedger balanceLedger = new BalanceLedger(new SimpleMeterRegistry(), Duration.ofMinutes(10));
+    private LocalWebSocketServer server;
+    private BitvavoAccountStream accountStream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new LocalWebSocketServer();
+        BitvavoAuthenticationService authenticationService = new BitvavoAuthenticationService(
+                new BitvavoClock(new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ofSeconds(1)));
+        accountStream = new BitvavoAccountStream(tradingPairIndex, botConfigurationService,
+                authenticationService, bitvavoApiClient, balanceLedger, objectMapper,
+                server.getUri().toString(), true, Duration.ofSeconds(5));
+
+        BotConfiguration botConfig = new BotConfiguration();
+        botConfig.setBotId(BOT_ID);
+        botConfig.setApiKey(API_KEY);
+        botConfig.setApiSecret(API_SECRET);
+        lenient().when(botConfigurationService.getBotConfiguration(BOT_ID)).thenReturn(Optional.of(botConfig));
+        lenient().when(bitvavoApiClient.get(BitvavoAccountStream.BALANCE_SNAPSHOT_ENDPOINT,
+                        GetAccountBalanceResponse[].class, API_KEY, API_SECRET))
+                .thenReturn(new GetAccountBalanceResponse[]{
+                        new GetAccountBalanceResponse("EUR", new BigDecimal("100"), BigDecimal.ZERO)});
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        accountStream.stop();
+        server.close();
+    }
+
+    @Test
+    void maintain_authenticatesSubscribesAndSeedsTheLedger() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR"));
+
+        // Act
+        accountStream.maintain();
+
+        // Assert
+        assertTrue(accountStream.isConnected(BOT_ID));
+        JsonNode authenticate = objectMapper.readTree(server.awaitMessage());
+        assertEquals("authenticate", authenticate.path("action").asText());
+        assertEquals(API_KEY, authenticate.path("key").asText());
+        assertEquals(64, authenticate.path("signature").asText().length());
+        assertEquals("{\"action\":\"subscribe\",\"channels\":[{\"name\":\"account\",\"markets\":[\"BTC-EUR\"]}]}",
+                server.awaitMessage());
+        assertEquals(new BigDecimal("100"), balanceLedger.getAvailable(API_KEY, "EUR"));
+    }
+
+    @Test
+    void fillEvents_ofOwnOrders_updateTheLedger() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR"));
+        accountStream.maintain();
+        CreateOrderResponse response = new CreateOrderResponse();
+        response.setOrderId(ORDER_ID);
+        response.setStatus("new");
+        balanceLedger.recordOrder(API_KEY, CreateOrderRequest.builder()
+                .market("BTCEUR").side("buy").orderType("market").amountQuote(new BigDecimal("100")).build(), response);
+
+        // Act
+        server.send("{\"event\":\"fill\",\"market\":\"BTC-EUR\",\"orderId\":\"" + ORDER_ID + "\",\"fillId\":\"fill1\","
+                + "\"timestamp\":1542967486256,\"amount\":\"0.002\",\"side\":\"buy\",\"price\":\"50000\","
+                + "\"taker\":true,\"fee\":\"0.25\",\"feeCurrency\":\"EUR\"}");
+
+        // Assert
+        await(() -> new BigDecimal("0.002").equals(balanceLedger.getAvailable(API_KEY, "BTC")));
+    }
+
+    @Test
+    void maintain_withBotsSharingAnApiKey_connectsTheAccountOnceForAllTheirPairs() throws Exception {
+        // Arrange
+        BotConfiguration otherBot = new BotConfiguration();
+        otherBot.setBotId("bot2");
+        otherBot.setApiKey(API_KEY);
+        otherBot.setApiSecret(API_SECRET);
+        when(botConfigurationService.getBotConfiguration("bot2")).thenReturn(Optional.of(otherBot));
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR", "bot2", "ETHEUR"));
+
+        // Act
+        accountStream.maintain();
+
+        // Assert
+        assertTrue(accountStream.isConnected(BOT_ID));
+        assertTrue(accountStream.isConnected("bot2"));
+        assertEquals(1, server.getConnectionCount());
+        server.awaitMessage();
+        assertEquals("{\"action\":\"subscribe\",\"channels\":[{\"name\":\"account\",\"markets\":[\"BTC-EUR\",\"ETH-EUR\"]}]}",
+                server.awaitMessage());
+    }
+
+    @Test
+    void connectionLoss_discardsTheLedgerUntilReconnected() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR"));
+        accountStream.maintain();
+
+        // Act
+        server.dropConnections();
+
+        // Assert
+        await(() -> balanceLedger.getAvailable(API_KEY, "EUR") == null);
+        assertFalse(accountStream.isConnected(BOT_ID));
+
+        accountStream.maintain();
+        assertTrue(accountStream.isConnected(BOT_ID));
+        assertEquals(2, server.getConnectionCount());
+        assertEquals(new BigDecimal("100"), balanceLedger.getAvailable(API_KEY, "EUR"));
+    }
+
+    @Test
+    void maintain_withDeactivatedBot_disconnectsAndDiscardsTheLedger() {
+        // Arrange
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR"));
+        accountStream.maintain();
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of());
+
+        // Act
+        accountStream.maintain();
+
+        // Assert
+        assertFalse(accountStream.isConnected(BOT_ID));
+        assertNull(balanceLedger.getAvailable(API_KEY, "EUR"));
+    }
+
+    @Test
+    void errorEvent_disconnectsTheBot() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairsByBotId()).thenReturn(Map.of(BOT_ID, "BTCEUR"));
+        accountStream.maintain();
+
+        // Act
+        server.send("{\"action\":\"authenticate\",\"errorCode\":305,\"error\":\"No active API key found.\"}");
+
+        // Assert
+        await(() -> balanceLedger.getAvailable(API_KEY, "EUR") == null);
+        assertFalse(accountStream.isConnected(BOT_ID));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
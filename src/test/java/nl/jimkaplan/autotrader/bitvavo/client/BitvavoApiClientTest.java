@@ -1,14 +1,22 @@
 package nl.jimkaplan.autotrader.bitvavo.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
 import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.HttpClientErrorException;
@@ -17,14 +25,20 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.math.BigDecimal;
 import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,6 +51,11 @@ class BitvavoApiClientTest {
     @Mock
     private RestTemplate restTemplate;
 
+    private final BitvavoRateLimiter rateLimiter =
+            new BitvavoRateLimiter(new SimpleMeterRegistry(), 1000, 100, Duration.ofSeconds(1));
+    private final BitvavoResilience resilience = new BitvavoResilience(
+            new SimpleMeterRegistry(), 3, Duration.ofMillis(1), Duration.ZERO, 3, 5, Duration.ofSeconds(30));
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private BitvavoApiClient bitvavoApiClient;
     private final String apiKey = "test-api-key";
     private final String apiSecret = "test-api-secret";
@@ -44,10 +63,44 @@ class BitvavoApiClientTest {
 
     @BeforeEach
     void setUp() {
-        bitvavoApiClient = new BitvavoApiClient(restTemplate, authenticationService);
+        bitvavoApiClient = new BitvavoApiClient(restTemplate, authenticationService, rateLimiter, resilience,
+                objectMapper);
         ReflectionTestUtils.setField(bitvavoApiClient, "apiUrl", apiUrl);
     }
 
+    @Test
+    void getPublic_sendsUnauthenticatedRequest() {
+        // Arrange
+        when(restTemplate.exchange(
+                eq(apiUrl + "/time"),
+                eq(HttpMethod.GET),
+                any(),
+                eq(Object.class)
+        )).thenReturn(ResponseEntity.ok("time"));
+
+        // Act
+        Object response = bitvavoApiClient.getPublic("/time", Object.class);
+
+        // Assert
+        assertEquals("time", response);
+        verify(authenticationService, never()).createAuthHeaders(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getPublicDirect_sendsOneRequestWithoutRetries() {
+        // Arrange
+        when(restTemplate.exchange(
+                eq(apiUrl + "/time"),
+                eq(HttpMethod.GET),
+                any(),
+                eq(Object.class)
+        )).thenThrow(new ResourceAccessException("Connection reset"));
+
+        // Act & Assert
+        assertThrows(ResourceAccessException.class, () -> bitvavoApiClient.getPublicDirect("/time", Object.class));
+        verify(restTemplate, times(1)).exchange(eq(apiUrl + "/time"), eq(HttpMethod.GET), any(), eq(Object.class));
+    }
+
     @Test
     void testGetRequest() {
         // This test verifies that the authentication service is called with the correct parameters
@@ -91,7 +144,7 @@ class BitvavoApiClientTest {
         // Arrange
         String endpoint = "/order";
         String body = "{\"market\":\"BTC-EUR\",\"side\":\"buy\",\"amount\":\"0.1\",\"orderId\":\"" + getRandomUUID() + "\"}";
-        when(authenticationService.createAuthHeaders(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret)))
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret)))
                 .thenReturn(BitvavoAuthHeaders.builder().build());
         when(restTemplate.exchange(
                 anyString(),
@@ -104,7 +157,7 @@ class BitvavoApiClientTest {
         bitvavoApiClient.post(endpoint, body, Object.class, apiKey, apiSecret);
 
         // Assert
-        verify(authenticationService).createAuthHeaders(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret));
+        verify(authenticationService).createAuthHeadersForBody(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret));
         verify(restTemplate).exchange(
                 eq(apiUrl + endpoint),
                 eq(HttpMethod.POST),
@@ -113,6 +166,142 @@ class BitvavoApiClientTest {
         );
     }
 
+    @Test
+    void get_takesOverTheRateLimitHeadersOfTheResponse() {
+        // Arrange
+        when(authenticationService.createAuthHeaders(eq("GET"), eq("/account"), eq(null), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(), eq(Object.class)))
+                .thenReturn(ResponseEntity.ok().header(BitvavoRateLimiter.REMAINING_HEADER, "42").build());
+
+        // Act
+        bitvavoApiClient.get("/account", Object.class, apiKey, apiSecret);
+
+        // Assert
+        assertEquals(42, rateLimiter.getRemaining(apiKey));
+        assertEquals(1000, rateLimiter.getRemaining(null));
+    }
+
+    @Test
+    void get_afterTooManyRequests_rejectsLookupsUntilTheBudgetResets() {
+        // Arrange
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(BitvavoRateLimiter.REMAINING_HEADER, "0");
+        headers.set(BitvavoRateLimiter.RESET_AT_HEADER, String.valueOf(System.currentTimeMillis() + 60_000));
+        when(authenticationService.createAuthHeaders(eq("GET"), eq("/account"), eq(null), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(), eq(Object.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                        headers, new byte[0], StandardCharsets.UTF_8));
+        assertThrows(HttpClientErrorException.class, () -> bitvavoApiClient.get("/account", Object.class, apiKey, apiSecret));
+
+        // Act & Assert
+        assertThrows(RateLimitExceededException.class,
+                () -> bitvavoApiClient.get("/account", Object.class, apiKey, apiSecret));
+        verify(restTemplate).exchange(anyString(), eq(HttpMethod.GET), any(), eq(Object.class));
+    }
+
+    @Test
+    void get_withTransientFailure_retries() {
+        // Arrange
+        when(authenticationService.createAuthHeaders(eq("GET"), eq("/account"), eq(null), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Connection reset"))
+                .thenReturn(ResponseEntity.ok("account"));
+
+        // Act
+        Object response = bitvavoApiClient.get("/account", Object.class, apiKey, apiSecret);
+
+        // Assert
+        assertEquals("account", response);
+        verify(restTemplate, times(2)).exchange(anyString(), eq(HttpMethod.GET), any(), eq(Object.class));
+    }
+
+    @Test
+    void post_orderWithClientOrderId_isRetriedWhenItWasNotPlaced() {
+        // Arrange
+        CreateOrderRequest order = CreateOrderRequest.builder()
+                .market("BTC-EUR").side("buy").orderType("market").clientOrderId(getRandomUUID()).build();
+        String lookupEndpoint = "/order?market=BTC-EUR&clientOrderId=" + order.getClientOrderId();
+        when(authenticationService.createAuthHeaders(eq("GET"), any(), eq(null), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq("/order"), any(), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(eq(apiUrl + "/order"), eq(HttpMethod.POST), any(), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"))
+                .thenReturn(ResponseEntity.ok("placed"));
+        when(restTemplate.exchange(eq(apiUrl + lookupEndpoint), eq(HttpMethod.GET), any(), eq(Object.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND, "Not Found"));
+
+        // Act
+        Object response = bitvavoApiClient.post("/order", order, Object.class, apiKey, apiSecret);
+
+        // Assert
+        assertEquals("placed", response);
+        verify(restTemplate, times(2)).exchange(eq(apiUrl + "/order"), eq(HttpMethod.POST), any(), eq(Object.class));
+    }
+
+    @Test
+    void post_orderWithClientOrderId_isNotPlacedAgainWhenTheFailedAttemptPlacedIt() {
+        // Arrange
+        CreateOrderRequest order = CreateOrderRequest.builder()
+                .market("BTC-EUR").side("buy").orderType("market").clientOrderId(getRandomUUID()).build();
+        String lookupEndpoint = "/order?market=BTC-EUR&clientOrderId=" + order.getClientOrderId();
+        when(authenticationService.createAuthHeaders(eq("GET"), any(), eq(null), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq("/order"), any(), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(eq(apiUrl + "/order"), eq(HttpMethod.POST), any(), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        when(restTemplate.exchange(eq(apiUrl + lookupEndpoint), eq(HttpMethod.GET), any(), eq(Object.class)))
+                .thenReturn(ResponseEntity.ok("found"));
+
+        // Act
+        Object response = bitvavoApiClient.post("/order", order, Object.class, apiKey, apiSecret);
+
+        // Assert
+        assertEquals("found", response);
+        verify(restTemplate, times(1)).exchange(eq(apiUrl + "/order"), eq(HttpMethod.POST), any(), eq(Object.class));
+    }
+
+    @Test
+    void post_orderWithoutClientOrderId_isNotRetried() {
+        // Arrange
+        CreateOrderRequest order = CreateOrderRequest.builder().market("BTC-EUR").side("buy").orderType("market").build();
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq("/order"), any(), eq(apiKey), eq(apiSecret)))
+                .thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+
+        // Act & Assert
+        assertThrows(ResourceAccessException.class,
+                () -> bitvavoApiClient.post("/order", order, Object.class, apiKey, apiSecret));
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST), any(), eq(Object.class));
+    }
+
+    @Test
+    void post_signsAndSendsTheSameSerializedBody() throws Exception {
+        // Arrange
+        CreateOrderRequest order = CreateOrderRequest.builder()
+                .market("BTC-EUR").side("buy").orderType("market").amountQuote(new BigDecimal("10.50")).build();
+        ArgumentCaptor<byte[]> signedBody = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<HttpEntity<?>> sentEntity = ArgumentCaptor.captor();
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq("/order"), signedBody.capture(), eq(apiKey),
+                eq(apiSecret))).thenReturn(BitvavoAuthHeaders.builder().build());
+        when(restTemplate.exchange(eq(apiUrl + "/order"), eq(HttpMethod.POST), sentEntity.capture(), eq(Object.class)))
+                .thenReturn(ResponseEntity.ok("placed"));
+
+        // Act
+        bitvavoApiClient.post("/order", order, Object.class, apiKey, apiSecret);
+
+        // Assert
+        byte[] sentBody = (byte[]) sentEntity.getValue().getBody();
+        assertArrayEquals(signedBody.getValue(), sentBody);
+        assertEquals(MediaType.APPLICATION_JSON, sentEntity.getValue().getHeaders().getContentType());
+        assertEquals(order, objectMapper.readValue(sentBody, CreateOrderRequest.class));
+    }
+
     @Test
     void testPostRequestWithInvalidBody() {
         // This test verifies that an IllegalArgumentException is thrown when the request body is invalid
@@ -212,7 +401,7 @@ class BitvavoApiClientTest {
         // Arrange
         String endpoint = "/order";
         String body = "{\"market\":\"BTC-EUR\",\"side\":\"buy\",\"amount\":\"0.1\"}";
-        when(authenticationService.createAuthHeaders(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret)))
+        when(authenticationService.createAuthHeadersForBody(eq("POST"), eq(endpoint), any(), eq(apiKey), eq(apiSecret)))
                 .thenReturn(BitvavoAuthHeaders.builder().build());
         when(restTemplate.exchange(
                 anyString(),
@@ -0,0 +1,93 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BitvavoClockSynchronizerTest {
+
+    @Mock
+    private BitvavoApiClient bitvavoApiClient;
+
+    @Mock
+    private BitvavoClock bitvavoClock;
+
+    @Test
+    void sync_feedsTheServerTimeToTheClock() {
+        // Arrange
+        BitvavoClockSynchronizer synchronizer = new BitvavoClockSynchronizer(bitvavoApiClient, bitvavoClock,
+                Duration.ofMinutes(1));
+        when(bitvavoClock.hostTimeMillis()).thenReturn(1000L, 1080L);
+        when(bitvavoApiClient.getPublicDirect(BitvavoClockSynchronizer.TIME_ENDPOINT, Map.class))
+                .thenReturn(Map.of("time", 1540L));
+        when(bitvavoClock.update(1000L, 1540L, 1080L)).thenReturn(true);
+
+        // Act
+        boolean synced = synchronizer.sync();
+
+        // Assert
+        assertTrue(synced);
+        verify(bitvavoApiClient, never()).getPublic(BitvavoClockSynchronizer.TIME_ENDPOINT, Map.class);
+    }
+
+    @Test
+    void sync_withSlowRoundTrip_reportsTheSampleAsUnused() {
+        // Arrange
+        BitvavoClockSynchronizer synchronizer = new BitvavoClockSynchronizer(bitvavoApiClient, bitvavoClock,
+                Duration.ofMinutes(1));
+        when(bitvavoClock.hostTimeMillis()).thenReturn(1000L, 3000L);
+        when(bitvavoApiClient.getPublicDirect(BitvavoClockSynchronizer.TIME_ENDPOINT, Map.class))
+                .thenReturn(Map.of("time", 2540L));
+        when(bitvavoClock.update(1000L, 2540L, 3000L)).thenReturn(false);
+
+        // Act
+        boolean synced = synchronizer.sync();
+
+        // Assert
+        assertFalse(synced);
+    }
+
+    @Test
+    void sync_withFailedRequest_leavesTheClockAlone() {
+        // Arrange
+        BitvavoClockSynchronizer synchronizer = new BitvavoClockSynchronizer(bitvavoApiClient, bitvavoClock,
+                Duration.ofMinutes(1));
+        when(bitvavoApiClient.getPublicDirect(BitvavoClockSynchronizer.TIME_ENDPOINT, Map.class))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        // Act
+        boolean synced = synchronizer.sync();
+
+        // Assert
+        assertFalse(synced);
+        verify(bitvavoClock, never()).update(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void start_withoutSyncInterval_doesNothing() {
+        // Arrange
+        BitvavoClockSynchronizer synchronizer = new BitvavoClockSynchronizer(bitvavoApiClient, bitvavoClock,
+                Duration.ZERO);
+
+        // Act
+        synchronizer.start();
+        synchronizer.stop();
+
+        // Assert
+        verify(bitvavoApiClient, never()).getPublic(BitvavoClockSynchronizer.TIME_ENDPOINT, Map.class);
+    }
+}
@@ -0,0 +1,71 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BitvavoConnectionWarmerTest {
+
+    @Mock
+    private BitvavoApiClient bitvavoApiClient;
+
+    private ExecutorService tradingExecutor;
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void warm_sendsOneRequestPerWarmConnection() {
+        // Arrange
+        BitvavoConnectionWarmer warmer = new BitvavoConnectionWarmer(bitvavoApiClient, tradingExecutor, 4,
+                Duration.ofSeconds(30));
+        when(bitvavoApiClient.getPublic(BitvavoConnectionWarmer.WARM_UP_ENDPOINT, Map.class))
+                .thenReturn(Map.of("time", 1L))
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenReturn(Map.of("time", 1L));
+
+        // Act
+        int warmed = warmer.warm();
+
+        // Assert
+        assertEquals(3, warmed);
+        verify(bitvavoApiClient, times(4)).getPublic(BitvavoConnectionWarmer.WARM_UP_ENDPOINT, Map.class);
+    }
+
+    @Test
+    void start_withoutWarmConnections_doesNothing() {
+        // Arrange
+        BitvavoConnectionWarmer warmer = new BitvavoConnectionWarmer(bitvavoApiClient, tradingExecutor, 0,
+                Duration.ofSeconds(30));
+
+        // Act
+        warmer.start();
+        warmer.stop();
+
+        // Assert
+        verify(bitvavoApiClient, never()).getPublic(BitvavoConnectionWarmer.WARM_UP_ENDPOINT, Map.class);
+    }
+}
@@ -0,0 +1,146 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitvavoRateLimiterTest {
+
+    private static final String API_KEY = "test-api-key";
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicLong currentTimeMillis = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BitvavoRateLimiter rateLimiter = new BitvavoRateLimiter(
+            meterRegistry, 10, 3, Duration.ZERO, nanoTime::get, currentTimeMillis::get);
+
+    @Test
+    void acquire_lookupsLeaveTheOrderReserveToOrders() {
+        // Arrange
+        for (int i = 0; i < 7; i++) {
+            rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.LOOKUP);
+        }
+
+        // Act & Assert
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.LOOKUP));
+        for (int i = 0; i < 3; i++) {
+            assertDoesNotThrow(() -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER));
+        }
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER));
+        assertEquals(1.0, rejections("lookup"));
+        assertEquals(1.0, rejections("order"));
+    }
+
+    @Test
+    void acquire_chargesApiKeysAndPublicCallsToSeparateBudgets() {
+        // Arrange
+        rateLimiter.acquire(API_KEY, 10, BitvavoRateLimiter.Priority.ORDER);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> rateLimiter.acquire("other-api-key", 1, BitvavoRateLimiter.Priority.ORDER));
+        assertDoesNotThrow(() -> rateLimiter.acquire(null, 1, BitvavoRateLimiter.Priority.LOOKUP));
+        assertEquals(0, rateLimiter.getRemaining(API_KEY));
+        assertEquals(9, rateLimiter.getRemaining(null));
+    }
+
+    @Test
+    void acquire_budgetRefillsOverTheMinute() {
+        // Arrange
+        rateLimiter.acquire(API_KEY, 10, BitvavoRateLimiter.Priority.ORDER);
+
+        // Act
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(6));
+
+        // Assert
+        assertDoesNotThrow(() -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER));
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER));
+    }
+
+    @Test
+    void acquire_afterAMinuteWithoutCalls_forgetsTheFullBudgetsOfApiKeys() {
+        // Arrange
+        rateLimiter.acquire(API_KEY, 10, BitvavoRateLimiter.Priority.ORDER);
+        rateLimiter.acquire("other-api-key", 1, BitvavoRateLimiter.Priority.ORDER);
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        rateLimiter.acquire("other-api-key", 1, BitvavoRateLimiter.Priority.ORDER);
+
+        // Act
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        long remaining = rateLimiter.getRemaining(API_KEY);
+
+        // Assert
+        assertEquals(10, remaining);
+        // The full budget was replaced by a new one; the other key's budget has not refilled yet and was kept
+        assertEquals(2.0, meterRegistry.get("autotrader.bitvavo.rate-limit.api-keys").gauge().value());
+        assertEquals(9, rateLimiter.getRemaining("other-api-key"));
+    }
+
+    @Test
+    void sync_lowersTheBudgetToWhatBitvavoReports() {
+        // Act
+        rateLimiter.sync(API_KEY, "4", null);
+
+        // Assert
+        assertEquals(4, rateLimiter.getRemaining(API_KEY));
+        assertEquals(10, rateLimiter.getRemaining(null));
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(API_KEY, 2, BitvavoRateLimiter.Priority.LOOKUP));
+    }
+
+    @Test
+    void sync_withSpentBudget_blocksUntilBitvavoResetsIt() {
+        // Act
+        rateLimiter.sync(API_KEY, "0", String.valueOf(currentTimeMillis.get() + 30_000));
+
+        // Assert
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        assertEquals(0, rateLimiter.getRemaining(API_KEY));
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER));
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(10, rateLimiter.getRemaining(API_KEY));
+    }
+
+    @Test
+    void sync_withUnreadableHeaders_isIgnored() {
+        // Act
+        rateLimiter.sync(API_KEY, "many", null);
+        rateLimiter.sync(API_KEY, null, "soon");
+
+        // Assert
+        assertEquals(10, rateLimiter.getRemaining(API_KEY));
+    }
+
+    @Test
+    void acquire_withinMaxWait_waitsForTheBudget() {
+        // Arrange: 600 per minute refills 1 weight every 100 ms
+        BitvavoRateLimiter waitingLimiter = new BitvavoRateLimiter(meterRegistry, 600, 0, Duration.ofSeconds(1));
+        waitingLimiter.acquire(API_KEY, 600, BitvavoRateLimiter.Priority.ORDER);
+
+        // Act
+        long start = System.nanoTime();
+        waitingLimiter.acquire(API_KEY, 1, BitvavoRateLimiter.Priority.ORDER);
+
+        // Assert
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(meterRegistry.get("autotrader.bitvavo.rate-limit.wait").tag("priority", "order").timer()
+                .max(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    private double rejections(String priority) {
+        return meterRegistry.get("autotrader.bitvavo.rate-limit.rejections").tag("priority", priority).counter().count();
+    }
+}
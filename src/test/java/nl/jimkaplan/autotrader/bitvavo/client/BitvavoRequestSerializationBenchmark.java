@@ -0,0 +1,102 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an order into a signed request body, as {@link BitvavoApiClient#post} did before and does now.
+ * Before, the body was serialized to a String by a new {@link ObjectMapper} for signing, and serialized again by
+ * the JSON message converter of the RestTemplate when sent. Now it is serialized once to bytes by the shared
+ * mapper, and those bytes are signed and written as they are.
+ * <p>
+ * Runs with the GC profiler, so {@code gc.alloc.rate.norm} shows the bytes allocated per request.
+ * Not run by the test suite. Run it from the IDE through {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class BitvavoRequestSerializationBenchmark {
+
+    private static final String API_KEY = "bitvavo-api-key";
+    private static final String API_SECRET = "bitvavo-api-secret";
+
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private final MappingJackson2HttpMessageConverter jsonConverter = new MappingJackson2HttpMessageConverter(sharedMapper);
+    private final ByteArrayHttpMessageConverter byteArrayConverter = new ByteArrayHttpMessageConverter();
+    private final BitvavoAuthenticationService authService = new BitvavoAuthenticationService(
+            new BitvavoClock(new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ofSeconds(1)));
+    private CreateOrderRequest order;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+        order = CreateOrderRequest.builder()
+                .market("BTC-EUR").side("buy").orderType("market").amountQuote(new BigDecimal("250.00"))
+                .clientOrderId(UUID.fromString("2f1c8e0a-5b7d-3c4e-9f6a-1b2c3d4e5f60")).responseRequired(false)
+                .build();
+    }
+
+    @Benchmark
+    public void serializeTwice(Blackhole blackhole) throws IOException {
+        String body = new ObjectMapper().writeValueAsString(order);
+        BitvavoAuthHeaders headers = authService.createAuthHeaders("POST", "/order", body, API_KEY, API_SECRET);
+        MockHttpOutputMessage request = new MockHttpOutputMessage();
+        jsonConverter.write(order, MediaType.APPLICATION_JSON, request);
+        blackhole.consume(headers);
+        blackhole.consume(request);
+    }
+
+    @Benchmark
+    public void serializeOnce(Blackhole blackhole) throws IOException {
+        byte[] body = sharedMapper.writeValueAsBytes(order);
+        BitvavoAuthHeaders headers = authService.createAuthHeadersForBody("POST", "/order", body, API_KEY, API_SECRET);
+        MockHttpOutputMessage request = new MockHttpOutputMessage();
+        byteArrayConverter.write(body, MediaType.APPLICATION_JSON, request);
+        blackhole.consume(headers);
+        blackhole.consume(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BitvavoRequestSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,179 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.exception.CircuitBreakerOpenException;
+import nl.jimkaplan.autotrader.exception.RateLimitExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitvavoResilienceTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BitvavoResilience resilience = new BitvavoResilience(
+            meterRegistry, 3, Duration.ofMillis(1), Duration.ZERO, 3, 3, Duration.ofSeconds(30), nanoTime::get);
+
+    @AfterEach
+    void tearDown() {
+        resilience.stop();
+    }
+
+    @Test
+    void read_retriesTransientFailuresUpToMaxAttempts() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(ResourceAccessException.class, () -> resilience.read("/balance?symbol=EUR", () -> {
+            calls.incrementAndGet();
+            throw new ResourceAccessException("Connection refused");
+        }));
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("autotrader.bitvavo.resilience")
+                .tags("endpoint", "/balance", "event", "retry").counter().count());
+    }
+
+    @Test
+    void read_doesNotRetryClientErrors() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(HttpClientErrorException.class, () -> resilience.read("/balance", () -> {
+            calls.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }));
+        assertEquals(1, calls.get());
+        assertFalse(resilience.isOpen("/balance"));
+    }
+
+    @Test
+    void read_sendsHedgeWhenFirstCallIsSlow() throws InterruptedException {
+        // Arrange
+        BitvavoResilience hedging = new BitvavoResilience(
+                meterRegistry, 1, Duration.ofMillis(1), Duration.ofMillis(50), 1, 5, Duration.ofSeconds(30));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        String result = hedging.read("/ticker/price", () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }
+            return "hedge";
+        });
+
+        // Assert
+        assertEquals("hedge", result);
+        assertEquals(2, calls.get());
+        release.countDown();
+        hedging.stop();
+    }
+
+    @Test
+    void circuitBreaker_opensAfterConsecutiveFailuresAndLetsOneTrialThroughAfterOpenDuration() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpServerErrorException.class, () -> resilience.write("/order", () -> {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }));
+        }
+
+        // Act & Assert
+        assertTrue(resilience.isOpen("/order"));
+        assertThrows(CircuitBreakerOpenException.class, () -> resilience.write("/order", () -> "placed"));
+        assertEquals("price", resilience.read("/ticker/price", () -> "price"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals("placed", resilience.write("/order", () -> "placed"));
+        assertFalse(resilience.isOpen("/order"));
+    }
+
+    @Test
+    void circuitBreaker_doesNotCountLocalFailuresAsSuccesses() {
+        // Arrange
+        for (int i = 0; i < 2; i++) {
+            assertThrows(HttpServerErrorException.class, () -> resilience.write("/order", () -> {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }));
+        }
+        assertThrows(RateLimitExceededException.class, () -> resilience.write("/order", () -> {
+            throw new RateLimitExceededException("Rate limit exceeded");
+        }));
+
+        // Act
+        assertThrows(HttpServerErrorException.class, () -> resilience.write("/order", () -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        }));
+
+        // Assert: the local failure did not reset the count of consecutive failures
+        assertTrue(resilience.isOpen("/order"));
+    }
+
+    @Test
+    void circuitBreaker_afterLocalFailureOfTrial_letsNextTrialThrough() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpServerErrorException.class, () -> resilience.write("/order", () -> {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }));
+        }
+        nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> resilience.write("/order", () -> {
+            throw new IllegalStateException("Could not serialize the order");
+        }));
+
+        // Assert: the circuit stays open, but the trial is not stuck
+        assertTrue(resilience.isOpen("/order"));
+        assertEquals("placed", resilience.write("/order", () -> "placed"));
+        assertFalse(resilience.isOpen("/order"));
+    }
+
+    @Test
+    void order_looksUpTheOrderBeforeEveryRetry() {
+        // Arrange
+        AtomicInteger placements = new AtomicInteger();
+        AtomicInteger lookups = new AtomicInteger();
+
+        // Act
+        String result = resilience.order("/order",
+                () -> {
+                    if (placements.incrementAndGet() == 1) {
+                        throw new ResourceAccessException("Read timed out");
+                    }
+                    return "placed";
+                },
+                () -> {
+                    lookups.incrementAndGet();
+                    return Optional.empty();
+                });
+
+        // Assert
+        assertEquals("placed", result);
+        assertEquals(2, placements.get());
+        assertEquals(1, lookups.get());
+    }
+}
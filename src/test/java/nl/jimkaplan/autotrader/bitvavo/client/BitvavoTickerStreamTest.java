@@ -0,0 +1,184 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.MarketPrice;
+import nl.jimkaplan.autotrader.bitvavo.service.MarketPriceTable;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BitvavoTickerStreamTest {
+
+    @Mock
+    private TradingPairIndex tradingPairIndex;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MarketPriceTable marketPriceTable = new MarketPriceTable(meterRegistry);
+    private LocalWebSocketServer server;
+    private BitvavoTickerStream tickerStream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new LocalWebSocketServer();
+        tickerStream = new BitvavoTickerStream(tradingPairIndex, marketPriceTable, new ObjectMapper(), meterRegistry,
+                server.getUri().toString(), true, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        tickerStream.stop();
+        server.close();
+    }
+
+    @Test
+    void maintain_connectsAndSubscribesToTheTickerOfEveryTradingPair() throws InterruptedException {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR", "ETHEUR"));
+
+        // Act
+        tickerStream.maintain();
+
+        // Assert
+        assertTrue(tickerStream.isConnected());
+        assertEquals("{\"action\":\"subscribe\",\"channels\":[{\"name\":\"ticker\",\"markets\":[\"BTC-EUR\",\"ETH-EUR\"]}]}",
+                server.awaitMessage());
+        assertEquals(1.0, meterRegistry.get("autotrader.market-price.stream.connected").gauge().value());
+    }
+
+    @Test
+    void maintain_withoutTradingPairs_doesNotConnect() {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of());
+
+        // Act
+        tickerStream.maintain();
+
+        // Assert
+        assertFalse(tickerStream.isConnected());
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    @Test
+    void tickerUpdates_areWrittenToThePriceTable() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR"));
+        tickerStream.maintain();
+        server.awaitMessage();
+
+        // Act
+        server.send("{\"event\":\"ticker\",\"market\":\"BTC-EUR\",\"bestBid\":\"49990\",\"bestBidSize\":\"0.1\","
+                + "\"bestAsk\":\"50010\",\"bestAskSize\":\"0.2\",\"lastPrice\":\"50000\"}");
+        // Bitvavo only sends the fields that changed
+        server.send("{\"event\":\"ticker\",\"market\":\"BTC-EUR\",\"bestAsk\":\"50005\"}");
+
+        // Assert
+        MarketPrice price = awaitPrice("BTC-EUR", new BigDecimal("50005"));
+        assertEquals(new BigDecimal("50000"), price.lastPrice());
+        assertEquals(new BigDecimal("49990"), price.bestBid());
+    }
+
+    @Test
+    void maintain_subscribesOnlyToNewTradingPairs() throws InterruptedException {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR"));
+        tickerStream.maintain();
+        server.awaitMessage();
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR", "ETHEUR"));
+
+        // Act
+        tickerStream.maintain();
+
+        // Assert
+        assertEquals("{\"action\":\"subscribe\",\"channels\":[{\"name\":\"ticker\",\"markets\":[\"ETH-EUR\"]}]}",
+                server.awaitMessage());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    void maintain_afterConnectionLoss_reconnectsAndSubscribesAgain() throws Exception {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR"));
+        tickerStream.maintain();
+        server.awaitMessage();
+        server.dropConnections();
+        awaitDisconnected();
+
+        // Act
+        tickerStream.maintain();
+
+        // Assert
+        assertTrue(tickerStream.isConnected());
+        assertEquals(2, server.getConnectionCount());
+        assertEquals("{\"action\":\"subscribe\",\"channels\":[{\"name\":\"ticker\",\"markets\":[\"BTC-EUR\"]}]}",
+                server.awaitMessage());
+    }
+
+    @Test
+    void maintain_whenServerIsDown_staysDisconnected() throws IOException {
+        // Arrange
+        when(tradingPairIndex.getTradingPairs()).thenReturn(Set.of("BTCEUR"));
+        server.close();
+
+        // Act
+        tickerStream.maintain();
+
+        // Assert
+        assertFalse(tickerStream.isConnected());
+        assertEquals(0.0, meterRegistry.get("autotrader.market-price.stream.connected").gauge().value());
+    }
+
+    @Test
+    void handle_ignoresUnreadableAndOtherMessages() {
+        // Act
+        tickerStream.handle("not json");
+        tickerStream.handle("{\"event\":\"subscribed\",\"subscriptions\":{\"ticker\":[\"BTC-EUR\"]}}");
+        tickerStream.handle("{\"event\":\"ticker\",\"market\":\"BTC-EUR\",\"lastPrice\":\"abc\"}");
+
+        // Assert
+        assertNull(marketPriceTable.get("BTC-EUR"));
+    }
+
+    @Test
+    void toMarket_insertsDashBeforeQuoteCurrency() {
+        assertEquals("BTC-EUR", BitvavoTickerStream.toMarket("BTCEUR"));
+        assertEquals("BTC-EUR", BitvavoTickerStream.toMarket("BTC-EUR"));
+    }
+
+    private MarketPrice awaitPrice(String market, BigDecimal bestAsk) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        MarketPrice price = marketPriceTable.get(market);
+        while ((price == null || !bestAsk.equals(price.bestAsk())) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            price = marketPriceTable.get(market);
+        }
+        assertNotNull(price);
+        assertEquals(bestAsk, price.bestAsk());
+        return price;
+    }
+
+    private void awaitDisconnected() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (tickerStream.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(tickerStream.isConnected());
+    }
+}
@@ -0,0 +1,205 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoAuthenticationService;
+import nl.jimkaplan.autotrader.bitvavo.service.BitvavoClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitvavoWebSocketOrderClientTest {
+
+    private static final String API_KEY = "test-api-key";
+    private static final String API_SECRET = "test-api-secret";
+    private static final CreateOrderRequest ORDER_REQUEST = CreateOrderRequest.builder()
+            .market("BTCEUR").side("buy").orderType("market").amountQuote(new BigDecimal("10")).build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private LocalWebSocketServer server;
+    private BitvavoWebSocketOrderClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new LocalWebSocketServer();
+        client = new BitvavoWebSocketOrderClient(new BitvavoAuthenticationService(
+                new BitvavoClock(new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ofSeconds(1))),
+                new BitvavoRateLimiter(new SimpleMeterRegistry(), 1000, 100, Duration.ofSeconds(1)), objectMapper,
+                server.getUri().toString(), Duration.ofSeconds(2), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.stop();
+        server.close();
+    }
+
+    @Test
+    void createOrder_authenticatesOnceAndMatchesResponsesByRequestId() throws Exception {
+        // Arrange
+        UUID firstOrderId = UUID.randomUUID();
+        UUID secondOrderId = UUID.randomUUID();
+
+        // Act
+        CompletableFuture<CreateOrderResponse> first = createOrderAsync();
+        JsonNode authenticate = objectMapper.readTree(server.awaitMessage());
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        long firstRequestId = respond(firstOrderId);
+        CompletableFuture<CreateOrderResponse> second = createOrderAsync();
+        long secondRequestId = respond(secondOrderId);
+
+        // Assert
+        assertEquals("authenticate", authenticate.path("action").asText());
+        assertEquals(API_KEY, authenticate.path("key").asText());
+        assertEquals(firstOrderId, first.get(5, TimeUnit.SECONDS).getOrderId());
+        assertEquals(secondOrderId, second.get(5, TimeUnit.SECONDS).getOrderId());
+        assertTrue(secondRequestId > firstRequestId);
+        assertEquals(1, server.getConnectionCount());
+        assertTrue(client.isConnected(API_KEY));
+    }
+
+    @Test
+    void createOrder_sendsTheOrderFieldsWithTheCreateOrderAction() throws Exception {
+        // Act
+        CompletableFuture<CreateOrderResponse> response = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        JsonNode order = objectMapper.readTree(server.awaitMessage());
+        server.send("{\"action\":\"privateCreateOrder\",\"requestId\":" + order.path("requestId").asLong()
+                + ",\"response\":{\"orderId\":\"" + UUID.randomUUID() + "\",\"status\":\"filled\"}}");
+
+        // Assert
+        assertEquals("privateCreateOrder", order.path("action").asText());
+        assertEquals("BTCEUR", order.path("market").asText());
+        assertEquals("buy", order.path("side").asText());
+        assertEquals("market", order.path("orderType").asText());
+        assertEquals(0, new BigDecimal("10").compareTo(order.path("amountQuote").decimalValue()));
+        assertEquals("filled", response.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    void createOrder_withRejectedOrder_throwsWithBitvavoError() throws Exception {
+        // Act
+        CompletableFuture<CreateOrderResponse> response = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        JsonNode order = objectMapper.readTree(server.awaitMessage());
+        server.send("{\"action\":\"privateCreateOrder\",\"requestId\":" + order.path("requestId").asLong()
+                + ",\"errorCode\":216,\"error\":\"Insufficient balance\"}");
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals("Bitvavo error 216: Insufficient balance", exception.getCause().getMessage());
+    }
+
+    @Test
+    void createOrder_withRefusedAuthentication_throws() throws Exception {
+        // Act
+        CompletableFuture<CreateOrderResponse> response = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"action\":\"authenticate\",\"errorCode\":305,\"error\":\"No active API key found.\"}");
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertFalse(client.isConnected(API_KEY));
+    }
+
+    @Test
+    void createOrder_afterConnectionLoss_failsPendingOrderAndReconnects() throws Exception {
+        // Arrange
+        CompletableFuture<CreateOrderResponse> pending = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        server.awaitMessage();
+
+        // Act
+        server.dropConnections();
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+
+        UUID orderId = UUID.randomUUID();
+        CompletableFuture<CreateOrderResponse> next = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        respond(orderId);
+        assertEquals(orderId, next.get(5, TimeUnit.SECONDS).getOrderId());
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    void createOrder_afterSecretRotation_authenticatesOnNewConnection() throws Exception {
+        // Arrange
+        CompletableFuture<CreateOrderResponse> first = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        respond(UUID.randomUUID());
+        first.get(5, TimeUnit.SECONDS);
+        UUID orderId = UUID.randomUUID();
+
+        // Act
+        CompletableFuture<CreateOrderResponse> next = createOrderAsync("rotated-api-secret");
+        JsonNode authenticate = objectMapper.readTree(server.awaitMessage());
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        respond(orderId);
+
+        // Assert
+        assertEquals("authenticate", authenticate.path("action").asText());
+        assertEquals(orderId, next.get(5, TimeUnit.SECONDS).getOrderId());
+        assertEquals(2, server.getConnectionCount());
+        assertTrue(client.isConnected(API_KEY));
+    }
+
+    @Test
+    void createOrder_afterSecretRotation_failsOrderPendingOnOldConnection() throws Exception {
+        // Arrange
+        CompletableFuture<CreateOrderResponse> pending = createOrderAsync();
+        server.awaitMessage();
+        server.send("{\"event\":\"authenticate\",\"authenticated\":true}");
+        server.awaitMessage();
+
+        // Act
+        createOrderAsync("rotated-api-secret");
+
+        // Assert: failed when the old connection is closed, not after the order timeout
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> pending.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().endsWith("the order may have been placed"));
+    }
+
+    private CompletableFuture<CreateOrderResponse> createOrderAsync() {
+        return createOrderAsync(API_SECRET);
+    }
+
+    private CompletableFuture<CreateOrderResponse> createOrderAsync(String apiSecret) {
+        return CompletableFuture.supplyAsync(() -> client.createOrder(ORDER_REQUEST, API_KEY, apiSecret));
+    }
+
+    private long respond(UUID orderId) throws Exception {
+        long requestId = objectMapper.readTree(server.awaitMessage()).path("requestId").asLong();
+        server.send("{\"action\":\"privateCreateOrder\",\"requestId\":" + requestId
+                + ",\"response\":{\"orderId\":\"" + orderId + "\"}}");
+        return requestId;
+    }
+}
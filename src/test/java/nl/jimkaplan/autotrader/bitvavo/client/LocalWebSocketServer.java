@@ -0,0 +1,212 @@
+package nl.jimkaplan.autotrader.bitvavo.client;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local WebSocket server (RFC 6455) standing in for the Bitvavo WebSocket API in tests.
+ * It records the text messages clients send, and sends text messages to every connected client.
+ */
+class LocalWebSocketServer implements AutoCloseable {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    LocalWebSocketServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(this::acceptLoop);
+    }
+
+    URI getUri() {
+        return URI.create("ws://localhost:" + serverSocket.getLocalPort() + "/v2/");
+    }
+
+    /**
+     * @return The number of connections accepted so far
+     */
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Wait for the next text message from a client.
+     *
+     * @return The message, or null if none arrived within 5 seconds
+     */
+    String awaitMessage() throws InterruptedException {
+        return received.poll(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send a text message to every connected client.
+     */
+    void send(String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        for (Socket connection : connections) {
+            synchronized (connection) {
+                OutputStream out = connection.getOutputStream();
+                out.write(0x81);
+                if (payload.length < 126) {
+                    out.write(payload.length);
+                } else {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length);
+                }
+                out.write(payload);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Drop every connection without a close handshake, like a network failure.
+     */
+    void dropConnections() throws IOException {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket connection = serverSocket.accept();
+                Thread.ofVirtual().start(() -> serve(connection));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection) {
+            InputStream in = connection.getInputStream();
+            handshake(in, connection.getOutputStream());
+            connections.add(connection);
+            connectionCount.incrementAndGet();
+            readFrames(new DataInputStream(in), connection);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Connection closed
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private static void handshake(InputStream in, OutputStream out) throws IOException, NoSuchAlgorithmException {
+        String key = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            throw new IOException("Not a WebSocket handshake");
+        }
+
+        String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                .digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    // Read byte by byte, so no frame bytes are buffered away
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connection closed during the handshake");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private void readFrames(DataInputStream in, Socket connection) throws IOException {
+        OutputStream out = connection.getOutputStream();
+        StringBuilder message = new StringBuilder();
+        while (true) {
+            int first = in.readUnsignedByte();
+            int second = in.readUnsignedByte();
+            int opcode = first & 0x0f;
+            long length = second & 0x7f;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            byte[] mask = new byte[4];
+            if ((second & 0x80) != 0) {
+                in.readFully(mask);
+            }
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+
+            switch (opcode) {
+                case 0x0, 0x1 -> {
+                    message.append(new String(payload, StandardCharsets.UTF_8));
+                    if ((first & 0x80) != 0) {
+                        received.add(message.toString());
+                        message.setLength(0);
+                    }
+                }
+                case 0x8 -> {
+                    synchronized (connection) {
+                        out.write(new byte[]{(byte) 0x88, 0});
+                        out.flush();
+                    }
+                    return;
+                }
+                case 0x9 -> {
+                    synchronized (connection) {
+                        out.write(0x8a);
+                        out.write(payload.length);
+                        out.write(payload);
+                        out.flush();
+                    }
+                }
+                default -> {
+                    // Ignore pongs and binary frames
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
+import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
+import nl.jimkaplan.autotrader.bitvavo.model.Fills;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceLedgerTest {
+
+    private static final String API_KEY = "test-api-key";
+    private static final UUID ORDER_ID = UUID.randomUUID();
+    private static final UUID FILL_ID = UUID.randomUUID();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BalanceLedger ledger = new BalanceLedger(meterRegistry, Duration.ofMinutes(10), nanoTime::get);
+
+    @Test
+    void getAvailable_withoutSnapshot_returnsNull() {
+        // Act & Assert
+        assertNull(ledger.getAvailable(API_KEY, "EUR"));
+        assertTrue(ledger.needsSnapshot(API_KEY));
+        assertEquals(1.0, lookups("rest"));
+    }
+
+    @Test
+    void getAvailable_afterSnapshot_returnsBalanceAndZeroForMissingSymbols() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+
+        // Act & Assert
+        assertEquals(new BigDecimal("100"), ledger.getAvailable(API_KEY, "EUR"));
+        assertEquals(BigDecimal.ZERO, ledger.getAvailable(API_KEY, "BTC"));
+        assertFalse(ledger.needsSnapshot(API_KEY));
+        assertEquals(2.0, lookups("ledger"));
+    }
+
+    @Test
+    void snapshot_isRefreshedAtHalfItsMaxAgeAndExpiresAfterIt() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+
+        // Act & Assert
+        nanoTime.set(Duration.ofMinutes(5).plusNanos(1).toNanos());
+        assertTrue(ledger.needsSnapshot(API_KEY));
+        assertEquals(new BigDecimal("100"), ledger.getAvailable(API_KEY, "EUR"));
+
+        nanoTime.set(Duration.ofMinutes(10).plusNanos(1).toNanos());
+        assertNull(ledger.getAvailable(API_KEY, "EUR"));
+    }
+
+    @Test
+    void recordOrder_buy_debitsQuoteCreditsFillsAndReleasesRemainder() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .market("BTCEUR").side("buy").orderType("market").amountQuote(new BigDecimal("100")).build();
+        CreateOrderResponse response = new CreateOrderResponse();
+        response.setOrderId(ORDER_ID);
+        response.setStatus("filled");
+        response.setAmountQuoteRemaining(new BigDecimal("0.50"));
+        response.setFills(List.of(fill(new BigDecimal("0.002"), new BigDecimal("49500"), new BigDecimal("0.25"), "EUR")));
+
+        // Act
+        ledger.recordOrder(API_KEY, request, response);
+
+        // Assert
+        assertEquals(new BigDecimal("0.50"), ledger.getAvailable(API_KEY, "EUR"));
+        assertEquals(new BigDecimal("0.002"), ledger.getAvailable(API_KEY, "BTC"));
+    }
+
+    @Test
+    void streamEvents_forOwnOrder_areAppliedOnce() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("BTC", new BigDecimal("0.002")));
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .market("BTCEUR").side("sell").orderType("market").amount(new BigDecimal("0.002")).build();
+        CreateOrderResponse response = new CreateOrderResponse();
+        response.setOrderId(ORDER_ID);
+        response.setStatus("new");
+        ledger.recordOrder(API_KEY, request, response);
+
+        // Act: the fill arrives twice, e.g. after a resubscribe
+        ledger.applyFill(API_KEY, ORDER_ID.toString(), FILL_ID.toString(), "BTC-EUR", "sell", new BigDecimal("0.002"),
+                new BigDecimal("50000"), new BigDecimal("0.25"), "EUR");
+        ledger.applyFill(API_KEY, ORDER_ID.toString(), FILL_ID.toString(), "BTC-EUR", "sell", new BigDecimal("0.002"),
+                new BigDecimal("50000"), new BigDecimal("0.25"), "EUR");
+        ledger.orderUpdated(API_KEY, ORDER_ID.toString(), "filled", BigDecimal.ZERO, null);
+
+        // Assert
+        assertEquals(0, new BigDecimal("99.75").compareTo(ledger.getAvailable(API_KEY, "EUR")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(ledger.getAvailable(API_KEY, "BTC")));
+        assertFalse(ledger.needsSnapshot(API_KEY));
+    }
+
+    @Test
+    void orderEvent_beforeOrderResponse_isClaimedByTheOrder() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+        ledger.orderUpdated(API_KEY, ORDER_ID.toString(), "new", null, null);
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .market("BTCEUR").side("buy").orderType("market").amountQuote(new BigDecimal("100")).build();
+        CreateOrderResponse response = new CreateOrderResponse();
+        response.setOrderId(ORDER_ID);
+
+        // Act
+        ledger.recordOrder(API_KEY, request, response);
+        nanoTime.addAndGet(Duration.ofSeconds(BalanceLedger.CLAIM_WINDOW_SECONDS + 1).toNanos());
+
+        // Assert
+        assertFalse(ledger.needsSnapshot(API_KEY));
+    }
+
+    @Test
+    void fillEvent_beforeOrderResponse_isAppliedWhenTheOrderIsClaimed() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+        ledger.applyFill(API_KEY, ORDER_ID.toString(), FILL_ID.toString(), "BTC-EUR", "buy", new BigDecimal("0.002"),
+                new BigDecimal("50000"), new BigDecimal("0.25"), "EUR");
+        assertNull(ledger.getAvailable(API_KEY, "BTC"));
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .market("BTCEUR").side("buy").orderType("market").amountQuote(new BigDecimal("100")).build();
+        CreateOrderResponse response = new CreateOrderResponse();
+        response.setOrderId(ORDER_ID);
+        response.setStatus("new");
+
+        // Act
+        ledger.recordOrder(API_KEY, request, response);
+
+        // Assert
+        assertEquals(new BigDecimal("0.002"), ledger.getAvailable(API_KEY, "BTC"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(ledger.getAvailable(API_KEY, "EUR")));
+    }
+
+    @Test
+    void orderEvent_forOrderPlacedElsewhere_makesLedgerUnusableAndDiscardsItAfterClaimWindow() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+
+        // Act
+        ledger.orderUpdated(API_KEY, ORDER_ID.toString(), "new", null, null);
+
+        // Assert
+        assertNull(ledger.getAvailable(API_KEY, "EUR"));
+        assertFalse(ledger.needsSnapshot(API_KEY));
+        nanoTime.addAndGet(Duration.ofSeconds(BalanceLedger.CLAIM_WINDOW_SECONDS + 1).toNanos());
+        assertTrue(ledger.needsSnapshot(API_KEY));
+
+        // Discarded: events of the order no longer reach a ledger, until the next snapshot
+        ledger.orderUpdated(API_KEY, ORDER_ID.toString(), "filled", null, null);
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("50")));
+        assertEquals(new BigDecimal("50"), ledger.getAvailable(API_KEY, "EUR"));
+    }
+
+    @Test
+    void fillEvent_forOrderPlacedElsewhere_isNotApplied() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+
+        // Act
+        ledger.applyFill(API_KEY, ORDER_ID.toString(), FILL_ID.toString(), "BTC-EUR", "buy", new BigDecimal("0.002"),
+                new BigDecimal("50000"), null, null);
+        nanoTime.addAndGet(Duration.ofSeconds(BalanceLedger.CLAIM_WINDOW_SECONDS + 1).toNanos());
+
+        // Assert
+        assertTrue(ledger.needsSnapshot(API_KEY));
+        assertNull(ledger.getAvailable(API_KEY, "BTC"));
+    }
+
+    @Test
+    void invalidate_discardsLedgerUntilNextSnapshot() {
+        // Arrange
+        ledger.seed(API_KEY, Map.of("EUR", new BigDecimal("100")));
+
+        // Act
+        ledger.invalidate(API_KEY);
+
+        // Assert
+        assertNull(ledger.getAvailable(API_KEY, "EUR"));
+        assertTrue(ledger.needsSnapshot(API_KEY));
+    }
+
+    private static Fills fill(BigDecimal amount, BigDecimal price, BigDecimal fee, String feeCurrency) {
+        Fills fill = new Fills();
+        fill.setId(FILL_ID);
+        fill.setAmount(amount);
+        fill.setPrice(price);
+        fill.setFee(fee);
+        fill.setFeeCurrency(feeCurrency);
+        return fill;
+    }
+
+    private double lookups(String source) {
+        return meterRegistry.get("autotrader.balance.lookups").tag("source", source).counter().count();
+    }
+}
@@ -1,10 +1,12 @@
 package nl.jimkaplan.autotrader.bitvavo.service;
 
 import nl.jimkaplan.autotrader.bitvavo.model.BitvavoAuthHeaders;
+import org.apache.commons.codec.binary.Hex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -13,6 +15,12 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -22,6 +30,9 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class BitvavoAuthenticationServiceTest {
 
+    @Mock
+    private BitvavoClock bitvavoClock;
+
     @Spy
     @InjectMocks
     private BitvavoAuthenticationService authService;
@@ -56,6 +67,21 @@ class BitvavoAuthenticationServiceTest {
         assertEquals(BitvavoAuthenticationService.ACCESS_WINDOW, headers.getBitvavoBitvAvoAccessWindow());
     }
 
+    @Test
+    void createAuthHeaders_stampsTheBitvavoServerTime() {
+        // Arrange
+        when(bitvavoClock.currentTimeMillis()).thenReturn(1_700_000_000_000L);
+
+        // Act
+        BitvavoAuthHeaders headers = authService.createAuthHeaders(
+                TEST_METHOD, TEST_PATH, null, TEST_API_KEY, TEST_API_SECRET);
+
+        // Assert
+        assertEquals("1700000000000", headers.getBitvavoBitvAvoAccessTimestamp());
+        assertEquals(authService.createSignature(1_700_000_000_000L, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET),
+                headers.getBitvavoBitvAvoAccessSignature());
+    }
+
     @Test
     void createAuthHeaders_withEmptyBody_returnsHeaders() {
         // Act
@@ -153,22 +179,6 @@ class BitvavoAuthenticationServiceTest {
         // Assert - no exception means success
     }
 
-    @Test
-    void doFinal_computesHashCorrectly() throws NoSuchAlgorithmException, InvalidKeyException {
-        // Arrange
-        Mac mac = authService.getMacInstance();
-        SecretKeySpec keySpec = authService.createSecretKeySpec(TEST_API_SECRET);
-        authService.initMac(mac, keySpec);
-        String message = "test-message";
-        
-        // Act
-        byte[] hash = authService.doFinal(mac, message);
-        
-        // Assert
-        assertNotNull(hash);
-        assertTrue(hash.length > 0);
-    }
-
     @Test
     void createSignature_withCryptoException_throwsRuntimeException() throws NoSuchAlgorithmException {
         // Arrange
@@ -194,4 +204,82 @@ class BitvavoAuthenticationServiceTest {
         assertEquals("Error creating signature for Bitvavo API", exception.getMessage());
         assertTrue(exception.getCause() instanceof InvalidKeyException);
     }
+
+    @Test
+    void createSignature_matchesHmacOfTheConcatenatedMessage() throws Exception {
+        // Arrange
+        long timestamp = 1_700_000_000_000L;
+        String unicodeBody = "{\"note\":\"café €\"}";
+
+        // Act & Assert
+        assertEquals(expectedSignature(timestamp + "POST/v2/order" + TEST_BODY),
+                authService.createSignature(timestamp, "POST", "/order", TEST_BODY, TEST_API_SECRET));
+        assertEquals(expectedSignature(timestamp + "GET/v2/account"),
+                authService.createSignature(timestamp, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET));
+        assertEquals(expectedSignature(timestamp + "POST/v2/order" + unicodeBody),
+                authService.createSignature(timestamp, "POST", "/order", unicodeBody, TEST_API_SECRET));
+        assertEquals(expectedSignature(timestamp + "POST/v2/order" + unicodeBody),
+                authService.createSignatureForBody(timestamp, "POST", "/order",
+                        unicodeBody.getBytes(StandardCharsets.UTF_8), TEST_API_SECRET));
+        assertEquals(expectedSignature(0 + "GET/v2/account" + "x".repeat(1000)),
+                authService.createSignature(0, TEST_METHOD, TEST_PATH, "x".repeat(1000), TEST_API_SECRET));
+    }
+
+    @Test
+    void createSignature_initializesTheMacOncePerSecret() throws Exception {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            authService.createSignature(i, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET);
+        }
+        String otherSignature = authService.createSignature(1, TEST_METHOD, TEST_PATH, null, "other-secret");
+
+        // Assert
+        verify(authService, times(2)).getMacInstance();
+        verify(authService, times(2)).initMac(any(Mac.class), any(SecretKeySpec.class));
+        assertNotEquals(authService.createSignature(1, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET), otherSignature);
+    }
+
+    @Test
+    void createSignature_withMoreSecretsThanCached_setsUpTheLeastRecentlyUsedSecretAgain() throws Exception {
+        // Arrange
+        authService.createSignature(0, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET);
+        for (int i = 0; i < 64; i++) {
+            authService.createSignature(0, TEST_METHOD, TEST_PATH, null, "secret-" + i);
+        }
+
+        // Act
+        authService.createSignature(0, TEST_METHOD, TEST_PATH, null, "secret-63");
+        String signature = authService.createSignature(0, TEST_METHOD, TEST_PATH, null, TEST_API_SECRET);
+
+        // Assert
+        verify(authService, times(66)).initMac(any(Mac.class), any(SecretKeySpec.class));
+        assertEquals(expectedSignature(0 + "GET/v2/account"), signature);
+    }
+
+    @Test
+    void createSignature_fromConcurrentThreads_signsEveryRequestCorrectly() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            long timestamp = 1_700_000_000_000L + i;
+            String body = "{\"amount\":\"" + i + "\"}";
+            results.add(executor.submit(() -> expectedSignature(timestamp + "POST/v2/order" + body)
+                    .equals(authService.createSignature(timestamp, "POST", "/order", body, TEST_API_SECRET))));
+        }
+
+        // Assert
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
+    private String expectedSignature(String message) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(TEST_API_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Hex.encodeHexString(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BitvavoClockTest {
+
+    private final AtomicLong currentTimeMillis = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BitvavoClock clock = new BitvavoClock(
+            meterRegistry, Duration.ofSeconds(1), Duration.ofSeconds(1), currentTimeMillis::get);
+
+    @Test
+    void currentTimeMillis_beforeFirstSample_isTheHostTime() {
+        // Act & Assert
+        assertEquals(1_000_000, clock.currentTimeMillis());
+        assertEquals(0, clock.getOffsetMillis());
+    }
+
+    @Test
+    void update_firstSample_takesTheOffsetHalfwayTheRoundTrip() {
+        // Act: sent at 1000, received at 1100, server read its clock at 1550 (host time 1050)
+        clock.update(1000, 1550, 1100);
+
+        // Assert
+        assertEquals(500, clock.getOffsetMillis());
+        assertEquals(1_000_500, clock.currentTimeMillis());
+        assertEquals(500.0, meterRegistry.get("autotrader.bitvavo.clock.offset").gauge().value());
+        assertEquals(100, meterRegistry.get("autotrader.bitvavo.clock.round-trip").timer()
+                .max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void update_smoothsSmallChanges() {
+        // Arrange
+        clock.update(1000, 1500, 1000);
+
+        // Act
+        clock.update(2000, 2600, 2000);
+
+        // Assert
+        assertEquals(520, clock.getOffsetMillis());
+        assertEquals(100.0, meterRegistry.get("autotrader.bitvavo.clock.drift").summary().max());
+    }
+
+    @Test
+    void update_takesOverAStepOfTheHostClockAtOnce() {
+        // Arrange
+        clock.update(1000, 1500, 1000);
+
+        // Act
+        clock.update(2000, 7000, 2000);
+
+        // Assert
+        assertEquals(5000, clock.getOffsetMillis());
+    }
+
+    @Test
+    void update_ignoresSamplesWithASlowRoundTrip() {
+        // Arrange
+        clock.update(1000, 1500, 1000);
+
+        // Act
+        boolean used = clock.update(2000, 9000, 4000);
+
+        // Assert
+        assertFalse(used);
+        assertEquals(500, clock.getOffsetMillis());
+    }
+}
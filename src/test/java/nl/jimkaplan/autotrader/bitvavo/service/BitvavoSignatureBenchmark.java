@@ -0,0 +1,82 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signatures per second of {@link BitvavoAuthenticationService}, compared with setting up a new {@link Mac}
+ * and building the message as a String for every request as it was done before the signers were pooled.
+ * Signs an order body, the largest message the client sends.
+ * <p>
+ * Runs with the GC profiler, so {@code gc.alloc.rate.norm} shows the bytes allocated per signature.
+ * Not run by the test suite. Run it from the IDE through {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class BitvavoSignatureBenchmark {
+
+    private static final String API_SECRET = "bitvavo-api-secret-of-sixty-four-characters-0123456789abcdefghij";
+    private static final String PATH = "/order";
+    private static final String BODY = """
+            {"market":"BTC-EUR","side":"buy","orderType":"market","amountQuote":"250.00",\
+            "clientOrderId":"2f1c8e0a-5b7d-3c4e-9f6a-1b2c3d4e5f60","responseRequired":false}""";
+
+    private final BitvavoAuthenticationService authService = new BitvavoAuthenticationService(
+            new BitvavoClock(new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ofSeconds(1)));
+    private final long timestamp = 1_700_000_000_000L;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+    }
+
+    @Benchmark
+    public String newMacPerRequest() throws GeneralSecurityException {
+        String message = timestamp + "POST" + "/v2" + PATH + BODY;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(API_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return new String(Hex.encodeHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Benchmark
+    public String pooledSigner() {
+        return authService.createSignature(timestamp, "POST", PATH, BODY, API_SECRET);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BitvavoSignatureBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
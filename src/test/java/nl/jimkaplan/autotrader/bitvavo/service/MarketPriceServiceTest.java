@@ -0,0 +1,90 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.client.BitvavoApiClient;
+import nl.jimkaplan.autotrader.bitvavo.model.GetPriceResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MarketPriceServiceTest {
+
+    @Mock
+    private BitvavoApiClient bitvavoApiClient;
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MarketPriceTable marketPriceTable;
+    private MarketPriceService marketPriceService;
+
+    @BeforeEach
+    void setUp() {
+        marketPriceTable = new MarketPriceTable(meterRegistry, nanoTime::get);
+        marketPriceService = new MarketPriceService(marketPriceTable, bitvavoApiClient, meterRegistry,
+                Duration.ofSeconds(30));
+    }
+
+    @Test
+    void getLastPrice_withRecentStreamPrice_readsTheTable() {
+        // Arrange
+        marketPriceTable.update("BTC-EUR", new BigDecimal("50000"), null, null);
+        nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        // Act
+        BigDecimal price = marketPriceService.getLastPrice("BTC-EUR");
+
+        // Assert
+        assertEquals(new BigDecimal("50000"), price);
+        verify(bitvavoApiClient, never()).getPublic(anyString(), any());
+        assertEquals(1.0, lookups("stream"));
+    }
+
+    @Test
+    void getLastPrice_withStalePrice_fallsBackToRest() {
+        // Arrange
+        marketPriceTable.update("BTC-EUR", new BigDecimal("50000"), null, null);
+        nanoTime.addAndGet(Duration.ofSeconds(31).toNanos());
+        when(bitvavoApiClient.getPublic("/ticker/price?market=BTC-EUR", GetPriceResponse.class))
+                .thenReturn(new GetPriceResponse("BTC-EUR", new BigDecimal("51000")));
+
+        // Act
+        BigDecimal price = marketPriceService.getLastPrice("BTC-EUR");
+
+        // Assert
+        assertEquals(new BigDecimal("51000"), price);
+        assertEquals(1.0, lookups("rest"));
+    }
+
+    @Test
+    void getLastPrice_withoutLastPrice_fallsBackToRest() {
+        // Arrange: only the order book was received so far
+        marketPriceTable.update("BTC-EUR", null, new BigDecimal("49990"), new BigDecimal("50010"));
+        when(bitvavoApiClient.getPublic("/ticker/price?market=BTC-EUR", GetPriceResponse.class))
+                .thenReturn(new GetPriceResponse("BTC-EUR", new BigDecimal("50000")));
+
+        // Act
+        BigDecimal price = marketPriceService.getLastPrice("BTC-EUR");
+
+        // Assert
+        assertEquals(new BigDecimal("50000"), price);
+        assertEquals(0.0, lookups("stream"));
+    }
+
+    private double lookups(String source) {
+        return meterRegistry.get("autotrader.market-price.lookups").tag("source", source).counter().count();
+    }
+}
@@ -0,0 +1,47 @@
+package nl.jimkaplan.autotrader.bitvavo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.bitvavo.model.MarketPrice;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MarketPriceTableTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MarketPriceTable marketPriceTable = new MarketPriceTable(meterRegistry, nanoTime::get);
+
+    @Test
+    void update_keepsFieldsThatAreNotInTheUpdate() {
+        // Arrange
+        marketPriceTable.update("BTC-EUR", new BigDecimal("50000"), new BigDecimal("49990"), new BigDecimal("50010"));
+        nanoTime.set(1000);
+
+        // Act
+        marketPriceTable.update("BTC-EUR", null, new BigDecimal("49995"), null);
+
+        // Assert
+        assertEquals(new MarketPrice("BTC-EUR", new BigDecimal("50000"), new BigDecimal("49995"),
+                new BigDecimal("50010"), 1000), marketPriceTable.get("BTC-EUR"));
+        assertNull(marketPriceTable.get("ETH-EUR"));
+    }
+
+    @Test
+    void ageGauge_reportsTimeSinceLastUpdate() {
+        // Arrange
+        marketPriceTable.update("BTC-EUR", new BigDecimal("50000"), null, null);
+
+        // Act
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+
+        // Assert
+        assertEquals(Duration.ofSeconds(3), marketPriceTable.getAge(marketPriceTable.get("BTC-EUR")));
+        assertEquals(3.0, meterRegistry.get("autotrader.market-price.age").tag("market", "BTC-EUR").gauge().value());
+    }
+}
@@ -0,0 +1,85 @@
+package nl.jimkaplan.autotrader.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.interceptor.CurlLoggingInterceptor;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RestTemplateConfigTest {
+
+    private final RestTemplateConfig config = new RestTemplateConfig(new CurlLoggingInterceptor());
+    private final Set<InetSocketAddress> clientConnections = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/time", exchange -> {
+            clientConnections.add(exchange.getRemoteAddress());
+            byte[] body = "{\"time\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        connectionManager = config.httpConnectionManager(10, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(15), Duration.ofSeconds(10));
+        httpClient = config.httpClient(connectionManager, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(2));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void restTemplate_reusesPooledConnection() {
+        // Arrange
+        RestTemplate restTemplate = config.restTemplate(httpClient);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/time";
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            restTemplate.getForObject(url, String.class);
+        }
+
+        // Assert
+        assertEquals(1, clientConnections.size(), "All requests should use the same keep-alive connection");
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    void httpConnectionPoolMetrics_publishesPoolStatistics() {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // Act
+        config.httpConnectionPoolMetrics(connectionManager).bindTo(meterRegistry);
+
+        // Assert
+        assertEquals(10.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max").gauge().value());
+        assertEquals(0.0, meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("state", "leased").gauge().value());
+    }
+}
@@ -1,6 +1,7 @@
 package nl.jimkaplan.autotrader.controller;
 
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.model.document.BotConfigurationSummary;
 import nl.jimkaplan.autotrader.model.dto.BotConfigurationRequest;
 import nl.jimkaplan.autotrader.model.dto.BotConfigurationResponse;
 import nl.jimkaplan.autotrader.model.dto.BotCreatedResponse;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -92,7 +94,7 @@ class BotConfigurationControllerTest {
     @Test
     void getBotConfiguration_withExistingBotId_returnsOkResponse() {
         // Arrange
-        when(botConfigurationService.getBotConfiguration(eq(testBotId))).thenReturn(Optional.of(testBotConfig));
+        when(botConfigurationService.getBotConfigurationSummary(eq(testBotId))).thenReturn(Optional.of(summary(testBotConfig)));
 
         // Act
         ResponseEntity<BotConfigurationResponse> response = controller.getBotConfiguration(testBotId);
@@ -104,14 +106,14 @@ class BotConfigurationControllerTest {
         assertEquals("BTC-EUR", response.getBody().getTradingPair());
         assertTrue(response.getBody().getActive());
 
-        verify(botConfigurationService).getBotConfiguration(eq(testBotId));
+        verify(botConfigurationService).getBotConfigurationSummary(eq(testBotId));
     }
 
     @Test
     void getBotConfiguration_withNonExistingBotId_returnsNotFound() {
         // Arrange
         String nonExistingBotId = "nonext";  // Valid format (6 chars) but doesn't exist
-        when(botConfigurationService.getBotConfiguration(eq(nonExistingBotId))).thenReturn(Optional.empty());
+        when(botConfigurationService.getBotConfigurationSummary(eq(nonExistingBotId))).thenReturn(Optional.empty());
 
         // Act
         ResponseEntity<BotConfigurationResponse> response = controller.getBotConfiguration(nonExistingBotId);
@@ -120,7 +122,7 @@ class BotConfigurationControllerTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertNull(response.getBody());
 
-        verify(botConfigurationService).getBotConfiguration(eq(nonExistingBotId));
+        verify(botConfigurationService).getBotConfigurationSummary(eq(nonExistingBotId));
     }
 
     @Test
@@ -138,9 +140,9 @@ class BotConfigurationControllerTest {
                 .active(true)
                 .build();
 
-        List<BotConfiguration> configs = Arrays.asList(config1, config2);
+        List<BotConfigurationSummary> configs = Arrays.asList(summary(config1), summary(config2));
 
-        when(botConfigurationService.getAllBotConfigurations()).thenReturn(configs);
+        when(botConfigurationService.getAllBotConfigurationSummaries()).thenReturn(configs);
 
         // Act
         ResponseEntity<List<BotConfigurationResponse>> response = controller.getAllBotConfigurations(false);
@@ -152,8 +154,8 @@ class BotConfigurationControllerTest {
         assertEquals("bot1", response.getBody().get(0).getBotId());
         assertEquals("bot2", response.getBody().get(1).getBotId());
 
-        verify(botConfigurationService).getAllBotConfigurations();
-        verify(botConfigurationService, never()).getAllBotConfigurationsIncludingInactive();
+        verify(botConfigurationService).getAllBotConfigurationSummaries();
+        verify(botConfigurationService, never()).getAllBotConfigurationSummariesIncludingInactive();
     }
 
     @Test
@@ -171,9 +173,9 @@ class BotConfigurationControllerTest {
                 .active(false)
                 .build();
 
-        List<BotConfiguration> configs = Arrays.asList(config1, config2);
+        List<BotConfigurationSummary> configs = Arrays.asList(summary(config1), summary(config2));
 
-        when(botConfigurationService.getAllBotConfigurationsIncludingInactive()).thenReturn(configs);
+        when(botConfigurationService.getAllBotConfigurationSummariesIncludingInactive()).thenReturn(configs);
 
         // Act
         ResponseEntity<List<BotConfigurationResponse>> response = controller.getAllBotConfigurations(true);
@@ -185,14 +187,14 @@ class BotConfigurationControllerTest {
         assertEquals("bot1", response.getBody().get(0).getBotId());
         assertEquals("bot2", response.getBody().get(1).getBotId());
 
-        verify(botConfigurationService, never()).getAllBotConfigurations();
-        verify(botConfigurationService).getAllBotConfigurationsIncludingInactive();
+        verify(botConfigurationService, never()).getAllBotConfigurationSummaries();
+        verify(botConfigurationService).getAllBotConfigurationSummariesIncludingInactive();
     }
 
     @Test
     void getAllBotConfigurations_withEmptyList_returnsEmptyResponse() {
         // Arrange
-        when(botConfigurationService.getAllBotConfigurations()).thenReturn(Collections.emptyList());
+        when(botConfigurationService.getAllBotConfigurationSummaries()).thenReturn(Collections.emptyList());
 
         // Act
         ResponseEntity<List<BotConfigurationResponse>> response = controller.getAllBotConfigurations(false);
@@ -203,7 +205,7 @@ class BotConfigurationControllerTest {
         assertNotNull(response.getBody());
         assertTrue(response.getBody().isEmpty());
 
-        verify(botConfigurationService).getAllBotConfigurations();
+        verify(botConfigurationService).getAllBotConfigurationSummaries();
     }
 
     @Test
@@ -273,7 +275,7 @@ class BotConfigurationControllerTest {
     @Test
     void generateWebhookApiKey_withExistingBotId_returnsOkResponse() {
         // Arrange
-        when(botConfigurationService.getBotConfigurationIncludingInactive(eq(testBotId))).thenReturn(Optional.of(testBotConfig));
+        when(botConfigurationService.botConfigurationExists(eq(testBotId))).thenReturn(true);
         when(botConfigurationService.generateAndSaveWebhookApiKey(eq(testBotId))).thenReturn(WEBHOOK_API_KEY);
 
         // Act
@@ -284,7 +286,7 @@ class BotConfigurationControllerTest {
         assertNotNull(response.getBody());
         assertEquals(WEBHOOK_API_KEY, response.getBody().getApiKey());
 
-        verify(botConfigurationService).getBotConfigurationIncludingInactive(eq(testBotId));
+        verify(botConfigurationService).botConfigurationExists(eq(testBotId));
         verify(botConfigurationService).generateAndSaveWebhookApiKey(eq(testBotId));
     }
 
@@ -292,7 +294,7 @@ class BotConfigurationControllerTest {
     void generateWebhookApiKey_withNonExistingBotId_returnsNotFound() {
         // Arrange
         String nonExistingBotId = "nonext";  // Valid format (6 chars) but doesn't exist
-        when(botConfigurationService.getBotConfigurationIncludingInactive(eq(nonExistingBotId))).thenReturn(Optional.empty());
+        when(botConfigurationService.botConfigurationExists(eq(nonExistingBotId))).thenReturn(false);
 
         // Act
         ResponseEntity<WebhookApiKeyResponse> response = controller.generateWebhookApiKey(nonExistingBotId);
@@ -301,7 +303,7 @@ class BotConfigurationControllerTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertNull(response.getBody());
 
-        verify(botConfigurationService).getBotConfigurationIncludingInactive(eq(nonExistingBotId));
+        verify(botConfigurationService).botConfigurationExists(eq(nonExistingBotId));
         verify(botConfigurationService, never()).generateAndSaveWebhookApiKey(anyString());
     }
 
@@ -499,4 +501,8 @@ class BotConfigurationControllerTest {
 
         assertEquals("Trading pair must be in uppercase", exception.getMessage());
     }
+
+    private static BotConfigurationSummary summary(BotConfiguration config) {
+        return new SpelAwareProxyProjectionFactory().createProjection(BotConfigurationSummary.class, config);
+    }
 }
@@ -0,0 +1,126 @@
+package nl.jimkaplan.autotrader.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AlertCoalescerTest {
+
+    private static final Instant T0 = Instant.now();
+
+    private ExecutorService tradingExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private AlertCoalescer alertCoalescer;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        BotAlertExecutor botAlertExecutor = new BotAlertExecutor(tradingExecutor, meterRegistry, Duration.ofMinutes(5));
+        alertCoalescer = new AlertCoalescer(botAlertExecutor, meterRegistry, true, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertCoalescer.stop();
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void submit_withBurstOfAlerts_executesOnlyTheLatest() {
+        // Act
+        CompletableFuture<AlertCoalescer.Outcome> buy = submit("bot1", "buy", T0);
+        CompletableFuture<AlertCoalescer.Outcome> sell = submit("bot1", "sell", T0.plusMillis(200));
+        CompletableFuture<AlertCoalescer.Outcome> buyAgain = submit("bot1", "buy again", T0.plusMillis(400));
+
+        // Assert
+        assertEquals(AlertCoalescer.Outcome.COALESCED, buy.join());
+        assertEquals(AlertCoalescer.Outcome.COALESCED, sell.join());
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, buyAgain.join());
+        assertEquals(List.of("coalesced buy", "coalesced sell", "executed buy again"), events);
+        assertEquals(2.0, meterRegistry.get("autotrader.alerts.coalesced").counter().count());
+    }
+
+    @Test
+    void submit_withOutOfOrderArrival_executesAlertWithLatestTimestamp() {
+        // Act
+        CompletableFuture<AlertCoalescer.Outcome> sell = submit("bot1", "sell", T0.plusSeconds(1));
+        CompletableFuture<AlertCoalescer.Outcome> buy = submit("bot1", "buy", T0);
+
+        // Assert
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, sell.join());
+        assertEquals(AlertCoalescer.Outcome.COALESCED, buy.join());
+    }
+
+    @Test
+    void submit_forDifferentBots_executesEveryBot() {
+        // Act
+        CompletableFuture<AlertCoalescer.Outcome> first = submit("bot1", "buy", T0);
+        CompletableFuture<AlertCoalescer.Outcome> second = submit("bot2", "sell", T0);
+
+        // Assert
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, first.join());
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, second.join());
+    }
+
+    @Test
+    void submit_afterWindowClosed_startsNewWindow() {
+        // Arrange
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, submit("bot1", "buy", T0).join());
+
+        // Act
+        AlertCoalescer.Outcome outcome = submit("bot1", "sell", T0.plusSeconds(1)).join();
+
+        // Assert
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, outcome);
+        assertEquals(List.of("executed buy", "executed sell"), events);
+    }
+
+    @Test
+    void submit_whenDisabled_executesEveryAlert() {
+        // Arrange
+        AlertCoalescer disabledCoalescer = new AlertCoalescer(
+                new BotAlertExecutor(tradingExecutor, meterRegistry, Duration.ofMinutes(5)), meterRegistry, false,
+                Duration.ofMillis(100));
+
+        // Act
+        AlertCoalescer.Outcome first = disabledCoalescer.submit("bot1", T0, () -> events.add("executed buy"),
+                () -> events.add("coalesced buy")).join();
+        AlertCoalescer.Outcome second = disabledCoalescer.submit("bot1", T0.plusSeconds(1), () -> events.add("executed sell"),
+                () -> events.add("coalesced sell")).join();
+
+        // Assert
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, first);
+        assertEquals(AlertCoalescer.Outcome.EXECUTED, second);
+        assertEquals(List.of("executed buy", "executed sell"), events);
+    }
+
+    @Test
+    void execute_rethrowsTaskException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> alertCoalescer.execute("bot1", T0, () -> {
+                    throw new IllegalArgumentException("Ticker mismatch");
+                }, () -> events.add("coalesced")));
+        assertEquals("Ticker mismatch", exception.getMessage());
+    }
+
+    private CompletableFuture<AlertCoalescer.Outcome> submit(String botId, String name, Instant timestamp) {
+        return alertCoalescer.submit(botId, timestamp, () -> events.add("executed " + name),
+                () -> events.add("coalesced " + name));
+    }
+}
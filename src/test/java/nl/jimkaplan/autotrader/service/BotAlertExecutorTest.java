@@ -0,0 +1,208 @@
+package nl.jimkaplan.autotrader.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BotAlertExecutorTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T12:00:00Z");
+
+    private ExecutorService tradingExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private BotAlertExecutor botAlertExecutor;
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        botAlertExecutor = new BotAlertExecutor(tradingExecutor, meterRegistry, Duration.ofMinutes(5),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void submit_forSameBot_runsAlertsInOrderAndNeverConcurrently() {
+        // Arrange
+        List<Integer> executionOrder = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            int alertNumber = i;
+            results.add(botAlertExecutor.submit("bot1", NOW, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                executionOrder.add(alertNumber);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        // Assert
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, executionOrder.get(i));
+        }
+    }
+
+    @Test
+    void submit_forDifferentBots_runsAlertsInParallel() throws InterruptedException {
+        // Arrange
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blockingTask = () -> {
+            bothStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // Act
+        CompletableFuture<Boolean> first = botAlertExecutor.submit("bot1", NOW, blockingTask);
+        CompletableFuture<Boolean> second = botAlertExecutor.submit("bot2", NOW, blockingTask);
+
+        // Assert - both tasks are running at the same time
+        assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(first.join());
+        assertTrue(second.join());
+    }
+
+    @Test
+    void submit_withStaleAlert_dropsAlertWithoutRunningIt() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        Boolean executed = botAlertExecutor.submit("bot1", NOW.minus(Duration.ofMinutes(10)), executions::incrementAndGet).join();
+
+        // Assert
+        assertFalse(executed);
+        assertEquals(0, executions.get());
+        assertEquals(1.0, meterRegistry.get("autotrader.bot.alerts.stale").counter().count());
+    }
+
+    @Test
+    void submit_whenTaskFails_completesExceptionallyAndContinuesWithNextAlert() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        CompletableFuture<Boolean> failed = botAlertExecutor.submit("bot1", NOW, () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<Boolean> next = botAlertExecutor.submit("bot1", NOW, executions::incrementAndGet);
+
+        // Assert
+        assertTrue(next.join());
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_rethrowsTaskException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> botAlertExecutor.execute("bot1", () -> {
+                    throw new IllegalArgumentException("Invalid action");
+                }));
+        assertEquals("Invalid action", exception.getMessage());
+    }
+
+    @Test
+    void execute_withoutBotId_runsTaskDirectly() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        botAlertExecutor.execute(null, executions::incrementAndGet);
+
+        // Assert
+        assertEquals(1, executions.get());
+        assertTrue(botAlertExecutor.getQueueDepths().isEmpty());
+    }
+
+    @Test
+    void getQueueDepths_reportsPendingAlertsPerBot() throws InterruptedException {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocking = botAlertExecutor.submit("bot1", NOW, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> waiting = botAlertExecutor.submit("bot1", NOW, () -> {
+        });
+
+        // Act
+        Integer depth = botAlertExecutor.getQueueDepths().get("bot1");
+        Gauge gauge = meterRegistry.get("autotrader.bot.alerts.queue.depth").gauge();
+
+        // Assert
+        assertNotNull(depth);
+        assertEquals(2, depth);
+        assertEquals(2.0, gauge.value());
+
+        release.countDown();
+        blocking.join();
+        waiting.join();
+        assertTrue(botAlertExecutor.getQueueDepths().isEmpty());
+    }
+
+    @Test
+    void submit_whenMailboxDrains_removesIt() {
+        // Arrange
+        CompletableFuture<Boolean> first = botAlertExecutor.submit("bot1", NOW, () -> {
+        });
+        CompletableFuture<Boolean> second = botAlertExecutor.submit("bot2", NOW, () -> {
+        });
+
+        // Act
+        first.join();
+        second.join();
+
+        // Assert
+        Gauge mailboxes = meterRegistry.get("autotrader.bot.alerts.mailboxes").gauge();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mailboxes.value() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0.0, mailboxes.value());
+        assertEquals(0.0, meterRegistry.get("autotrader.bot.alerts.queue.depth").gauge().value());
+    }
+}
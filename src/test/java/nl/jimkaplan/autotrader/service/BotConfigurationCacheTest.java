@@ -0,0 +1,93 @@
+package nl.jimkaplan.autotrader.service;
+
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BotConfigurationCacheTest {
+
+    private static final String BOT_ID = "bot1";
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final BotConfigurationCache cache = new BotConfigurationCache(Duration.ofMinutes(5), nanoTime::get);
+
+    @Test
+    void get_returnsACopyWithTheDecryptedCredentials() {
+        // Arrange
+        BotConfiguration config = config(1);
+        config.setId("id1");
+        cache.put(config, cache.stamp());
+
+        // Act
+        BotConfiguration first = cache.get(BOT_ID);
+        first.setTradingPair("ETH-EUR");
+        BotConfiguration second = cache.get(BOT_ID);
+
+        // Assert
+        assertNotSame(first, second);
+        assertEquals("api-key-€", second.getApiKey());
+        assertEquals("api-secret", second.getApiSecret());
+        assertEquals("BTC-EUR", second.getTradingPair());
+        assertEquals("id1", second.getId());
+        assertEquals(BotConfiguration.OrderTransport.WEBSOCKET, second.getOrderTransport());
+    }
+
+    @Test
+    void get_afterTtl_returnsNull() {
+        // Arrange
+        cache.put(config(1), cache.stamp());
+
+        // Act
+        nanoTime.addAndGet(Duration.ofMinutes(5).toNanos() + 1);
+
+        // Assert
+        assertNull(cache.get(BOT_ID));
+    }
+
+    @Test
+    void put_afterInvalidationDuringLoad_doesNotCache() {
+        // Arrange
+        long stamp = cache.stamp();
+        cache.invalidate(BOT_ID);
+
+        // Act
+        cache.put(config(1), stamp);
+
+        // Assert
+        assertNull(cache.get(BOT_ID));
+    }
+
+    @Test
+    void invalidateKeyVersion_removesOnlyEntriesOfThatVersion() {
+        // Arrange
+        cache.put(config(1), cache.stamp());
+        BotConfiguration other = config(2);
+        other.setBotId("bot2");
+        cache.put(other, cache.stamp());
+
+        // Act
+        cache.invalidateKeyVersion(1);
+
+        // Assert
+        assertNull(cache.get(BOT_ID));
+        assertNotNull(cache.get("bot2"));
+    }
+
+    private static BotConfiguration config(int keyVersion) {
+        return BotConfiguration.builder()
+                .botId(BOT_ID)
+                .apiKey("api-key-€")
+                .apiSecret("api-secret")
+                .tradingPair("BTC-EUR")
+                .keyVersion(keyVersion)
+                .orderTransport(BotConfiguration.OrderTransport.WEBSOCKET)
+                .build();
+    }
+}
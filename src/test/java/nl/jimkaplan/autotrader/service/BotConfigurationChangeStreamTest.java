@@ -0,0 +1,250 @@
+package nl.jimkaplan.autotrader.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BotConfigurationChangeStreamTest {
+
+    private static final String BOT_ID = "bot1";
+    private static final ObjectId DOCUMENT_ID = new ObjectId();
+    private static final String WEBHOOK_KEY_HASH = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3});
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BotConfigurationRepository botConfigurationRepository;
+
+    private final WebhookKeyHashCache webhookKeyHashCache = new WebhookKeyHashCache(Duration.ofMinutes(5));
+    private final BotConfigurationCache botConfigurationCache = new BotConfigurationCache(Duration.ofMinutes(5));
+    private TradingPairIndex tradingPairIndex;
+    private BotConfigurationChangeStream changeStream;
+    private ChangeStreamIterable<Document> stream;
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+    @BeforeEach
+    void setUp() {
+        tradingPairIndex = new TradingPairIndex(botConfigurationRepository);
+        changeStream = new BotConfigurationChangeStream(mongoTemplate, botConfigurationRepository,
+                tradingPairIndex, webhookKeyHashCache, botConfigurationCache, true, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void apply_update_refreshesTheIndexes() {
+        // Arrange
+        useConverter();
+        botConfigurationCache.put(BotConfiguration.builder().botId(BOT_ID).apiKey("key").apiSecret("secret").build(),
+                botConfigurationCache.stamp());
+        ChangeStreamDocument<Document> change = change(OperationType.UPDATE);
+        when(change.getFullDocument()).thenReturn(new Document("_id", DOCUMENT_ID)
+                .append("botId", BOT_ID)
+                .append("trading_pair", "BTCEUR")
+                .append("webhookKeyHash", WEBHOOK_KEY_HASH)
+                .append("active", true));
+
+        // Act
+        boolean applied = changeStream.apply(change);
+
+        // Assert
+        assertTrue(applied);
+        assertEquals(Set.of(BOT_ID), tradingPairIndex.getActiveBotIds("BTCEUR"));
+        assertArrayEquals(new byte[]{1, 2, 3}, webhookKeyHashCache.get(BOT_ID));
+        assertNull(botConfigurationCache.get(BOT_ID));
+    }
+
+    @Test
+    void apply_deactivation_removesTheBotFromTheTradingPair() {
+        // Arrange
+        useConverter();
+        tradingPairIndex.update(BotConfiguration.builder().botId(BOT_ID).tradingPair("BTCEUR").active(true).build());
+        ChangeStreamDocument<Document> change = change(OperationType.UPDATE);
+        when(change.getFullDocument()).thenReturn(new Document("_id", DOCUMENT_ID)
+                .append("botId", BOT_ID)
+                .append("trading_pair", "BTCEUR")
+                .append("active", false));
+
+        // Act
+        changeStream.apply(change);
+
+        // Assert
+        assertTrue(tradingPairIndex.getActiveBotIds("BTCEUR").isEmpty());
+    }
+
+    @Test
+    void apply_deleteOfKnownDocument_removesTheBot() {
+        // Arrange
+        BotConfiguration stored = BotConfiguration.builder().botId(BOT_ID).tradingPair("BTCEUR").active(true).build();
+        stored.setId(DOCUMENT_ID.toHexString());
+        when(botConfigurationRepository.findAll()).thenReturn(List.of(stored));
+        changeStream.resync();
+        webhookKeyHashCache.put(BOT_ID, WEBHOOK_KEY_HASH);
+        ChangeStreamDocument<Document> change = change(OperationType.DELETE);
+        when(change.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonObjectId(DOCUMENT_ID)));
+
+        // Act
+        changeStream.apply(change);
+
+        // Assert
+        assertTrue(tradingPairIndex.getActiveBotIds("BTCEUR").isEmpty());
+        assertNull(webhookKeyHashCache.get(BOT_ID));
+    }
+
+    @Test
+    void apply_deleteOfUnknownDocument_rebuildsTheIndexes() {
+        // Arrange
+        webhookKeyHashCache.put(BOT_ID, WEBHOOK_KEY_HASH);
+        ChangeStreamDocument<Document> change = change(OperationType.DELETE);
+        when(change.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonObjectId(DOCUMENT_ID)));
+        when(botConfigurationRepository.findAll()).thenReturn(List.of());
+
+        // Act
+        changeStream.apply(change);
+
+        // Assert
+        verify(botConfigurationRepository).findAll();
+        assertNull(webhookKeyHashCache.get(BOT_ID));
+    }
+
+    @Test
+    void apply_invalidate_asksToReopenAndRebuildsTheIndexes() {
+        // Arrange
+        openStream("token-1");
+        changeStream.watch();
+        ChangeStreamDocument<Document> change = mock();
+        when(change.getOperationType()).thenReturn(OperationType.INVALIDATE);
+
+        // Act
+        boolean applied = changeStream.apply(change);
+        changeStream.watch();
+
+        // Assert
+        assertFalse(applied);
+        verify(stream, never()).resumeAfter(any());
+        verify(botConfigurationRepository, times(2)).findAll();
+    }
+
+    @Test
+    void watch_afterReconnect_resumesWithoutRebuildingTheIndexes() {
+        // Arrange
+        useConverter();
+        ChangeStreamDocument<Document> change = change(OperationType.INSERT);
+        openStream("token-1", change);
+        when(change.getFullDocument()).thenReturn(new Document("_id", DOCUMENT_ID)
+                .append("botId", BOT_ID)
+                .append("trading_pair", "ETHEUR")
+                .append("active", true));
+
+        // Act
+        changeStream.watch();
+        changeStream.watch();
+
+        // Assert
+        verify(stream).resumeAfter(new BsonDocument("_data", new BsonString("token-1")));
+        verify(botConfigurationRepository).findAll();
+        verify(botConfigurationRepository, never()).findByActive(true);
+        assertEquals(Set.of(BOT_ID), tradingPairIndex.getActiveBotIds("ETHEUR"));
+        verify(cursor, times(2)).close();
+    }
+
+    @Test
+    void onFailure_withLostHistory_rebuildsTheIndexesWhenReopened() {
+        // Arrange
+        openStream("token-1");
+        changeStream.watch();
+        MongoCommandException historyLost = new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(286))
+                .append("errmsg", new BsonString("Resume of change stream was not possible")),
+                new ServerAddress());
+
+        // Act
+        changeStream.onFailure(historyLost);
+        changeStream.watch();
+
+        // Assert
+        verify(stream, never()).resumeAfter(any());
+        verify(botConfigurationRepository, times(2)).findAll();
+    }
+
+    /**
+     * Stub a change stream whose cursor returns the given changes, is then at the given resume token and stops
+     * the change stream when it is polled again.
+     */
+    @SafeVarargs
+    private void openStream(String resumeToken, ChangeStreamDocument<Document>... changes) {
+        Iterator<ChangeStreamDocument<Document>> pending = List.of(changes).iterator();
+        MongoCollection<Document> collection = mock();
+        stream = mock(RETURNS_SELF);
+        cursor = mock();
+        when(mongoTemplate.getCollection(BotConfigurationChangeStream.COLLECTION)).thenReturn(collection);
+        when(collection.watch()).thenReturn(stream);
+        when(stream.cursor()).thenReturn(cursor);
+        when(cursor.tryNext()).thenAnswer(invocation -> {
+            if (pending.hasNext()) {
+                return pending.next();
+            }
+            changeStream.stop();
+            return null;
+        });
+        when(cursor.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString(resumeToken)));
+        when(botConfigurationRepository.findAll()).thenReturn(List.of());
+    }
+
+    private void useConverter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+    }
+
+    private static ChangeStreamDocument<Document> change(OperationType operationType) {
+        ChangeStreamDocument<Document> change = mock();
+        when(change.getOperationType()).thenReturn(operationType);
+        return change;
+    }
+}
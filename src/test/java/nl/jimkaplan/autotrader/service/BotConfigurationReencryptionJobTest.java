@@ -0,0 +1,154 @@
+package nl.jimkaplan.autotrader.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BotConfigurationReencryptionJobTest {
+
+    private static final String OLD_KEY = "MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=";
+    private static final String NEW_KEY = "QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWY=";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final EncryptionService oldEncryptionService = new EncryptionService(OLD_KEY);
+    private final EncryptionService encryptionService = new EncryptionService(NEW_KEY, 2, "1:" + OLD_KEY);
+    private final BotConfigurationCache botConfigurationCache = new BotConfigurationCache(Duration.ofMinutes(5));
+    private BulkOperations bulk;
+
+    @BeforeEach
+    void setUp() {
+        bulk = mock(BulkOperations.class, RETURNS_SELF);
+    }
+
+    @Test
+    void reencryptAll_withConfigurationOnPreviousKey_updatesItWithTheCurrentKey() {
+        // Arrange
+        BotConfiguration config = storedConfig("bot1");
+        when(mongoTemplate.exists(any(Query.class), eq(BotConfiguration.class))).thenReturn(true);
+        when(mongoTemplate.stream(any(Query.class), eq(BotConfiguration.class))).thenReturn(Stream.of(config));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BotConfiguration.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        botConfigurationCache.put(decrypted(config), botConfigurationCache.stamp());
+
+        // Act
+        int reencrypted = job(100).reencryptAll();
+
+        // Assert
+        assertEquals(1, reencrypted);
+        ArgumentCaptor<Query> query = ArgumentCaptor.captor();
+        ArgumentCaptor<Update> update = ArgumentCaptor.captor();
+        verify(bulk).updateOne(query.capture(), update.capture());
+        assertEquals(config.getEncryptedApiKey(), query.getValue().getQueryObject().get("encryptedApiKey"));
+        assertEquals(1, query.getValue().getQueryObject().get("keyVersion"));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(2, set.get("keyVersion"));
+        assertEquals("api-key-bot1", encryptionService.decrypt(set.getString("encryptedApiKey"), 2));
+        assertEquals("api-secret-bot1", encryptionService.decrypt(set.getString("encryptedApiSecret"), 2));
+        assertNull(botConfigurationCache.get("bot1"));
+    }
+
+    @Test
+    void reencryptAll_writesOneBulkUpdatePerBatch() {
+        // Arrange
+        when(mongoTemplate.exists(any(Query.class), eq(BotConfiguration.class))).thenReturn(true);
+        when(mongoTemplate.stream(any(Query.class), eq(BotConfiguration.class)))
+                .thenReturn(Stream.of(storedConfig("bot1"), storedConfig("bot2"), storedConfig("bot3")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BotConfiguration.class)).thenReturn(bulk);
+        when(bulk.execute())
+                .thenReturn(BulkWriteResult.acknowledged(0, 2, 0, 2, List.of(), List.of()))
+                .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+
+        // Act
+        int reencrypted = job(2).reencryptAll();
+
+        // Assert
+        assertEquals(3, reencrypted);
+        verify(bulk, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, times(2)).execute();
+    }
+
+    @Test
+    void reencryptAll_withUnknownKeyVersion_skipsTheConfiguration() {
+        // Arrange
+        BotConfiguration config = storedConfig("bot1");
+        config.setKeyVersion(7);
+        when(mongoTemplate.exists(any(Query.class), eq(BotConfiguration.class))).thenReturn(true);
+        when(mongoTemplate.stream(any(Query.class), eq(BotConfiguration.class))).thenReturn(Stream.of(config));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BotConfiguration.class)).thenReturn(bulk);
+
+        // Act
+        int reencrypted = job(100).reencryptAll();
+
+        // Assert
+        assertEquals(0, reencrypted);
+        verify(bulk, never()).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, never()).execute();
+    }
+
+    @Test
+    void reencryptAll_withAllConfigurationsOnTheCurrentKey_doesNotStreamThem() {
+        // Arrange
+        when(mongoTemplate.exists(any(Query.class), eq(BotConfiguration.class))).thenReturn(false);
+
+        // Act
+        int reencrypted = job(100).reencryptAll();
+
+        // Assert
+        assertEquals(0, reencrypted);
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(BotConfiguration.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(BotConfiguration.class));
+    }
+
+    private BotConfigurationReencryptionJob job(int batchSize) {
+        return new BotConfigurationReencryptionJob(mongoTemplate, encryptionService, botConfigurationCache, true,
+                batchSize, Duration.ZERO, 2);
+    }
+
+    private BotConfiguration storedConfig(String botId) {
+        BotConfiguration config = BotConfiguration.builder()
+                .botId(botId)
+                .encryptedApiKey(oldEncryptionService.encrypt("api-key-" + botId))
+                .encryptedApiSecret(oldEncryptionService.encrypt("api-secret-" + botId))
+                .keyVersion(1)
+                .build();
+        config.setId("id-" + botId);
+        return config;
+    }
+
+    private BotConfiguration decrypted(BotConfiguration config) {
+        return BotConfiguration.builder()
+                .botId(config.getBotId())
+                .keyVersion(config.getKeyVersion())
+                .apiKey(encryptionService.decrypt(config.getEncryptedApiKey(), config.getKeyVersion()))
+                .apiSecret(encryptionService.decrypt(config.getEncryptedApiSecret(), config.getKeyVersion()))
+                .build();
+    }
+}
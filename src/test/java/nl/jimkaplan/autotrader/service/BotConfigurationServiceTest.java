@@ -1,6 +1,7 @@
 package nl.jimkaplan.autotrader.service;
 
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.model.document.BotConfigurationSummary;
 import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,12 +10,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.lang.reflect.Method;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,11 +30,13 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +49,15 @@ class BotConfigurationServiceTest {
     @Mock
     private EncryptionService encryptionService;
 
+    @Mock
+    private TradingPairIndex tradingPairIndex;
+
+    @Spy
+    private WebhookKeyHashCache webhookKeyHashCache = new WebhookKeyHashCache(Duration.ofMinutes(5));
+
+    @Spy
+    private BotConfigurationCache botConfigurationCache = new BotConfigurationCache(Duration.ofMinutes(5));
+
     @InjectMocks
     private BotConfigurationService botConfigurationService;
 
@@ -69,6 +84,7 @@ class BotConfigurationServiceTest {
         // Arrange
         when(encryptionService.encrypt(TEST_API_KEY)).thenReturn(ENCRYPTED_API_KEY);
         when(encryptionService.encrypt(TEST_API_SECRET)).thenReturn(ENCRYPTED_API_SECRET);
+        when(encryptionService.getCurrentKeyVersion()).thenReturn(2);
         when(botConfigurationRepository.save(any(BotConfiguration.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
@@ -82,11 +98,12 @@ class BotConfigurationServiceTest {
         assertEquals(TEST_TRADING_PAIR, savedConfig.getTradingPair());
         assertNull(savedConfig.getApiKey()); // Transient fields should be cleared
         assertNull(savedConfig.getApiSecret()); // Transient fields should be cleared
-        assertEquals(1, savedConfig.getKeyVersion()); // Initial key version
+        assertEquals(2, savedConfig.getKeyVersion()); // Current key version
 
         verify(encryptionService).encrypt(TEST_API_KEY);
         verify(encryptionService).encrypt(TEST_API_SECRET);
         verify(botConfigurationRepository).save(any(BotConfiguration.class));
+        verify(tradingPairIndex).update(savedConfig);
     }
 
     @Test
@@ -102,8 +119,8 @@ class BotConfigurationServiceTest {
                 .build();
 
         when(botConfigurationRepository.findByBotIdAndActive(TEST_BOT_ID, true)).thenReturn(Optional.of(storedConfig));
-        when(encryptionService.decrypt(ENCRYPTED_API_KEY)).thenReturn(TEST_API_KEY);
-        when(encryptionService.decrypt(ENCRYPTED_API_SECRET)).thenReturn(TEST_API_SECRET);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
 
         // Act
         Optional<BotConfiguration> result = botConfigurationService.getBotConfiguration(TEST_BOT_ID);
@@ -118,8 +135,61 @@ class BotConfigurationServiceTest {
         assertTrue(retrievedConfig.getActive());
 
         verify(botConfigurationRepository).findByBotIdAndActive(TEST_BOT_ID, true);
-        verify(encryptionService).decrypt(ENCRYPTED_API_KEY);
-        verify(encryptionService).decrypt(ENCRYPTED_API_SECRET);
+        verify(encryptionService).decrypt(eq(ENCRYPTED_API_KEY), any());
+        verify(encryptionService).decrypt(eq(ENCRYPTED_API_SECRET), any());
+    }
+
+    @Test
+    void getBotConfiguration_onSubsequentCalls_isServedFromTheCache() {
+        // Arrange
+        BotConfiguration storedConfig = BotConfiguration.builder()
+                .botId(TEST_BOT_ID)
+                .encryptedApiKey(ENCRYPTED_API_KEY)
+                .encryptedApiSecret(ENCRYPTED_API_SECRET)
+                .tradingPair(TEST_TRADING_PAIR)
+                .keyVersion(1)
+                .build();
+        when(botConfigurationRepository.findByBotIdAndActive(TEST_BOT_ID, true)).thenReturn(Optional.of(storedConfig));
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
+        botConfigurationService.getBotConfiguration(TEST_BOT_ID);
+
+        // Act
+        Optional<BotConfiguration> result = botConfigurationService.getBotConfiguration(TEST_BOT_ID);
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertEquals(TEST_API_KEY, result.get().getApiKey());
+        assertEquals(TEST_API_SECRET, result.get().getApiSecret());
+        verify(botConfigurationRepository, times(1)).findByBotIdAndActive(TEST_BOT_ID, true);
+        verify(encryptionService, times(1)).decrypt(eq(ENCRYPTED_API_KEY), any());
+        verify(encryptionService, times(1)).decrypt(eq(ENCRYPTED_API_SECRET), any());
+    }
+
+    @Test
+    void getBotConfiguration_afterDeactivation_isLoadedAgain() {
+        // Arrange
+        BotConfiguration storedConfig = BotConfiguration.builder()
+                .botId(TEST_BOT_ID)
+                .encryptedApiKey(ENCRYPTED_API_KEY)
+                .encryptedApiSecret(ENCRYPTED_API_SECRET)
+                .build();
+        when(botConfigurationRepository.findByBotIdAndActive(TEST_BOT_ID, true))
+                .thenReturn(Optional.of(storedConfig))
+                .thenReturn(Optional.empty());
+        when(botConfigurationRepository.findByBotId(TEST_BOT_ID)).thenReturn(Optional.of(storedConfig));
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
+        botConfigurationService.getBotConfiguration(TEST_BOT_ID);
+
+        // Act
+        botConfigurationService.deactivateBotConfiguration(TEST_BOT_ID);
+        Optional<BotConfiguration> result = botConfigurationService.getBotConfiguration(TEST_BOT_ID);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(botConfigurationCache).invalidate(TEST_BOT_ID);
+        verify(botConfigurationRepository, times(2)).findByBotIdAndActive(TEST_BOT_ID, true);
     }
 
     @Test
@@ -135,8 +205,8 @@ class BotConfigurationServiceTest {
                 .build();
 
         when(botConfigurationRepository.findByBotId(TEST_BOT_ID)).thenReturn(Optional.of(storedConfig));
-        when(encryptionService.decrypt(ENCRYPTED_API_KEY)).thenReturn(TEST_API_KEY);
-        when(encryptionService.decrypt(ENCRYPTED_API_SECRET)).thenReturn(TEST_API_SECRET);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
 
         // Act
         Optional<BotConfiguration> result = botConfigurationService.getBotConfigurationIncludingInactive(TEST_BOT_ID);
@@ -151,8 +221,8 @@ class BotConfigurationServiceTest {
         assertFalse(retrievedConfig.getActive());
 
         verify(botConfigurationRepository).findByBotId(TEST_BOT_ID);
-        verify(encryptionService).decrypt(ENCRYPTED_API_KEY);
-        verify(encryptionService).decrypt(ENCRYPTED_API_SECRET);
+        verify(encryptionService).decrypt(eq(ENCRYPTED_API_KEY), any());
+        verify(encryptionService).decrypt(eq(ENCRYPTED_API_SECRET), any());
     }
 
     @Test
@@ -217,6 +287,58 @@ class BotConfigurationServiceTest {
         }
     }
 
+    @Test
+    void validateWebhookApiKey_shouldUseCachedHashOnSubsequentCalls() {
+        // Arrange
+        BotConfiguration storedConfig = BotConfiguration.builder().botId(TEST_BOT_ID).build();
+        when(botConfigurationRepository.findByBotId(TEST_BOT_ID)).thenReturn(Optional.of(storedConfig));
+        when(botConfigurationRepository.save(any(BotConfiguration.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        String webhookApiKey = botConfigurationService.generateAndSaveWebhookApiKey(TEST_BOT_ID);
+
+        // Act
+        boolean first = botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, webhookApiKey);
+        boolean second = botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, webhookApiKey);
+        boolean wrongKey = botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, "wrong-key");
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(wrongKey);
+        // Only the lookup of generateAndSaveWebhookApiKey, validation is served from the cache
+        verify(botConfigurationRepository, times(1)).findByBotId(TEST_BOT_ID);
+    }
+
+    @Test
+    void validateWebhookApiKey_afterNewKeyIsGenerated_rejectsOldKey() {
+        // Arrange
+        BotConfiguration storedConfig = BotConfiguration.builder().botId(TEST_BOT_ID).build();
+        when(botConfigurationRepository.findByBotId(TEST_BOT_ID)).thenReturn(Optional.of(storedConfig));
+        when(botConfigurationRepository.save(any(BotConfiguration.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        String oldKey = botConfigurationService.generateAndSaveWebhookApiKey(TEST_BOT_ID);
+        assertTrue(botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, oldKey));
+
+        // Act
+        String newKey = botConfigurationService.generateAndSaveWebhookApiKey(TEST_BOT_ID);
+
+        // Assert
+        assertFalse(botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, oldKey));
+        assertTrue(botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, newKey));
+    }
+
+    @Test
+    void validateWebhookApiKey_shouldReturnFalseForMissingKeyOrBot() {
+        // Arrange
+        when(botConfigurationRepository.findByBotId(TEST_BOT_ID))
+                .thenReturn(Optional.of(BotConfiguration.builder().botId(TEST_BOT_ID).build()));
+        when(botConfigurationRepository.findByBotId("unknown")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, "any-key"));
+        assertFalse(botConfigurationService.validateWebhookApiKey(TEST_BOT_ID, null));
+        assertFalse(botConfigurationService.validateWebhookApiKey("unknown", "any-key"));
+        assertFalse(botConfigurationService.validateWebhookApiKey(null, "any-key"));
+    }
+
     @Test
     void generateBotId_shouldGenerateSixCharacterString() {
         // Act
@@ -254,6 +376,7 @@ class BotConfigurationServiceTest {
         assertFalse(storedConfig.getActive());
         verify(botConfigurationRepository).findByBotId(TEST_BOT_ID);
         verify(botConfigurationRepository).save(storedConfig);
+        verify(tradingPairIndex).update(storedConfig);
     }
 
     @Test
@@ -293,6 +416,7 @@ class BotConfigurationServiceTest {
         assertTrue(storedConfig.getActive());
         verify(botConfigurationRepository).findByBotId(TEST_BOT_ID);
         verify(botConfigurationRepository).save(storedConfig);
+        verify(tradingPairIndex).update(storedConfig);
     }
 
     @Test
@@ -327,8 +451,8 @@ class BotConfigurationServiceTest {
                 .build();
 
         when(botConfigurationRepository.findByActive(true)).thenReturn(java.util.List.of(activeConfig1, activeConfig2));
-        when(encryptionService.decrypt(ENCRYPTED_API_KEY)).thenReturn(TEST_API_KEY);
-        when(encryptionService.decrypt(ENCRYPTED_API_SECRET)).thenReturn(TEST_API_SECRET);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
 
         // Act
         java.util.List<BotConfiguration> result = botConfigurationService.getAllBotConfigurations();
@@ -337,8 +461,8 @@ class BotConfigurationServiceTest {
         assertEquals(2, result.size());
         assertTrue(result.stream().allMatch(BotConfiguration::getActive));
         verify(botConfigurationRepository).findByActive(true);
-        verify(encryptionService, times(2)).decrypt(ENCRYPTED_API_KEY);
-        verify(encryptionService, times(2)).decrypt(ENCRYPTED_API_SECRET);
+        verify(encryptionService, times(2)).decrypt(eq(ENCRYPTED_API_KEY), any());
+        verify(encryptionService, times(2)).decrypt(eq(ENCRYPTED_API_SECRET), any());
     }
 
     @Test
@@ -359,8 +483,8 @@ class BotConfigurationServiceTest {
                 .build();
 
         when(botConfigurationRepository.findAll()).thenReturn(java.util.List.of(activeConfig, inactiveConfig));
-        when(encryptionService.decrypt(ENCRYPTED_API_KEY)).thenReturn(TEST_API_KEY);
-        when(encryptionService.decrypt(ENCRYPTED_API_SECRET)).thenReturn(TEST_API_SECRET);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_KEY), any())).thenReturn(TEST_API_KEY);
+        when(encryptionService.decrypt(eq(ENCRYPTED_API_SECRET), any())).thenReturn(TEST_API_SECRET);
 
         // Act
         java.util.List<BotConfiguration> result = botConfigurationService.getAllBotConfigurationsIncludingInactive();
@@ -370,8 +494,8 @@ class BotConfigurationServiceTest {
         assertEquals(1, result.stream().filter(BotConfiguration::getActive).count());
         assertEquals(1, result.stream().filter(config -> !config.getActive()).count());
         verify(botConfigurationRepository).findAll();
-        verify(encryptionService, times(2)).decrypt(ENCRYPTED_API_KEY);
-        verify(encryptionService, times(2)).decrypt(ENCRYPTED_API_SECRET);
+        verify(encryptionService, times(2)).decrypt(eq(ENCRYPTED_API_KEY), any());
+        verify(encryptionService, times(2)).decrypt(eq(ENCRYPTED_API_SECRET), any());
     }
 
     @Test
@@ -396,4 +520,48 @@ class BotConfigurationServiceTest {
             fail("Test encountered unexpected exception: " + e.getMessage());
         }
     }
+
+    @Test
+    void getAllBotConfigurationSummaries_readsProjectionWithoutDecrypting() {
+        // Arrange
+        BotConfigurationSummary summary = mock();
+        when(botConfigurationRepository.findSummariesByActive(true)).thenReturn(List.of(summary));
+
+        // Act
+        List<BotConfigurationSummary> result = botConfigurationService.getAllBotConfigurationSummaries();
+
+        // Assert
+        assertEquals(List.of(summary), result);
+        verify(botConfigurationRepository, never()).findByActive(any());
+        verifyNoInteractions(encryptionService);
+    }
+
+    @Test
+    void getAllBotConfigurationSummariesIncludingInactive_readsProjectionWithoutDecrypting() {
+        // Arrange
+        BotConfigurationSummary summary = mock();
+        when(botConfigurationRepository.findSummariesBy()).thenReturn(List.of(summary));
+
+        // Act
+        List<BotConfigurationSummary> result = botConfigurationService.getAllBotConfigurationSummariesIncludingInactive();
+
+        // Assert
+        assertEquals(List.of(summary), result);
+        verify(botConfigurationRepository, never()).findAll();
+        verifyNoInteractions(encryptionService);
+    }
+
+    @Test
+    void getBotConfigurationSummary_readsProjectionWithoutDecrypting() {
+        // Arrange
+        BotConfigurationSummary summary = mock();
+        when(botConfigurationRepository.findSummaryByBotIdAndActive(TEST_BOT_ID, true)).thenReturn(Optional.of(summary));
+
+        // Act
+        Optional<BotConfigurationSummary> result = botConfigurationService.getBotConfigurationSummary(TEST_BOT_ID);
+
+        // Assert
+        assertEquals(Optional.of(summary), result);
+        verifyNoInteractions(encryptionService);
+    }
 }
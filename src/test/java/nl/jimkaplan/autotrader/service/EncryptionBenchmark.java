@@ -0,0 +1,79 @@
+package nl.jimkaplan.autotrader.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encryptions and decryptions per second of {@link EncryptionService}, compared with decoding the master key and
+ * creating a new {@link Cipher} for every call as it was done before the engines were pooled.
+ * Uses a value of the length of a Bitvavo API secret.
+ * <p>
+ * Runs with the GC profiler, so {@code gc.alloc.rate.norm} shows the bytes allocated per call.
+ * Not run by the test suite. Run it from the IDE through {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final String MASTER_KEY = "MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=";
+    private static final String API_SECRET = "bitvavo-api-secret-of-sixty-four-characters-0123456789abcdefghij";
+
+    private final EncryptionService encryptionService = new EncryptionService(MASTER_KEY);
+    private final String ciphertext = encryptionService.encrypt(API_SECRET);
+
+    @Benchmark
+    public String decryptWithNewCipher() throws GeneralSecurityException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(Base64.getDecoder().decode(ciphertext));
+        byte[] iv = new byte[12];
+        byteBuffer.get(iv);
+        byte[] encrypted = new byte[byteBuffer.remaining()];
+        byteBuffer.get(encrypted);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(MASTER_KEY), "AES"),
+                new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decryptWithPooledEngine() {
+        return encryptionService.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String encryptWithPooledEngine() {
+        return encryptionService.encrypt(API_SECRET);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
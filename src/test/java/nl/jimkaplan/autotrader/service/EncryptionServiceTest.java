@@ -5,6 +5,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -13,12 +19,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @ExtendWith(MockitoExtension.class)
 class EncryptionServiceTest {
 
+    // Base64 encoded 32-byte key (123456789012345678901234567890123)
+    private static final String TEST_MASTER_KEY = "MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=";
+
     private EncryptionService encryptionService;
 
     @BeforeEach
     void setUp() {
-        // Base64 encoded 32-byte key (123456789012345678901234567890123)
-        String TEST_MASTER_KEY = "MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=";
         encryptionService = new EncryptionService(TEST_MASTER_KEY);
     }
 
@@ -115,4 +122,93 @@ class EncryptionServiceTest {
         // Assert
         assertNotEquals(encrypted1, encrypted2, "Encrypting the same plaintext twice should produce different ciphertexts due to random IV");
     }
+
+    @Test
+    void decrypt_withCiphertextOfStandaloneCipher_returnsOriginalPlaintext() throws Exception {
+        // Arrange
+        String plaintext = "bitvavo-api-secret";
+        byte[] iv = new byte[12];
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(TEST_MASTER_KEY), "AES"),
+                new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+
+        // Act
+        String decrypted = encryptionService.decrypt(Base64.getEncoder().encodeToString(combined));
+
+        // Assert
+        assertEquals(plaintext, decrypted);
+    }
+
+    @Test
+    void decrypt_afterTamperedCiphertext_stillDecryptsValidCiphertexts() {
+        // Arrange
+        String encrypted = encryptionService.encrypt("This is a test plaintext");
+        char[] tampered = encrypted.toCharArray();
+        tampered[20] = tampered[20] == 'A' ? 'B' : 'A';
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(new String(tampered)));
+        assertEquals("This is a test plaintext", encryptionService.decrypt(encrypted));
+    }
+
+    @Test
+    void decrypt_withValuesLongerThanBefore_returnsOriginalPlaintexts() {
+        // Arrange
+        String shortText = "short";
+        String longText = "long text ".repeat(100) + "with non-ASCII characters: é€";
+
+        // Act & Assert
+        assertEquals(shortText, encryptionService.decrypt(encryptionService.encrypt(shortText)));
+        assertEquals(longText, encryptionService.decrypt(encryptionService.encrypt(longText)));
+        assertEquals(shortText, encryptionService.decrypt(encryptionService.encrypt(shortText)));
+    }
+
+    @Test
+    void decrypt_withPreviousKeyVersion_usesThePreviousKey() {
+        // Arrange
+        String newMasterKey = "QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWY=";
+        EncryptionService rotated = new EncryptionService(newMasterKey, 2, "1:" + TEST_MASTER_KEY);
+        String encryptedWithPreviousKey = encryptionService.encrypt("secret");
+
+        // Act
+        String decrypted = rotated.decrypt(encryptedWithPreviousKey, 1);
+
+        // Assert
+        assertEquals("secret", decrypted);
+        assertEquals(2, rotated.getCurrentKeyVersion());
+        assertEquals("secret", rotated.decrypt(rotated.encrypt("secret"), 2));
+        assertThrows(RuntimeException.class, () -> rotated.decrypt(encryptedWithPreviousKey, 2));
+    }
+
+    @Test
+    void decrypt_withoutKeyVersion_usesTheInitialKey() {
+        // Arrange
+        EncryptionService rotated = new EncryptionService("QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWY=", 2,
+                "1:" + TEST_MASTER_KEY);
+
+        // Act
+        String decrypted = rotated.decrypt(encryptionService.encrypt("secret"), null);
+
+        // Assert
+        assertEquals("secret", decrypted);
+    }
+
+    @Test
+    void decrypt_withUnknownKeyVersion_throwsException() {
+        // Arrange
+        String encrypted = encryptionService.encrypt("secret");
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(encrypted, 3));
+    }
+
+    @Test
+    void constructor_withDuplicateKeyVersion_throwsException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new EncryptionService(TEST_MASTER_KEY, 1, "1:" + TEST_MASTER_KEY));
+    }
 }
@@ -0,0 +1,154 @@
+package nl.jimkaplan.autotrader.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreTradeFetcherTest {
+
+    private static final long LOOKUP_LATENCY_MILLIS = 200;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fetch_runsLookupsInParallel() {
+        // Arrange
+        PreTradeFetcher fetcher = new PreTradeFetcher(executor, Duration.ofSeconds(5));
+
+        // Act
+        long start = System.nanoTime();
+        PreTradeFetcher.Both<Double, Double> both = fetcher.fetch(slow(0.5), slow(50000.0));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert: the latency is that of one lookup, not the sum of both
+        assertEquals(0.5, both.first());
+        assertEquals(50000.0, both.second());
+        assertTrue(elapsedMillis < 2 * LOOKUP_LATENCY_MILLIS - 50, "Took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void fetch_single_returnsValueFromCallingThread() {
+        // Arrange
+        PreTradeFetcher fetcher = new PreTradeFetcher(executor, Duration.ofSeconds(5));
+        Thread caller = Thread.currentThread();
+
+        // Act & Assert
+        assertEquals(caller, fetcher.fetch(Thread::currentThread));
+    }
+
+    @Test
+    void fetch_fromFullyBusyPlatformPool_completesEveryAlert() throws Exception {
+        // Arrange: every thread of a small alert pool waits on its lookups at the same time
+        int poolSize = 2;
+        ExecutorService alertPool = Executors.newFixedThreadPool(poolSize);
+        ExecutorService lookupPool = Executors.newFixedThreadPool(poolSize);
+        PreTradeFetcher fetcher = new PreTradeFetcher(lookupPool, Duration.ofSeconds(5));
+        CountDownLatch allBusy = new CountDownLatch(poolSize);
+        List<Future<PreTradeFetcher.Both<Double, Double>>> alerts = new ArrayList<>();
+
+        try {
+            // Act
+            for (int i = 0; i < poolSize; i++) {
+                alerts.add(alertPool.submit(() -> {
+                    allBusy.countDown();
+                    allBusy.await();
+                    return fetcher.fetch(slow(0.5), slow(50000.0));
+                }));
+            }
+
+            // Assert
+            for (Future<PreTradeFetcher.Both<Double, Double>> alert : alerts) {
+                PreTradeFetcher.Both<Double, Double> both = alert.get(5, TimeUnit.SECONDS);
+                assertEquals(0.5, both.first());
+                assertEquals(50000.0, both.second());
+            }
+        } finally {
+            alertPool.shutdownNow();
+            lookupPool.shutdownNow();
+        }
+    }
+
+    @Test
+    void fetch_afterDeadline_throwsAndCancelsLookups() throws InterruptedException {
+        // Arrange
+        PreTradeFetcher fetcher = new PreTradeFetcher(executor, Duration.ofMillis(50));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Supplier<Double> hanging = () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 0.0;
+        };
+
+        // Act
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> fetcher.fetch(() -> 1.0, hanging));
+
+        // Assert
+        assertTrue(exception.getMessage().startsWith("Pre-trade data not available within"));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Lookup was not cancelled");
+    }
+
+    @Test
+    void fetch_whenLookupFails_throwsItsExceptionWithoutWaitingForTheOther() {
+        // Arrange
+        PreTradeFetcher fetcher = new PreTradeFetcher(executor, Duration.ofSeconds(5));
+        RuntimeException failure = new RuntimeException("Bitvavo API error");
+
+        // Act
+        long start = System.nanoTime();
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> fetcher.fetch(() -> {
+                    throw failure;
+                }, slow(50000.0)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertSame(failure, exception);
+        assertTrue(elapsedMillis < LOOKUP_LATENCY_MILLIS, "Took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void fetch_single_whenLookupFails_throwsItsException() {
+        // Arrange
+        PreTradeFetcher fetcher = new PreTradeFetcher(executor, Duration.ofSeconds(5));
+        IllegalArgumentException failure = new IllegalArgumentException("Unknown market");
+
+        // Act & Assert
+        assertSame(failure, assertThrows(IllegalArgumentException.class, () -> fetcher.fetch(() -> {
+            throw failure;
+        })));
+    }
+
+    private static <T> Supplier<T> slow(T value) {
+        return () -> {
+            try {
+                Thread.sleep(LOOKUP_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package nl.jimkaplan.autotrader.service;
+
+import nl.jimkaplan.autotrader.model.document.BotConfiguration;
+import nl.jimkaplan.autotrader.repository.BotConfigurationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TradingPairIndexTest {
+
+    @Mock
+    private BotConfigurationRepository botConfigurationRepository;
+
+    private TradingPairIndex tradingPairIndex;
+
+    @BeforeEach
+    void setUp() {
+        tradingPairIndex = new TradingPairIndex(botConfigurationRepository);
+    }
+
+    @Test
+    void reload_indexesActiveBotsByTradingPair() {
+        // Arrange
+        when(botConfigurationRepository.findByActive(true)).thenReturn(List.of(
+                bot("bot1", "BTCEUR", true),
+                bot("bot2", "BTCEUR", true),
+                bot("bot3", "ETHEUR", true)));
+
+        // Act
+        tradingPairIndex.reload();
+
+        // Assert
+        assertEquals(Set.of("bot1", "bot2"), tradingPairIndex.getActiveBotIds("BTCEUR"));
+        assertEquals(Set.of("bot3"), tradingPairIndex.getActiveBotIds("ETHEUR"));
+        assertTrue(tradingPairIndex.getActiveBotIds("XRPEUR").isEmpty());
+        assertTrue(tradingPairIndex.getActiveBotIds(null).isEmpty());
+    }
+
+    @Test
+    void reload_withUpdateWhileLoading_keepsTheUpdate() {
+        // Arrange
+        tradingPairIndex.update(bot("bot1", "BTCEUR", true));
+
+        // Act
+        List<BotConfiguration> loaded = tradingPairIndex.reload(() -> {
+            // Saved after the configurations were read
+            tradingPairIndex.update(bot("bot2", "ETHEUR", true));
+            return List.of(bot("bot1", "BTCEUR", true), bot("bot3", "BTCEUR", false));
+        });
+
+        // Assert
+        assertEquals(2, loaded.size());
+        assertEquals(Set.of("bot1"), tradingPairIndex.getActiveBotIds("BTCEUR"));
+        assertEquals(Set.of("bot2"), tradingPairIndex.getActiveBotIds("ETHEUR"));
+        assertEquals(Map.of("bot1", "BTCEUR", "bot2", "ETHEUR"), tradingPairIndex.getTradingPairsByBotId());
+    }
+
+    @Test
+    void getTradingPairs_returnsPairsWithActiveBots() {
+        // Arrange
+        tradingPairIndex.update(bot("bot1", "BTCEUR", true));
+        tradingPairIndex.update(bot("bot2", "ETHEUR", true));
+        tradingPairIndex.update(bot("bot2", "ETHEUR", false));
+
+        // Act & Assert
+        assertEquals(Set.of("BTCEUR"), tradingPairIndex.getTradingPairs());
+    }
+
+    @Test
+    void update_withDeactivatedBot_removesBotFromIndex() {
+        // Arrange
+        tradingPairIndex.update(bot("bot1", "BTCEUR", true));
+        tradingPairIndex.update(bot("bot2", "BTCEUR", true));
+
+        // Act
+        tradingPairIndex.update(bot("bot1", "BTCEUR", false));
+
+        // Assert
+        assertEquals(Set.of("bot2"), tradingPairIndex.getActiveBotIds("BTCEUR"));
+    }
+
+    @Test
+    void update_withChangedTradingPair_movesBot() {
+        // Arrange
+        tradingPairIndex.update(bot("bot1", "BTCEUR", true));
+
+        // Act
+        tradingPairIndex.update(bot("bot1", "ETHEUR", true));
+
+        // Assert
+        assertTrue(tradingPairIndex.getActiveBotIds("BTCEUR").isEmpty());
+        assertEquals(Set.of("bot1"), tradingPairIndex.getActiveBotIds("ETHEUR"));
+    }
+
+    private BotConfiguration bot(String botId, String tradingPair, boolean active) {
+        return BotConfiguration.builder()
+                .botId(botId)
+                .tradingPair(tradingPair)
+                .active(active)
+                .build();
+    }
+}
@@ -1,15 +1,21 @@
 package nl.jimkaplan.autotrader.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.jimkaplan.autotrader.bitvavo.client.BitvavoApiClient;
+import nl.jimkaplan.autotrader.bitvavo.client.BitvavoWebSocketOrderClient;
 import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderRequest;
 import nl.jimkaplan.autotrader.bitvavo.model.CreateOrderResponse;
 import nl.jimkaplan.autotrader.bitvavo.model.GetAccountBalanceResponse;
 import nl.jimkaplan.autotrader.bitvavo.model.GetPriceResponse;
+import nl.jimkaplan.autotrader.bitvavo.service.BalanceLedger;
+import nl.jimkaplan.autotrader.bitvavo.service.MarketPriceService;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
 import nl.jimkaplan.autotrader.model.Order;
 import nl.jimkaplan.autotrader.model.document.BotConfiguration;
 import nl.jimkaplan.autotrader.model.document.Position;
 import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
 import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import nl.jimkaplan.autotrader.tradingview.service.AlertDeduplicator;
 import nl.jimkaplan.autotrader.tradingview.service.TradingViewAlertService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,22 +24,33 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.answersWithDelay;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +60,12 @@ class TradingServiceTest {
     @Mock
     private BitvavoApiClient bitvavoApiClient;
 
+    @Mock
+    private MarketPriceService marketPriceService;
+
+    @Mock
+    private BitvavoWebSocketOrderClient webSocketOrderClient;
+
     @Mock
     private BotConfigurationService botConfigurationService;
 
@@ -55,6 +78,15 @@ class TradingServiceTest {
     @Mock
     private PositionService positionService;
 
+    @Spy
+    private AlertDeduplicator alertDeduplicator = new AlertDeduplicator(Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    @Spy
+    private PreTradeFetcher preTradeFetcher = new PreTradeFetcher(Executors.newVirtualThreadPerTaskExecutor(), Duration.ofSeconds(5));
+
+    @Spy
+    private BalanceLedger balanceLedger = new BalanceLedger(new SimpleMeterRegistry(), Duration.ofMinutes(10));
+
     @InjectMocks
     private TradingService tradingService;
 
@@ -178,6 +210,23 @@ class TradingServiceTest {
         assertEquals("buy", capturedRequest.getSide());
         assertEquals("market", capturedRequest.getOrderType());
         assertEquals(BigDecimal.valueOf(TEST_EUR_BALANCE), capturedRequest.getAmountQuote());
+        assertEquals(TradingService.clientOrderId(validBuyRequest), capturedRequest.getClientOrderId());
+    }
+
+    @Test
+    void clientOrderId_isTheSameForTheSameAlertAndDiffersBetweenAlerts() {
+        // Act
+        UUID buyOrderId = TradingService.clientOrderId(validBuyRequest);
+
+        // Assert
+        TradingViewAlertRequest redelivered = TradingViewAlertRequest.builder()
+                .botId(validBuyRequest.getBotId())
+                .ticker(validBuyRequest.getTicker())
+                .action(validBuyRequest.getAction())
+                .timestamp(validBuyRequest.getTimestamp())
+                .build();
+        assertEquals(buyOrderId, TradingService.clientOrderId(redelivered));
+        assertNotEquals(buyOrderId, TradingService.clientOrderId(validSellRequest));
     }
 
     @Test
@@ -186,7 +235,7 @@ class TradingServiceTest {
         when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{btcBalanceResponse});
-        when(bitvavoApiClient.get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(btcPriceResponse);
+        when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(btcPriceResponse.getPrice());
         when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
         when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.of(existingPosition));
 
@@ -200,7 +249,7 @@ class TradingServiceTest {
         assertEquals("sell", alertCaptor.getValue().getAction());
 
         verify(bitvavoApiClient).get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
-        verify(bitvavoApiClient).get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        verify(marketPriceService).getLastPrice("BTC-EUR");
         verify(bitvavoApiClient).post(eq("/order"), orderRequestCaptor.capture(), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
 
         CreateOrderRequest capturedRequest = orderRequestCaptor.getValue();
@@ -210,6 +259,27 @@ class TradingServiceTest {
         assertEquals(BigDecimal.valueOf(TEST_BTC_BALANCE), capturedRequest.getAmount());
     }
 
+    @Test
+    void validateAndProcessAlert_withWebSocketOrderTransport_placesOrderOverWebSocket() {
+        // Arrange
+        botConfig.setOrderTransport(BotConfiguration.OrderTransport.WEBSOCKET);
+        when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        when(bitvavoApiClient.get(eq("/balance?symbol=EUR"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{eurBalanceResponse});
+        when(webSocketOrderClient.createOrder(any(CreateOrderRequest.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.empty());
+
+        // Act
+        tradingService.validateAndProcessAlert(validBuyRequest);
+
+        // Assert
+        verify(webSocketOrderClient).createOrder(orderRequestCaptor.capture(), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        assertEquals("buy", orderRequestCaptor.getValue().getSide());
+        verify(bitvavoApiClient, never()).post(anyString(), any(CreateOrderRequest.class), any(), anyString(), anyString());
+        verify(orderService).saveOrder(orderCaptor.capture());
+        assertEquals(orderResponse.getOrderId().toString(), orderCaptor.getValue().getOrderId());
+    }
+
     // Request validation tests
 
     @Test
@@ -333,6 +403,23 @@ class TradingServiceTest {
 
     // Invalid action test
 
+    @Test
+    void validateRequest_normalizesActionToLowerCase() {
+        // Arrange
+        TradingViewAlertRequest request = TradingViewAlertRequest.builder()
+                .botId(TEST_BOT_ID)
+                .ticker(TEST_TICKER)
+                .action("BUY")
+                .timestamp("2024-01-01T12:00:00Z")
+                .build();
+
+        // Act
+        tradingService.validateRequest(request);
+
+        // Assert
+        assertEquals("buy", request.getAction());
+    }
+
     @Test
     void validateAndProcessAlert_withInvalidAction_throwsException() {
         // Arrange
@@ -394,15 +481,14 @@ class TradingServiceTest {
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
                 .thenReturn(new GetAccountBalanceResponse[]{lowBtcBalanceResponse});
-        when(bitvavoApiClient.get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
-                .thenReturn(lowBtcPriceResponse);
+        when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(lowBtcPriceResponse.getPrice());
 
         // Act
         tradingService.validateAndProcessAlert(validSellRequest);
 
         // Assert
         verify(bitvavoApiClient).get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
-        verify(bitvavoApiClient).get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        verify(marketPriceService).getLastPrice("BTC-EUR");
         verify(bitvavoApiClient, never()).post(anyString(), any(CreateOrderRequest.class), any(), anyString(), anyString());
 
         verify(orderService).saveOrder(orderCaptor.capture());
@@ -448,6 +534,8 @@ class TradingServiceTest {
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
                 .thenThrow(apiException);
+        // The price is fetched in parallel with the balance and may or may not be requested before the failure
+        lenient().when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(btcPriceResponse.getPrice());
 
         // Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -493,7 +581,7 @@ class TradingServiceTest {
         when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{btcBalanceResponse});
-        when(bitvavoApiClient.get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(btcPriceResponse);
+        when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(btcPriceResponse.getPrice());
         when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
         when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.of(existingPosition));
 
@@ -564,7 +652,7 @@ class TradingServiceTest {
         when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{btcBalanceResponse});
-        when(bitvavoApiClient.get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(btcPriceResponse);
+        when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(btcPriceResponse.getPrice());
         when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.of(existingPosition));
 
         // Act
@@ -579,7 +667,7 @@ class TradingServiceTest {
 
         // Verify balances and price are checked
         verify(bitvavoApiClient).get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
-        verify(bitvavoApiClient).get(eq("/ticker/price?market=BTC-EUR"), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        verify(marketPriceService).getLastPrice("BTC-EUR");
 
         // Verify order is NOT sent to Bitvavo
         verify(bitvavoApiClient, never()).post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
@@ -600,6 +688,85 @@ class TradingServiceTest {
         verify(positionService).savePosition(existingPosition);
     }
 
+    @Test
+    void validateAndProcessAlert_withSellSignal_fetchesBalanceAndPriceInParallel() {
+        // Arrange
+        TradingViewAlertRequest dryRunSellRequest = new TradingViewAlertRequest();
+        dryRunSellRequest.setBotId(TEST_BOT_ID);
+        dryRunSellRequest.setTicker(TEST_TICKER);
+        dryRunSellRequest.setAction("sell");
+        dryRunSellRequest.setTimestamp(TEST_TIMESTAMP);
+        dryRunSellRequest.setDryRun(true);
+
+        when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        // Each Bitvavo lookup takes 200 ms
+        when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
+                .thenAnswer(answersWithDelay(200, invocation -> new GetAccountBalanceResponse[]{btcBalanceResponse}));
+        when(marketPriceService.getLastPrice("BTC-EUR"))
+                .thenAnswer(answersWithDelay(200, invocation -> btcPriceResponse.getPrice()));
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.of(existingPosition));
+
+        // Act
+        long start = System.nanoTime();
+        tradingService.validateAndProcessAlert(dryRunSellRequest);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert: the lookups overlap, so the alert takes about one lookup instead of two
+        assertTrue(elapsedMillis < 350, "Took " + elapsedMillis + " ms");
+        verify(orderService).saveOrder(argThat(order -> "COMPLETED".equals(order.getStatus())));
+    }
+
+    @Test
+    void validateAndProcessAlert_withBuySignalAndSeededLedger_usesLedgerBalanceAndDebitsOrder() {
+        // Arrange
+        balanceLedger.seed(TEST_API_KEY, Map.of("EUR", BigDecimal.valueOf(TEST_EUR_BALANCE)));
+        when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.empty());
+
+        // Act
+        tradingService.validateAndProcessAlert(validBuyRequest);
+
+        // Assert: no balance request, and the EUR spent on the order is no longer available
+        verify(bitvavoApiClient, never()).get(anyString(), eq(GetAccountBalanceResponse[].class), anyString(), anyString());
+        verify(bitvavoApiClient).post(eq("/order"), orderRequestCaptor.capture(), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        assertEquals(BigDecimal.valueOf(TEST_EUR_BALANCE), orderRequestCaptor.getValue().getAmountQuote());
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceLedger.getAvailable(TEST_API_KEY, "EUR")));
+    }
+
+    @Test
+    void validateAndProcessAlert_afterRejectedOrder_readsBalanceFromRest() {
+        // Arrange: the ledger holds more EUR than the account has, so Bitvavo rejects the order sized from it
+        balanceLedger.seed(TEST_API_KEY, Map.of("EUR", BigDecimal.valueOf(2 * TEST_EUR_BALANCE)));
+        when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null,
+                        "{\"errorCode\":216,\"error\":\"You do not have sufficient balance to complete this operation.\"}".getBytes(), null))
+                .thenReturn(orderResponse);
+        when(bitvavoApiClient.get(eq("/balance?symbol=EUR"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
+                .thenReturn(new GetAccountBalanceResponse[]{eurBalanceResponse});
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.empty());
+        TradingViewAlertRequest nextBuyRequest = TradingViewAlertRequest.builder()
+                .botId(TEST_BOT_ID)
+                .ticker(TEST_TICKER)
+                .action("buy")
+                .timestamp("2023-01-01T12:05:00Z")
+                .build();
+
+        // Act
+        assertThrows(RuntimeException.class, () -> tradingService.validateAndProcessAlert(validBuyRequest));
+        tradingService.validateAndProcessAlert(nextBuyRequest);
+
+        // Assert: the rejection discarded the ledger, so the next order is sized from the REST balance
+        verify(bitvavoApiClient, times(2)).post(eq("/order"), orderRequestCaptor.capture(), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        assertEquals(BigDecimal.valueOf(2 * TEST_EUR_BALANCE), orderRequestCaptor.getAllValues().get(0).getAmountQuote());
+        assertEquals(BigDecimal.valueOf(TEST_EUR_BALANCE), orderRequestCaptor.getAllValues().get(1).getAmountQuote());
+        verify(bitvavoApiClient).get(eq("/balance?symbol=EUR"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+    }
+
     @Test
     void validateAndProcessAlertWithSellSignal_withZeroAssetBalance() {
         // Arrange
@@ -614,6 +781,8 @@ class TradingServiceTest {
         when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
         when(bitvavoApiClient.get(eq("/balance?symbol=BTC"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
                 .thenReturn(new GetAccountBalanceResponse[]{zeroBalanceResponse});
+        // The price is fetched in parallel with the balance
+        when(marketPriceService.getLastPrice("BTC-EUR")).thenReturn(btcPriceResponse.getPrice());
 
         tradingService.validateAndProcessAlert(request);
 
@@ -627,6 +796,53 @@ class TradingServiceTest {
         ));
     }
 
+    // Queued alert processing tests
+
+    @Test
+    void processQueuedAlert_withValidBuyAlert_executesAndMarksProcessed() {
+        // Arrange
+        TradingViewAlert queuedAlert = TradingViewAlert.builder()
+                .botId(TEST_BOT_ID)
+                .ticker(TEST_TICKER)
+                .action("buy")
+                .timestamp(Instant.parse(TEST_TIMESTAMP))
+                .status(TradingViewAlert.STATUS_QUEUED)
+                .build();
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        when(bitvavoApiClient.get(eq("/balance?symbol=EUR"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{eurBalanceResponse});
+        when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.empty());
+
+        // Act
+        tradingService.processQueuedAlert(queuedAlert);
+
+        // Assert
+        verify(tradingViewAlertService).updateAlertStatus(queuedAlert, TradingViewAlert.STATUS_PROCESSED, null);
+        verify(tradingViewAlertService, never()).saveAlert(any());
+        verify(bitvavoApiClient).post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+    }
+
+    @Test
+    void processQueuedAlert_withUnknownBot_marksFailed() {
+        // Arrange
+        TradingViewAlert queuedAlert = TradingViewAlert.builder()
+                .botId(TEST_BOT_ID)
+                .ticker(TEST_TICKER)
+                .action("buy")
+                .timestamp(Instant.parse(TEST_TIMESTAMP))
+                .status(TradingViewAlert.STATUS_QUEUED)
+                .build();
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.empty());
+
+        // Act
+        tradingService.processQueuedAlert(queuedAlert);
+
+        // Assert
+        verify(tradingViewAlertService).updateAlertStatus(queuedAlert, TradingViewAlert.STATUS_FAILED,
+                "Bot configuration not found: " + TEST_BOT_ID);
+        verify(bitvavoApiClient, never()).post(anyString(), any(CreateOrderRequest.class), any(), anyString(), anyString());
+    }
+
     @Test
     void getAssetBalance_withNullResponse_returnsZero() {
         // Arrange
@@ -673,15 +889,14 @@ class TradingServiceTest {
     void getAssetPrice_shouldReturnPrice() {
         // Arrange
         String ticker = "BTC-EUR";
-        when(bitvavoApiClient.get(eq("/ticker/price?market=" + ticker), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET)))
-                .thenReturn(btcPriceResponse);
+        when(marketPriceService.getLastPrice(ticker)).thenReturn(btcPriceResponse.getPrice());
 
         // Act
-        double price = tradingService.getAssetPrice(ticker, botConfig);
+        double price = tradingService.getAssetPrice(ticker);
 
         // Assert
         assertEquals(btcPriceResponse.getPrice().doubleValue(), price);
-        verify(bitvavoApiClient).get(eq("/ticker/price?market=" + ticker), eq(GetPriceResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+        verify(marketPriceService).getLastPrice(ticker);
     }
 
     @Test
@@ -715,4 +930,43 @@ class TradingServiceTest {
         // Assert
         assertFalse(result);
     }
+
+    @Test
+    void validateAndProcessAlert_withDuplicateAlert_throwsWithoutCallingBitvavoAgain() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any())).thenReturn(savedAlert);
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.of(botConfig));
+        when(bitvavoApiClient.get(eq("/balance?symbol=EUR"), eq(GetAccountBalanceResponse[].class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(new GetAccountBalanceResponse[]{eurBalanceResponse});
+        when(bitvavoApiClient.post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET))).thenReturn(orderResponse);
+        when(positionService.getPositionByBotIdAndTickerAndStatus(TEST_BOT_ID, TEST_TICKER, "OPEN")).thenReturn(Optional.empty());
+        tradingService.validateAndProcessAlert(validBuyRequest);
+
+        // Act & Assert
+        assertThrows(DuplicateAlertException.class, () -> tradingService.validateAndProcessAlert(validBuyRequest));
+        verify(tradingViewAlertService).saveAlert(any());
+        verify(bitvavoApiClient).post(eq("/order"), any(CreateOrderRequest.class), eq(CreateOrderResponse.class), eq(TEST_API_KEY), eq(TEST_API_SECRET));
+    }
+
+    @Test
+    void validateAndProcessAlert_withUnknownBot_allowsRetryOfTheAlert() {
+        // Arrange
+        when(botConfigurationService.getBotConfiguration(TEST_BOT_ID)).thenReturn(Optional.empty());
+        assertThrows(IllegalArgumentException.class, () -> tradingService.validateAndProcessAlert(validBuyRequest));
+
+        // Act & Assert - the retry is rejected for the missing bot again, not as a duplicate
+        assertThrows(IllegalArgumentException.class, () -> tradingService.validateAndProcessAlert(validBuyRequest));
+        verify(alertDeduplicator, times(2)).release(validBuyRequest);
+    }
+
+    @Test
+    void recordCoalescedAlert_savesAlertWithCoalescedStatus() {
+        // Act
+        tradingService.recordCoalescedAlert(validBuyRequest);
+
+        // Assert
+        verify(tradingViewAlertService).saveAlert(alertCaptor.capture());
+        assertEquals(TEST_BOT_ID, alertCaptor.getValue().getBotId());
+        assertEquals(TradingViewAlert.STATUS_COALESCED, alertCaptor.getValue().getStatus());
+        verify(bitvavoApiClient, never()).post(any(), any(), any(), any(), any());
+    }
 }
@@ -0,0 +1,74 @@
+package nl.jimkaplan.autotrader.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WebhookKeyHashCacheTest {
+
+    private static final String HASH = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3});
+    private static final String OTHER_HASH = Base64.getEncoder().encodeToString(new byte[]{4, 5, 6});
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private WebhookKeyHashCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new WebhookKeyHashCache(Duration.ofMinutes(5), nanoTime::get);
+    }
+
+    @Test
+    void get_returnsDecodedHashOrNullWhenNotCached() {
+        // Arrange
+        cache.put("bot1", HASH);
+        cache.put("bot2", null);
+
+        // Act & Assert
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("bot1"));
+        assertEquals(0, cache.get("bot2").length);
+        assertNull(cache.get("bot3"));
+    }
+
+    @Test
+    void putIfAbsent_doesNotReplaceHashWrittenInTheMeantime() {
+        // Arrange
+        cache.put("bot1", OTHER_HASH);
+
+        // Act
+        byte[] cached = cache.putIfAbsent("bot1", HASH);
+
+        // Assert
+        assertArrayEquals(new byte[]{4, 5, 6}, cached);
+        assertArrayEquals(new byte[]{4, 5, 6}, cache.get("bot1"));
+    }
+
+    @Test
+    void get_afterTtl_returnsNullAndPutIfAbsentReplacesExpiredEntry() {
+        // Arrange
+        cache.put("bot1", OTHER_HASH);
+        nanoTime.addAndGet(Duration.ofMinutes(5).plusNanos(1).toNanos());
+
+        // Act & Assert
+        assertNull(cache.get("bot1"));
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.putIfAbsent("bot1", HASH));
+    }
+
+    @Test
+    void invalidate_removesEntry() {
+        // Arrange
+        cache.put("bot1", HASH);
+
+        // Act
+        cache.invalidate("bot1");
+
+        // Assert
+        assertNull(cache.get("bot1"));
+    }
+}
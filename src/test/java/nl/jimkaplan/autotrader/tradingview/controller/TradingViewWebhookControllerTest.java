@@ -1,9 +1,19 @@
 package nl.jimkaplan.autotrader.tradingview.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
 import nl.jimkaplan.autotrader.service.BotConfigurationService;
 import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse;
 import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import nl.jimkaplan.autotrader.tradingview.security.WebhookSourceAuthorizer;
+import nl.jimkaplan.autotrader.tradingview.service.AlertBroadcastService;
+import nl.jimkaplan.autotrader.tradingview.service.AlertQueueService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,10 +22,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
@@ -33,9 +49,21 @@ class TradingViewWebhookControllerTest {
     @Mock
     private TradingService tradingService;
 
+    @Mock
+    private AlertQueueService alertQueueService;
+
+    @Mock
+    private AlertBroadcastService alertBroadcastService;
+
+    @Mock
+    private AlertCoalescer alertCoalescer;
+
     @Mock
     private HttpServletRequest httpServletRequest;
 
+    private ExecutorService tradingExecutor;
+    private BotAlertExecutor botAlertExecutor;
+    private WebhookSourceAuthorizer webhookSourceAuthorizer;
     private TradingViewWebhookController controller;
 
     private TradingViewAlertRequest validRequest;
@@ -44,7 +72,13 @@ class TradingViewWebhookControllerTest {
 
     @BeforeEach
     void setUp() {
-        controller = new TradingViewWebhookController(botConfigurationService, tradingService);
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        botAlertExecutor = new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5));
+        webhookSourceAuthorizer = new WebhookSourceAuthorizer(
+                List.of("52.89.214.238", "34.212.75.30", "54.218.53.128", "52.32.178.7"),
+                List.of("127.0.0.1", "::1"), List.of(), "", Duration.ofSeconds(10));
+        controller = new TradingViewWebhookController(botConfigurationService, tradingService, alertQueueService,
+                botAlertExecutor, alertBroadcastService, alertCoalescer, webhookSourceAuthorizer);
 
         // Setup test data
         botId = "test-bot-id";
@@ -60,6 +94,11 @@ class TradingViewWebhookControllerTest {
         lenient().when(httpServletRequest.getRemoteAddr()).thenReturn("127.0.0.1"); // Use localhost for tests
     }
 
+    @AfterEach
+    void tearDown() {
+        tradingExecutor.shutdownNow();
+    }
+
     @Test
     void handleWebhook_withValidRequest_returnsOk() {
         // Arrange
@@ -158,6 +197,88 @@ class TradingViewWebhookControllerTest {
         verify(tradingService, never()).validateAndProcessAlert(any());
     }
 
+    @Test
+    void handleWebhook_withAsyncModeEnabled_queuesAlertAndReturnsAccepted() {
+        // Arrange
+        when(botConfigurationService.validateWebhookApiKey(eq(botId), eq(validApiKey))).thenReturn(true);
+        when(alertQueueService.isEnabled()).thenReturn(true);
+
+        // Act
+        ResponseEntity<?> response = controller.handleWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(alertQueueService).accept(eq(validRequest));
+        verify(tradingService, never()).validateAndProcessAlert(any());
+    }
+
+    @Test
+    void handleWebhook_withAsyncModeAndFullQueue_returnsServiceUnavailable() {
+        // Arrange
+        when(botConfigurationService.validateWebhookApiKey(eq(botId), eq(validApiKey))).thenReturn(true);
+        when(alertQueueService.isEnabled()).thenReturn(true);
+        doThrow(new AlertQueueFullException("Alert queue is full, please retry later"))
+                .when(alertQueueService).accept(eq(validRequest));
+
+        // Act
+        ResponseEntity<?> response = controller.handleWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("Alert queue is full, please retry later", response.getBody());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        verify(tradingService, never()).validateAndProcessAlert(any());
+    }
+
+    @Test
+    void handleWebhook_withAsyncModeAndInvalidAlert_returnsBadRequest() {
+        // Arrange
+        when(botConfigurationService.validateWebhookApiKey(eq(botId), eq(validApiKey))).thenReturn(true);
+        when(alertQueueService.isEnabled()).thenReturn(true);
+        doThrow(new IllegalArgumentException("Timestamp is required"))
+                .when(alertQueueService).accept(eq(validRequest));
+
+        // Act
+        ResponseEntity<?> response = controller.handleWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Timestamp is required", response.getBody());
+    }
+
+    @Test
+    void handleWebhook_withDuplicateAlert_returnsOk() {
+        // Arrange
+        when(botConfigurationService.validateWebhookApiKey(eq(botId), eq(validApiKey))).thenReturn(true);
+        doThrow(new DuplicateAlertException("Duplicate alert for bot: " + botId))
+                .when(tradingService).validateAndProcessAlert(eq(validRequest));
+
+        // Act
+        ResponseEntity<?> response = controller.handleWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Duplicate alert ignored", response.getBody());
+    }
+
+    @Test
+    void handleWebhook_withCoalescingAndSupersededAlert_returnsOk() {
+        // Arrange
+        when(botConfigurationService.validateWebhookApiKey(eq(botId), eq(validApiKey))).thenReturn(true);
+        when(alertCoalescer.isEnabled()).thenReturn(true);
+        when(alertCoalescer.execute(eq(botId), any(), any(), any())).thenReturn(AlertCoalescer.Outcome.COALESCED);
+
+        // Act
+        ResponseEntity<?> response = controller.handleWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Alert coalesced with a later alert for the same bot", response.getBody());
+        verify(tradingService).claimAlert(validRequest);
+        verify(tradingService, never()).validateAndProcessAlert(any());
+    }
+
     @Test
     void handleWebhook_withNullValidationResult_returnsInternalServerError() {
         // This test is to cover the null validation result case
@@ -182,7 +303,9 @@ class TradingViewWebhookControllerTest {
     @Test
     void processValidationResult_withUnexpectedValidationResult_returnsInternalServerError() {
         // Create a subclass of TradingViewWebhookController to test the default case
-        TradingViewWebhookController controllerSpy = new TradingViewWebhookController(botConfigurationService, tradingService) {
+        TradingViewWebhookController controllerSpy = new TradingViewWebhookController(botConfigurationService,
+                tradingService, alertQueueService, botAlertExecutor, alertBroadcastService, alertCoalescer,
+                webhookSourceAuthorizer) {
             @Override
             protected ValidationResult validateRequest(TradingViewAlertRequest tradingViewAlertRequest,
                                                        HttpServletRequest httpServletRequest, String apiKey) {
@@ -199,4 +322,121 @@ class TradingViewWebhookControllerTest {
         assertEquals("Error processing alert for bot ID: " + botId, response.getBody());
         verify(tradingService, never()).validateAndProcessAlert(any());
     }
+
+    @Test
+    void handleBroadcastWebhook_withBroadcastApiKey_triggersEveryBotOnThePair() {
+        // Arrange
+        when(httpServletRequest.getRemoteAddr()).thenReturn("52.89.214.238");
+        when(alertBroadcastService.validateApiKey(validApiKey)).thenReturn(true);
+        BroadcastAlertResponse broadcastResponse = BroadcastAlertResponse.builder()
+                .ticker("BTCEUR")
+                .action("buy")
+                .results(Stream.of("bot1", "bot2", "bot3")
+                        .map(id -> BroadcastAlertResponse.BotResult.builder()
+                                .botId(id)
+                                .status(BroadcastAlertResponse.Status.EXECUTED)
+                                .build())
+                        .toList())
+                .build();
+        when(alertBroadcastService.broadcast(validRequest)).thenReturn(broadcastResponse);
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(broadcastResponse, response.getBody());
+        verify(botConfigurationService, never()).validateWebhookApiKey(any(), any());
+    }
+
+    @Test
+    void handleBroadcastWebhook_withWebhookApiKeyOfOneBot_returnsUnauthorized() {
+        // Arrange
+        when(alertBroadcastService.validateApiKey(validApiKey)).thenReturn(false);
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertEquals("Invalid API key", response.getBody());
+        verify(alertBroadcastService, never()).broadcast(any());
+    }
+
+    @Test
+    void handleBroadcastWebhook_fromTradingViewIpWithoutApiKey_returnsUnauthorized() {
+        // Arrange
+        when(httpServletRequest.getRemoteAddr()).thenReturn("52.89.214.238");
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(null, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertEquals("Invalid API key", response.getBody());
+        verify(alertBroadcastService, never()).broadcast(any());
+    }
+
+    @Test
+    void handleBroadcastWebhook_inAsyncMode_returnsAccepted() {
+        // Arrange
+        when(alertBroadcastService.validateApiKey(validApiKey)).thenReturn(true);
+        when(alertQueueService.isEnabled()).thenReturn(true);
+        when(alertBroadcastService.broadcast(validRequest)).thenReturn(
+                BroadcastAlertResponse.builder()
+                        .results(List.of(BroadcastAlertResponse.BotResult.builder()
+                                .botId(botId)
+                                .status(BroadcastAlertResponse.Status.QUEUED)
+                                .build()))
+                        .build());
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+    }
+
+    @Test
+    void handleBroadcastWebhook_withoutMatchingBots_returnsNotFound() {
+        // Arrange
+        when(alertBroadcastService.validateApiKey(validApiKey)).thenReturn(true);
+        when(alertBroadcastService.broadcast(validRequest)).thenReturn(
+                BroadcastAlertResponse.builder().results(List.of()).build());
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("No active bots for trading pair: BTCEUR", response.getBody());
+    }
+
+    @Test
+    void handleBroadcastWebhook_withInvalidAlert_returnsBadRequest() {
+        // Arrange
+        when(alertBroadcastService.validateApiKey(validApiKey)).thenReturn(true);
+        when(alertBroadcastService.broadcast(validRequest))
+                .thenThrow(new IllegalArgumentException("Action is required"));
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Action is required", response.getBody());
+    }
+
+    @Test
+    void handleBroadcastWebhook_fromUnknownIp_returnsUnauthorized() {
+        // Arrange
+        when(httpServletRequest.getRemoteAddr()).thenReturn("10.0.0.1");
+
+        // Act
+        ResponseEntity<?> response = controller.handleBroadcastWebhook(validApiKey, validRequest, httpServletRequest);
+
+        // Assert
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(alertBroadcastService, never()).broadcast(any());
+    }
 }
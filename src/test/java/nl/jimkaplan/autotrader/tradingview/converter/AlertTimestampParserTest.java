@@ -0,0 +1,73 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AlertTimestampParserTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2024-01-01T12:00:00Z",
+            "1970-01-01T00:00:00Z",
+            "1969-12-31T23:59:59Z",
+            "0000-01-01T00:00:00Z",
+            "2000-02-29T23:59:59Z",
+            "2024-02-29T06:30:15Z",
+            "2100-12-31T00:00:00Z",
+            "9999-12-31T23:59:59Z",
+            "2024-01-01T12:00:00.5Z",
+            "2024-01-01T12:00:00.123Z",
+            "2024-01-01T12:00:00.123456789Z",
+            "2024-01-01T12:00:00.Z"
+    })
+    void parse_withUtcTimestamp_matchesIsoParser(String timestamp) {
+        // Act
+        Instant instant = AlertTimestampParser.parse(timestamp);
+
+        // Assert
+        assertEquals(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(timestamp, Instant::from), instant);
+    }
+
+    @Test
+    void parse_withOffsetTimestamp_fallsBackToIsoParser() {
+        // Act
+        Instant instant = AlertTimestampParser.parse("2024-01-01T13:00:00+01:00");
+
+        // Assert
+        assertEquals(Instant.parse("2024-01-01T12:00:00Z"), instant);
+    }
+
+    @Test
+    void parse_withTimestampWithoutSeconds_fallsBackToIsoParser() {
+        // Act
+        Instant instant = AlertTimestampParser.parse("2024-01-01T12:00Z");
+
+        // Assert
+        assertEquals(Instant.parse("2024-01-01T12:00:00Z"), instant);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "invalid-timestamp",
+            "2024-01-01",
+            "2024-01-01T12:00:00",
+            "2024-13-01T12:00:00Z",
+            "2023-02-29T12:00:00Z",
+            "2024-01-01T24:00:00Z",
+            "2024-01-01T12:60:00Z",
+            "2024-01-0aT12:00:00Z"
+    })
+    void parse_withInvalidTimestamp_throwsException(String timestamp) {
+        // Act & Assert
+        assertThrows(DateTimeParseException.class, () -> AlertTimestampParser.parse(timestamp));
+    }
+}
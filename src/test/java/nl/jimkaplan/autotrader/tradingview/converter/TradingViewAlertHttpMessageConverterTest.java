@@ -0,0 +1,64 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradingViewAlertHttpMessageConverterTest {
+
+    private final TradingViewAlertHttpMessageConverter converter = new TradingViewAlertHttpMessageConverter(new ObjectMapper());
+
+    @Test
+    void canRead_onlyForAlertRequestsWithJsonBody() {
+        // Act & Assert
+        assertTrue(converter.canRead(TradingViewAlertRequest.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canRead(TradingViewAlertRequest.class, MediaType.valueOf("application/vnd.alert+json")));
+        assertFalse(converter.canRead(TradingViewAlertRequest.class, MediaType.TEXT_PLAIN));
+        assertFalse(converter.canRead(String.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(TradingViewAlertRequest.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void read_withAlertPayload_returnsRequest() throws IOException {
+        // Arrange
+        MockHttpInputMessage inputMessage = input("""
+                {"botId":"bot1","ticker":"BTCEUR","action":"buy","timestamp":"2024-01-01T12:00:00Z"}
+                """);
+
+        // Act
+        TradingViewAlertRequest request = converter.read(TradingViewAlertRequest.class, inputMessage);
+
+        // Assert
+        assertEquals("bot1", request.getBotId());
+        assertEquals("BTCEUR", request.getTicker());
+        assertEquals("buy", request.getAction());
+        assertEquals("2024-01-01T12:00:00Z", request.getTimestamp());
+    }
+
+    @Test
+    void read_withMalformedJson_throwsNotReadable() {
+        // Arrange
+        MockHttpInputMessage inputMessage = input("{\"botId\":");
+
+        // Act & Assert
+        assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(TradingViewAlertRequest.class, inputMessage));
+    }
+
+    private static MockHttpInputMessage input(String json) {
+        MockHttpInputMessage inputMessage = new MockHttpInputMessage(json.getBytes(StandardCharsets.UTF_8));
+        inputMessage.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return inputMessage;
+    }
+}
@@ -0,0 +1,75 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading an alert payload with Jackson data binding and parsing its timestamp on every use
+ * (validation, deduplication and persistence), as before, with the streaming reader that parses the
+ * timestamp once.
+ * <p>
+ * Not run by the test suite. Run it from the IDE through {@link #main(String[])}, or after
+ * {@code mvn test-compile} with the test classpath, e.g. with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradingViewAlertParsingBenchmark {
+
+    private static final byte[] PAYLOAD = """
+            {"botId":"bot1","ticker":"BTCEUR","action":"buy","timestamp":"2024-01-01T12:00:00Z","dryRun":false}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private TradingViewAlertRequestReader reader;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        reader = new TradingViewAlertRequestReader(objectMapper.getFactory());
+    }
+
+    @Benchmark
+    public Instant dataBinding() throws IOException {
+        TradingViewAlertRequest request = objectMapper.readValue(PAYLOAD, TradingViewAlertRequest.class);
+        DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(request.getTimestamp());
+        Instant.parse(request.getTimestamp());
+        return Instant.parse(request.getTimestamp());
+    }
+
+    @Benchmark
+    public Instant streaming() throws IOException {
+        TradingViewAlertRequest request = reader.read(PAYLOAD);
+        request.getParsedTimestamp();
+        request.getParsedTimestamp();
+        return request.getParsedTimestamp();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TradingViewAlertParsingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package nl.jimkaplan.autotrader.tradingview.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradingViewAlertRequestReaderTest {
+
+    private final TradingViewAlertRequestReader reader = new TradingViewAlertRequestReader(new JsonFactory());
+
+    @Test
+    void read_withAlertPayload_readsAllFields() throws IOException {
+        // Act
+        TradingViewAlertRequest request = read("""
+                {"botId":"bot1","ticker":"BTCEUR","action":"buy","timestamp":"2024-01-01T12:00:00Z","dryRun":true}
+                """);
+
+        // Assert
+        assertEquals("bot1", request.getBotId());
+        assertEquals("BTCEUR", request.getTicker());
+        assertEquals("buy", request.getAction());
+        assertEquals("2024-01-01T12:00:00Z", request.getTimestamp());
+        assertEquals(Instant.parse("2024-01-01T12:00:00Z"), request.getParsedTimestamp());
+        assertTrue(request.getDryRun());
+    }
+
+    @Test
+    void read_withUnknownAndMissingFields_skipsThem() throws IOException {
+        // Act
+        TradingViewAlertRequest request = read("""
+                {"strategy":{"name":"ema","params":[1,2]},"ticker":"BTCEUR","extra":[{"a":1}],"action":"sell"}
+                """);
+
+        // Assert
+        assertNull(request.getBotId());
+        assertEquals("BTCEUR", request.getTicker());
+        assertEquals("sell", request.getAction());
+        assertNull(request.getTimestamp());
+        assertNull(request.getDryRun());
+    }
+
+    @Test
+    void read_withScalarValues_coercesThemLikeDataBinding() throws IOException {
+        // Act
+        TradingViewAlertRequest request = read("""
+                {"botId":42,"ticker":null,"dryRun":"false"}
+                """);
+
+        // Assert
+        assertEquals("42", request.getBotId());
+        assertNull(request.getTicker());
+        assertEquals(Boolean.FALSE, request.getDryRun());
+    }
+
+    @Test
+    void read_withRecurringTokens_returnsSameInstances() throws IOException {
+        // Act
+        TradingViewAlertRequest first = read("""
+                {"botId":"bot1","ticker":"BTCEUR","action":"buy"}
+                """);
+        TradingViewAlertRequest second = read("""
+                {"botId":"bot1","ticker":"BTCEUR","action":"buy"}
+                """);
+
+        // Assert
+        assertSame(first.getBotId(), second.getBotId());
+        assertSame(first.getTicker(), second.getTicker());
+        assertSame("buy", first.getAction());
+        assertSame(first.getAction(), second.getAction());
+    }
+
+    @Test
+    void read_withInvalidTimestamp_leavesItForValidation() throws IOException {
+        // Act
+        TradingViewAlertRequest request = read("""
+                {"botId":"bot1","timestamp":"invalid-timestamp"}
+                """);
+
+        // Assert
+        assertEquals("invalid-timestamp", request.getTimestamp());
+    }
+
+    @Test
+    void read_withMalformedJson_throwsException() {
+        // Act & Assert
+        assertThrows(JsonProcessingException.class, () -> read("{\"botId\":\"bot1\""));
+        assertThrows(JsonProcessingException.class, () -> read("[\"bot1\"]"));
+        assertThrows(JsonProcessingException.class, () -> read("{\"botId\":{\"id\":1}}"));
+        assertThrows(JsonProcessingException.class, () -> read("{\"dryRun\":\"maybe\"}"));
+    }
+
+    private TradingViewAlertRequest read(String json) throws IOException {
+        return reader.read(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
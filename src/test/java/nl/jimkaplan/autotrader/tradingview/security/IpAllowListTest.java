@@ -0,0 +1,129 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpAllowListTest {
+
+    @Test
+    void contains_withSingleIpv4Addresses_matchesOnlyThoseAddresses() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("52.89.214.238", "34.212.75.30"));
+
+        // Act & Assert
+        assertTrue(allowList.contains("52.89.214.238"));
+        assertTrue(allowList.contains("34.212.75.30"));
+        assertFalse(allowList.contains("52.89.214.239"));
+        assertFalse(allowList.contains("52.89.214.23"));
+        assertFalse(allowList.contains("127.0.0.1"));
+    }
+
+    @Test
+    void contains_withIpv4CidrBlocks_matchesAddressesInBlock() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("10.0.0.0/8", "192.168.1.0/24", "172.16.0.0/12"));
+
+        // Act & Assert
+        assertTrue(allowList.contains("10.0.0.1"));
+        assertTrue(allowList.contains("10.255.255.255"));
+        assertTrue(allowList.contains("192.168.1.200"));
+        assertTrue(allowList.contains("172.31.0.1"));
+        assertFalse(allowList.contains("11.0.0.1"));
+        assertFalse(allowList.contains("192.168.2.1"));
+        assertFalse(allowList.contains("172.32.0.1"));
+    }
+
+    @Test
+    void contains_withMatchAllBlock_matchesEveryAddressOfThatFamily() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("0.0.0.0/0"));
+
+        // Act & Assert
+        assertTrue(allowList.contains("1.2.3.4"));
+        assertTrue(allowList.contains("255.255.255.255"));
+        assertFalse(allowList.contains("::1"));
+    }
+
+    @Test
+    void contains_withIpv6AddressesAndBlocks_matchesEquivalentNotations() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("::1", "2001:db8::/32", "fe80::1"));
+
+        // Act & Assert
+        assertTrue(allowList.contains("::1"));
+        assertTrue(allowList.contains("0:0:0:0:0:0:0:1"));
+        assertTrue(allowList.contains("2001:db8::"));
+        assertTrue(allowList.contains("2001:DB8:ffff:1:2:3:4:5"));
+        assertTrue(allowList.contains("fe80::1%eth0"));
+        assertTrue(allowList.contains("[::1]"));
+        assertFalse(allowList.contains("::2"));
+        assertFalse(allowList.contains("2001:db9::1"));
+        assertFalse(allowList.contains("127.0.0.1"));
+    }
+
+    @Test
+    void contains_withIpv4Entry_matchesIpv4MappedIpv6Address() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("127.0.0.1", "10.0.0.0/8"));
+
+        // Act & Assert
+        assertTrue(allowList.contains("::ffff:127.0.0.1"));
+        assertTrue(allowList.contains("0:0:0:0:0:ffff:7f00:1"));
+        assertTrue(allowList.contains("::ffff:10.1.2.3"));
+        assertFalse(allowList.contains("::127.0.0.1"));
+        assertFalse(allowList.contains("::ffff:11.0.0.1"));
+    }
+
+    @Test
+    void contains_withRangeOfText_matchesWithoutExtractingIt() {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("203.0.113.7"));
+        String forwardedFor = "198.51.100.1, 203.0.113.7 ,10.0.0.1";
+
+        // Act & Assert
+        assertFalse(allowList.contains(forwardedFor, 0, 12));
+        assertTrue(allowList.contains(forwardedFor, 13, 26));
+        assertFalse(allowList.contains(forwardedFor, 27, forwardedFor.length()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "", "localhost", "1.2.3", "1.2.3.4.5", "1.2.3.256", "01.2.3.4", "1.2.3.4:8080", "1..3.4",
+            ":::", "1::2::3", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::1", "::g", "1:", "::1.2.3",
+            "1:2:3:4:5:6:7:1.2.3.4"
+    })
+    void contains_withInvalidAddress_returnsFalse(String address) {
+        // Arrange
+        IpAllowList allowList = IpAllowList.compile(List.of("0.0.0.0/0", "::/0"));
+
+        // Act & Assert
+        assertFalse(allowList.contains(address));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"example.com", "1.2.3.4/33", "::1/129", "10.0.0.0/", "10.0.0.0/x", "1.2.3"})
+    void compile_withInvalidEntry_throwsException(String entry) {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> IpAllowList.compile(List.of(entry)));
+    }
+
+    @Test
+    void compile_ignoresBlankEntries() {
+        // Act
+        IpAllowList allowList = IpAllowList.compile(List.of(" ", "", " 127.0.0.1 "));
+
+        // Assert
+        assertEquals(List.of("127.0.0.1"), allowList.getEntries());
+        assertTrue(allowList.contains("127.0.0.1"));
+        assertTrue(IpAllowList.empty().isEmpty());
+        assertFalse(IpAllowList.empty().contains("127.0.0.1"));
+    }
+}
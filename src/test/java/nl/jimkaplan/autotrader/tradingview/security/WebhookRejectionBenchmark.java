@@ -0,0 +1,109 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.BotConfigurationService;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.controller.TradingViewWebhookController;
+import nl.jimkaplan.autotrader.tradingview.service.AlertBroadcastService;
+import nl.jimkaplan.autotrader.tradingview.service.AlertQueueService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Throughput of the alert webhook under a flood of junk requests (unknown source IP, valid-looking JSON body),
+ * with and without the {@link WebhookRejectionFilter} in front of Spring MVC.
+ * Both variants answer 401; without the filter the request is dispatched, its body bound and the controller
+ * rejects it.
+ * <p>
+ * Logging is switched off, so the numbers compare dispatch cost rather than log I/O.
+ * Not run by the test suite. Run it from the IDE through {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class WebhookRejectionBenchmark {
+
+    private static final String BODY = """
+            {"botId":"bot1","ticker":"BTCEUR","action":"buy","timestamp":"2024-01-01T12:00:00Z"}
+            """;
+
+    private MockMvc withoutFilter;
+    private MockMvc withFilter;
+    private RequestBuilder junkRequest;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+
+        WebhookSourceAuthorizer authorizer = new WebhookSourceAuthorizer(
+                List.of("52.89.214.238", "34.212.75.30", "54.218.53.128", "52.32.178.7"),
+                List.of("127.0.0.1", "::1"), List.of(), "", Duration.ofSeconds(10));
+        TradingViewWebhookController controller = new TradingViewWebhookController(
+                mock(BotConfigurationService.class), mock(TradingService.class), mock(AlertQueueService.class),
+                mock(BotAlertExecutor.class), mock(AlertBroadcastService.class), mock(AlertCoalescer.class),
+                authorizer);
+        WebhookRejectionFilter filter = new WebhookRejectionFilter(authorizer, new SimpleMeterRegistry(),
+                DataSize.ofKilobytes(4));
+
+        withoutFilter = MockMvcBuilders.standaloneSetup(controller).build();
+        withFilter = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+        junkRequest = post("/webhook/tradingview")
+                .with(request -> {
+                    request.setRemoteAddr("203.0.113.50");
+                    return request;
+                })
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-API-KEY", "guess")
+                .content(BODY);
+    }
+
+    @Benchmark
+    public MvcResult withoutFilter() throws Exception {
+        return withoutFilter.perform(junkRequest).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult withFilter() throws Exception {
+        return withFilter.perform(junkRequest).andReturn();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WebhookRejectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
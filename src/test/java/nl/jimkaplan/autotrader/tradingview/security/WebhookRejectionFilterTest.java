@@ -0,0 +1,265 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebhookRejectionFilterTest {
+
+    private static final String BODY = "{\"botId\":\"bot1\",\"ticker\":\"BTCEUR\",\"action\":\"buy\"}";
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookRejectionFilter filter;
+    private MockFilterChain filterChain;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        WebhookSourceAuthorizer authorizer = new WebhookSourceAuthorizer(List.of("52.89.214.238"),
+                List.of("127.0.0.1"), List.of(), "", Duration.ofSeconds(10));
+        filter = new WebhookRejectionFilter(authorizer, meterRegistry, DataSize.ofKilobytes(1));
+        filterChain = new MockFilterChain();
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void doFilter_withValidRequest_passesItOn() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "52.89.214.238");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertNotNull(filterChain.getRequest());
+        assertEquals(200, response.getStatus());
+        assertEquals(WebhookSourceAuthorizer.Access.TRUSTED, request.getAttribute(WebhookSourceAuthorizer.ACCESS_ATTRIBUTE));
+    }
+
+    @Test
+    void doFilter_fromUnauthorizedIP_rejectsRequest() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "192.168.1.1");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertRejected(401, "Unauthorized access");
+        assertEquals(1.0, meterRegistry.get("autotrader.webhook.rejected").tag("reason", "source").counter().count());
+    }
+
+    @Test
+    void doFilter_withoutApiKeyFromApiKeySource_rejectsAlert() throws ServletException, IOException {
+        // Act
+        filter.doFilter(webhookRequest("/webhook/tradingview", "127.0.0.1"), response, filterChain);
+
+        // Assert
+        assertRejected(401, "Invalid API key");
+    }
+
+    @Test
+    void doFilter_withoutApiKeyFromTrustedSource_rejectsBroadcast() throws ServletException, IOException {
+        // Act
+        filter.doFilter(webhookRequest("/webhook/tradingview/broadcast", "52.89.214.238"), response, filterChain);
+
+        // Assert
+        assertRejected(401, "Invalid API key");
+        assertEquals(1.0, meterRegistry.get("autotrader.webhook.rejected").tag("reason", "api-key").counter().count());
+    }
+
+    @Test
+    void doFilter_withoutApiKeyFromApiKeySource_rejectsBroadcast() throws ServletException, IOException {
+        // Act
+        filter.doFilter(webhookRequest("/webhook/tradingview/broadcast", "127.0.0.1"), response, filterChain);
+
+        // Assert
+        assertRejected(401, "Invalid API key");
+    }
+
+    @Test
+    void doFilter_withApiKeyFromApiKeySource_passesItOn() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "127.0.0.1");
+        request.addHeader(WebhookRejectionFilter.API_KEY_HEADER, "key");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertNotNull(filterChain.getRequest());
+    }
+
+    @Test
+    void doFilter_withTooLargeBody_rejectsRequest() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "52.89.214.238");
+        request.setContent(new byte[2048]);
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertRejected(413, "Request body too large");
+    }
+
+    @Test
+    void doFilter_withTooLargeChunkedBody_rejectsRequest() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = chunked(webhookRequest("/webhook/tradingview", "52.89.214.238"));
+        request.setContent(new byte[2048]);
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertRejected(413, "Request body too large");
+    }
+
+    @Test
+    void doFilter_withChunkedBody_passesItOnWithItsLength() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = chunked(webhookRequest("/webhook/tradingview", "52.89.214.238"));
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertNotNull(filterChain.getRequest());
+        assertEquals(BODY.length(), filterChain.getRequest().getContentLengthLong());
+        assertEquals(BODY, new String(filterChain.getRequest().getInputStream().readAllBytes()));
+    }
+
+    @Test
+    void doFilter_withChunkedBody_supportsAsyncReads() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = chunked(webhookRequest("/webhook/tradingview", "52.89.214.238"));
+        filter.doFilter(request, response, filterChain);
+        ServletInputStream in = filterChain.getRequest().getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        // Act
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (in.isReady() && !in.isFinished()) {
+                    body.write(in.read());
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+
+        // Assert
+        assertTrue(allDataRead.get());
+        assertEquals(BODY, body.toString());
+    }
+
+    @Test
+    void doFilter_withNonJsonContentType_rejectsRequest() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "52.89.214.238");
+        request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertRejected(415, "Content type must be JSON");
+    }
+
+    @Test
+    void doFilter_withJsonVariantsOfContentType_passesItOn() throws ServletException, IOException {
+        for (String contentType : List.of("application/json;charset=UTF-8", "APPLICATION/JSON", "application/alert+json")) {
+            // Arrange
+            MockHttpServletRequest request = webhookRequest("/webhook/tradingview", "52.89.214.238");
+            request.setContentType(contentType);
+            MockFilterChain chain = new MockFilterChain();
+
+            // Act
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+            // Assert
+            assertNotNull(chain.getRequest(), contentType);
+        }
+    }
+
+    @Test
+    void doFilter_withOtherPath_doesNotCheckRequest() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/autotrader/api/bots");
+        request.setContextPath("/autotrader");
+        request.setRemoteAddr("192.168.1.1");
+
+        // Act
+        filter.doFilter(request, response, filterChain);
+
+        // Assert
+        assertNotNull(filterChain.getRequest());
+    }
+
+    private void assertRejected(int status, String body) throws IOException {
+        assertNull(filterChain.getRequest());
+        assertEquals(status, response.getStatus());
+        assertEquals(body, response.getContentAsString());
+        assertEquals(MediaType.TEXT_PLAIN_VALUE, response.getContentType());
+    }
+
+    // A request without a declared content length, as with Transfer-Encoding: chunked
+    private static MockHttpServletRequest chunked(MockHttpServletRequest request) {
+        MockHttpServletRequest chunked = new MockHttpServletRequest(request.getMethod(), request.getRequestURI()) {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContextPath(request.getContextPath());
+        chunked.setRemoteAddr(request.getRemoteAddr());
+        chunked.setContentType(request.getContentType());
+        chunked.setContent(request.getContentAsByteArray());
+        return chunked;
+    }
+
+    private static MockHttpServletRequest webhookRequest(String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/autotrader" + path);
+        request.setContextPath("/autotrader");
+        request.setRemoteAddr(remoteAddr);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(BODY.getBytes());
+        return request;
+    }
+}
@@ -0,0 +1,131 @@
+package nl.jimkaplan.autotrader.tradingview.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import nl.jimkaplan.autotrader.tradingview.security.WebhookSourceAuthorizer.Access;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebhookSourceAuthorizerTest {
+
+    private static final List<String> TRUSTED = List.of("52.89.214.238", "34.212.75.30");
+    private static final List<String> API_KEY = List.of("127.0.0.1", "::1");
+
+    @TempDir
+    Path tempDir;
+
+    private WebhookSourceAuthorizer authorizer;
+
+    @AfterEach
+    void tearDown() {
+        authorizer.stop();
+    }
+
+    @Test
+    void authorize_classifiesRemoteAddress() {
+        // Arrange
+        authorizer = new WebhookSourceAuthorizer(TRUSTED, API_KEY, List.of(), "", Duration.ofSeconds(10));
+
+        // Act & Assert
+        assertEquals(Access.TRUSTED, authorizer.authorize(request("52.89.214.238", null)));
+        assertEquals(Access.API_KEY_REQUIRED, authorizer.authorize(request("127.0.0.1", null)));
+        assertEquals(Access.API_KEY_REQUIRED, authorizer.authorize(request("0:0:0:0:0:0:0:1", null)));
+        assertEquals(Access.DENIED, authorizer.authorize(request("192.168.1.1", null)));
+    }
+
+    @Test
+    void authorize_withForwardedForFromUntrustedSource_ignoresHeader() {
+        // Arrange
+        authorizer = new WebhookSourceAuthorizer(TRUSTED, API_KEY, List.of(), "", Duration.ofSeconds(10));
+
+        // Act
+        Access access = authorizer.authorize(request("192.168.1.1", "52.89.214.238"));
+
+        // Assert
+        assertEquals(Access.DENIED, access);
+    }
+
+    @Test
+    void authorize_behindTrustedProxies_usesFirstAddressThatIsNotAProxy() {
+        // Arrange
+        authorizer = new WebhookSourceAuthorizer(TRUSTED, API_KEY, List.of("10.0.0.0/8"), "", Duration.ofSeconds(10));
+
+        // Act & Assert
+        assertEquals(Access.TRUSTED, authorizer.authorize(request("10.0.0.1", "52.89.214.238")));
+        assertEquals(Access.TRUSTED, authorizer.authorize(request("10.0.0.1", "52.89.214.238, 10.0.0.2")));
+        // A client can put anything in front; only the address added by the proxy counts
+        assertEquals(Access.DENIED, authorizer.authorize(request("10.0.0.1", "52.89.214.238, 192.168.1.1")));
+        // Without the header the proxy itself is the caller
+        assertEquals(Access.DENIED, authorizer.authorize(request("10.0.0.1", null)));
+        assertEquals("192.168.1.1",
+                authorizer.resolveClientAddress(request("10.0.0.1", "52.89.214.238, 192.168.1.1, 10.0.0.2")));
+    }
+
+    @Test
+    void reload_withChangedFile_replacesListsOfItsSections() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("webhook-allow-list.txt");
+        Files.writeString(file, """
+                # Only TradingView
+                [trusted]
+                52.89.214.238
+                """);
+        authorizer = new WebhookSourceAuthorizer(TRUSTED, API_KEY, List.of(), file.toString(), Duration.ofHours(1));
+        assertEquals(Access.DENIED, authorizer.authorize(request("34.212.75.30", null)));
+
+        Files.writeString(file, """
+                [trusted]
+                34.212.75.30
+                [api-key]
+                192.168.0.0/16  # LAN
+                """);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+
+        // Act
+        authorizer.reload();
+
+        // Assert
+        assertEquals(Access.TRUSTED, authorizer.authorize(request("34.212.75.30", null)));
+        assertEquals(Access.DENIED, authorizer.authorize(request("52.89.214.238", null)));
+        assertEquals(Access.API_KEY_REQUIRED, authorizer.authorize(request("192.168.1.1", null)));
+        assertEquals(Access.DENIED, authorizer.authorize(request("127.0.0.1", null)));
+    }
+
+    @Test
+    void reload_withInvalidFile_keepsCurrentLists() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("webhook-allow-list.txt");
+        Files.writeString(file, "[trusted]\n52.89.214.238\n");
+        authorizer = new WebhookSourceAuthorizer(TRUSTED, API_KEY, List.of(), file.toString(), Duration.ofHours(1));
+
+        Files.writeString(file, "[trusted]\nnot-an-ip\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+
+        // Act
+        authorizer.reload();
+
+        // Assert
+        assertEquals(Access.TRUSTED, authorizer.authorize(request("52.89.214.238", null)));
+        assertEquals(Access.API_KEY_REQUIRED, authorizer.authorize(request("127.0.0.1", null)));
+    }
+
+    private static HttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader(WebhookSourceAuthorizer.FORWARDED_FOR_HEADER, forwardedFor);
+        }
+        return request;
+    }
+}
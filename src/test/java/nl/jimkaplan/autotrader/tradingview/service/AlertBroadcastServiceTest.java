@@ -0,0 +1,217 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.TradingPairIndex;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse;
+import nl.jimkaplan.autotrader.tradingview.model.BroadcastAlertResponse.Status;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AlertBroadcastServiceTest {
+
+    @Mock
+    private TradingService tradingService;
+
+    @Mock
+    private AlertQueueService alertQueueService;
+
+    @Mock
+    private AlertCoalescer alertCoalescer;
+
+    @Mock
+    private TradingPairIndex tradingPairIndex;
+
+    private ExecutorService tradingExecutor;
+    private AlertBroadcastService alertBroadcastService;
+
+    private TradingViewAlertRequest request;
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        BotAlertExecutor botAlertExecutor = new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5));
+        alertBroadcastService = new AlertBroadcastService(tradingService, alertQueueService, botAlertExecutor,
+                alertCoalescer, tradingPairIndex, tradingExecutor, 2, "broadcast-key");
+
+        request = TradingViewAlertRequest.builder()
+                .ticker("BTCEUR")
+                .action("buy")
+                .timestamp(Instant.now().toString())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void broadcast_executesAlertForEveryBotOnTheTradingPair() {
+        // Arrange
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of("bot1", "bot2", "bot3"));
+        // Lenient because the other bots call the same method with different arguments
+        lenient().doThrow(new IllegalArgumentException("Bot configuration not found: bot2"))
+                .when(tradingService).validateAndProcessAlert(argThat(alert -> "bot2".equals(alert.getBotId())));
+
+        // Act
+        BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+
+        // Assert
+        assertEquals("BTCEUR", response.getTicker());
+        assertEquals(3, response.getResults().size());
+        assertEquals("bot1", response.getResults().get(0).getBotId());
+        assertEquals(Status.EXECUTED, response.getResults().get(0).getStatus());
+        assertEquals(Status.FAILED, response.getResults().get(1).getStatus());
+        assertEquals("Bot configuration not found: bot2", response.getResults().get(1).getMessage());
+        assertEquals(Status.EXECUTED, response.getResults().get(2).getStatus());
+        verify(tradingService).validateAndProcessAlert(argThat(alert -> "bot3".equals(alert.getBotId())));
+    }
+
+    @Test
+    void validateApiKey_acceptsOnlyTheBroadcastApiKey() {
+        // Act & Assert
+        assertTrue(alertBroadcastService.validateApiKey("broadcast-key"));
+        assertFalse(alertBroadcastService.validateApiKey("bot-webhook-key"));
+        assertFalse(alertBroadcastService.validateApiKey(null));
+    }
+
+    @Test
+    void validateApiKey_withoutConfiguredBroadcastApiKey_rejectsEveryKey() {
+        // Arrange
+        AlertBroadcastService withoutApiKey = new AlertBroadcastService(tradingService, alertQueueService,
+                new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5)),
+                alertCoalescer, tradingPairIndex, tradingExecutor, 2, "");
+
+        // Act & Assert
+        assertFalse(withoutApiKey.validateApiKey(""));
+        assertFalse(withoutApiKey.validateApiKey("broadcast-key"));
+    }
+
+    @Test
+    void broadcast_runsBotsInParallelUpToMaxParallelism() throws InterruptedException {
+        // Arrange
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of("bot1", "bot2", "bot3", "bot4"));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(4);
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            done.countDown();
+            return null;
+        }).when(tradingService).validateAndProcessAlert(any());
+
+        // Act
+        BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, response.getResults().size());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void broadcast_inAsyncMode_queuesAlertForEveryBot() {
+        // Arrange
+        when(alertQueueService.isEnabled()).thenReturn(true);
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of("bot1", "bot2"));
+        lenient().when(alertQueueService.accept(argThat(alert -> "bot2".equals(alert.getBotId()))))
+                .thenThrow(new AlertQueueFullException("Alert queue is full, please retry later"));
+
+        // Act
+        BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+
+        // Assert
+        assertEquals(Status.QUEUED, response.getResults().get(0).getStatus());
+        assertEquals(Status.REJECTED, response.getResults().get(1).getStatus());
+        verify(tradingService, never()).validateAndProcessAlert(any());
+    }
+
+    @Test
+    void broadcast_withCoalescing_reportsCoalescedBots() {
+        // Arrange
+        when(alertCoalescer.isEnabled()).thenReturn(true);
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of("bot1", "bot2"));
+        when(alertCoalescer.submit(eq("bot1"), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(AlertCoalescer.Outcome.EXECUTED));
+        when(alertCoalescer.submit(eq("bot2"), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(AlertCoalescer.Outcome.COALESCED));
+
+        // Act
+        BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+
+        // Assert
+        assertEquals(Status.EXECUTED, response.getResults().get(0).getStatus());
+        assertEquals(Status.COALESCED, response.getResults().get(1).getStatus());
+        verify(tradingService).claimAlert(argThat(alert -> "bot1".equals(alert.getBotId())));
+        verify(tradingService).claimAlert(argThat(alert -> "bot2".equals(alert.getBotId())));
+    }
+
+    @Test
+    void broadcast_withoutBotsOnTradingPair_returnsEmptyResults() {
+        // Arrange
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of());
+
+        // Act
+        BroadcastAlertResponse response = alertBroadcastService.broadcast(request);
+
+        // Assert
+        assertTrue(response.getResults().isEmpty());
+        verify(tradingService, never()).validateRequest(any());
+    }
+
+    @Test
+    void broadcast_withInvalidAlert_throwsIllegalArgumentException() {
+        // Arrange
+        when(tradingPairIndex.getActiveBotIds("BTCEUR")).thenReturn(Set.of("bot1"));
+        doThrow(new IllegalArgumentException("Action is required")).when(tradingService).validateRequest(any());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> alertBroadcastService.broadcast(request));
+        verify(tradingService, never()).validateAndProcessAlert(any());
+    }
+
+    @Test
+    void broadcast_withoutTicker_throwsIllegalArgumentException() {
+        // Arrange
+        request.setTicker(null);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> alertBroadcastService.broadcast(request));
+    }
+}
@@ -0,0 +1,97 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertDeduplicatorTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(10);
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private AlertDeduplicator alertDeduplicator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        alertDeduplicator = new AlertDeduplicator(WINDOW, meterRegistry, nanoTime::get);
+    }
+
+    @Test
+    void tryAcquire_withSameAlertTwice_rejectsSecondArrival() {
+        // Act
+        boolean first = alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+        boolean second = alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+
+        // Assert
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(1.0, meterRegistry.get("autotrader.alerts.duplicates").counter().count());
+    }
+
+    @Test
+    void tryAcquire_treatsEquivalentTimestampAsSameAlert() {
+        // Arrange
+        alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+
+        // Act & Assert
+        assertFalse(alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T13:00:00+01:00")));
+    }
+
+    @Test
+    void tryAcquire_withDifferentBotActionOrTimestamp_acceptsAlert() {
+        // Arrange
+        alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+
+        // Act & Assert
+        assertTrue(alertDeduplicator.tryAcquire(alert("bot2", "buy", "2024-01-01T12:00:00Z")));
+        assertTrue(alertDeduplicator.tryAcquire(alert("bot1", "sell", "2024-01-01T12:00:00Z")));
+        assertTrue(alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:01:00Z")));
+    }
+
+    @Test
+    void tryAcquire_afterWindow_acceptsAlertAgainAndEvictsExpiredKeys() {
+        // Arrange
+        alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+        alertDeduplicator.tryAcquire(alert("bot2", "buy", "2024-01-01T12:00:00Z"));
+        nanoTime.addAndGet(WINDOW.toNanos() + 1);
+
+        // Act
+        boolean accepted = alertDeduplicator.tryAcquire(alert("bot1", "buy", "2024-01-01T12:00:00Z"));
+
+        // Assert
+        assertTrue(accepted);
+        assertEquals(1, alertDeduplicator.size());
+    }
+
+    @Test
+    void release_allowsRetryOfAlert() {
+        // Arrange
+        TradingViewAlertRequest request = alert("bot1", "buy", "2024-01-01T12:00:00Z");
+        alertDeduplicator.tryAcquire(request);
+
+        // Act
+        alertDeduplicator.release(request);
+
+        // Assert
+        assertTrue(alertDeduplicator.tryAcquire(request));
+    }
+
+    private TradingViewAlertRequest alert(String botId, String action, String timestamp) {
+        return TradingViewAlertRequest.builder()
+                .botId(botId)
+                .ticker("BTCEUR")
+                .action(action)
+                .timestamp(timestamp)
+                .build();
+    }
+}
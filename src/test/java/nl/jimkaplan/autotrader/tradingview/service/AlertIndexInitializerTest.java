@@ -0,0 +1,111 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AlertIndexInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOps;
+
+    @Test
+    void createIndex_withExistingIndex_doesNothing() {
+        // Arrange
+        when(mongoTemplate.indexOps(TradingViewAlert.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(List.of(new IndexInfo(List.of(), AlertIndexInitializer.INDEX_NAME,
+                true, false, "")));
+
+        // Act
+        new AlertIndexInitializer(mongoTemplate, true).createIndex();
+
+        // Assert
+        verify(indexOps, never()).ensureIndex(any());
+        verify(mongoTemplate, never()).remove(any(Query.class), any(String.class));
+    }
+
+    @Test
+    void createIndex_withDuplicates_keepsTheOldestAlertAndCreatesTheIndex() {
+        // Arrange
+        ObjectId oldest = new ObjectId();
+        ObjectId retry = new ObjectId();
+        stubMissingIndex(List.of(new Document("ids", List.of(oldest, retry))));
+        when(mongoTemplate.remove(any(Query.class), eq("tradingview_alerts"))).thenReturn(DeleteResult.acknowledged(1));
+
+        // Act
+        new AlertIndexInitializer(mongoTemplate, true).createIndex();
+
+        // Assert
+        ArgumentCaptor<Query> removed = ArgumentCaptor.captor();
+        verify(mongoTemplate).remove(removed.capture(), eq("tradingview_alerts"));
+        assertEquals(new Document("_id", new Document("$in", List.of(retry))), removed.getValue().getQueryObject());
+        ArgumentCaptor<Index> index = ArgumentCaptor.captor();
+        verify(indexOps).ensureIndex(index.capture());
+        Document options = index.getValue().getIndexOptions();
+        assertEquals(AlertIndexInitializer.INDEX_NAME, options.get("name"));
+        assertEquals(true, options.get("unique"));
+    }
+
+    @Test
+    void createIndex_whenIndexCannotBeBuilt_failsWithClearMessage() {
+        // Arrange
+        stubMissingIndex(List.of());
+        when(indexOps.ensureIndex(any())).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new AlertIndexInitializer(mongoTemplate, true).createIndex());
+        assertTrue(e.getMessage().contains("alert_identity"));
+        assertTrue(e.getMessage().contains("tradingview_alerts"));
+    }
+
+    @Test
+    void createIndex_withoutAutoIndexCreation_doesNothing() {
+        // Act
+        new AlertIndexInitializer(mongoTemplate, false).createIndex();
+
+        // Assert
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private void stubMissingIndex(List<Document> duplicateGroups) {
+        when(mongoTemplate.indexOps(TradingViewAlert.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq("tradingview_alerts")))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("tradingview_alerts"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(duplicateGroups, new Document()));
+    }
+}
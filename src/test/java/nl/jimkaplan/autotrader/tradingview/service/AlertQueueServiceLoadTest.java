@@ -0,0 +1,123 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for the virtual-thread execution model with the configured queue capacity and concurrency:
+ * a burst of alerts whose processing blocks (as it does on Bitvavo and MongoDB round-trips) must run with
+ * exactly {@code max-concurrency} alerts in flight, never more, without growing the number of platform threads.
+ */
+@ExtendWith(MockitoExtension.class)
+class AlertQueueServiceLoadTest {
+
+    // webhook.async.queue-capacity and webhook.async.max-concurrency in application.yml
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final int MAX_CONCURRENCY = 256;
+    private static final int ALERT_COUNT = QUEUE_CAPACITY;
+    private static final long BLOCKING_CALL_MILLIS = 200;
+
+    @Mock
+    private TradingService tradingService;
+
+    @Mock
+    private TradingViewAlertService tradingViewAlertService;
+
+    private ExecutorService tradingExecutor;
+    private AlertQueueService alertQueueService;
+
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peakConcurrent = new AtomicInteger();
+    private final CountDownLatch processed = new CountDownLatch(ALERT_COUNT);
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("trading-", 0).factory());
+        BotAlertExecutor botAlertExecutor = new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5));
+        AlertDeduplicator alertDeduplicator = new AlertDeduplicator(Duration.ofMinutes(10), new SimpleMeterRegistry());
+        AlertCoalescer alertCoalescer = new AlertCoalescer(botAlertExecutor, new SimpleMeterRegistry(), false, Duration.ofSeconds(1));
+        alertQueueService = new AlertQueueService(tradingService, tradingViewAlertService, alertCoalescer,
+                alertDeduplicator, true, QUEUE_CAPACITY, MAX_CONCURRENCY, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertQueueService.stop();
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void burstOfBlockingAlerts_runsAtTheConfiguredConcurrencyOnVirtualThreads() throws InterruptedException {
+        // Arrange
+        // Processing blocks like a remote call
+        doAnswer(invocation -> {
+            peakConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(BLOCKING_CALL_MILLIS);
+            } finally {
+                concurrent.decrementAndGet();
+                processed.countDown();
+            }
+            return null;
+        }).when(tradingService).processQueuedAlert(any());
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        when(tradingViewAlertService.claimAlert(any(), any())).thenReturn(true);
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        int platformThreadsBefore = threadMXBean.getThreadCount();
+
+        for (int i = 0; i < ALERT_COUNT; i++) {
+            alertQueueService.accept(TradingViewAlertRequest.builder()
+                    .botId("bot" + i)
+                    .ticker("BTCEUR")
+                    .action("buy")
+                    .timestamp(Instant.now().toString())
+                    .build());
+        }
+
+        // Act
+        long start = System.nanoTime();
+        alertQueueService.start();
+        boolean completed = processed.await(30, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int platformThreadsAfter = threadMXBean.getPeakThreadCount();
+
+        // Assert
+        assertTrue(completed, "All alerts should be processed");
+        // Sequentially this would take ALERT_COUNT * BLOCKING_CALL_MILLIS (200 seconds); at the configured
+        // concurrency it takes four rounds of BLOCKING_CALL_MILLIS
+        assertTrue(elapsedMillis < 10_000, "Alerts should be processed concurrently, took " + elapsedMillis + " ms");
+        // The concurrency limit is reached, and holds under the burst
+        assertEquals(MAX_CONCURRENCY, peakConcurrent.get(), "Peak number of alerts in flight");
+        // Virtual threads are not platform threads: the burst must not create a thread per alert
+        assertTrue(platformThreadsAfter - platformThreadsBefore < 100,
+                "Platform thread count grew from " + platformThreadsBefore + " to " + platformThreadsAfter);
+    }
+}
@@ -0,0 +1,280 @@
+package nl.jimkaplan.autotrader.tradingview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.jimkaplan.autotrader.exception.AlertQueueFullException;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
+import nl.jimkaplan.autotrader.service.AlertCoalescer;
+import nl.jimkaplan.autotrader.service.BotAlertExecutor;
+import nl.jimkaplan.autotrader.service.TradingService;
+import nl.jimkaplan.autotrader.tradingview.model.TradingViewAlertRequest;
+import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AlertQueueServiceTest {
+
+    @Mock
+    private TradingService tradingService;
+
+    @Mock
+    private TradingViewAlertService tradingViewAlertService;
+
+    private ExecutorService tradingExecutor;
+    private AlertDeduplicator alertDeduplicator;
+    private AlertQueueService alertQueueService;
+
+    private TradingViewAlertRequest validRequest;
+    private final String TEST_BOT_ID = "test-bot-id";
+    private final String TEST_TIMESTAMP = Instant.now().toString();
+    private int alertSequence;
+
+    @BeforeEach
+    void setUp() {
+        tradingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        BotAlertExecutor botAlertExecutor = new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5));
+        alertDeduplicator = new AlertDeduplicator(Duration.ofMinutes(10), new SimpleMeterRegistry());
+        AlertCoalescer alertCoalescer = new AlertCoalescer(botAlertExecutor, new SimpleMeterRegistry(), false, Duration.ofSeconds(1));
+        alertQueueService = new AlertQueueService(tradingService, tradingViewAlertService, alertCoalescer,
+                alertDeduplicator, true, 2, 1, Duration.ofMinutes(10));
+
+        validRequest = TradingViewAlertRequest.builder()
+                .botId(TEST_BOT_ID)
+                .ticker("BTCEUR")
+                .action("buy")
+                .timestamp(TEST_TIMESTAMP)
+                .dryRun(true)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertQueueService.stop();
+        tradingExecutor.shutdownNow();
+    }
+
+    @Test
+    void accept_withValidRequest_storesQueuedAlert() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ArgumentCaptor<TradingViewAlert> alertCaptor = ArgumentCaptor.forClass(TradingViewAlert.class);
+
+        // Act
+        alertQueueService.accept(validRequest);
+
+        // Assert
+        verify(tradingService).validateRequest(validRequest);
+        verify(tradingViewAlertService).saveAlert(alertCaptor.capture());
+        TradingViewAlert savedAlert = alertCaptor.getValue();
+        assertEquals(TEST_BOT_ID, savedAlert.getBotId());
+        assertEquals("BTCEUR", savedAlert.getTicker());
+        assertEquals("buy", savedAlert.getAction());
+        assertEquals(Instant.parse(TEST_TIMESTAMP), savedAlert.getTimestamp());
+        assertTrue(savedAlert.getDryRun());
+        assertEquals(TradingViewAlert.STATUS_QUEUED, savedAlert.getStatus());
+        assertEquals(1, alertQueueService.getQueueSize());
+    }
+
+    @Test
+    void accept_withInvalidRequest_doesNotStoreAlert() {
+        // Arrange
+        doThrow(new IllegalArgumentException("Bot ID is required")).when(tradingService).validateRequest(validRequest);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> alertQueueService.accept(validRequest));
+        verify(tradingViewAlertService, never()).saveAlert(any());
+        assertEquals(0, alertQueueService.getQueueSize());
+    }
+
+    @Test
+    void accept_whenQueueIsFull_throwsAlertQueueFullException() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        alertQueueService.accept(validRequest);
+        alertQueueService.accept(anotherAlert());
+
+        // Act & Assert
+        assertThrows(AlertQueueFullException.class, () -> alertQueueService.accept(anotherAlert()));
+        assertEquals(2, alertQueueService.getQueueSize());
+    }
+
+    @Test
+    void accept_withDuplicateAlert_throwsDuplicateAlertExceptionWithoutStoringIt() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        alertQueueService.accept(validRequest);
+
+        // Act & Assert
+        assertThrows(DuplicateAlertException.class, () -> alertQueueService.accept(validRequest));
+        verify(tradingViewAlertService).saveAlert(any());
+        assertEquals(1, alertQueueService.getQueueSize());
+    }
+
+    @Test
+    void accept_whenStoringFails_allowsRetryOfTheAlert() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class)))
+                .thenThrow(new RuntimeException("Database unavailable"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        assertThrows(RuntimeException.class, () -> alertQueueService.accept(validRequest));
+
+        // Act
+        alertQueueService.accept(validRequest);
+
+        // Assert
+        assertEquals(1, alertQueueService.getQueueSize());
+    }
+
+    @Test
+    void start_drainsQueuedAlertsOnWorkers() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.claimAlert(any(), any())).thenReturn(true);
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        TradingViewAlert alert = alertQueueService.accept(validRequest);
+
+        // Act
+        alertQueueService.start();
+
+        // Assert
+        verify(tradingService, timeout(1000)).processQueuedAlert(alert);
+    }
+
+    @Test
+    void start_releasesConcurrencySlotWhenProcessingFails() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.claimAlert(any(), any())).thenReturn(true);
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        doThrow(new RuntimeException("boom")).when(tradingService).processQueuedAlert(any());
+        alertQueueService.accept(validRequest);
+        alertQueueService.accept(anotherAlert());
+
+        // Act
+        alertQueueService.start();
+
+        // Assert - with a single slot, the second alert is only processed if the first released it
+        verify(tradingService, timeout(1000).times(2)).processQueuedAlert(any());
+    }
+
+    @Test
+    void start_withAlertClaimedByAnotherInstance_doesNotProcessIt() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        TradingViewAlert alert = alertQueueService.accept(validRequest);
+
+        // Act
+        alertQueueService.start();
+
+        // Assert
+        verify(tradingViewAlertService, timeout(1000)).claimAlert(eq(alert), any());
+        verify(tradingService, never()).processQueuedAlert(any());
+    }
+
+    @Test
+    void start_withStaleAlert_marksAlertDropped() {
+        // Arrange
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        validRequest.setTimestamp("2023-01-01T12:00:00Z");
+        TradingViewAlert alert = alertQueueService.accept(validRequest);
+
+        // Act
+        alertQueueService.start();
+
+        // Assert
+        verify(tradingViewAlertService, timeout(1000)).updateAlertStatus(eq(alert), eq(TradingViewAlert.STATUS_DROPPED), any());
+        verify(tradingService, never()).processQueuedAlert(any());
+    }
+
+    @Test
+    void start_withCoalescing_executesLatestAlertAndMarksOthersCoalesced() {
+        // Arrange
+        BotAlertExecutor botAlertExecutor = new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5));
+        AlertCoalescer alertCoalescer = new AlertCoalescer(botAlertExecutor, new SimpleMeterRegistry(), true, Duration.ofMillis(100));
+        AlertQueueService coalescingService = new AlertQueueService(tradingService, tradingViewAlertService,
+                alertCoalescer, alertDeduplicator, true, 2, 2, Duration.ofMinutes(10));
+        when(tradingViewAlertService.saveAlert(any(TradingViewAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tradingViewAlertService.claimAlert(any(), any())).thenReturn(true);
+        when(tradingViewAlertService.getAlertsByStatus(any())).thenReturn(Collections.emptyList());
+        TradingViewAlert buyAlert = coalescingService.accept(validRequest);
+        TradingViewAlert sellAlert = coalescingService.accept(anotherAlert());
+
+        // Act
+        coalescingService.start();
+
+        // Assert
+        verify(tradingService, timeout(1000)).processQueuedAlert(sellAlert);
+        verify(tradingViewAlertService, timeout(1000)).updateAlertStatus(eq(buyAlert), eq(TradingViewAlert.STATUS_COALESCED), any());
+        verify(tradingService, never()).processQueuedAlert(buyAlert);
+        coalescingService.stop();
+        alertCoalescer.stop();
+    }
+
+    @Test
+    void start_whenDisabled_doesNotStartWorkers() {
+        // Arrange
+        AlertCoalescer alertCoalescer = new AlertCoalescer(
+                new BotAlertExecutor(tradingExecutor, new SimpleMeterRegistry(), Duration.ofMinutes(5)),
+                new SimpleMeterRegistry(), false, Duration.ofSeconds(1));
+        AlertQueueService disabledService = new AlertQueueService(tradingService, tradingViewAlertService,
+                alertCoalescer, alertDeduplicator, false, 2, 1, Duration.ofMinutes(10));
+
+        // Act
+        disabledService.start();
+
+        // Assert
+        assertFalse(disabledService.isEnabled());
+        verify(tradingViewAlertService, never()).getAlertsByStatus(any());
+    }
+
+    @Test
+    void recoverPendingAlerts_requeuesQueuedAndFailsExpiredAlerts() {
+        // Arrange
+        TradingViewAlert queuedAlert = TradingViewAlert.builder().botId(TEST_BOT_ID).status(TradingViewAlert.STATUS_QUEUED).build();
+        when(tradingViewAlertService.getAlertsByStatus(TradingViewAlert.STATUS_QUEUED)).thenReturn(List.of(queuedAlert));
+
+        // Act
+        alertQueueService.recoverPendingAlerts();
+
+        // Assert
+        verify(tradingViewAlertService).failExpiredAlerts(any(Instant.class));
+        verify(tradingViewAlertService, never()).updateAlertStatus(any(), eq(TradingViewAlert.STATUS_FAILED), any());
+        assertEquals(1, alertQueueService.getQueueSize());
+    }
+
+    // A different alert for the same bot, so it is not rejected as a duplicate
+    private TradingViewAlertRequest anotherAlert() {
+        return TradingViewAlertRequest.builder()
+                .botId(TEST_BOT_ID)
+                .ticker("BTCEUR")
+                .action("sell")
+                .timestamp(Instant.parse(TEST_TIMESTAMP).plusSeconds(++alertSequence).toString())
+                .build();
+    }
+}
@@ -1,13 +1,20 @@
 package nl.jimkaplan.autotrader.tradingview.service;
 
+import com.mongodb.client.result.UpdateResult;
+import nl.jimkaplan.autotrader.exception.DuplicateAlertException;
 import nl.jimkaplan.autotrader.repository.TradingViewAlertRepository;
 import nl.jimkaplan.autotrader.tradingview.model.document.TradingViewAlert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -15,8 +22,11 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -26,6 +36,9 @@ class TradingViewAlertServiceTest {
     @Mock
     private TradingViewAlertRepository tradingViewAlertRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
     @InjectMocks
     private TradingViewAlertService tradingViewAlertService;
 
@@ -64,6 +77,18 @@ class TradingViewAlertServiceTest {
         verify(tradingViewAlertRepository).save(testAlert);
     }
 
+    @Test
+    void saveAlert_withDuplicateKey_throwsDuplicateAlertException() {
+        // Arrange
+        when(tradingViewAlertRepository.save(any(TradingViewAlert.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        // Act & Assert
+        DuplicateAlertException exception = assertThrows(DuplicateAlertException.class,
+                () -> tradingViewAlertService.saveAlert(testAlert));
+        assertEquals("Duplicate alert for bot: " + TEST_BOT_ID, exception.getMessage());
+    }
+
     @Test
     void getAlertsByBotId_shouldReturnAlertsForBot() {
         // Arrange
@@ -168,4 +193,39 @@ class TradingViewAlertServiceTest {
         // Assert
         verify(tradingViewAlertRepository).deleteById(TEST_ALERT_ID);
     }
-}
\ No newline at end of file
+
+    @Test
+    void claimAlert_whenQueued_marksItProcessingWithLease() {
+        // Arrange
+        testAlert.setStatus(TradingViewAlert.STATUS_QUEUED);
+        Instant leaseExpiresAt = Instant.parse("2023-01-01T12:10:00Z");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(TradingViewAlert.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        boolean claimed = tradingViewAlertService.claimAlert(testAlert, leaseExpiresAt);
+
+        // Assert
+        assertTrue(claimed);
+        ArgumentCaptor<Query> query = ArgumentCaptor.captor();
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(TradingViewAlert.class));
+        assertEquals(TradingViewAlert.STATUS_QUEUED, query.getValue().getQueryObject().get("status"));
+        assertEquals(TradingViewAlert.STATUS_PROCESSING, testAlert.getStatus());
+        assertEquals(leaseExpiresAt, testAlert.getLeaseExpiresAt());
+    }
+
+    @Test
+    void claimAlert_whenClaimedElsewhere_returnsFalse() {
+        // Arrange
+        testAlert.setStatus(TradingViewAlert.STATUS_QUEUED);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(TradingViewAlert.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Act
+        boolean claimed = tradingViewAlertService.claimAlert(testAlert, Instant.now());
+
+        // Assert
+        assertFalse(claimed);
+        assertEquals(TradingViewAlert.STATUS_QUEUED, testAlert.getStatus());
+    }
+}